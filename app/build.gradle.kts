@@ -27,10 +27,18 @@ android {
             )
         }
     }
+    buildFeatures {
+        // NodeTracker 根据 BuildConfig.DEBUG 决定是否记录节点句柄的获取调用栈
+        buildConfig = true
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        // 本地单元测试中 android.util.Log 等调用返回默认值，便于用 ReplayBackend 离线运行脚本
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
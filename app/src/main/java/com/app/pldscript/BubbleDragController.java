@@ -0,0 +1,242 @@
+package com.app.pldscript;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.animation.DecelerateInterpolator;
+
+/**
+ * 悬浮气泡拖动控制器
+ *
+ * ACTION_MOVE 只记录最新位置，由 Choreographer 在下一帧通过 Listener 统一更新一次位置（气泡和跟随的菜单一起更新），
+ * 一帧内的多个触摸事件不会触发多次重新布局。
+ * 松手后根据速度甩向左右边缘，用动画移动到边缘而不是直接跳过去。
+ */
+public class BubbleDragController implements View.OnTouchListener, Choreographer.FrameCallback {
+    // 吸附动画时长
+    private static final long SNAP_DURATION_MS = 250;
+    // 纵向按松手速度继续滑动的时间（秒）
+    private static final float FLING_PROJECTION_S = 0.15f;
+
+    /**
+     * 气泡位置变化回调（在主线程中调用，由调用方实际移动气泡）
+     */
+    public interface Listener {
+        void onBubbleMoved(int x, int y, int width, int height);
+    }
+
+    private final View bubble;
+    private final Listener listener;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final int touchSlop;
+    private final int minFlingVelocity;
+    private final int maxFlingVelocity;
+
+    // 气泡当前位置（屏幕坐标）
+    private int x;
+    private int y;
+    // 缓存的气泡尺寸，布局变化时更新
+    private int bubbleWidth;
+    private int bubbleHeight;
+
+    private int initialX;
+    private int initialY;
+    private float initialTouchX;
+    private float initialTouchY;
+    private boolean dragging;
+    private VelocityTracker velocityTracker;
+    // 等待下一帧应用的位置
+    private int pendingX;
+    private int pendingY;
+    private boolean frameScheduled;
+    private ValueAnimator snapAnimator;
+
+    /**
+     * @param x 气泡初始位置（屏幕坐标）
+     * @param y 气泡初始位置（屏幕坐标）
+     */
+    public BubbleDragController(Context context, View bubble, int x, int y, Listener listener) {
+        this.bubble = bubble;
+        this.x = x;
+        this.y = y;
+        this.listener = listener;
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        touchSlop = configuration.getScaledTouchSlop();
+        minFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        maxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+
+        bubble.measure(View.MeasureSpec.UNSPECIFIED, View.MeasureSpec.UNSPECIFIED);
+        bubbleWidth = bubble.getMeasuredWidth();
+        bubbleHeight = bubble.getMeasuredHeight();
+        bubble.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+            if (right - left > 0 && bottom - top > 0) {
+                bubbleWidth = right - left;
+                bubbleHeight = bottom - top;
+            }
+        });
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getBubbleWidth() {
+        return bubbleWidth;
+    }
+
+    public int getBubbleHeight() {
+        return bubbleHeight;
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                cancelSnap();
+                initialX = x;
+                initialY = y;
+                initialTouchX = event.getRawX();
+                initialTouchY = event.getRawY();
+                dragging = false;
+                if (velocityTracker == null) {
+                    velocityTracker = VelocityTracker.obtain();
+                } else {
+                    velocityTracker.clear();
+                }
+                trackVelocity(event);
+                return false; // 不拦截，允许点击
+            case MotionEvent.ACTION_MOVE: {
+                trackVelocity(event);
+                int dx = (int) (event.getRawX() - initialTouchX);
+                int dy = (int) (event.getRawY() - initialTouchY);
+                if (!dragging && (Math.abs(dx) > touchSlop || Math.abs(dy) > touchSlop)) {
+                    dragging = true;
+                }
+                if (!dragging) return false; // 未达到拖动阈值，不拦截
+                moveTo(initialX + dx, initialY + dy);
+                return true;
+            }
+            case MotionEvent.ACTION_UP:
+                if (!dragging) return false; // 非拖动，放行以触发 onClick
+                trackVelocity(event);
+                velocityTracker.computeCurrentVelocity(1000, maxFlingVelocity);
+                snapToEdge(velocityTracker.getXVelocity(), velocityTracker.getYVelocity());
+                dragging = false;
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                if (!dragging) return false;
+                snapToEdge(0, 0);
+                dragging = false;
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录下一帧的位置
+     */
+    private void moveTo(int newX, int newY) {
+        pendingX = newX;
+        pendingY = newY;
+        if (!frameScheduled) {
+            frameScheduled = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        apply(pendingX, pendingY);
+    }
+
+    private void apply(int newX, int newY) {
+        if (!bubble.isAttachedToWindow()) return;
+        if (x == newX && y == newY) return;
+        x = newX;
+        y = newY;
+        listener.onBubbleMoved(x, y, bubbleWidth, bubbleHeight);
+    }
+
+    /**
+     * 按松手速度甩向左右边缘，速度不够时吸附到最近的边缘
+     */
+    private void snapToEdge(float velocityX, float velocityY) {
+        // 先应用还没来得及更新的位置
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(this);
+            frameScheduled = false;
+            apply(pendingX, pendingY);
+        }
+        int screenW = OverlayCompositor.getScreenWidth();
+        int screenH = OverlayCompositor.getScreenHeight();
+        boolean toLeft = Math.abs(velocityX) >= minFlingVelocity
+                ? velocityX < 0
+                : x + bubbleWidth / 2 < screenW / 2;
+        int targetX = toLeft ? 0 : Math.max(0, screenW - bubbleWidth);
+        int targetY = y + (Math.abs(velocityY) >= minFlingVelocity ? (int) (velocityY * FLING_PROJECTION_S) : 0);
+        targetY = Math.max(0, Math.min(targetY, Math.max(0, screenH - bubbleHeight)));
+
+        int startX = x;
+        int startY = y;
+        if (startX == targetX && startY == targetY) return;
+        snapAnimator = ValueAnimator.ofFloat(0f, 1f);
+        snapAnimator.setDuration(SNAP_DURATION_MS);
+        snapAnimator.setInterpolator(new DecelerateInterpolator());
+        // 动画回调本身就在 Choreographer 的帧回调中，直接更新位置
+        snapAnimator.addUpdateListener(animation -> {
+            float f = (float) animation.getAnimatedValue();
+            apply(startX + Math.round((targetX - startX) * f), startY + Math.round((targetY - startY) * f));
+        });
+        snapAnimator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                snapAnimator = null;
+            }
+        });
+        snapAnimator.start();
+    }
+
+    private void cancelSnap() {
+        if (snapAnimator != null) {
+            snapAnimator.cancel();
+            snapAnimator = null;
+        }
+    }
+
+    /**
+     * 窗口会随手指移动，这里把事件换算到屏幕坐标后再计算速度
+     */
+    private void trackVelocity(MotionEvent event) {
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        event.offsetLocation(offsetX, offsetY);
+        velocityTracker.addMovement(event);
+        event.offsetLocation(-offsetX, -offsetY);
+    }
+
+    /**
+     * 停止动画和未执行的帧回调，移除气泡前调用
+     */
+    public void release() {
+        cancelSnap();
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.app.pldscript;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * 真机后端 - 直接转发到 PLDScript 的无障碍操作
+ */
+public class DeviceBackend implements ScriptBackend {
+    public static final DeviceBackend INSTANCE = new DeviceBackend();
+
+    private DeviceBackend() {
+    }
+
+    @Override
+    public boolean click(int x, int y, int duration) {
+        return PLDScript.Click(x, y, duration);
+    }
+
+    @Override
+    public boolean swipe(int startX, int startY, int endX, int endY, int duration) {
+        return PLDScript.Swipe(startX, startY, endX, endY, duration);
+    }
+
+    @Override
+    public boolean clickNode(UiSnapshot snapshot, int node) {
+        if (snapshot == null || node < 0 || node >= snapshot.size()) return false;
+        int x = (snapshot.getLeft(node) + snapshot.getRight(node)) / 2;
+        int y = (snapshot.getTop(node) + snapshot.getBottom(node)) / 2;
+        return PLDScript.Click(x, y, 100);
+    }
+
+    @Override
+    public boolean inputText(UiSnapshot snapshot, int node, String text) {
+        if (snapshot == null || node < 0 || node >= snapshot.size()) return false;
+        PLDScript service = PLDScript.getInstance();
+        if (service == null) return false;
+        // 根节点和逐层找到的节点都放在作用域内，任何一步返回或抛出异常都会回收
+        TreeCapture.Session session = TreeCapture.begin("DeviceBackend.inputText", false);
+        try (NodeScope scope = new NodeScope("DeviceBackend.inputText")) {
+            AccessibilityNodeInfo root = scope.add(session.getRoot(service));
+            if (root == null) return false;
+            AccessibilityNodeInfo target = findLiveNode(session, scope, root, snapshot, node);
+            return target != null && PLDScript.InputText(text, target);
+        } finally {
+            session.finish();
+        }
+    }
+
+    @Override
+    public boolean goBack() {
+        return PLDScript.GoBack();
+    }
+
+    @Override
+    public void sleep(long milliseconds) throws InterruptedException {
+        Thread.sleep(milliseconds);
+    }
+
+    @Override
+    public boolean waitForIdle(int quietMs, int timeout) throws InterruptedException {
+        boolean idle = PLDScript.WaitForIdle(quietMs, timeout);
+        checkInterrupted();
+        return idle;
+    }
+
+    @Override
+    public boolean waitForStable(int quietMs, int timeout) throws InterruptedException {
+        boolean stable = PLDScript.WaitForStable(null, quietMs, timeout);
+        checkInterrupted();
+        return stable;
+    }
+
+    @Override
+    public UiSnapshot captureSnapshot() {
+        return PLDScript.CaptureSnapshot();
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    /**
+     * 按快照中记录的子节点序号从根节点逐层找到对应的实时节点
+     * @param scope 获取的节点都加入该作用域，途经的中间节点提前释放
+     * @return 节点（属于 scope），界面已变化导致位置不一致时返回 null
+     */
+    private static AccessibilityNodeInfo findLiveNode(TreeCapture.Session session, NodeScope scope,
+                                                      AccessibilityNodeInfo root, UiSnapshot snapshot, int node) {
+        int depth = snapshot.getDepth(node);
+        int[] path = new int[depth];
+        for (int n = node, d = depth - 1; d >= 0; n = snapshot.getParent(n), d--) {
+            path[d] = snapshot.getIndexInParent(n);
+        }
+        AccessibilityNodeInfo current = root;
+        for (int index : path) {
+            AccessibilityNodeInfo child = index < current.getChildCount() ? scope.add(session.getChild(current, index)) : null;
+            if (current != root) {
+                scope.release(current);
+            }
+            if (child == null) return null;
+            current = child;
+        }
+        Rect bounds = new Rect();
+        current.getBoundsInScreen(bounds);
+        if (bounds.left != snapshot.getLeft(node) || bounds.top != snapshot.getTop(node)
+                || bounds.right != snapshot.getRight(node) || bounds.bottom != snapshot.getBottom(node)) {
+            return null;
+        }
+        return current;
+    }
+
+    /**
+     * 等待方法在中断时只恢复中断标志，这里转换为异常以便脚本直接退出
+     */
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.app.pldscript;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 事件环形缓冲区 - 单生产者（无障碍服务线程）多消费者
+ *
+ * 槽位预先分配，发布事件时只把需要的字段复制进槽位，不创建事件对象，生产者从不阻塞。
+ * 每个槽位带版本号（seqlock）：写入时为奇数，写完为偶数，读取前后版本一致才算读到完整数据。
+ * 消费者通过各自的 Cursor 按顺序读取，读得太慢被覆盖的事件计入 getMissedCount。
+ */
+public class EventRing {
+
+    /**
+     * 事件数据（由消费者提供，读取时填充，可重复使用）
+     */
+    public static class Event {
+        // 事件序号（从 1 开始递增）
+        public long sequence;
+        public int type;
+        public String packageName;
+        public String className;
+        public String text;
+        public int windowId;
+        // SystemClock.uptimeMillis() 时间戳
+        public long time;
+
+        @Override
+        public String toString() {
+            return "#" + sequence + " type=0x" + Integer.toHexString(type) + " " + packageName
+                    + " " + className + (text != null ? " [" + text + "]" : "") + " @" + time;
+        }
+    }
+
+    private static class Slot {
+        // 2 * 序号 - 1 表示正在写入，2 * 序号表示写入完成
+        volatile long version;
+        volatile int type;
+        volatile String packageName;
+        volatile String className;
+        volatile String text;
+        volatile int windowId;
+        volatile long time;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    // 最后一个已发布事件的序号
+    private volatile long published;
+    private final AtomicInteger cursorCount = new AtomicInteger();
+    private final AtomicInteger cursorIds = new AtomicInteger();
+    // 阻塞等待的消费者
+    private final Object lock = new Object();
+    private volatile int waiters;
+
+    /**
+     * @param capacity 容量，会向上取整为 2 的幂
+     */
+    public EventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * 是否有消费者，没有时生产者可以跳过字段提取
+     */
+    public boolean hasCursors() {
+        return cursorCount.get() > 0;
+    }
+
+    /**
+     * 发布一个事件（只能由单个线程调用）
+     */
+    public void publish(int type, String packageName, String className, String text, int windowId, long time) {
+        long seq = published + 1;
+        Slot slot = slots[(int) (seq & mask)];
+        slot.version = 2 * seq - 1;
+        slot.type = type;
+        slot.packageName = packageName;
+        slot.className = className;
+        slot.text = text;
+        slot.windowId = windowId;
+        slot.time = time;
+        slot.version = 2 * seq;
+        published = seq;
+        if (waiters != 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 最后一个已发布事件的序号
+     */
+    public long getPublishedSequence() {
+        return published;
+    }
+
+    /**
+     * 打开一个消费者，从下一个发布的事件开始读取
+     * @param eventTypes 关注的事件类型，0 表示全部
+     * @param packageName 关注的应用包名，为 null 表示全部
+     * @param onClose 关闭时执行（可以为 null）
+     */
+    public Cursor openCursor(int eventTypes, String packageName, Runnable onClose) {
+        cursorCount.incrementAndGet();
+        return new Cursor(cursorIds.incrementAndGet(), eventTypes, packageName, onClose);
+    }
+
+    /**
+     * 消费者游标，非线程安全（每个消费线程使用自己的游标）
+     */
+    public class Cursor implements AutoCloseable {
+        private final int id;
+        private final int eventTypes;
+        private final String packageName;
+        private final Runnable onClose;
+        private long next = published + 1;
+        private long missed;
+        private boolean closed;
+
+        Cursor(int id, int eventTypes, String packageName, Runnable onClose) {
+            this.id = id;
+            this.eventTypes = eventTypes;
+            this.packageName = packageName;
+            this.onClose = onClose;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * 因读取太慢被覆盖而错过的事件数
+         */
+        public long getMissedCount() {
+            return missed;
+        }
+
+        /**
+         * 读取下一个符合条件的事件，不阻塞
+         * @param out 用于接收数据的事件对象
+         * @return 读到事件返回 true，暂时没有新事件返回 false
+         */
+        public boolean poll(Event out) {
+            while (next <= published) {
+                long seq = next;
+                if (!read(seq, out)) {
+                    // 被生产者覆盖，跳到缓冲区中仍然有效的最早位置
+                    long oldest = published - mask;
+                    if (oldest > seq) {
+                        missed += oldest - seq;
+                        next = oldest;
+                    } else {
+                        missed++;
+                        next = seq + 1;
+                    }
+                    continue;
+                }
+                next = seq + 1;
+                if (matches(out)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 读取下一个符合条件的事件，没有时阻塞等待
+         * @param timeoutMs 最长等待时间（毫秒）
+         * @return 超时前读到事件返回 true
+         */
+        public boolean take(Event out, long timeoutMs) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (true) {
+                if (poll(out)) return true;
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                synchronized (lock) {
+                    waiters++;
+                    try {
+                        if (next > published) {
+                            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                        }
+                    } finally {
+                        waiters--;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            cursorCount.decrementAndGet();
+            if (onClose != null) {
+                onClose.run();
+            }
+        }
+
+        private boolean read(long seq, Event out) {
+            Slot slot = slots[(int) (seq & mask)];
+            long version = slot.version;
+            if (version != 2 * seq) return false;
+            out.sequence = seq;
+            out.type = slot.type;
+            out.packageName = slot.packageName;
+            out.className = slot.className;
+            out.text = slot.text;
+            out.windowId = slot.windowId;
+            out.time = slot.time;
+            // 读取期间被覆盖则数据不完整
+            return slot.version == version;
+        }
+
+        private boolean matches(Event event) {
+            if (eventTypes != 0 && (event.type & eventTypes) == 0) return false;
+            return packageName == null || packageName.equals(event.packageName);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.app.pldscript;
+
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 事件订阅管理 - 根据当前启用的功能（覆盖层、空闲等待、宏录制、脚本订阅等）
+ * 计算需要的事件类型和应用包名的并集，通过 setServiceInfo 在运行时更新服务配置
+ *
+ * 没有任何订阅时只接收窗口切换事件，服务几乎不再被事件唤醒。
+ * 任一订阅不限制包名时，整体不限制包名。
+ *
+ * 每次 setServiceInfo 都是一次跨进程调用。新增的订阅需要更多事件时立即更新；取消订阅只会让配置收窄，
+ * 多接收一会儿事件没有影响，因此延迟 NARROW_DELAY_MS 再更新。脚本连续等待时反复订阅、取消，
+ * 配置在这段时间内保持不变，不再每次等待都调用两次 setServiceInfo。
+ */
+public class EventSubscriptions {
+    private static final String TAG = "EventSubscriptions";
+    // 空闲时保留的事件类型
+    private static final int IDLE_EVENT_TYPES = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED;
+    private static final int NOTIFICATION_TIMEOUT_MS = 100;
+    // 订阅减少后延迟收窄配置的时间
+    private static final long NARROW_DELAY_MS = 2000;
+
+    private static final Map<String, Subscription> subscriptions = new LinkedHashMap<>();
+    // 已应用到服务的配置，未变化时不重复调用 setServiceInfo
+    private static int appliedEventTypes = -1;
+    private static String[] appliedPackages;
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    private static boolean narrowScheduled;
+    private static final Runnable narrowRunnable = () -> {
+        synchronized (EventSubscriptions.class) {
+            narrowScheduled = false;
+            apply();
+        }
+    };
+
+    private static class Subscription {
+        final int eventTypes;
+        final String[] packages;
+
+        Subscription(int eventTypes, String[] packages) {
+            this.eventTypes = eventTypes;
+            this.packages = packages;
+        }
+    }
+
+    /**
+     * 登记或更新一个订阅
+     * @param consumer 订阅者名称，同名订阅会被替换
+     * @param eventTypes 需要的事件类型（AccessibilityEvent.TYPE_* 的组合）
+     * @param packages 需要的应用包名，不传或传 null 表示所有应用
+     */
+    public static void subscribe(String consumer, int eventTypes, String... packages) {
+        String[] normalized = packages == null || packages.length == 0 || Arrays.asList(packages).contains(null)
+                ? null : packages.clone();
+        synchronized (EventSubscriptions.class) {
+            subscriptions.put(consumer, new Subscription(eventTypes, normalized));
+            apply();
+        }
+    }
+
+    /**
+     * 取消订阅
+     */
+    public static synchronized void unsubscribe(String consumer) {
+        if (subscriptions.remove(consumer) != null) {
+            apply();
+        }
+    }
+
+    /**
+     * 当前需要的事件类型
+     */
+    public static synchronized int getEventTypes() {
+        int types = IDLE_EVENT_TYPES;
+        for (Subscription s : subscriptions.values()) {
+            types |= s.eventTypes;
+        }
+        return types;
+    }
+
+    /**
+     * 当前需要的应用包名，null 表示所有应用
+     */
+    public static synchronized String[] getPackages() {
+        if (subscriptions.isEmpty()) return null;
+        TreeSet<String> packages = new TreeSet<>();
+        for (Subscription s : subscriptions.values()) {
+            if (s.packages == null) return null;
+            packages.addAll(Arrays.asList(s.packages));
+        }
+        return packages.toArray(new String[0]);
+    }
+
+    /**
+     * 服务连接后调用，应用当前订阅
+     */
+    static synchronized void onServiceConnected() {
+        appliedEventTypes = -1;
+        appliedPackages = null;
+        cancelNarrow();
+        apply();
+    }
+
+    /**
+     * 把订阅并集应用到服务
+     */
+    private static void apply() {
+        PLDScript service = PLDScript.getInstance();
+        if (service == null) return;
+        int eventTypes = getEventTypes();
+        String[] packages = getPackages();
+        if (eventTypes == appliedEventTypes && Arrays.equals(packages, appliedPackages)) {
+            // 收窄前又恢复了原来的订阅
+            cancelNarrow();
+            return;
+        }
+        if (appliedEventTypes != -1 && isCoveredByApplied(eventTypes, packages)) {
+            // 已应用的配置已经包含需要的事件，稍后再收窄
+            if (!narrowScheduled) {
+                narrowScheduled = true;
+                handler.postDelayed(narrowRunnable, NARROW_DELAY_MS);
+            }
+            return;
+        }
+        cancelNarrow();
+        try {
+            AccessibilityServiceInfo info = service.getServiceInfo();
+            if (info == null) return;
+            info.eventTypes = eventTypes;
+            info.packageNames = packages;
+            info.notificationTimeout = NOTIFICATION_TIMEOUT_MS;
+            service.setServiceInfo(info);
+            appliedEventTypes = eventTypes;
+            appliedPackages = packages;
+            if (PLog.isLoggable(PLog.DEBUG)) {
+                PLog.d(TAG, "更新事件订阅: types=0x{}, packages={}, 订阅者={}", Integer.toHexString(eventTypes),
+                        packages == null ? "*" : Arrays.toString(packages), subscriptions.keySet().toString());
+            }
+        } catch (Exception e) {
+            PLog.e(TAG, "更新事件订阅失败", e);
+        }
+    }
+
+    /**
+     * 已应用的配置是否已经包含指定的事件类型和包名
+     */
+    private static boolean isCoveredByApplied(int eventTypes, String[] packages) {
+        if ((eventTypes & ~appliedEventTypes) != 0) return false;
+        if (appliedPackages == null) return true;
+        return packages != null && Arrays.asList(appliedPackages).containsAll(Arrays.asList(packages));
+    }
+
+    private static void cancelNarrow() {
+        if (narrowScheduled) {
+            narrowScheduled = false;
+            handler.removeCallbacks(narrowRunnable);
+        }
+    }
+}
@@ -2,79 +2,39 @@ package com.app.pldscript;
 
 import android.content.Context;
 import android.graphics.Color;
-import android.graphics.PixelFormat;
-import android.os.Build;
-import android.view.Gravity;
-import android.view.MotionEvent;
 import android.view.View;
-import android.view.WindowManager;
-import android.view.ViewConfiguration;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import com.main.script.MainScript;
 
 public class FloatWindow {
-    private static WindowManager windowManager;
-    private static View bubbleView;
-    private static View menuView;
-    private static WindowManager.LayoutParams bubbleParams;
-    private static WindowManager.LayoutParams menuParams;
-    
-    /**
-     * 获取悬浮窗位置信息，用于ViewTreeOverlay避免拦截点击
-     */
-    public static int[] getBubblePosition() {
-        if (bubbleParams != null && bubbleView != null) {
-            int width = bubbleView.getWidth();
-            int height = bubbleView.getHeight();
-            if (width == 0 || height == 0) {
-                // 如果还没有测量，使用估算值
-                width = dp(null, 60);
-                height = dp(null, 60);
-            }
-            return new int[]{bubbleParams.x, bubbleParams.y, width, height};
-        }
-        return null;
-    }
-    
-    /**
-     * 获取菜单位置信息
-     */
-    public static int[] getMenuPosition() {
-        if (menuParams != null && menuView != null) {
-            int width = menuView.getWidth();
-            int height = menuView.getHeight();
-            if (width == 0 || height == 0) {
-                width = dp(null, 150);
-                height = dp(null, 200);
-            }
-            return new int[]{menuParams.x, menuParams.y, width, height};
-        }
-        return null;
-    }
+    private static final String LAYER_BUBBLE = "bubble";
+    private static final String LAYER_MENU = "bubbleMenu";
+    private static OverlayCompositor.Layer bubbleLayer;
+    private static OverlayCompositor.Layer menuLayer;
+    private static BubbleDragController dragController;
 
     public static boolean isShowing() {
-        return bubbleView != null;
+        return bubbleLayer != null;
     }
 
     public static void show(Context context) {
-        if (bubbleView != null) return;
-        windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-        // 先初始化控件树查看器（如果启用的话，会在后面添加覆盖层）
-        ViewTreeOverlay.init(context);
-        // 然后创建悬浮窗，确保悬浮窗在上层（后添加的窗口在上层）
+        if (bubbleLayer != null) return;
         createBubble(context);
     }
 
     public static void hide() {
         removeMenu();
-        if (windowManager != null && bubbleView != null) {
-            windowManager.removeView(bubbleView);
-            bubbleView = null;
+        if (dragController != null) {
+            dragController.release();
+            dragController = null;
         }
-        // 隐藏控件树查看器（需要context，但这里可能已经无法获取，所以先不传）
-        // ViewTreeOverlay会在下次show时重新初始化
+        if (bubbleLayer != null) {
+            OverlayCompositor.removeLayer(LAYER_BUBBLE);
+            bubbleLayer = null;
+        }
+        // 控件查看覆盖层是合成窗口中的独立图层，不随悬浮窗关闭
     }
 
     private static void createBubble(Context context) {
@@ -85,101 +45,22 @@ public class FloatWindow {
         int padding = dp(context, 12);
         bubble.setPadding(padding, padding, padding, padding);
 
-        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
-                ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
-                : WindowManager.LayoutParams.TYPE_PHONE;
-
-        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                type,
-                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
-                        | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS
-                        | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL, // 允许接收触摸事件，但事件可以穿透
-                PixelFormat.TRANSLUCENT
-        );
-        params.gravity = Gravity.TOP | Gravity.START;
-        params.x = 50;
-        params.y = 200;
-
-        bubble.setOnTouchListener(new View.OnTouchListener(){
-            private int initialX;
-            private int initialY;
-            private float initialTouchX;
-            private float initialTouchY;
-            private boolean isDragging;
-            private final int touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
-            @Override
-            public boolean onTouch(View v, MotionEvent event) {
-                switch (event.getAction()) {
-                    case MotionEvent.ACTION_DOWN:
-                        initialX = params.x;
-                        initialY = params.y;
-                        initialTouchX = event.getRawX();
-                        initialTouchY = event.getRawY();
-                        isDragging = false;
-                        return false; // 不拦截，允许点击
-                    case MotionEvent.ACTION_MOVE:
-                        int dx = (int) (event.getRawX() - initialTouchX);
-                        int dy = (int) (event.getRawY() - initialTouchY);
-                        if (!isDragging && (Math.abs(dx) > touchSlop || Math.abs(dy) > touchSlop)) {
-                            isDragging = true;
-                        }
-                        if (isDragging) {
-                            params.x = initialX + dx;
-                            params.y = initialY + dy;
-                            windowManager.updateViewLayout(bubble, params);
-                            // 菜单跟随
-                            if (menuView != null && menuParams != null) {
-                            int[] pos = computeMenuPosition(context, bubble, params);
-                                menuParams.x = pos[0];
-                                menuParams.y = pos[1];
-                                windowManager.updateViewLayout(menuView, menuParams);
-                            }
-                            return true; // 拖动时拦截
-                        }
-                        return false; // 未达到拖动阈值，不拦截
-                    case MotionEvent.ACTION_UP:
-                        if (isDragging) {
-                            // 吸附到最近边缘并限制到屏幕内
-                            int screenW = context.getResources().getDisplayMetrics().widthPixels;
-                            int screenH = context.getResources().getDisplayMetrics().heightPixels;
-                            int bw = bubble.getWidth();
-                            int bh = bubble.getHeight();
-                            if (bw == 0 || bh == 0) {
-                                bubble.measure(View.MeasureSpec.UNSPECIFIED, View.MeasureSpec.UNSPECIFIED);
-                                bw = bubble.getMeasuredWidth();
-                                bh = bubble.getMeasuredHeight();
-                            }
-                            int targetX = (params.x + bw / 2 < screenW / 2) ? 0 : Math.max(0, screenW - bw);
-                            int targetY = Math.max(0, Math.min(params.y, Math.max(0, screenH - bh)));
-                            params.x = targetX;
-                            params.y = targetY;
-                            windowManager.updateViewLayout(bubble, params);
-                            // 更新菜单位置
-                            if (menuView != null && menuParams != null) {
-                                int[] pos = computeMenuPosition(context, bubble, params);
-                                menuParams.x = pos[0];
-                                menuParams.y = pos[1];
-                                windowManager.updateViewLayout(menuView, menuParams);
-                            }
-                            return true; // 拖动结束，已拦截
-                        }
-                        return false; // 非拖动，放行以触发 onClick
-                }
-                return false;
-            }
-        });
+        // 拖动时每帧只更新一次位置，菜单在同一帧内跟随
+        dragController = new BubbleDragController(context, bubble, 50, 200,
+                (x, y, width, height) -> moveBubble(context, x, y, width, height));
+        bubble.setOnTouchListener(dragController);
 
         bubble.setOnClickListener(v -> toggleMenu(context));
 
-        bubbleView = bubble;
-        bubbleParams = params;
-        windowManager.addView(bubbleView, params);
+        // 气泡在控件查看覆盖层之上
+        bubbleLayer = OverlayCompositor.addLayer(context, LAYER_BUBBLE, OverlayCompositor.Z_BUBBLE, bubble,
+                dragController.getX(), dragController.getY(),
+                OverlayCompositor.WRAP_CONTENT, OverlayCompositor.WRAP_CONTENT);
+        OverlayCompositor.commit();
     }
 
     private static void toggleMenu(Context context) {
-        if (menuView == null) {
+        if (menuLayer == null) {
             showMenu(context);
         } else {
             removeMenu();
@@ -190,9 +71,9 @@ public class FloatWindow {
      * 更新菜单中控件查看按钮的文本
      */
     public static void updateViewTreeButton() {
-        if (menuView != null && menuView instanceof LinearLayout) {
-            LinearLayout menu = (LinearLayout) menuView;
-            // viewTree 是第三个子视图（索引为2：start=0, stop=1, viewTree=2, exit=3）
+        if (menuLayer != null && menuLayer.getView() instanceof LinearLayout) {
+            LinearLayout menu = (LinearLayout) menuLayer.getView();
+            // viewTree 是第三个子视图（索引为2：start=0, stop=1, viewTree=2, record=3, replay=4, exit=5）
             if (menu.getChildCount() > 2) {
                 TextView viewTree = (TextView) menu.getChildAt(2);
                 if (viewTree != null) {
@@ -203,7 +84,7 @@ public class FloatWindow {
     }
 
     private static void showMenu(Context context) {
-        if (menuView != null) return;
+        if (menuLayer != null) return;
         LinearLayout menu = new LinearLayout(context);
         menu.setOrientation(LinearLayout.VERTICAL);
         menu.setBackgroundColor(Color.argb(230, 40, 40, 40));
@@ -213,6 +94,8 @@ public class FloatWindow {
         TextView start = buildMenuItem(context, MainScript.isRunning() ? "脚本已运行" : "启动脚本");
         TextView stop = buildMenuItem(context, "关闭脚本");
         TextView viewTree = buildMenuItem(context, ViewTreeOverlay.isEnabled() ? "关闭控件查看" : "开启控件查看");
+        TextView record = buildMenuItem(context, PLDScript.IsRecording() ? "停止录制" : "开始录制");
+        TextView replay = buildMenuItem(context, "回放录制");
         TextView exit = buildMenuItem(context, "退出悬浮窗");
 
         start.setOnClickListener(v -> {
@@ -235,6 +118,28 @@ public class FloatWindow {
                 ViewTreeOverlay.refresh();
             }
         });
+        record.setOnClickListener(v -> {
+            if (PLDScript.IsRecording()) {
+                PLDScript.StopRecording();
+            } else if (!PLDScript.StartRecording(getMacroFile(context))) {
+                android.widget.Toast.makeText(context, "录制失败，请先开启无障碍服务", android.widget.Toast.LENGTH_SHORT).show();
+            }
+            record.setText(PLDScript.IsRecording() ? "停止录制" : "开始录制");
+        });
+        replay.setOnClickListener(v -> {
+            if (PLDScript.IsRecording()) {
+                PLDScript.StopRecording();
+                record.setText("开始录制");
+            }
+            java.io.File file = getMacroFile(context);
+            if (!file.exists()) {
+                android.widget.Toast.makeText(context, "还没有录制", android.widget.Toast.LENGTH_SHORT).show();
+                return;
+            }
+            removeMenu();
+            // 压缩时序回放，界面空闲后立即执行下一步
+            new Thread(() -> PLDScript.ReplayMacro(file, 1f, true), "PLD-Macro-Replay").start();
+        });
         exit.setOnClickListener(v -> {
             hide();
         });
@@ -242,36 +147,31 @@ public class FloatWindow {
         menu.addView(start);
         menu.addView(stop);
         menu.addView(viewTree);
+        menu.addView(record);
+        menu.addView(replay);
         menu.addView(exit);
 
-        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
-                ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
-                : WindowManager.LayoutParams.TYPE_PHONE;
-        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                type,
-                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
-                PixelFormat.TRANSLUCENT
-        );
-        params.gravity = Gravity.TOP | Gravity.START;
         // 预先测量菜单以便更紧密贴合
         menu.measure(View.MeasureSpec.UNSPECIFIED, View.MeasureSpec.UNSPECIFIED);
-        int measuredW = Math.max(1, menu.getMeasuredWidth());
-        int measuredH = Math.max(1, menu.getMeasuredHeight());
-        int[] initialPos = computeMenuPosition(context, bubbleView, bubbleParams, measuredW, measuredH);
-        params.x = initialPos[0];
-        params.y = initialPos[1];
-
-        menuView = menu;
-        menuParams = params;
-        windowManager.addView(menuView, params);
+        int[] initialPos = computeMenuPosition(context, bubbleLayer.getX(), bubbleLayer.getY(),
+                bubbleLayer.getWidth(), bubbleLayer.getHeight(),
+                Math.max(1, menu.getMeasuredWidth()), Math.max(1, menu.getMeasuredHeight()));
+        menuLayer = OverlayCompositor.addLayer(context, LAYER_MENU, OverlayCompositor.Z_BUBBLE_MENU, menu,
+                initialPos[0], initialPos[1], OverlayCompositor.WRAP_CONTENT, OverlayCompositor.WRAP_CONTENT);
+        OverlayCompositor.commit();
     }
 
     private static void updateMenuLabels(TextView startLabel) {
         startLabel.setText(MainScript.isRunning() ? "脚本已运行" : "启动脚本");
     }
 
+    /**
+     * 悬浮窗录制的宏文件
+     */
+    private static java.io.File getMacroFile(Context context) {
+        return new java.io.File(context.getExternalFilesDir("macros"), "last.pldm");
+    }
+
     private static TextView buildMenuItem(Context context, String text) {
         TextView tv = new TextView(context);
         tv.setText(text);
@@ -281,27 +181,32 @@ public class FloatWindow {
     }
 
     private static void removeMenu() {
-        if (windowManager != null && menuView != null) {
-            windowManager.removeView(menuView);
-            menuView = null;
-            menuParams = null;
+        if (menuLayer != null) {
+            OverlayCompositor.removeLayer(LAYER_MENU);
+            menuLayer = null;
         }
     }
 
-    private static int[] computeMenuPosition(Context context, View anchor, WindowManager.LayoutParams anchorParams) {
-        // 当已添加菜单时，使用其真实尺寸；否则使用一个更小的预估值
-        int mw = (menuView != null && menuView.getWidth() > 0) ? menuView.getWidth() : dp(context, 120);
-        int mh = (menuView != null && menuView.getHeight() > 0) ? menuView.getHeight() : dp(context, 64);
-        return computeMenuPosition(context, anchor, anchorParams, mw, mh);
+    /**
+     * 移动气泡，菜单在同一次提交中跟随（图层尺寸由合成器在布局变化时缓存）
+     */
+    private static void moveBubble(Context context, int x, int y, int width, int height) {
+        if (bubbleLayer == null) return;
+        OverlayCompositor.moveLayer(bubbleLayer, x, y);
+        if (menuLayer != null) {
+            int[] pos = computeMenuPosition(context, x, y, width, height, menuLayer.getWidth(), menuLayer.getHeight());
+            OverlayCompositor.moveLayer(menuLayer, pos[0], pos[1]);
+        }
+        OverlayCompositor.commit();
     }
 
-    private static int[] computeMenuPosition(Context context, View anchor, WindowManager.LayoutParams anchorParams, int menuW, int menuH) {
-        int screenW = context.getResources().getDisplayMetrics().widthPixels;
-        int screenH = context.getResources().getDisplayMetrics().heightPixels;
-        int ax = anchorParams != null ? anchorParams.x : 0;
-        int ay = anchorParams != null ? anchorParams.y : 0;
-        int aw = (anchor != null && anchor.getWidth() > 0) ? anchor.getWidth() : dp(context, 48);
-        int ah = (anchor != null && anchor.getHeight() > 0) ? anchor.getHeight() : dp(context, 48);
+    private static int[] computeMenuPosition(Context context, int ax, int ay, int aw, int ah, int menuW, int menuH) {
+        int screenW = OverlayCompositor.getScreenWidth();
+        int screenH = OverlayCompositor.getScreenHeight();
+        if (aw <= 0 || ah <= 0) {
+            aw = dp(context, 48);
+            ah = dp(context, 48);
+        }
         int margin = dp(context, 2); // 更紧贴
 
         boolean dockLeft = (ax + aw / 2) < screenW / 2;
@@ -315,16 +220,7 @@ public class FloatWindow {
     }
 
     private static int dp(Context context, int v) {
-        if (context == null && windowManager != null) {
-            // 如果没有context，尝试从windowManager获取
-            android.util.DisplayMetrics metrics = new android.util.DisplayMetrics();
-            windowManager.getDefaultDisplay().getMetrics(metrics);
-            return (int) (v * metrics.density + 0.5f);
-        }
-        if (context != null) {
-            float d = context.getResources().getDisplayMetrics().density;
-            return (int) (v * d + 0.5f);
-        }
-        return v; // 如果都无法获取，返回原值
+        float d = context.getResources().getDisplayMetrics().density;
+        return (int) (v * d + 0.5f);
     }
 }
@@ -0,0 +1,85 @@
+package com.app.pldscript;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 无界面脚本运行器 - 在 ReplayBackend 上运行脚本并汇总结果
+ * 虚拟时钟让等待不花真实时间，耗时统计只反映脚本自身逻辑的开销
+ */
+public class HeadlessScriptRunner {
+
+    /**
+     * 单次运行结果
+     */
+    public static class Result {
+        public final String name;
+        public final boolean passed;
+        public final Throwable error;
+        public final String finalState;
+        public final String expectedState;
+        // 虚拟时钟经过的时间（真机上大致需要的时间）
+        public final long virtualMillis;
+        // 实际运行耗时（脚本逻辑开销）
+        public final long realNanos;
+        public final int gestures;
+        public final int unmatchedGestures;
+        public final List<String> history;
+
+        Result(String name, Throwable error, String finalState, String expectedState, long virtualMillis,
+               long realNanos, int gestures, int unmatchedGestures, List<String> history) {
+            this.name = name;
+            this.error = error;
+            this.finalState = finalState;
+            this.expectedState = expectedState;
+            this.virtualMillis = virtualMillis;
+            this.realNanos = realNanos;
+            this.gestures = gestures;
+            this.unmatchedGestures = unmatchedGestures;
+            this.history = history;
+            this.passed = error == null && unmatchedGestures == 0
+                    && (expectedState == null || expectedState.equals(finalState));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(passed ? "PASS " : "FAIL ").append(name)
+                    .append(" state=").append(finalState);
+            if (expectedState != null && !expectedState.equals(finalState)) {
+                sb.append(" (expected ").append(expectedState).append(")");
+            }
+            sb.append(" gestures=").append(gestures)
+                    .append(" unmatched=").append(unmatchedGestures)
+                    .append(" virtual=").append(virtualMillis).append("ms")
+                    .append(" real=").append(realNanos / 1000).append("us");
+            if (error != null) {
+                sb.append(" error=").append(error);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 运行一个脚本
+     * @param name 用例名
+     * @param script 脚本
+     * @param backend 已登记好状态和跳转规则的回放后端
+     * @param expectedState 期望的最终状态，为 null 时不检查
+     */
+    public static Result run(String name, ScriptBackend.Script script, ReplayBackend backend, String expectedState) {
+        long startClock = backend.uptimeMillis();
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            script.run(backend);
+        } catch (Throwable t) {
+            error = t;
+        }
+        long realNanos = System.nanoTime() - start;
+        return new Result(name, error, backend.getCurrentState(), expectedState,
+                backend.uptimeMillis() - startClock, realNanos,
+                backend.getGestureCount(), backend.getUnmatchedCount(),
+                new ArrayList<>(backend.getHistory()));
+    }
+}
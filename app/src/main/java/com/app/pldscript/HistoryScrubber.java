@@ -0,0 +1,207 @@
+package com.app.pldscript;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.SeekBar;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+/**
+ * 快照历史滑块 - 在 SnapshotHistory 的版本之间来回拖动，覆盖层显示所选版本的控件方框
+ *
+ * 停在最新版本时处于实时状态，新版本记录后跟随到最新；拖到旧版本后停在该版本，新版本只扩展滑块范围。
+ * 选中的版本被淘汰时移到最旧的版本。回看时点选的控件（由覆盖层传入）显示类名、文本和生成的定位器。
+ * 历史中记录的是覆盖层的快照，跳过了不可见和屏幕外的子树，定位器只在这些控件中确认过唯一，显示时注明未验证。
+ */
+public class HistoryScrubber {
+    /**
+     * 滑块事件（在主线程中调用）
+     */
+    public interface Listener {
+        /**
+         * 选中的版本变化
+         * @param snapshot 所选版本，回到实时状态时为 null
+         */
+        void onVersionSelected(UiSnapshot snapshot);
+
+        void onClose();
+    }
+
+    private final SnapshotHistory history;
+    private final Listener listener;
+    private final LinearLayout view;
+    private final SeekBar seekBar;
+    private final TextView timeLabel;
+    private final TextView nodeLabel;
+    // 正在回看的版本，实时状态时为 null
+    private UiSnapshot selected;
+    private boolean updating;
+
+    public HistoryScrubber(Context context, SnapshotHistory history, Listener listener) {
+        this.history = history;
+        this.listener = listener;
+        float density = context.getResources().getDisplayMetrics().density;
+
+        seekBar = new SeekBar(context);
+        seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar bar, int progress, boolean fromUser) {
+                if (!updating && fromUser) {
+                    select(progress);
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar bar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar bar) {
+            }
+        });
+
+        TextView prevBtn = createButton(context, density, "◀");
+        TextView nextBtn = createButton(context, density, "▶");
+        TextView liveBtn = createButton(context, density, "实时");
+        TextView closeBtn = createButton(context, density, "关闭");
+        closeBtn.setBackgroundColor(Color.argb(200, 100, 0, 0));
+        prevBtn.setOnClickListener(v -> select(Math.max(0, seekBar.getProgress() - 1)));
+        nextBtn.setOnClickListener(v -> select(Math.min(history.size() - 1, seekBar.getProgress() + 1)));
+        liveBtn.setOnClickListener(v -> select(history.size() - 1));
+        closeBtn.setOnClickListener(v -> listener.onClose());
+
+        timeLabel = new TextView(context);
+        timeLabel.setTextColor(Color.WHITE);
+        timeLabel.setTextSize(12);
+        timeLabel.setPadding(dp(density, 8), 0, dp(density, 8), 0);
+
+        LinearLayout buttons = new LinearLayout(context);
+        buttons.setOrientation(LinearLayout.HORIZONTAL);
+        buttons.setGravity(Gravity.CENTER_VERTICAL);
+        buttons.addView(timeLabel, new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+        buttons.addView(prevBtn);
+        buttons.addView(nextBtn);
+        buttons.addView(liveBtn);
+        buttons.addView(closeBtn);
+
+        nodeLabel = new TextView(context);
+        nodeLabel.setTextColor(Color.LTGRAY);
+        nodeLabel.setTextSize(11);
+        nodeLabel.setPadding(dp(density, 8), 0, dp(density, 8), dp(density, 6));
+        nodeLabel.setText("回看时点击控件查看属性和定位器");
+
+        view = new LinearLayout(context);
+        view.setOrientation(LinearLayout.VERTICAL);
+        view.setBackgroundColor(Color.argb(250, 20, 20, 20));
+        view.addView(buttons, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        view.addView(seekBar, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        view.addView(nodeLabel, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        onHistoryChanged();
+    }
+
+    public View getView() {
+        return view;
+    }
+
+    /**
+     * 正在回看的版本，实时状态时返回 null
+     */
+    public UiSnapshot getSelected() {
+        return selected;
+    }
+
+    /**
+     * 记录了新版本或淘汰了旧版本，更新滑块范围和位置
+     */
+    public void onHistoryChanged() {
+        int index = selected != null ? history.indexOf(selected) : history.size() - 1;
+        if (selected != null && index < 0 && history.size() > 0) {
+            // 正在回看的版本已被淘汰，移到最旧的版本
+            index = 0;
+            selected = history.get(0);
+            listener.onVersionSelected(selected);
+        }
+        updating = true;
+        seekBar.setMax(Math.max(0, history.size() - 1));
+        seekBar.setProgress(Math.max(0, index));
+        updating = false;
+        updateTimeLabel();
+    }
+
+    /**
+     * 显示回看时点选的控件
+     * @param node 快照中的节点，-1 表示该位置没有控件
+     */
+    public void showNode(UiSnapshot snapshot, int node) {
+        if (node < 0) {
+            nodeLabel.setText("该位置没有控件");
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        String className = snapshot.getClassName(node);
+        sb.append(className != null ? className.substring(className.lastIndexOf('.') + 1) : "?");
+        String text = snapshot.getText(node);
+        if (text == null || text.isEmpty()) {
+            text = snapshot.getContentDescription(node);
+        }
+        if (text != null && !text.isEmpty()) {
+            sb.append(" [").append(text).append("]");
+        }
+        String viewId = snapshot.getViewIdResourceName(node);
+        if (viewId != null) {
+            sb.append(" #").append(viewId.substring(viewId.indexOf('/') + 1));
+        }
+        // 快照不含不可见和屏幕外的控件，完整控件树中可能还有其他匹配
+        String locator = LocatorGenerator.generate(snapshot, node);
+        sb.append("\n").append(locator != null ? locator + "  （仅在可见控件中唯一，未验证）" : "无法生成唯一定位器");
+        nodeLabel.setText(sb.toString());
+    }
+
+    private void select(int index) {
+        if (history.size() == 0) return;
+        UiSnapshot snapshot = index >= history.size() - 1 ? null : history.get(index);
+        updating = true;
+        seekBar.setProgress(index);
+        updating = false;
+        if (snapshot != selected) {
+            selected = snapshot;
+            listener.onVersionSelected(snapshot);
+        }
+        updateTimeLabel();
+    }
+
+    private void updateTimeLabel() {
+        int size = history.size();
+        String memory = String.format(Locale.ROOT, "%.1fMB", history.getMemoryBytes() / 1048576f);
+        if (selected == null || size == 0) {
+            timeLabel.setText("实时  " + size + " 个版本  " + memory);
+            return;
+        }
+        long ago = history.get(size - 1).getTimestamp() - selected.getTimestamp();
+        timeLabel.setText(String.format(Locale.ROOT, "-%.1fs  %d/%d  %s",
+                ago / 1000f, history.indexOf(selected) + 1, size, memory));
+    }
+
+    private static TextView createButton(Context context, float density, String text) {
+        TextView tv = new TextView(context);
+        tv.setText(text);
+        tv.setTextColor(Color.WHITE);
+        tv.setTextSize(14);
+        tv.setPadding(dp(density, 12), dp(density, 10), dp(density, 12), dp(density, 10));
+        tv.setBackgroundColor(Color.argb(200, 60, 60, 60));
+        tv.setGravity(Gravity.CENTER);
+        return tv;
+    }
+
+    private static int dp(float density, int value) {
+        return (int) (value * density + 0.5f);
+    }
+}
@@ -0,0 +1,269 @@
+package com.app.pldscript;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.LruCache;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 控件查看放大镜 - 把控件方框按倍数放大显示，便于点选很小的控件
+ *
+ * 放大后的画面按固定大小的图块渲染并缓存（每个缩放级别分别缓存），拖动只是改变图块的绘制位置，
+ * 已渲染过的区域不再重新绘制，也不需要重新遍历控件树。渲染图块和点选控件都通过 NodeBoundsIndex 查询。
+ * 控件树刷新后索引版本变化，缓存的图块全部作废。
+ * 单指拖动平移，轻点选取该位置面积最小的控件（误差范围按缩放倍数缩小）。
+ */
+public class InspectorMagnifier extends View {
+    private static final String TAG = "InspectorMagnifier";
+    // 缩放级别
+    private static final int[] ZOOMS = {2, 4, 8};
+    // 图块边长（放大后的像素）
+    private static final int TILE_SIZE = 256;
+
+    /**
+     * 选中控件回调
+     */
+    public interface OnPickListener {
+        /**
+         * @param bounds 控件范围（屏幕坐标）
+         * @param x 点击位置（屏幕坐标，放大镜上的实际位置）
+         * @param y 点击位置（屏幕坐标，放大镜上的实际位置）
+         */
+        void onPick(Rect bounds, int x, int y);
+    }
+
+    private final NodeBoundsIndex index;
+    private final OnPickListener listener;
+    private final Paint boxPaint;
+    private final Paint pickedPaint;
+    private final Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final int screenWidth;
+    private final int screenHeight;
+    private final int touchSlop;
+    private final LruCache<Long, Bitmap> tiles;
+    private final List<Rect> queryResult = new ArrayList<>();
+    private int cachedVersion = -1;
+
+    private int zoomLevel;
+    // 放大镜中心对应的屏幕坐标
+    private float centerX;
+    private float centerY;
+    private Rect picked;
+
+    private float downX;
+    private float downY;
+    private float lastX;
+    private float lastY;
+    private boolean panning;
+
+    /**
+     * @param boxPaint 方框画笔（线宽按放大后的像素）
+     */
+    public InspectorMagnifier(Context context, NodeBoundsIndex index, Paint boxPaint,
+                              int screenWidth, int screenHeight, OnPickListener listener) {
+        super(context);
+        this.index = index;
+        this.listener = listener;
+        this.boxPaint = new Paint(boxPaint);
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        pickedPaint = new Paint(boxPaint);
+        pickedPaint.setColor(Color.CYAN);
+        pickedPaint.setStrokeWidth(boxPaint.getStrokeWidth() * 1.5f);
+        setBackgroundColor(Color.argb(235, 20, 20, 20));
+
+        // 最多使用 1/16 的可用内存缓存图块
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+        tiles = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * 设置放大镜中心（屏幕坐标）
+     */
+    public void setCenter(int x, int y) {
+        centerX = x;
+        centerY = y;
+        clampCenter();
+        invalidate();
+    }
+
+    public int getZoom() {
+        return ZOOMS[zoomLevel];
+    }
+
+    /**
+     * 放大一级
+     * @return 是否已改变
+     */
+    public boolean zoomIn() {
+        if (zoomLevel == ZOOMS.length - 1) return false;
+        zoomLevel++;
+        clampCenter();
+        invalidate();
+        return true;
+    }
+
+    /**
+     * 缩小一级
+     * @return 是否已改变
+     */
+    public boolean zoomOut() {
+        if (zoomLevel == 0) return false;
+        zoomLevel--;
+        clampCenter();
+        invalidate();
+        return true;
+    }
+
+    /**
+     * 释放缓存的图块
+     */
+    public void release() {
+        tiles.evictAll();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        clampCenter();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (index.getVersion() != cachedVersion) {
+            // 控件树已刷新，之前的图块作废
+            tiles.evictAll();
+            cachedVersion = index.getVersion();
+        }
+        int zoom = getZoom();
+        // 视图左上角对应的放大后坐标
+        int originX = Math.round(centerX * zoom - getWidth() / 2f);
+        int originY = Math.round(centerY * zoom - getHeight() / 2f);
+        int tx0 = Math.max(0, Math.floorDiv(originX, TILE_SIZE));
+        int ty0 = Math.max(0, Math.floorDiv(originY, TILE_SIZE));
+        int tx1 = Math.min((screenWidth * zoom - 1) / TILE_SIZE, Math.floorDiv(originX + getWidth() - 1, TILE_SIZE));
+        int ty1 = Math.min((screenHeight * zoom - 1) / TILE_SIZE, Math.floorDiv(originY + getHeight() - 1, TILE_SIZE));
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                Bitmap tile = getTile(tx, ty);
+                canvas.drawBitmap(tile, tx * TILE_SIZE - originX, ty * TILE_SIZE - originY, tilePaint);
+            }
+        }
+        if (picked != null) {
+            canvas.drawRect(picked.left * zoom - originX, picked.top * zoom - originY,
+                    picked.right * zoom - originX, picked.bottom * zoom - originY, pickedPaint);
+        }
+    }
+
+    /**
+     * 取缓存的图块，没有时渲染
+     */
+    private Bitmap getTile(int tx, int ty) {
+        long key = ((long) zoomLevel << 48) | ((long) ty << 24) | tx;
+        Bitmap tile = tiles.get(key);
+        if (tile != null) return tile;
+
+        int zoom = getZoom();
+        tile = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(tile);
+        canvas.translate(-tx * TILE_SIZE, -ty * TILE_SIZE);
+        // 图块对应的屏幕区域（向外取整，边框线跨越图块边界时两边都画到）
+        int left = tx * TILE_SIZE / zoom - 1;
+        int top = ty * TILE_SIZE / zoom - 1;
+        int right = ((tx + 1) * TILE_SIZE + zoom - 1) / zoom + 1;
+        int bottom = ((ty + 1) * TILE_SIZE + zoom - 1) / zoom + 1;
+        queryResult.clear();
+        index.query(left, top, right, bottom, queryResult);
+        for (int i = 0; i < queryResult.size(); i++) {
+            Rect r = queryResult.get(i);
+            canvas.drawRect(r.left * zoom, r.top * zoom, r.right * zoom, r.bottom * zoom, boxPaint);
+        }
+        queryResult.clear();
+        tiles.put(key, tile);
+        return tile;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                downX = lastX = event.getX();
+                downY = lastY = event.getY();
+                panning = false;
+                return true;
+            case MotionEvent.ACTION_MOVE: {
+                float x = event.getX();
+                float y = event.getY();
+                if (!panning && (Math.abs(x - downX) > touchSlop || Math.abs(y - downY) > touchSlop)) {
+                    panning = true;
+                }
+                if (panning) {
+                    // 内容跟随手指移动
+                    int zoom = getZoom();
+                    centerX -= (x - lastX) / zoom;
+                    centerY -= (y - lastY) / zoom;
+                    clampCenter();
+                    invalidate();
+                }
+                lastX = x;
+                lastY = y;
+                return true;
+            }
+            case MotionEvent.ACTION_UP:
+                if (!panning) {
+                    pick(event.getX(), event.getY());
+                }
+                panning = false;
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                panning = false;
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 把放大镜上的位置换算为屏幕坐标，在索引中选取控件
+     */
+    private void pick(float viewX, float viewY) {
+        int zoom = getZoom();
+        int x = (int) (centerX + (viewX - getWidth() / 2f) / zoom);
+        int y = (int) (centerY + (viewY - getHeight() / 2f) / zoom);
+        // 手指误差在放大后的画面上是 touchSlop，对应到屏幕上要按倍数缩小
+        picked = index.pick(x, y, Math.max(1, touchSlop / zoom));
+        invalidate();
+        PLog.d(TAG, "放大 {}x 选取 ({},{}): {}", zoom, x, y, picked);
+        if (picked != null && listener != null) {
+            int[] location = new int[2];
+            getLocationOnScreen(location);
+            listener.onPick(picked, location[0] + (int) viewX, location[1] + (int) viewY);
+        }
+    }
+
+    /**
+     * 限制中心位置，使放大后的画面不超出屏幕范围
+     */
+    private void clampCenter() {
+        int zoom = getZoom();
+        float halfW = getWidth() / 2f / zoom;
+        float halfH = getHeight() / 2f / zoom;
+        centerX = halfW * 2 >= screenWidth ? screenWidth / 2f : Math.max(halfW, Math.min(centerX, screenWidth - halfW));
+        centerY = halfH * 2 >= screenHeight ? screenHeight / 2f : Math.max(halfH, Math.min(centerY, screenHeight - halfH));
+    }
+}
@@ -0,0 +1,165 @@
+package com.app.pldscript;
+
+import android.graphics.Rect;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * 延迟加载的节点代理 - getParent/getChild 需要跨进程调用，这里在第一次访问时获取并缓存，
+ * 同一个查询作用域内上下遍历同一段路径时每次跨进程调用最多执行一次
+ *
+ * 访问某个子节点时会一次性获取所有兄弟节点（系统按批预取兄弟节点，后续 getChild 命中缓存），
+ * 获取父节点后，父节点加载子节点时会复用已有的代理，不会重复获取。
+ * 所有句柄都属于创建时传入的 NodeScope，作用域关闭后代理不可再使用；
+ * 获取节点都通过创建时传入的 TreeCapture.Session，由调用方在作用域关闭时结束会话。
+ */
+public class LazyNode {
+    private final NodeScope scope;
+    private final TreeCapture.Session session;
+    private final AccessibilityNodeInfo info;
+
+    private LazyNode parent;
+    private boolean parentLoaded;
+    private LazyNode[] children;
+    // 通过 getParent 先创建出来的子节点代理，加载子节点时复用
+    private LazyNode pendingChild;
+    private int depth = -1;
+    private Rect bounds;
+
+    private LazyNode(NodeScope scope, TreeCapture.Session session, AccessibilityNodeInfo info) {
+        this.scope = scope;
+        this.session = session;
+        this.info = info;
+    }
+
+    /**
+     * 包装作用域内的节点
+     * @param session 获取父节点、子节点使用的会话
+     * @param node 节点（必须已加入 scope），为 null 时返回 null
+     */
+    public static LazyNode wrap(NodeScope scope, TreeCapture.Session session, AccessibilityNodeInfo node) {
+        return node != null ? new LazyNode(scope, session, node) : null;
+    }
+
+    /**
+     * 获取当前活动窗口的根节点
+     */
+    public static LazyNode root(NodeScope scope, TreeCapture.Session session) {
+        PLDScript service = PLDScript.getInstance();
+        if (service == null) return null;
+        LazyNode root = wrap(scope, session, scope.add(session.getRoot(service)));
+        if (root != null) {
+            root.parentLoaded = true;
+            root.depth = 0;
+        }
+        return root;
+    }
+
+    /**
+     * 原始节点（属于作用域，不要单独回收）
+     */
+    public AccessibilityNodeInfo getInfo() {
+        return info;
+    }
+
+    // ==================== 层级关系 ====================
+
+    public LazyNode getParent() {
+        if (!parentLoaded) {
+            parentLoaded = true;
+            parent = wrap(scope, session, scope.add(session.getParent(info)));
+            if (parent != null) {
+                parent.pendingChild = this;
+            }
+        }
+        return parent;
+    }
+
+    public int getChildCount() {
+        return children != null ? children.length : info.getChildCount();
+    }
+
+    public LazyNode getChild(int index) {
+        loadChildren();
+        return index >= 0 && index < children.length ? children[index] : null;
+    }
+
+    /**
+     * 节点深度（根节点为 0），沿途获取的父节点都会缓存
+     */
+    public int getDepth() {
+        if (depth < 0) {
+            LazyNode p = getParent();
+            depth = p != null ? p.getDepth() + 1 : 0;
+        }
+        return depth;
+    }
+
+    /**
+     * 查找自身或最近的可点击祖先节点
+     * @return 没有可点击的节点时返回 null
+     */
+    public LazyNode findClickableParent() {
+        for (LazyNode node = this; node != null; node = node.getParent()) {
+            if (node.info.isClickable()) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    // ==================== 常用属性 ====================
+
+    public Rect getBoundsInScreen() {
+        if (bounds == null) {
+            bounds = new Rect();
+            info.getBoundsInScreen(bounds);
+        }
+        return bounds;
+    }
+
+    public String getClassName() {
+        CharSequence value = info.getClassName();
+        return value != null ? value.toString() : null;
+    }
+
+    public String getText() {
+        CharSequence value = info.getText();
+        return value != null ? value.toString() : null;
+    }
+
+    public String getContentDescription() {
+        CharSequence value = info.getContentDescription();
+        return value != null ? value.toString() : null;
+    }
+
+    public String getViewIdResourceName() {
+        return info.getViewIdResourceName();
+    }
+
+    // ==================== 内部实现 ====================
+
+    private void loadChildren() {
+        if (children != null) return;
+        int count = info.getChildCount();
+        LazyNode[] loaded = new LazyNode[count];
+        for (int i = 0; i < count; i++) {
+            AccessibilityNodeInfo child = session.getChild(info, i);
+            if (child == null) continue;
+            if (pendingChild != null && child.equals(pendingChild.info)) {
+                // 与已有的代理是同一个节点，丢弃重复的句柄
+                child.recycle();
+                loaded[i] = pendingChild;
+                pendingChild = null;
+                continue;
+            }
+            LazyNode node = new LazyNode(scope, session, scope.add(child));
+            node.parent = this;
+            node.parentLoaded = true;
+            if (depth >= 0) {
+                node.depth = depth + 1;
+            }
+            loaded[i] = node;
+        }
+        children = loaded;
+    }
+}
@@ -0,0 +1,140 @@
+package com.app.pldscript;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 定位器生成 - 为快照中的节点生成能在脚本中再次找到它的最短唯一选择器（语法见 Selector）
+ *
+ * 候选按代价从低到高排列，逐个在快照上查找，取第一个只匹配该节点的：
+ * <ol>
+ * <li>节点自身的 viewId、文本、描述（走倒排表），必要时加上类名或组合两个条件</li>
+ * <li>最近的能按第 1 类唯一定位的祖先加上节点自身的条件，如 [id=list] Button[text="确定"]</li>
+ * <li>从该祖先（没有时从根节点）逐层写出 类名:index(n) 的路径</li>
+ * </ol>
+ * 前两类生成的选择器都能通过倒排表取候选，第三类从根节点开始时需要全扫描。不依赖 Android 类。
+ */
+public class LocatorGenerator {
+    // 向上查找锚点的最大层数
+    private static final int MAX_ANCHOR_LEVELS = 6;
+    // 超过这个长度的文本多半是动态内容，不用作定位条件
+    private static final int MAX_TEXT_LENGTH = 40;
+
+    private LocatorGenerator() {
+    }
+
+    /**
+     * 生成节点的唯一定位器
+     * @return 选择器，找不到唯一的写法时返回 null
+     */
+    public static String generate(UiSnapshot snapshot, int node) {
+        List<String> own = ownCandidates(snapshot, node);
+        for (String candidate : own) {
+            if (isUnique(snapshot, candidate, node)) return candidate;
+        }
+
+        // 在祖先中找锚点
+        String anchor = null;
+        int anchorNode = -1;
+        int ancestor = snapshot.getParent(node);
+        for (int level = 0; level < MAX_ANCHOR_LEVELS && ancestor >= 0 && anchor == null; level++) {
+            for (String candidate : ownCandidates(snapshot, ancestor)) {
+                if (isUnique(snapshot, candidate, ancestor)) {
+                    anchor = candidate;
+                    anchorNode = ancestor;
+                    break;
+                }
+            }
+            if (anchor == null) {
+                ancestor = snapshot.getParent(ancestor);
+            }
+        }
+        if (anchor != null) {
+            List<String> tails = new ArrayList<>(own);
+            tails.add(classStep(snapshot, node));
+            tails.add(classStep(snapshot, node) + ":index(" + snapshot.getIndexInParent(node) + ")");
+            for (String tail : tails) {
+                String candidate = anchor + " " + tail;
+                if (isUnique(snapshot, candidate, node)) return candidate;
+            }
+        }
+
+        // 逐层路径
+        String path = path(snapshot, anchorNode, node);
+        String candidate = anchor != null ? anchor + " > " + path : path;
+        return isUnique(snapshot, candidate, node) ? candidate : null;
+    }
+
+    /**
+     * 只用节点自身属性的候选（按代价排列）
+     */
+    private static List<String> ownCandidates(UiSnapshot snapshot, int node) {
+        List<String> result = new ArrayList<>();
+        String id = snapshot.getViewIdResourceName(node);
+        String text = usable(snapshot.getText(node));
+        String desc = usable(snapshot.getContentDescription(node));
+        String idPredicate = id != null && !id.isEmpty() ? "[id=" + Selector.quote(id) + "]" : null;
+        String textPredicate = text != null ? "[text=" + Selector.quote(text) + "]" : null;
+        String descPredicate = desc != null ? "[desc=" + Selector.quote(desc) + "]" : null;
+        add(result, idPredicate);
+        add(result, textPredicate);
+        add(result, descPredicate);
+
+        String cls = classStep(snapshot, node);
+        if (idPredicate != null) result.add(cls + idPredicate);
+        if (textPredicate != null) result.add(cls + textPredicate);
+        if (descPredicate != null) result.add(cls + descPredicate);
+        if (idPredicate != null && textPredicate != null) result.add(idPredicate + textPredicate);
+        if (idPredicate != null && descPredicate != null) result.add(idPredicate + descPredicate);
+        // 列表项之类相同 viewId 的兄弟节点按序号区分
+        String index = ":index(" + snapshot.getIndexInParent(node) + ")";
+        if (idPredicate != null) result.add(idPredicate + index);
+        if (textPredicate != null) result.add(textPredicate + index);
+        return result;
+    }
+
+    /**
+     * 从 from（不含，-1 表示从根节点开始）到 node 的 类名:index(n) 路径
+     */
+    private static String path(UiSnapshot snapshot, int from, int node) {
+        List<String> steps = new ArrayList<>();
+        for (int n = node; n >= 0 && n != from; n = snapshot.getParent(n)) {
+            steps.add(classStep(snapshot, n) + ":index(" + snapshot.getIndexInParent(n) + ")");
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = steps.size() - 1; i >= 0; i--) {
+            sb.append(steps.get(i));
+            if (i > 0) sb.append(" > ");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 类名写成简单名；含有选择器类名中不允许的字符时写成 class 条件
+     */
+    private static String classStep(UiSnapshot snapshot, int node) {
+        String className = snapshot.getClassName(node);
+        if (className == null || className.isEmpty()) return "*";
+        String simple = className.substring(className.lastIndexOf('.') + 1);
+        for (int i = 0; i < simple.length(); i++) {
+            char c = simple.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '$') {
+                return "*[class=" + Selector.quote(className) + "]";
+            }
+        }
+        return simple.isEmpty() ? "*[class=" + Selector.quote(className) + "]" : simple;
+    }
+
+    private static String usable(String text) {
+        return text != null && !text.trim().isEmpty() && text.length() <= MAX_TEXT_LENGTH ? text : null;
+    }
+
+    private static void add(List<String> list, String value) {
+        if (value != null) list.add(value);
+    }
+
+    private static boolean isUnique(UiSnapshot snapshot, String selector, int node) {
+        int[] nodes = Selector.parse(selector).findAll(snapshot);
+        return nodes.length == 1 && nodes[0] == node;
+    }
+}
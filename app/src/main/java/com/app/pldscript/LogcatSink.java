@@ -0,0 +1,22 @@
+package com.app.pldscript;
+
+import android.util.Log;
+
+/**
+ * PLog 输出到 logcat
+ */
+public class LogcatSink implements PLog.Sink {
+
+    @Override
+    public void write(int level, long time, String thread, String tag, CharSequence message, Throwable error) {
+        String text = message.toString();
+        if (error != null) {
+            text = text + '\n' + Log.getStackTraceString(error);
+        }
+        Log.println(level, tag, text);
+    }
+
+    @Override
+    public void flush() {
+    }
+}
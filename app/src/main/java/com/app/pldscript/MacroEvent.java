@@ -0,0 +1,56 @@
+package com.app.pldscript;
+
+/**
+ * 宏事件 - 录制到的一次用户操作及其目标控件的定位信息
+ */
+public class MacroEvent {
+    public static final int TYPE_CLICK = 1;
+    public static final int TYPE_LONG_CLICK = 2;
+    public static final int TYPE_SCROLL = 3;
+    public static final int TYPE_TEXT = 4;
+
+    public int type;
+    // 相对录制开始的时间（毫秒）
+    public long time;
+    // 目标控件定位信息
+    public String packageName;
+    public String className;
+    public String viewId;
+    public String text;
+    public int left;
+    public int top;
+    public int right;
+    public int bottom;
+    // 滚动距离（TYPE_SCROLL），正数表示内容向下/向右滚动
+    public int scrollX;
+    public int scrollY;
+    // 输入的文本（TYPE_TEXT）
+    public String input;
+
+    public int centerX() {
+        return (left + right) / 2;
+    }
+
+    public int centerY() {
+        return (top + bottom) / 2;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(time).append("ms ");
+        switch (type) {
+            case TYPE_CLICK: sb.append("click"); break;
+            case TYPE_LONG_CLICK: sb.append("longClick"); break;
+            case TYPE_SCROLL: sb.append("scroll(").append(scrollX).append(", ").append(scrollY).append(")"); break;
+            case TYPE_TEXT: sb.append("text[").append(input).append("]"); break;
+            default: sb.append("type=").append(type); break;
+        }
+        sb.append(" ").append(className);
+        if (viewId != null) sb.append(" id=").append(viewId);
+        if (text != null) sb.append(" text=").append(text);
+        sb.append(" [").append(left).append(",").append(top).append("][")
+                .append(right).append(",").append(bottom).append("]");
+        return sb.toString();
+    }
+}
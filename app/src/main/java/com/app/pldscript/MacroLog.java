@@ -0,0 +1,188 @@
+package com.app.pldscript;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 宏录制日志 - 只追加的二进制文件，通过带缓冲的 FileChannel 批量写入
+ *
+ * 文件格式：4 字节魔数 "PLDM" + 1 字节版本，随后是若干条记录：
+ * <pre>
+ * int    记录体长度
+ * byte   事件类型
+ * long   时间（毫秒）
+ * int x4 left/top/right/bottom
+ * int x2 scrollX/scrollY
+ * string x5 packageName/className/viewId/text/input（short 字节长度 + UTF-8，-1 表示 null）
+ * </pre>
+ * 录制中途崩溃时文件末尾可能是不完整的记录，读取时会直接忽略。
+ */
+public class MacroLog {
+    private static final byte[] MAGIC = {'P', 'L', 'D', 'M'};
+    private static final byte VERSION = 1;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    // 单个字符串最多保存的字节数
+    private static final int MAX_STRING_BYTES = 1024;
+
+    /**
+     * 日志写入器
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * 打开日志文件，文件已存在时继续追加
+         */
+        public Writer(File file) throws IOException {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                throw new IOException("无法创建目录: " + dir);
+            }
+            // FileChannel.open 需要 API 26，这里通过 FileOutputStream 获取（追加模式）
+            channel = new FileOutputStream(file, true).getChannel();
+            if (channel.size() == 0) {
+                buffer.put(MAGIC).put(VERSION);
+            }
+        }
+
+        /**
+         * 追加一条记录（先写入内存缓冲区，缓冲区满时才写文件）
+         */
+        public synchronized void append(MacroEvent event) throws IOException {
+            byte[][] strings = {
+                    bytes(event.packageName), bytes(event.className), bytes(event.viewId),
+                    bytes(event.text), bytes(event.input)
+            };
+            int length = 1 + 8 + 4 * 6;
+            for (byte[] s : strings) {
+                length += 2 + (s != null ? s.length : 0);
+            }
+            if (buffer.remaining() < 4 + length) {
+                flush();
+            }
+            buffer.putInt(length);
+            buffer.put((byte) event.type);
+            buffer.putLong(event.time);
+            buffer.putInt(event.left).putInt(event.top).putInt(event.right).putInt(event.bottom);
+            buffer.putInt(event.scrollX).putInt(event.scrollY);
+            for (byte[] s : strings) {
+                if (s == null) {
+                    buffer.putShort((short) -1);
+                } else {
+                    buffer.putShort((short) s.length);
+                    buffer.put(s);
+                }
+            }
+        }
+
+        /**
+         * 将缓冲区内容写入文件
+         */
+        public synchronized void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private static byte[] bytes(String s) {
+            if (s == null) return null;
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            if (b.length > MAX_STRING_BYTES) {
+                // 截断过长的文本，按字符截断避免产生半个 UTF-8 字符
+                String cut = s;
+                while (b.length > MAX_STRING_BYTES) {
+                    cut = cut.substring(0, cut.length() / 2);
+                    b = cut.getBytes(StandardCharsets.UTF_8);
+                }
+            }
+            return b;
+        }
+    }
+
+    /**
+     * 读取整个日志文件
+     */
+    public static List<MacroEvent> read(File file) throws IOException {
+        List<MacroEvent> events = new ArrayList<>();
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Macro log too large");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // 读满为止
+            }
+            buffer.flip();
+
+            for (byte b : MAGIC) {
+                if (!buffer.hasRemaining() || buffer.get() != b) {
+                    throw new IOException("Not a PLDM macro log");
+                }
+            }
+            if (!buffer.hasRemaining() || buffer.get() > VERSION) {
+                throw new IOException("Unsupported macro log version");
+            }
+
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    // 末尾的不完整记录
+                    break;
+                }
+                int end = buffer.position() + length;
+                try {
+                    MacroEvent event = new MacroEvent();
+                    event.type = buffer.get();
+                    event.time = buffer.getLong();
+                    event.left = buffer.getInt();
+                    event.top = buffer.getInt();
+                    event.right = buffer.getInt();
+                    event.bottom = buffer.getInt();
+                    event.scrollX = buffer.getInt();
+                    event.scrollY = buffer.getInt();
+                    event.packageName = readString(buffer);
+                    event.className = readString(buffer);
+                    event.viewId = readString(buffer);
+                    event.text = readString(buffer);
+                    event.input = readString(buffer);
+                    events.add(event);
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    throw new IOException("Corrupted macro record at " + (end - length), e);
+                }
+                // 跳过新版本追加的字段
+                buffer.position(end);
+            }
+        }
+        return events;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) return null;
+        byte[] b = new byte[length];
+        buffer.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
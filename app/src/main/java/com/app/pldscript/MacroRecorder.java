@@ -0,0 +1,206 @@
+package com.app.pldscript;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 宏录制器 - 把用户操作产生的无障碍事件（点击、长按、滚动、输入）连同目标控件的定位信息写入 MacroLog
+ * 连续的滚动和输入事件会合并成一条记录，只在目标变化或超过合并间隔时写出
+ */
+public class MacroRecorder {
+    private static final String TAG = "MacroRecorder";
+    // 同一控件上的连续滚动/输入在该间隔内合并
+    private static final long MERGE_INTERVAL_MS = 500;
+    private static final int RECORD_EVENTS = AccessibilityEvent.TYPE_VIEW_CLICKED
+            | AccessibilityEvent.TYPE_VIEW_LONG_CLICKED
+            | AccessibilityEvent.TYPE_VIEW_SCROLLED
+            | AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED;
+
+    private static MacroLog.Writer writer;
+    private static String ownPackage;
+    private static long startTime;
+    // 等待合并的滚动/输入记录
+    private static MacroEvent pending;
+    private static long pendingTime;
+    // API 28 以下没有滚动增量，用上一次的滚动位置计算
+    private static int lastScrollX;
+    private static int lastScrollY;
+
+    public static synchronized boolean isRecording() {
+        return writer != null;
+    }
+
+    /**
+     * 开始录制（覆盖已有文件）
+     * @param ownPackage 本应用包名，悬浮窗上的操作不录制
+     */
+    public static synchronized void start(File file, String ownPackage) throws IOException {
+        if (writer != null) {
+            stop();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("无法覆盖文件: " + file);
+        }
+        writer = new MacroLog.Writer(file);
+        MacroRecorder.ownPackage = ownPackage;
+        EventSubscriptions.subscribe(TAG, RECORD_EVENTS);
+        startTime = SystemClock.uptimeMillis();
+        pending = null;
+        PLog.d(TAG, "开始录制: {}", file);
+    }
+
+    /**
+     * 停止录制并写出剩余数据
+     */
+    public static synchronized void stop() {
+        if (writer == null) return;
+        try {
+            flushPending();
+            writer.close();
+        } catch (IOException e) {
+            PLog.e(TAG, "写入宏文件失败", e);
+        }
+        writer = null;
+        pending = null;
+        EventSubscriptions.unsubscribe(TAG);
+        PLog.d(TAG, "停止录制");
+    }
+
+    /**
+     * 由 PLDScript.onAccessibilityEvent 调用
+     */
+    public static void onEvent(AccessibilityEvent event) {
+        // 未录制时不加锁，避免拖慢事件分发
+        if (writer == null || (event.getEventType() & RECORD_EVENTS) == 0) return;
+        synchronized (MacroRecorder.class) {
+            if (writer == null) return;
+            CharSequence pkg = event.getPackageName();
+            if (pkg != null && pkg.toString().equals(ownPackage)) return;
+            try {
+                record(event);
+            } catch (IOException e) {
+                PLog.e(TAG, "写入宏文件失败，停止录制", e);
+                stop();
+            }
+        }
+    }
+
+    private static void record(AccessibilityEvent event) throws IOException {
+        long now = SystemClock.uptimeMillis() - startTime;
+        int eventType = event.getEventType();
+        if (eventType == AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED && event.isPassword()) {
+            // 不录制密码
+            return;
+        }
+
+        MacroEvent macro = new MacroEvent();
+        macro.time = now;
+        if (!readLocator(event, macro)) return;
+
+        switch (eventType) {
+            case AccessibilityEvent.TYPE_VIEW_CLICKED:
+                macro.type = MacroEvent.TYPE_CLICK;
+                break;
+            case AccessibilityEvent.TYPE_VIEW_LONG_CLICKED:
+                macro.type = MacroEvent.TYPE_LONG_CLICK;
+                break;
+            case AccessibilityEvent.TYPE_VIEW_SCROLLED:
+                macro.type = MacroEvent.TYPE_SCROLL;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                    macro.scrollX = event.getScrollDeltaX();
+                    macro.scrollY = event.getScrollDeltaY();
+                } else {
+                    boolean sameTarget = pending != null && pending.type == MacroEvent.TYPE_SCROLL
+                            && sameTarget(pending, macro);
+                    macro.scrollX = sameTarget ? event.getScrollX() - lastScrollX : 0;
+                    macro.scrollY = sameTarget ? event.getScrollY() - lastScrollY : 0;
+                    lastScrollX = event.getScrollX();
+                    lastScrollY = event.getScrollY();
+                }
+                break;
+            case AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED:
+                macro.type = MacroEvent.TYPE_TEXT;
+                List<CharSequence> texts = event.getText();
+                macro.input = texts.isEmpty() || texts.get(0) == null ? "" : texts.get(0).toString();
+                // 输入过程中 text 一直在变，定位时不使用
+                macro.text = null;
+                break;
+            default:
+                return;
+        }
+
+        // 合并同一控件上的连续滚动和输入
+        if (pending != null && pending.type == macro.type && sameTarget(pending, macro)
+                && now - pendingTime <= MERGE_INTERVAL_MS) {
+            if (macro.type == MacroEvent.TYPE_SCROLL) {
+                pending.scrollX += macro.scrollX;
+                pending.scrollY += macro.scrollY;
+            } else {
+                pending.input = macro.input;
+            }
+            pendingTime = now;
+            return;
+        }
+
+        flushPending();
+        if (macro.type == MacroEvent.TYPE_SCROLL || macro.type == MacroEvent.TYPE_TEXT) {
+            pending = macro;
+            pendingTime = now;
+        } else {
+            writer.append(macro);
+        }
+    }
+
+    private static void flushPending() throws IOException {
+        if (pending == null) return;
+        if (pending.type != MacroEvent.TYPE_SCROLL || pending.scrollX != 0 || pending.scrollY != 0) {
+            writer.append(pending);
+        }
+        pending = null;
+    }
+
+    /**
+     * 读取事件来源控件的定位信息
+     * @return 没有来源控件时返回 false
+     */
+    private static boolean readLocator(AccessibilityEvent event, MacroEvent macro) {
+        TreeCapture.Session session = TreeCapture.begin("MacroRecorder", false);
+        AccessibilityNodeInfo source = NodeTracker.track(session.getSource(event), "MacroRecorder");
+        if (source == null) {
+            session.finish();
+            return false;
+        }
+        try {
+            macro.packageName = source.getPackageName() != null ? source.getPackageName().toString() : null;
+            macro.className = source.getClassName() != null ? source.getClassName().toString() : null;
+            macro.viewId = source.getViewIdResourceName();
+            CharSequence text = source.getText();
+            if (text == null) {
+                text = source.getContentDescription();
+            }
+            macro.text = text != null ? text.toString() : null;
+            Rect bounds = new Rect();
+            source.getBoundsInScreen(bounds);
+            macro.left = bounds.left;
+            macro.top = bounds.top;
+            macro.right = bounds.right;
+            macro.bottom = bounds.bottom;
+            return true;
+        } finally {
+            NodeTracker.recycle(source);
+            session.finish();
+        }
+    }
+
+    private static boolean sameTarget(MacroEvent a, MacroEvent b) {
+        return a.left == b.left && a.top == b.top && a.right == b.right && a.bottom == b.bottom
+                && (a.className == null ? b.className == null : a.className.equals(b.className));
+    }
+}
@@ -0,0 +1,116 @@
+package com.app.pldscript;
+
+import java.util.List;
+
+/**
+ * 宏回放器 - 通过 ScriptBackend 重新执行 MacroLog 中录制的操作
+ *
+ * 每一步先用录制时的定位信息（viewId、文本、类名）在当前快照中查找控件，找不到时退回到录制时的坐标。
+ * 压缩时序下，两步之间不再按录制时的间隔等待，而是等到界面空闲即可继续（最多等待原间隔）。
+ */
+public class MacroReplayer {
+    private static final int CLICK_DURATION_MS = 100;
+    private static final int LONG_CLICK_DURATION_MS = 600;
+    private static final int SCROLL_DURATION_MS = 400;
+    // 压缩时序下判定界面空闲的静默时间
+    private static final int IDLE_QUIET_MS = 150;
+
+    /**
+     * 回放宏
+     * @param events 录制的事件（按时间排序）
+     * @param backend 执行后端
+     * @param speed 速度倍数，1 为原速
+     * @param compressed 是否使用压缩时序
+     * @return 所有步骤都执行成功返回 true
+     */
+    public static boolean replay(List<MacroEvent> events, ScriptBackend backend, float speed, boolean compressed)
+            throws InterruptedException {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("speed must be positive");
+        }
+        boolean success = true;
+        long previous = events.isEmpty() ? 0 : events.get(0).time;
+        for (MacroEvent event : events) {
+            int gap = (int) ((event.time - previous) / speed);
+            previous = event.time;
+            if (gap > 0) {
+                if (compressed) {
+                    backend.waitForIdle(Math.min(IDLE_QUIET_MS, gap), gap);
+                } else {
+                    backend.sleep(gap);
+                }
+            }
+            if (!step(event, backend)) {
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    private static boolean step(MacroEvent event, ScriptBackend backend) {
+        UiSnapshot snapshot = backend.captureSnapshot();
+        int node = locate(snapshot, event);
+        int left = event.left, top = event.top, right = event.right, bottom = event.bottom;
+        if (node >= 0) {
+            left = snapshot.getLeft(node);
+            top = snapshot.getTop(node);
+            right = snapshot.getRight(node);
+            bottom = snapshot.getBottom(node);
+        }
+        int x = (left + right) / 2;
+        int y = (top + bottom) / 2;
+
+        switch (event.type) {
+            case MacroEvent.TYPE_CLICK:
+                return backend.click(x, y, CLICK_DURATION_MS);
+            case MacroEvent.TYPE_LONG_CLICK:
+                return backend.click(x, y, LONG_CLICK_DURATION_MS);
+            case MacroEvent.TYPE_SCROLL:
+                // 内容向下滚动对应手指向上滑，滑动距离不超过控件尺寸的 80%
+                int dx = clamp(event.scrollX, (right - left) * 4 / 5);
+                int dy = clamp(event.scrollY, (bottom - top) * 4 / 5);
+                return backend.swipe(x + dx / 2, y + dy / 2, x - dx / 2, y - dy / 2, SCROLL_DURATION_MS);
+            case MacroEvent.TYPE_TEXT:
+                return node >= 0 && backend.inputText(snapshot, node, event.input);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 在快照中查找录制的目标控件
+     * 依次按 viewId、文本匹配候选节点，类名不同的排除，多个候选时取离录制位置最近的一个
+     * @return 节点编号，找不到时返回 -1
+     */
+    static int locate(UiSnapshot snapshot, MacroEvent event) {
+        if (snapshot == null) return -1;
+        int found = -1;
+        if (event.viewId != null) {
+            found = nearest(snapshot, snapshot.findAllByViewId(event.viewId), event);
+        }
+        if (found < 0 && event.text != null) {
+            found = nearest(snapshot, snapshot.findAllByText(event.text), event);
+        }
+        return found;
+    }
+
+    private static int nearest(UiSnapshot snapshot, int[] candidates, MacroEvent event) {
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int node : candidates) {
+            if (event.className != null && !event.className.equals(snapshot.getClassName(node))) continue;
+            long dx = (snapshot.getLeft(node) + snapshot.getRight(node)) / 2 - event.centerX();
+            long dy = (snapshot.getTop(node) + snapshot.getBottom(node)) / 2 - event.centerY();
+            long distance = dx * dx + dy * dy;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    private static int clamp(int value, int limit) {
+        return Math.max(-limit, Math.min(limit, value));
+    }
+}
@@ -0,0 +1,165 @@
+package com.app.pldscript;
+
+import android.graphics.Rect;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 控件范围的空间索引 - 把屏幕划分为均匀网格，每个格子记录与它相交的控件范围
+ *
+ * 按区域查询（渲染放大镜图块）和按坐标选取控件（点选最小的控件）都只访问相关格子，不需要遍历全部控件。
+ * 控件树刷新后调用 build 重建，版本号随之增加，缓存了查询结果的一方据此判断是否失效。
+ * 只能在主线程调用。
+ */
+public class NodeBoundsIndex {
+    private final int cellSize;
+    private List<Rect> rects;
+    private int columns;
+    private int rows;
+    private int version;
+
+    // 每个格子是一个链表：cellHeads 指向第一项，entryNext 指向下一项，entryRect 为控件下标
+    private int[] cellHeads = new int[0];
+    private int[] entryNext = new int[256];
+    private int[] entryRect = new int[256];
+    private int entryCount;
+
+    // 区域查询去重：marks[i] == stamp 表示本次查询已返回过该控件
+    private int[] marks = new int[64];
+    private int stamp;
+
+    /**
+     * @param cellSize 格子边长（像素）
+     */
+    public NodeBoundsIndex(int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+    }
+
+    /**
+     * 重建索引，rects 在下次 build 之前不能修改
+     */
+    public void build(List<Rect> rects, int screenWidth, int screenHeight) {
+        this.rects = rects;
+        columns = Math.max(1, (screenWidth + cellSize - 1) / cellSize);
+        rows = Math.max(1, (screenHeight + cellSize - 1) / cellSize);
+        if (cellHeads.length < columns * rows) {
+            cellHeads = new int[columns * rows];
+        }
+        Arrays.fill(cellHeads, -1);
+        entryCount = 0;
+        int n = rects.size();
+        if (marks.length < n) {
+            marks = new int[n * 2];
+        }
+        for (int i = 0; i < n; i++) {
+            Rect r = rects.get(i);
+            if (r.isEmpty()) continue;
+            int c0 = column(r.left), c1 = column(r.right - 1);
+            int r0 = row(r.top), r1 = row(r.bottom - 1);
+            for (int row = r0; row <= r1; row++) {
+                for (int col = c0; col <= c1; col++) {
+                    if (entryCount == entryNext.length) {
+                        entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+                        entryRect = Arrays.copyOf(entryRect, entryCount * 2);
+                    }
+                    int cell = row * columns + col;
+                    entryRect[entryCount] = i;
+                    entryNext[entryCount] = cellHeads[cell];
+                    cellHeads[cell] = entryCount++;
+                }
+            }
+        }
+        version++;
+    }
+
+    /**
+     * 每次 build 后增加
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return rects == null ? 0 : rects.size();
+    }
+
+    /**
+     * 查询与区域相交的控件范围，结果追加到 out 中（每个控件只出现一次）
+     */
+    public void query(int left, int top, int right, int bottom, List<Rect> out) {
+        if (rects == null || left >= right || top >= bottom) return;
+        nextStamp();
+        int c0 = column(left), c1 = column(right - 1);
+        int r0 = row(top), r1 = row(bottom - 1);
+        for (int row = r0; row <= r1; row++) {
+            for (int col = c0; col <= c1; col++) {
+                for (int e = cellHeads[row * columns + col]; e >= 0; e = entryNext[e]) {
+                    int index = entryRect[e];
+                    if (marks[index] == stamp) continue;
+                    marks[index] = stamp;
+                    Rect r = rects.get(index);
+                    if (r.left < right && left < r.right && r.top < bottom && top < r.bottom) {
+                        out.add(r);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 选取坐标处的控件：在包含该点（允许 tolerance 像素误差）的控件中取面积最小的，
+     * 面积相同时优先取真正包含该点的
+     * @param tolerance 误差范围（像素），放大查看时应按缩放倍数缩小
+     * @return 控件范围，没有时返回 null
+     */
+    public Rect pick(int x, int y, int tolerance) {
+        if (rects == null) return null;
+        Rect best = null;
+        long bestArea = Long.MAX_VALUE;
+        boolean bestExact = false;
+        // 误差范围可能跨越格子边界，查询覆盖误差范围的格子
+        int c0 = column(x - tolerance), c1 = column(x + tolerance);
+        int r0 = row(y - tolerance), r1 = row(y + tolerance);
+        nextStamp();
+        for (int row = r0; row <= r1; row++) {
+            for (int col = c0; col <= c1; col++) {
+                for (int e = cellHeads[row * columns + col]; e >= 0; e = entryNext[e]) {
+                    int index = entryRect[e];
+                    if (marks[index] == stamp) continue;
+                    marks[index] = stamp;
+                    Rect r = rects.get(index);
+                    if (x < r.left - tolerance || x >= r.right + tolerance
+                            || y < r.top - tolerance || y >= r.bottom + tolerance) {
+                        continue;
+                    }
+                    boolean exact = r.contains(x, y);
+                    long area = (long) r.width() * r.height();
+                    if (area < bestArea || (area == bestArea && exact && !bestExact)) {
+                        best = r;
+                        bestArea = area;
+                        bestExact = exact;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private void nextStamp() {
+        stamp++;
+        if (stamp == 0) {
+            // 溢出后清空标记，避免与旧的标记冲突
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+    }
+
+    private int column(int x) {
+        return Math.max(0, Math.min(x / cellSize, columns - 1));
+    }
+
+    private int row(int y) {
+        return Math.max(0, Math.min(y / cellSize, rows - 1));
+    }
+}
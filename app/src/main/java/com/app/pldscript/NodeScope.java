@@ -0,0 +1,90 @@
+package com.app.pldscript;
+
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+
+/**
+ * 节点作用域 - 作用域内获取的节点在 close 时统一回收，配合 try-with-resources 使用：
+ * <pre>
+ * try (NodeScope scope = new NodeScope("refresh")) {
+ *     AccessibilityNodeInfo root = scope.add(session.getRoot(service));
+ *     AccessibilityNodeInfo child = scope.add(session.getChild(root, 0));
+ *     ...
+ * }
+ * </pre>
+ * 需要带出作用域的节点用 detach 取出，由调用方负责回收
+ */
+public class NodeScope implements AutoCloseable {
+    private final String site;
+    private final ArrayList<AccessibilityNodeInfo> nodes = new ArrayList<>();
+
+    /**
+     * @param site 获取位置，用于 NodeTracker 统计
+     */
+    public NodeScope(String site) {
+        this.site = site;
+    }
+
+    /**
+     * 将节点加入作用域（可以传入 null）
+     * @return 传入的节点
+     */
+    public AccessibilityNodeInfo add(AccessibilityNodeInfo node) {
+        if (node == null) return null;
+        nodes.add(NodeTracker.track(node, site));
+        return node;
+    }
+
+    /**
+     * 复制节点并加入作用域
+     */
+    public AccessibilityNodeInfo obtain(AccessibilityNodeInfo node) {
+        if (node == null) return null;
+        return add(AccessibilityNodeInfo.obtain(node));
+    }
+
+    /**
+     * 提前回收作用域内的节点（遍历时处理完一个节点就可以回收）
+     */
+    public void release(AccessibilityNodeInfo node) {
+        if (remove(node)) {
+            NodeTracker.recycle(node);
+        }
+    }
+
+    /**
+     * 把节点从作用域中取出，close 时不再回收（仍由 NodeTracker 统计）
+     * @return 传入的节点
+     */
+    public AccessibilityNodeInfo detach(AccessibilityNodeInfo node) {
+        remove(node);
+        return node;
+    }
+
+    /**
+     * 作用域内尚未回收的节点数
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public void close() {
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            NodeTracker.recycle(nodes.get(i));
+        }
+        nodes.clear();
+    }
+
+    private boolean remove(AccessibilityNodeInfo node) {
+        // 遍历时通常释放最近加入的节点，从末尾开始查找
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            if (nodes.get(i) == node) {
+                nodes.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+}
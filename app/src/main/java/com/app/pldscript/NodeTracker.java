@@ -0,0 +1,147 @@
+package com.app.pldscript;
+
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 节点句柄跟踪器 - 统计每个获取位置当前未回收的 AccessibilityNodeInfo 数量
+ * 调试版额外记录获取时的调用栈，reportLeaks 可以打印长时间未回收的句柄来源
+ *
+ * 用法：获取节点后 track(node, "位置")，用完 recycle(node)；成组使用时优先用 NodeScope 自动回收
+ */
+public class NodeTracker {
+    private static final String TAG = "NodeTracker";
+    // 调试版记录调用栈，正式版只计数
+    private static final boolean TRACE_ORIGIN = BuildConfig.DEBUG;
+
+    private static final Map<AccessibilityNodeInfo, Handle> handles = new IdentityHashMap<>();
+    private static final Map<String, Integer> liveBySite = new TreeMap<>();
+
+    private static class Handle {
+        final String site;
+        final long time;
+        final Throwable origin;
+
+        Handle(String site, long time, Throwable origin) {
+            this.site = site;
+            this.time = time;
+            this.origin = origin;
+        }
+    }
+
+    /**
+     * 登记一个已获取的节点
+     * @param site 获取位置（用于统计）
+     * @return 传入的节点，便于链式调用
+     */
+    public static AccessibilityNodeInfo track(AccessibilityNodeInfo node, String site) {
+        if (node == null) return null;
+        Handle handle = new Handle(site, SystemClock.uptimeMillis(),
+                TRACE_ORIGIN ? new Throwable("acquired at " + site) : null);
+        synchronized (handles) {
+            Handle previous = handles.put(node, handle);
+            if (previous != null) {
+                // 同一个对象被重复登记（通常是回收后被对象池复用而没有经过 recycle）
+                decrement(previous.site);
+            }
+            liveBySite.put(site, count(site) + 1);
+        }
+        return node;
+    }
+
+    /**
+     * 复制节点并登记
+     */
+    public static AccessibilityNodeInfo obtain(AccessibilityNodeInfo node, String site) {
+        if (node == null) return null;
+        return track(AccessibilityNodeInfo.obtain(node), site);
+    }
+
+    /**
+     * 回收节点并取消登记（未登记的节点直接回收）
+     */
+    public static void recycle(AccessibilityNodeInfo node) {
+        if (node == null) return;
+        synchronized (handles) {
+            Handle handle = handles.remove(node);
+            if (handle != null) {
+                decrement(handle.site);
+            }
+        }
+        try {
+            node.recycle();
+        } catch (IllegalStateException e) {
+            // 重复回收
+            PLog.w(TAG, "节点已被回收", e);
+        }
+    }
+
+    /**
+     * 当前未回收的句柄总数
+     */
+    public static int getLiveCount() {
+        synchronized (handles) {
+            return handles.size();
+        }
+    }
+
+    /**
+     * 各获取位置当前未回收的句柄数
+     */
+    public static Map<String, Integer> getLiveCounts() {
+        synchronized (handles) {
+            return new TreeMap<>(liveBySite);
+        }
+    }
+
+    /**
+     * 打印存活时间超过 minAgeMs 的句柄（调试版带调用栈）
+     * @return 疑似泄漏的句柄数
+     */
+    public static int reportLeaks(long minAgeMs) {
+        long now = SystemClock.uptimeMillis();
+        List<Handle> leaked = new ArrayList<>();
+        synchronized (handles) {
+            for (Handle handle : handles.values()) {
+                if (now - handle.time >= minAgeMs) {
+                    leaked.add(handle);
+                }
+            }
+        }
+        if (leaked.isEmpty()) return 0;
+        PLog.w(TAG, "未回收的节点句柄: {}，按位置统计: {}", leaked.size(), getLiveCounts());
+        if (TRACE_ORIGIN) {
+            // 每个位置只打印一个调用栈，避免刷屏
+            Map<String, Handle> firstBySite = new TreeMap<>();
+            for (Handle handle : leaked) {
+                if (!firstBySite.containsKey(handle.site)) {
+                    firstBySite.put(handle.site, handle);
+                }
+            }
+            for (Handle handle : firstBySite.values()) {
+                PLog.w(TAG, "泄漏句柄 {}，已存活 {}ms", handle.site, now - handle.time, handle.origin);
+            }
+        }
+        return leaked.size();
+    }
+
+    private static int count(String site) {
+        Integer n = liveBySite.get(site);
+        return n != null ? n : 0;
+    }
+
+    private static void decrement(String site) {
+        int n = count(site) - 1;
+        if (n > 0) {
+            liveBySite.put(site, n);
+        } else {
+            liveBySite.remove(site);
+        }
+    }
+}
@@ -0,0 +1,537 @@
+package com.app.pldscript;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.PixelFormat;
+import android.graphics.Region;
+import android.os.Build;
+import android.util.DisplayMetrics;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
+import android.view.inputmethod.InputMethodManager;
+import android.widget.FrameLayout;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 覆盖层合成器 - 悬浮气泡、悬浮菜单、控件查看覆盖层、节点菜单和信息面板都作为图层放在同一个悬浮窗中
+ *
+ * 图层按 z 值排列，触摸事件在 ACTION_DOWN 时从上到下查找包含触摸点的图层，整个手势都交给该图层处理，
+ * 不再需要各个窗口之间互相判断触摸位置。
+ * 有全屏图层（控件查看覆盖层）时窗口铺满屏幕，图层移动只改变平移，不需要重新布局窗口；
+ * 否则窗口缩小到所有图层的外接矩形，并把可触摸区域设为各图层范围的并集，图层之间的空白处触摸落到下面的应用上。
+ * 可触摸区域通过隐藏接口 OnComputeInternalInsetsListener 设置（系统的悬浮工具栏也这样做），
+ * 接口不可用时整个外接矩形都可触摸。
+ * 每次 commit 都把图层范围按从上到下的顺序缓存到几何表中，触摸分发和可触摸区域都只用这张表（routeTouch），
+ * 不查询视图位置。
+ * 窗口默认不获取焦点；按下需要输入文字的图层（setInputEnabled）时窗口才可获取焦点以便弹出输入法，
+ * 按下其他图层或窗口外时恢复为不可获取焦点，焦点还给应用。
+ * 屏幕尺寸每次使用时重新读取，屏幕旋转后全屏图层和窗口范围随之更新。
+ * 所有坐标都是屏幕坐标。只能在主线程调用。
+ */
+public class OverlayCompositor {
+    private static final String TAG = "OverlayCompositor";
+
+    // 图层 z 值，越大越靠上
+    public static final int Z_INSPECTOR = 0;
+    public static final int Z_BUBBLE = 10;
+    public static final int Z_BUBBLE_MENU = 20;
+    public static final int Z_MAGNIFIER = 25;
+    public static final int Z_NODE_MENU = 30;
+    public static final int Z_PANEL = 40;
+
+    // 图层尺寸：按内容测量
+    public static final int WRAP_CONTENT = ViewGroup.LayoutParams.WRAP_CONTENT;
+    // 图层尺寸：铺满屏幕
+    public static final int FULL_SCREEN = ViewGroup.LayoutParams.MATCH_PARENT;
+
+    // ViewTreeObserver.InternalInsetsInfo.TOUCHABLE_INSETS_REGION
+    private static final int TOUCHABLE_INSETS_REGION = 3;
+
+    /**
+     * 图层
+     */
+    public static class Layer {
+        final String name;
+        final int z;
+        final View view;
+        final boolean fullScreen;
+        final int requestedWidth;
+        final int requestedHeight;
+        int x;
+        int y;
+        // 当前尺寸（按内容测量的图层在布局变化时更新）
+        int width;
+        int height;
+        // 是否仍在合成窗口中
+        boolean attached = true;
+        // 是否需要输入文字
+        boolean input;
+
+        Layer(String name, int z, View view, int x, int y, int width, int height) {
+            this.name = name;
+            this.z = z;
+            this.view = view;
+            this.fullScreen = width == FULL_SCREEN || height == FULL_SCREEN;
+            this.requestedWidth = width;
+            this.requestedHeight = height;
+            this.x = x;
+            this.y = y;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public View getView() {
+            return view;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public boolean isAttached() {
+            return attached;
+        }
+    }
+
+    private static WindowManager windowManager;
+    private static CompositorView root;
+    private static WindowManager.LayoutParams rootParams;
+    // 按 z 值从小到大排列
+    private static final List<Layer> layers = new ArrayList<>();
+    private static final DisplayMetrics metrics = new DisplayMetrics();
+    private static int screenWidth;
+    private static int screenHeight;
+
+    // 几何表：按 z 值从大到小排列的图层及其范围（每个图层 4 个值：left, top, right, bottom），commit 时更新
+    private static Layer[] hitLayers = new Layer[8];
+    private static int[] hitBounds = new int[8 * 4];
+    private static int hitCount;
+
+    // 可触摸区域（窗口坐标），为空时整个窗口可触摸；newRegion 为 commit 时计算用的临时区域
+    private static final Region touchRegion = new Region();
+    private static final Region newRegion = new Region();
+
+    /**
+     * 添加图层（同名图层会先被移除），需要调用 commit 才会更新窗口
+     * @param width 宽度（像素），或 WRAP_CONTENT / FULL_SCREEN
+     * @param height 高度（像素），或 WRAP_CONTENT / FULL_SCREEN
+     */
+    public static Layer addLayer(Context context, String name, int z, View view, int x, int y, int width, int height) {
+        removeLayer(name);
+        ensureWindow(context);
+        Layer layer = new Layer(name, z, view, x, y, width, height);
+        measure(layer);
+        int index = 0;
+        while (index < layers.size() && layers.get(index).z <= z) {
+            index++;
+        }
+        layers.add(index, layer);
+
+        FrameLayout.LayoutParams lp = new FrameLayout.LayoutParams(
+                layer.fullScreen ? FULL_SCREEN : width, layer.fullScreen ? FULL_SCREEN : height,
+                Gravity.TOP | Gravity.START);
+        root.addView(view, index, lp);
+        // 内容尺寸变化时重新计算窗口范围
+        view.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+            if (layer.fullScreen || !layer.attached) return;
+            if (right - left != layer.width || bottom - top != layer.height) {
+                layer.width = right - left;
+                layer.height = bottom - top;
+                commit();
+            }
+        });
+        return layer;
+    }
+
+    /**
+     * 移除图层，没有图层时移除窗口
+     */
+    public static void removeLayer(String name) {
+        Layer layer = getLayer(name);
+        if (layer == null) return;
+        layers.remove(layer);
+        layer.attached = false;
+        root.removeView(layer.view);
+        if (layers.isEmpty()) {
+            try {
+                windowManager.removeView(root);
+            } catch (Exception e) {
+                PLog.e(TAG, "移除覆盖层窗口失败", e);
+            }
+            root = null;
+            rootParams = null;
+            updateGeometry();
+        } else {
+            if (root.touchTarget == layer) {
+                root.touchTarget = null;
+                setFocusable(false);
+            }
+            commit();
+        }
+    }
+
+    public static Layer getLayer(String name) {
+        for (int i = 0; i < layers.size(); i++) {
+            Layer layer = layers.get(i);
+            if (layer.name.equals(name)) return layer;
+        }
+        return null;
+    }
+
+    public static boolean hasLayer(String name) {
+        return getLayer(name) != null;
+    }
+
+    /**
+     * 移动图层，需要调用 commit 才会生效（同一帧内移动多个图层时只更新一次窗口）
+     */
+    public static void moveLayer(Layer layer, int x, int y) {
+        layer.x = x;
+        layer.y = y;
+    }
+
+    /**
+     * 设置图层是否需要输入文字（例如包含搜索框）。按下这样的图层时窗口才可获取焦点，不会一直占着应用的焦点
+     */
+    public static void setInputEnabled(Layer layer, boolean enabled) {
+        layer.input = enabled;
+        if (!enabled && root != null && root.touchTarget == layer) {
+            setFocusable(false);
+        }
+        commit();
+    }
+
+    /**
+     * 按当前图层计算窗口范围、可触摸区域和各图层位置，窗口范围变化时才更新窗口
+     */
+    public static void commit() {
+        if (root == null) return;
+        readScreenSize();
+        updateGeometry();
+        boolean fullScreen = false;
+        int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < layers.size(); i++) {
+            Layer layer = layers.get(i);
+            if (layer.fullScreen) {
+                fullScreen = true;
+                continue;
+            }
+            left = Math.min(left, layer.x);
+            top = Math.min(top, layer.y);
+            right = Math.max(right, layer.x + layer.width);
+            bottom = Math.max(bottom, layer.y + layer.height);
+        }
+        int windowX, windowY, windowW, windowH;
+        if (fullScreen || left >= right || top >= bottom) {
+            windowX = 0;
+            windowY = 0;
+            windowW = screenWidth;
+            windowH = screenHeight;
+        } else {
+            windowX = left;
+            windowY = top;
+            windowW = right - left;
+            windowH = bottom - top;
+        }
+
+        for (int i = 0; i < layers.size(); i++) {
+            Layer layer = layers.get(i);
+            if (layer.fullScreen) continue;
+            layer.view.setTranslationX(layer.x - windowX);
+            layer.view.setTranslationY(layer.y - windowY);
+        }
+
+        // 全屏图层（控件查看）本来就要接收整个屏幕的触摸，这时整个窗口可触摸
+        newRegion.setEmpty();
+        if (!fullScreen) {
+            for (int i = 0; i < hitCount; i++) {
+                int b = i * 4;
+                newRegion.op(hitBounds[b] - windowX, hitBounds[b + 1] - windowY,
+                        hitBounds[b + 2] - windowX, hitBounds[b + 3] - windowY, Region.Op.UNION);
+            }
+        }
+        boolean regionChanged = !newRegion.equals(touchRegion);
+        if (regionChanged) {
+            touchRegion.set(newRegion);
+        }
+
+        if (rootParams.x != windowX || rootParams.y != windowY
+                || rootParams.width != windowW || rootParams.height != windowH) {
+            rootParams.x = windowX;
+            rootParams.y = windowY;
+            rootParams.width = windowW;
+            rootParams.height = windowH;
+            windowManager.updateViewLayout(root, rootParams);
+        } else if (regionChanged) {
+            // 窗口范围不变时不会重新布局，请求一次遍历让系统重新读取可触摸区域
+            root.requestLayout();
+        }
+    }
+
+    /**
+     * 从几何表的第 start 项开始向下查找包含该点的图层（CompositorView 在 ACTION_DOWN 时调用）
+     * @return 几何表中的下标，没有时返回 -1
+     */
+    private static int routeTouch(int x, int y, int start) {
+        int[] bounds = hitBounds;
+        for (int i = start; i < hitCount; i++) {
+            int b = i * 4;
+            if (x >= bounds[b] && y >= bounds[b + 1] && x < bounds[b + 2] && y < bounds[b + 3]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按当前图层重建几何表（图层增删、移动或尺寸变化后都会经过 commit 调用）
+     */
+    private static void updateGeometry() {
+        int count = layers.size();
+        if (hitLayers.length < count) {
+            hitLayers = new Layer[count * 2];
+            hitBounds = new int[count * 2 * 4];
+        }
+        for (int i = 0; i < count; i++) {
+            Layer layer = layers.get(count - 1 - i);
+            int b = i * 4;
+            hitLayers[i] = layer;
+            if (layer.fullScreen) {
+                layer.width = screenWidth;
+                layer.height = screenHeight;
+                hitBounds[b] = Integer.MIN_VALUE;
+                hitBounds[b + 1] = Integer.MIN_VALUE;
+                hitBounds[b + 2] = Integer.MAX_VALUE;
+                hitBounds[b + 3] = Integer.MAX_VALUE;
+            } else {
+                hitBounds[b] = layer.x;
+                hitBounds[b + 1] = layer.y;
+                hitBounds[b + 2] = layer.x + layer.width;
+                hitBounds[b + 3] = layer.y + layer.height;
+            }
+        }
+        // 清掉多余的引用，移除的视图可以被回收
+        for (int i = count; i < hitCount; i++) {
+            hitLayers[i] = null;
+        }
+        hitCount = count;
+    }
+
+    /**
+     * 屏幕宽度（像素），每次调用时重新读取，屏幕旋转后返回新的宽度
+     */
+    public static int getScreenWidth() {
+        readScreenSize();
+        return screenWidth;
+    }
+
+    /**
+     * 屏幕高度（像素），每次调用时重新读取
+     */
+    public static int getScreenHeight() {
+        readScreenSize();
+        return screenHeight;
+    }
+
+    private static void readScreenSize() {
+        if (windowManager == null) return;
+        windowManager.getDefaultDisplay().getRealMetrics(metrics);
+        screenWidth = metrics.widthPixels;
+        screenHeight = metrics.heightPixels;
+    }
+
+    private static void ensureWindow(Context context) {
+        if (root != null) return;
+        if (windowManager == null) {
+            windowManager = (WindowManager) context.getApplicationContext().getSystemService(Context.WINDOW_SERVICE);
+        }
+        readScreenSize();
+
+        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
+                : WindowManager.LayoutParams.TYPE_PHONE;
+        // 使用屏幕坐标，窗口缩小或铺满时图层位置都不需要换算；
+        // 接收窗口外的按下事件，以便用户回到应用时交还焦点
+        rootParams = new WindowManager.LayoutParams(
+                1, 1, type,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS
+                        | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL
+                        | WindowManager.LayoutParams.FLAG_WATCH_OUTSIDE_TOUCH,
+                PixelFormat.TRANSLUCENT
+        );
+        rootParams.gravity = Gravity.TOP | Gravity.START;
+        // 输入法弹出时不调整窗口，图层位置保持不变
+        rootParams.softInputMode = WindowManager.LayoutParams.SOFT_INPUT_ADJUST_NOTHING;
+        root = new CompositorView(context);
+        installTouchRegion(root);
+        windowManager.addView(root, rootParams);
+    }
+
+    /**
+     * 窗口是否可获取焦点，变化时才更新窗口
+     */
+    private static void setFocusable(boolean focusable) {
+        if (root == null) return;
+        int flags = focusable
+                ? rootParams.flags & ~WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                : rootParams.flags | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+        if (flags == rootParams.flags) return;
+        rootParams.flags = flags;
+        windowManager.updateViewLayout(root, rootParams);
+    }
+
+    /**
+     * 通过 ViewTreeObserver 的隐藏接口在每次遍历时把可触摸区域交给系统，接口不可用时整个窗口都可触摸
+     */
+    private static void installTouchRegion(View view) {
+        try {
+            Class<?> listenerClass = Class.forName("android.view.ViewTreeObserver$OnComputeInternalInsetsListener");
+            Class<?> infoClass = Class.forName("android.view.ViewTreeObserver$InternalInsetsInfo");
+            Method setTouchableInsets = infoClass.getMethod("setTouchableInsets", int.class);
+            Field touchableRegion = infoClass.getField("touchableRegion");
+            Object listener = Proxy.newProxyInstance(listenerClass.getClassLoader(), new Class<?>[]{listenerClass},
+                    (proxy, method, args) -> {
+                        if (method.getDeclaringClass() == Object.class) {
+                            switch (method.getName()) {
+                                case "hashCode": return System.identityHashCode(proxy);
+                                case "equals": return proxy == args[0];
+                                default: return TAG;
+                            }
+                        }
+                        if (!touchRegion.isEmpty()) {
+                            setTouchableInsets.invoke(args[0], TOUCHABLE_INSETS_REGION);
+                            ((Region) touchableRegion.get(args[0])).set(touchRegion);
+                        }
+                        return null;
+                    });
+            ViewTreeObserver.class.getMethod("addOnComputeInternalInsetsListener", listenerClass)
+                    .invoke(view.getViewTreeObserver(), listener);
+        } catch (Throwable e) {
+            PLog.w(TAG, "无法设置可触摸区域，图层之间的空白处也会拦截触摸", e);
+        }
+    }
+
+    private static void measure(Layer layer) {
+        if (layer.fullScreen) {
+            layer.width = screenWidth;
+            layer.height = screenHeight;
+            return;
+        }
+        int widthSpec = layer.requestedWidth == WRAP_CONTENT
+                ? View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED)
+                : View.MeasureSpec.makeMeasureSpec(layer.requestedWidth, View.MeasureSpec.EXACTLY);
+        int heightSpec = layer.requestedHeight == WRAP_CONTENT
+                ? View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED)
+                : View.MeasureSpec.makeMeasureSpec(layer.requestedHeight, View.MeasureSpec.EXACTLY);
+        layer.view.measure(widthSpec, heightSpec);
+        layer.width = Math.max(1, layer.view.getMeasuredWidth());
+        layer.height = Math.max(1, layer.view.getMeasuredHeight());
+    }
+
+    /**
+     * 合成窗口的根视图，负责触摸分发、焦点切换和屏幕旋转
+     */
+    private static class CompositorView extends FrameLayout {
+        // 最近一次手势的目标图层
+        private Layer touchTarget;
+        // 手势是否还在进行
+        private boolean gestureActive;
+
+        CompositorView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public boolean dispatchTouchEvent(MotionEvent event) {
+            int action = event.getActionMasked();
+            if (action == MotionEvent.ACTION_OUTSIDE) {
+                // 用户回到应用，交还焦点
+                touchTarget = null;
+                setFocusable(false);
+                return false;
+            }
+            if (action == MotionEvent.ACTION_DOWN) {
+                touchTarget = null;
+                gestureActive = false;
+                int x = (int) event.getRawX();
+                int y = (int) event.getRawY();
+                // 从上到下查找，图层不处理时交给下面的图层
+                for (int i = routeTouch(x, y, 0); i >= 0; i = routeTouch(x, y, i + 1)) {
+                    Layer layer = hitLayers[i];
+                    if (dispatchToLayer(layer, event)) {
+                        touchTarget = layer;
+                        gestureActive = true;
+                        setFocusable(layer.input);
+                        return true;
+                    }
+                }
+                setFocusable(false);
+                return false;
+            }
+            Layer target = gestureActive ? touchTarget : null;
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                gestureActive = false;
+            }
+            if (target == null || !target.attached) return false;
+            return dispatchToLayer(target, event);
+        }
+
+        @Override
+        public void onWindowFocusChanged(boolean hasWindowFocus) {
+            super.onWindowFocusChanged(hasWindowFocus);
+            // 窗口在按下输入框之后才变为可获取焦点，拿到焦点时再弹出输入法
+            View focused = hasWindowFocus ? findFocus() : null;
+            if (focused != null && focused.onCheckIsTextEditor()) {
+                InputMethodManager imm = (InputMethodManager) getContext().getSystemService(Context.INPUT_METHOD_SERVICE);
+                if (imm != null) {
+                    imm.showSoftInput(focused, 0);
+                }
+            }
+        }
+
+        @Override
+        protected void onConfigurationChanged(Configuration newConfig) {
+            super.onConfigurationChanged(newConfig);
+            // 屏幕旋转后全屏图层和窗口范围按新的屏幕尺寸计算
+            commit();
+        }
+
+        private boolean dispatchToLayer(Layer layer, MotionEvent event) {
+            View view = layer.view;
+            float offsetX = view.getLeft() + view.getTranslationX();
+            float offsetY = view.getTop() + view.getTranslationY();
+            event.offsetLocation(-offsetX, -offsetY);
+            try {
+                return view.dispatchTouchEvent(event);
+            } finally {
+                event.offsetLocation(offsetX, offsetY);
+            }
+        }
+    }
+}
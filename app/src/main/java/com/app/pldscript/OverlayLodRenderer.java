@@ -0,0 +1,379 @@
+package com.app.pldscript;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 控件查看覆盖层的分级绘制 - 只画看得清的方框和标签
+ *
+ * 长列表等密集界面上有几百个互相重叠的控件，全部绘制既慢又看不清。控件变化或焦点变化后重新计算一次要画的内容，
+ * 之后每帧只绘制计算结果：
+ * <ul>
+ *   <li>宽或高小于阈值的方框不画</li>
+ *   <li>与已保留方框高度重叠（交并比超过阈值）的方框合并为一组，只画一个方框并标注数量</li>
+ *   <li>标签按优先级放入标签网格，与已放置的标签重叠时不画</li>
+ *   <li>设置焦点（手指附近或选中的子树）后，焦点内的控件全部显示并优先放置标签，焦点外只保留较大的方框且不画标签</li>
+ * </ul>
+ * 只能在主线程调用。
+ */
+public class OverlayLodRenderer {
+    private static final String TAG = "OverlayLodRenderer";
+
+    private final Paint boxPaint;
+    private final Paint clusterPaint;
+    private final Paint focusPaint;
+    private final Paint textPaint;
+    private final float density;
+
+    // 方框最小尺寸（像素），小于该尺寸不画
+    private int minBoxSize;
+    // 有焦点时焦点外方框的最小尺寸（像素）
+    private int outsideFocusMinSize;
+    // 没有焦点时显示标签的最小方框尺寸（像素）
+    private int labelMinSize;
+    // 交并比不小于该值的方框合并
+    private float mergeThreshold = 0.8f;
+
+    private int screenWidth;
+    private int screenHeight;
+    private List<Rect> rects = Collections.emptyList();
+    private final Rect focus = new Rect();
+    private boolean hasFocus;
+    private boolean dirty = true;
+
+    // 计算结果：保留的方框（每个 4 个值）、合并数量、是否在焦点内
+    private int[] boxes = new int[64 * 4];
+    private int[] counts = new int[64];
+    private boolean[] focused = new boolean[64];
+    private int boxCount;
+    private String[] labelTexts = new String[64];
+    private float[] labelPositions = new float[64 * 2];
+    private int labelCount;
+    private int culledCount;
+    private int mergedCount;
+
+    // 合并用的网格：每个格子是一个链表，记录覆盖该格子的保留方框
+    private int mergeCellSize;
+    private int mergeColumns;
+    private int mergeRows;
+    private int[] cellHeads = new int[0];
+    private int[] entryNext = new int[256];
+    private int[] entryBox = new int[256];
+    private int entryCount;
+
+    // 标签网格：已被标签占用的格子
+    private int labelCellSize;
+    private int labelColumns;
+    private int labelRows;
+    private boolean[] labelCells = new boolean[0];
+
+    // 按面积排序用，高位为面积，低位为下标
+    private long[] order = new long[64];
+
+    /**
+     * @param boxPaint 方框画笔
+     * @param textPaint 标签画笔
+     */
+    public OverlayLodRenderer(Paint boxPaint, Paint textPaint, float density) {
+        this.boxPaint = boxPaint;
+        this.textPaint = textPaint;
+        this.density = density;
+        clusterPaint = new Paint(boxPaint);
+        clusterPaint.setColor(Color.rgb(255, 140, 0));
+        clusterPaint.setStrokeWidth(boxPaint.getStrokeWidth() * 1.5f);
+        focusPaint = new Paint();
+        focusPaint.setStyle(Paint.Style.FILL);
+        focusPaint.setColor(Color.argb(40, 0, 160, 255));
+        minBoxSize = dp(4);
+        outsideFocusMinSize = dp(32);
+        labelMinSize = dp(50);
+        mergeCellSize = dp(48);
+        labelCellSize = dp(6);
+    }
+
+    /**
+     * 方框最小尺寸（像素）
+     */
+    public OverlayLodRenderer setMinBoxSize(int minBoxSize) {
+        this.minBoxSize = minBoxSize;
+        dirty = true;
+        return this;
+    }
+
+    /**
+     * 有焦点时焦点外方框的最小尺寸（像素）
+     */
+    public OverlayLodRenderer setOutsideFocusMinSize(int outsideFocusMinSize) {
+        this.outsideFocusMinSize = outsideFocusMinSize;
+        dirty = true;
+        return this;
+    }
+
+    /**
+     * 合并阈值（交并比，0~1）
+     */
+    public OverlayLodRenderer setMergeThreshold(float mergeThreshold) {
+        this.mergeThreshold = mergeThreshold;
+        dirty = true;
+        return this;
+    }
+
+    /**
+     * 设置要绘制的控件范围（屏幕坐标），下次绘制时重新计算
+     */
+    public void setRects(List<Rect> rects, int screenWidth, int screenHeight) {
+        this.rects = rects;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        dirty = true;
+    }
+
+    /**
+     * 以手指位置为焦点
+     */
+    public void setFocusPoint(int x, int y) {
+        int radius = dp(96);
+        setFocusRect(x - radius, y - radius, x + radius, y + radius);
+    }
+
+    /**
+     * 以选中的子树范围为焦点
+     */
+    public void setFocusRect(Rect bounds) {
+        setFocusRect(bounds.left, bounds.top, bounds.right, bounds.bottom);
+    }
+
+    private void setFocusRect(int left, int top, int right, int bottom) {
+        if (hasFocus && focus.left == left && focus.top == top && focus.right == right && focus.bottom == bottom) {
+            return;
+        }
+        focus.set(left, top, right, bottom);
+        hasFocus = true;
+        dirty = true;
+    }
+
+    /**
+     * 取消焦点
+     */
+    public void clearFocus() {
+        if (!hasFocus) return;
+        hasFocus = false;
+        dirty = true;
+    }
+
+    public void draw(Canvas canvas) {
+        if (dirty) {
+            prepare();
+        }
+        if (hasFocus) {
+            canvas.drawRect(focus, focusPaint);
+        }
+        int[] b = boxes;
+        for (int i = 0; i < boxCount; i++) {
+            int o = i * 4;
+            canvas.drawRect(b[o], b[o + 1], b[o + 2], b[o + 3], counts[i] > 1 ? clusterPaint : boxPaint);
+        }
+        for (int i = 0; i < labelCount; i++) {
+            canvas.drawText(labelTexts[i], labelPositions[i * 2], labelPositions[i * 2 + 1], textPaint);
+        }
+    }
+
+    /**
+     * 重新计算要绘制的方框和标签
+     */
+    private void prepare() {
+        dirty = false;
+        boxCount = 0;
+        labelCount = 0;
+        culledCount = 0;
+        mergedCount = 0;
+        int n = rects.size();
+        if (n == 0 || screenWidth <= 0 || screenHeight <= 0) return;
+
+        // 大的方框先处理，合并时作为一组的代表
+        if (order.length < n) {
+            order = new long[n * 2];
+        }
+        for (int i = 0; i < n; i++) {
+            Rect r = rects.get(i);
+            order[i] = ((long) r.width() * r.height() << 20) | i;
+        }
+        Arrays.sort(order, 0, n);
+
+        resetMergeGrid();
+        for (int k = n - 1; k >= 0; k--) {
+            Rect r = rects.get((int) (order[k] & 0xFFFFF));
+            boolean inFocus = hasFocus && Rect.intersects(focus, r);
+            int min = inFocus ? 1 : hasFocus ? outsideFocusMinSize : minBoxSize;
+            if (r.width() < min || r.height() < min) {
+                culledCount++;
+                continue;
+            }
+            if (!inFocus) {
+                int target = findOverlapping(r);
+                if (target >= 0) {
+                    counts[target]++;
+                    mergedCount++;
+                    continue;
+                }
+            }
+            addBox(r, inFocus);
+        }
+
+        placeLabels();
+        PLog.d(TAG, "控件 {} 个，绘制 {}，剔除 {}，合并 {}，标签 {}",
+                n, boxCount, culledCount, mergedCount, labelCount);
+    }
+
+    private void addBox(Rect r, boolean inFocus) {
+        if (boxCount == counts.length) {
+            boxes = Arrays.copyOf(boxes, boxCount * 2 * 4);
+            counts = Arrays.copyOf(counts, boxCount * 2);
+            focused = Arrays.copyOf(focused, boxCount * 2);
+        }
+        int index = boxCount++;
+        int o = index * 4;
+        boxes[o] = r.left;
+        boxes[o + 1] = r.top;
+        boxes[o + 2] = r.right;
+        boxes[o + 3] = r.bottom;
+        counts[index] = 1;
+        focused[index] = inFocus;
+
+        // 记录到方框覆盖的每个格子
+        int c0 = mergeColumn(r.left), c1 = mergeColumn(r.right - 1);
+        int r0 = mergeRow(r.top), r1 = mergeRow(r.bottom - 1);
+        for (int row = r0; row <= r1; row++) {
+            for (int col = c0; col <= c1; col++) {
+                if (entryCount == entryNext.length) {
+                    entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+                    entryBox = Arrays.copyOf(entryBox, entryCount * 2);
+                }
+                int cell = row * mergeColumns + col;
+                entryBox[entryCount] = index;
+                entryNext[entryCount] = cellHeads[cell];
+                cellHeads[cell] = entryCount++;
+            }
+        }
+    }
+
+    /**
+     * 在方框中心所在的格子中查找高度重叠的保留方框
+     * （交并比较高的两个方框互相包含对方的中心，只查这一个格子即可）
+     * @return 保留方框的下标，没有时返回 -1
+     */
+    private int findOverlapping(Rect r) {
+        int cell = mergeRow(r.centerY()) * mergeColumns + mergeColumn(r.centerX());
+        long area = (long) r.width() * r.height();
+        for (int e = cellHeads[cell]; e >= 0; e = entryNext[e]) {
+            int index = entryBox[e];
+            if (focused[index]) continue;
+            int o = index * 4;
+            int iw = Math.min(r.right, boxes[o + 2]) - Math.max(r.left, boxes[o]);
+            int ih = Math.min(r.bottom, boxes[o + 3]) - Math.max(r.top, boxes[o + 1]);
+            if (iw <= 0 || ih <= 0) continue;
+            long intersection = (long) iw * ih;
+            long union = area + (long) (boxes[o + 2] - boxes[o]) * (boxes[o + 3] - boxes[o + 1]) - intersection;
+            if (intersection >= mergeThreshold * union) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按优先级放置标签：焦点内的先放，其余按面积从大到小（保留方框本身就是这个顺序）
+     */
+    private void placeLabels() {
+        int columns = (screenWidth + labelCellSize - 1) / labelCellSize;
+        int rows = (screenHeight + labelCellSize - 1) / labelCellSize;
+        if (labelCells.length < columns * rows) {
+            labelCells = new boolean[columns * rows];
+        } else {
+            Arrays.fill(labelCells, false);
+        }
+        labelColumns = columns;
+        labelRows = rows;
+        if (hasFocus) {
+            for (int i = 0; i < boxCount; i++) {
+                if (focused[i]) placeLabel(i);
+            }
+        } else {
+            for (int i = 0; i < boxCount; i++) {
+                int o = i * 4;
+                if (boxes[o + 2] - boxes[o] > labelMinSize && boxes[o + 3] - boxes[o + 1] > labelMinSize) {
+                    placeLabel(i);
+                }
+            }
+        }
+    }
+
+    private void placeLabel(int index) {
+        int o = index * 4;
+        String text = counts[index] > 1
+                ? boxes[o] + "," + boxes[o + 1] + " ×" + counts[index]
+                : boxes[o] + "," + boxes[o + 1];
+        float textSize = textPaint.getTextSize();
+        float x = boxes[o];
+        // 默认画在方框左上角上方，超出屏幕时画在方框内
+        float baseline = boxes[o + 1] - dp(2);
+        if (baseline - textSize < 0) {
+            baseline = boxes[o + 1] + textSize;
+        }
+        float width = textPaint.measureText(text);
+        int c0 = labelCell(x, labelColumns - 1);
+        int c1 = labelCell(x + width, labelColumns - 1);
+        int r0 = labelCell(baseline - textSize, labelRows - 1);
+        int r1 = labelCell(baseline + textPaint.descent(), labelRows - 1);
+        for (int row = r0; row <= r1; row++) {
+            for (int col = c0; col <= c1; col++) {
+                if (labelCells[row * labelColumns + col]) return;
+            }
+        }
+        for (int row = r0; row <= r1; row++) {
+            for (int col = c0; col <= c1; col++) {
+                labelCells[row * labelColumns + col] = true;
+            }
+        }
+        if (labelCount == labelTexts.length) {
+            labelTexts = Arrays.copyOf(labelTexts, labelCount * 2);
+            labelPositions = Arrays.copyOf(labelPositions, labelCount * 2 * 2);
+        }
+        labelTexts[labelCount] = text;
+        labelPositions[labelCount * 2] = x;
+        labelPositions[labelCount * 2 + 1] = baseline;
+        labelCount++;
+    }
+
+    private void resetMergeGrid() {
+        mergeColumns = (screenWidth + mergeCellSize - 1) / mergeCellSize;
+        mergeRows = (screenHeight + mergeCellSize - 1) / mergeCellSize;
+        if (cellHeads.length < mergeColumns * mergeRows) {
+            cellHeads = new int[mergeColumns * mergeRows];
+        }
+        Arrays.fill(cellHeads, -1);
+        entryCount = 0;
+    }
+
+    private int mergeColumn(int x) {
+        return Math.max(0, Math.min(x / mergeCellSize, mergeColumns - 1));
+    }
+
+    private int mergeRow(int y) {
+        return Math.max(0, Math.min(y / mergeCellSize, mergeRows - 1));
+    }
+
+    private int labelCell(float v, int max) {
+        return Math.max(0, Math.min((int) (v / labelCellSize), max));
+    }
+
+    private int dp(int value) {
+        return (int) (value * density + 0.5f);
+    }
+}
@@ -1,7 +1,6 @@
 package com.app.pldscript;
 
 import android.accessibilityservice.AccessibilityService;
-import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 import android.graphics.Path;
 import android.accessibilityservice.GestureDescription;
@@ -16,12 +15,28 @@ public class PLDScript extends AccessibilityService {
     private static PLDScript instance;
     //TAG
     private static final String TAG = "PLDScript";
+    // 供脚本读取的事件缓冲区
+    private static final EventRing eventRing = new EventRing(1024);
+    private static final java.util.concurrent.atomic.AtomicInteger eventSubscriberIds = new java.util.concurrent.atomic.AtomicInteger();
+    // 应用日志文件（进程内只创建一次）
+    private static RollingFileSink logFileSink;
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
         // 当监听到指定事件时（如窗口变化、按钮点击等），在此处理逻辑
         // 例如：获取当前窗口内容、模拟点击等
         
+        // 记录界面变化时间，供 WaitForIdle 使用
+        UiIdleDetector.onEvent(event);
+        
+        // 录制宏时记录用户操作
+        MacroRecorder.onEvent(event);
+        
+        // 有脚本订阅事件时复制到事件缓冲区
+        if (eventRing.hasCursors()) {
+            publishEvent(event);
+        }
+        
         // 如果控件树查看器已启用，在窗口内容变化时自动刷新
         if (ViewTreeOverlay.isEnabled()) {
             int eventType = event.getEventType();
@@ -34,6 +49,20 @@ public class PLDScript extends AccessibilityService {
         }
     }
 
+    /**
+     * 把事件的常用字段复制到事件缓冲区
+     */
+    private static void publishEvent(AccessibilityEvent event) {
+        CharSequence packageName = event.getPackageName();
+        CharSequence className = event.getClassName();
+        CharSequence text = event.getText().isEmpty() ? event.getContentDescription() : event.getText().get(0);
+        eventRing.publish(event.getEventType(),
+                packageName != null ? packageName.toString() : null,
+                className != null ? className.toString() : null,
+                text != null ? text.toString() : null,
+                event.getWindowId(), event.getEventTime());
+    }
+
     @Override
     public void onInterrupt() {
         // 服务被中断时调用（如系统回收资源）
@@ -45,7 +74,9 @@ public class PLDScript extends AccessibilityService {
         int keyCode = event.getKeyCode();
         int action = event.getAction();
         
-        Log.d(TAG, String.format("按键事件: keyCode=%d, action=%d", keyCode, action));
+        if (PLog.isLoggable(PLog.DEBUG)) {
+            PLog.d(TAG, "按键事件: keyCode={}, action={}", keyCode, action);
+        }
         
         if (keyCode == android.view.KeyEvent.KEYCODE_BACK 
                 && action == android.view.KeyEvent.ACTION_UP) {
@@ -53,22 +84,30 @@ public class PLDScript extends AccessibilityService {
             boolean hasInfo = ViewTreeOverlay.hasInfoWindow();
             boolean hasTree = ViewTreeOverlay.hasTreeWindow();
             boolean hasMenu = ViewTreeOverlay.hasNodeMenu();
+            boolean hasMagnifier = ViewTreeOverlay.hasMagnifier();
+            boolean hasSelector = ViewTreeOverlay.hasSelectorConsole();
+            boolean hasHistory = ViewTreeOverlay.hasHistory();
             
-            Log.d(TAG, String.format("返回键按下 - 信息窗口: %s, 树形视图: %s, 菜单: %s, 控件查看已启用: %s", 
-                hasInfo, hasTree, hasMenu, ViewTreeOverlay.isEnabled()));
+            if (PLog.isLoggable(PLog.DEBUG)) {
+                PLog.d(TAG, "返回键按下 - 信息窗口: {}, 树形视图: {}, 菜单: {}, 控件查看已启用: {}",
+                    hasInfo, hasTree, hasMenu, ViewTreeOverlay.isEnabled());
+            }
             
-            // 如果信息窗口、树形视图窗口或菜单正在显示，先关闭它们
-            if (hasInfo || hasTree || hasMenu) {
-                Log.d(TAG, "检测到返回键，关闭所有查看窗口");
+            // 如果信息窗口、树形视图窗口、菜单、放大镜、选择器控制台或历史滑块正在显示，先关闭它们
+            if (hasInfo || hasTree || hasMenu || hasMagnifier || hasSelector || hasHistory) {
+                PLog.d(TAG, "检测到返回键，关闭所有查看窗口");
                 ViewTreeOverlay.hideInfoWindow();
                 ViewTreeOverlay.hideTreeWindow();
                 ViewTreeOverlay.hideNodeMenu();
+                ViewTreeOverlay.hideMagnifier();
+                ViewTreeOverlay.hideSelectorConsole();
+                ViewTreeOverlay.hideHistory();
                 return true; // 消费返回键事件，阻止默认行为
             }
             
             // 如果控件查看功能已启用（但没有信息窗口显示），则完全退出查看控件状态
             if (ViewTreeOverlay.isEnabled()) {
-                Log.d(TAG, "检测到返回键，完全退出查看控件状态");
+                PLog.d(TAG, "检测到返回键，完全退出查看控件状态");
                 ViewTreeOverlay.hide(this); // PLDScript 继承自 AccessibilityService，本身就是一个 Context
                 return true; // 消费返回键事件，阻止默认行为
             }
@@ -80,12 +119,20 @@ public class PLDScript extends AccessibilityService {
     protected void onServiceConnected() {
         super.onServiceConnected();
         instance = this;
-        Log.d(TAG, "Accessibility service connected");
+        if (logFileSink == null) {
+            logFileSink = new RollingFileSink(new java.io.File(getFilesDir(), "logs"), "pldscript", 1024 * 1024, 5);
+            PLog.addSink(logFileSink);
+        }
+        PLog.d(TAG, "Accessibility service connected");
+        // 按当前启用的功能订阅事件，空闲时只接收窗口切换事件
+        EventSubscriptions.onServiceConnected();
     }
 
     @Override
     public boolean onUnbind(android.content.Intent intent) {
-        Log.d(TAG, "Accessibility service unbound");
+        PLog.d(TAG, "Accessibility service unbound");
+        // 打印仍未回收的节点句柄
+        NodeTracker.reportLeaks(0);
         instance = null;
         return super.onUnbind(intent);
     }
@@ -110,11 +157,13 @@ public class PLDScript extends AccessibilityService {
         try {
             //检查无障碍服务
             if (instance == null) {
-                Log.e(TAG, "无障碍服务未初始化");
+                PLog.e(TAG, "无障碍服务未初始化");
                 return false;
             }
 
-            Log.d(TAG, "准备执行点击: (" + x + ", " + y + "), 持续时间: " + duration + "ms");
+            if (PLog.isLoggable(PLog.DEBUG)) {
+                PLog.d(TAG, "准备执行点击: ({}, {}), 持续时间: {}ms", x, y, duration);
+            }
 
             //构建点击路径
             Path path = new Path();
@@ -130,20 +179,23 @@ public class PLDScript extends AccessibilityService {
             boolean success = instance.dispatchGesture(gesture, new AccessibilityService.GestureResultCallback() {
                 @Override
                 public void onCompleted(GestureDescription gestureDescription) {
-                    Log.d(TAG, "✅ 点击操作完成: (" + x + ", " + y + ")");
+                    if (PLog.isLoggable(PLog.DEBUG)) {
+                        PLog.d(TAG, "✅ 点击操作完成: ({}, {})", x, y);
+                    }
                 }
 
                 @Override
                 public void onCancelled(GestureDescription gestureDescription) {
-                    Log.w(TAG, "❌ 点击操作被取消: (" + x + ", " + y + ")");
-                    Log.w(TAG, "可能原因: 1.权限不足 2.坐标无效 3.系统限制 4.服务状态异常");
+                    PLog.w(TAG, "❌ 点击操作被取消: ({}, {})，可能原因: 1.权限不足 2.坐标无效 3.系统限制 4.服务状态异常", x, y);
                 }
             }, null);
 
-            Log.d(TAG, "点击操作调度结果: " + success + " at (" + x + ", " + y + ")");
+            if (PLog.isLoggable(PLog.DEBUG)) {
+                PLog.d(TAG, "点击操作调度结果: {} at ({}, {})", success, x, y);
+            }
             return success;
         } catch (Exception e) {
-            Log.e(TAG, "坐标(" + x + ", " + y + ")点击操作失败", e);
+            PLog.e(TAG, "坐标({}, {})点击操作失败", x, y, e);
             return false;
         }
     }
@@ -158,11 +210,104 @@ public class PLDScript extends AccessibilityService {
         try {
             Thread.sleep(milliseconds);
         } catch (InterruptedException e) {
-            Log.e(TAG, "等待时间中断", e);
+            PLog.e(TAG, "等待时间中断", e);
+        }
+    }
+
+
+    /**
+     * 等待画面稳定，代替固定时长的等待
+     * @param region 检测区域（屏幕坐标），为 null 时检测整个屏幕
+     * @param quietMs 画面需要保持不变的时长（毫秒）
+     * @param timeout 最长等待时间（毫秒）
+     * @return 画面在超时前稳定返回 true，否则返回 false
+     */
+    public static boolean WaitForStable(android.graphics.Rect region, int quietMs, int timeout) {
+        //检查无障碍服务
+        if (instance == null) {
+            PLog.e(TAG, "无障碍服务未初始化");
+            return false;
+        }
+        //低版本系统不支持截图，退化为等待界面事件静止
+        if (!ScreenCapture.isSupported()) {
+            PLog.w(TAG, "当前系统不支持截图，改为等待界面空闲");
+            return UiIdleDetector.waitForIdle(null, quietMs, timeout);
+        }
+        return ScreenStability.waitForStable(region, quietMs, timeout);
+    }
+
+
+    /**
+     * 等待界面空闲（一段时间内没有界面变化事件）
+     * @param quietMs 界面需要保持无事件的时长（毫秒）
+     * @param timeout 最长等待时间（毫秒）
+     * @return 界面在超时前空闲返回 true，否则返回 false
+     */
+    public static boolean WaitForIdle(int quietMs, int timeout) {
+        return WaitForIdle(null, quietMs, timeout);
+    }
+
+
+    /**
+     * 等待指定应用的界面空闲
+     * @param packageName 应用包名，为 null 时关注所有应用
+     * @param quietMs 界面需要保持无事件的时长（毫秒）
+     * @param timeout 最长等待时间（毫秒）
+     * @return 界面在超时前空闲返回 true，否则返回 false
+     */
+    public static boolean WaitForIdle(String packageName, int quietMs, int timeout) {
+        //检查无障碍服务
+        if (instance == null) {
+            PLog.e(TAG, "无障碍服务未初始化");
+            return false;
+        }
+        return UiIdleDetector.waitForIdle(packageName, quietMs, timeout);
+    }
+
+
+    /**
+     * 计算当前画面的感知哈希，用于登记或识别页面
+     * @param region 计算区域（屏幕坐标），为 null 时使用整个屏幕
+     * @return 64 位感知哈希，截图失败或区域完全在屏幕外时返回 null
+     */
+    public static Long CapturePageHash(android.graphics.Rect region) {
+        // 截图时已裁剪到区域并缩小，计算时使用整张位图
+        android.graphics.Bitmap bitmap = ScreenCapture.capture(1000, region, PerceptualHash.CAPTURE_SIZE);
+        if (bitmap == null) {
+            PLog.w(TAG, "截图失败，无法计算页面哈希");
+            return null;
+        }
+        try {
+            return PerceptualHash.dHash(bitmap, null);
+        } finally {
+            bitmap.recycle();
         }
     }
 
 
+    /**
+     * 识别当前页面
+     * @param index 已登记页面的索引
+     * @param region 计算区域（屏幕坐标），为 null 时使用整个屏幕
+     * @param maxDistance 允许的最大汉明距离（建议 5~10）
+     * @return 最接近的页面名，无法识别时返回 null
+     */
+    public static String RecognizePage(PageIndex index, android.graphics.Rect region, int maxDistance) {
+        if (index == null) return null;
+        Long hash = CapturePageHash(region);
+        if (hash == null) return null;
+        PageIndex.Match match = index.findNearest(hash, maxDistance);
+        if (match == null) {
+            if (PLog.isLoggable(PLog.DEBUG)) {
+                PLog.d(TAG, "未识别的页面，哈希: {}", Long.toHexString(hash));
+            }
+            return null;
+        }
+        PLog.d(TAG, "识别页面: {}", match);
+        return match.page;
+    }
+
+
     /**
      * 滑动操作
      * @param startX 起始X坐标
@@ -176,7 +321,7 @@ public class PLDScript extends AccessibilityService {
         try {
             //检查无障碍服务
             if (instance == null) {
-                Log.e(TAG, "无障碍服务未初始化");
+                PLog.e(TAG, "无障碍服务未初始化");
                 return false;
             }
 
@@ -195,19 +340,23 @@ public class PLDScript extends AccessibilityService {
             boolean success = instance.dispatchGesture(gesture, new AccessibilityService.GestureResultCallback() {
                 @Override
                 public void onCompleted(GestureDescription gestureDescription) {
-                    Log.d(TAG, "滑动操作完成: from (" + startX + ", " + startY + ") to (" + endX + ", " + endY + ")");
+                    if (PLog.isLoggable(PLog.DEBUG)) {
+                        PLog.d(TAG, "滑动操作完成: from ({}, {}) to ({}, {})", startX, startY, endX, endY);
+                    }
                 }
 
                 @Override
                 public void onCancelled(GestureDescription gestureDescription) {
-                    Log.w(TAG, "滑动操作被取消: from (" + startX + ", " + startY + ") to (" + endX + ", " + endY + ")");
+                    PLog.w(TAG, "滑动操作被取消: from ({}, {}) to ({}, {})", startX, startY, endX, endY);
                 }
             }, null);
 
-            Log.d(TAG, "滑动操作: " + success + " from (" + startX + ", " + startY + ") to (" + endX + ", " + endY + ")");
+            if (PLog.isLoggable(PLog.DEBUG)) {
+                PLog.d(TAG, "滑动操作: {} from ({}, {}) to ({}, {})", success, startX, startY, endX, endY);
+            }
             return success;
         } catch (Exception e) {
-            Log.e(TAG, "执行滑动操作失败", e);
+            PLog.e(TAG, "执行滑动操作失败", e);
             return false;
         }
     }
@@ -222,32 +371,32 @@ public class PLDScript extends AccessibilityService {
         try {
             //检查无障碍服务
             if (instance == null) {
-                Log.e(TAG, "无障碍服务未初始化");
+                PLog.e(TAG, "无障碍服务未初始化");
                 return false;
             }
             //检查控件是否为空
             if (node == null) {
-                Log.e(TAG, "控件为空，无法点击");
+                PLog.e(TAG, "控件为空，无法点击");
                 return false;
             }
             
             //检查控件是否可点击
             if (!node.isClickable()) {
-                Log.w(TAG, "控件不可点击");
+                PLog.w(TAG, "控件不可点击");
                 return false;
             }
             
             //执行点击
             boolean success = node.performAction(AccessibilityNodeInfo.ACTION_CLICK);
             if (success) {
-                Log.d(TAG, "控件点击成功");
+                PLog.d(TAG, "控件点击成功");
                 return true;
             } else {
-                Log.w(TAG, "控件点击失败");
+                PLog.w(TAG, "控件点击失败");
                 return false;
             }
         } catch (Exception e) {
-            Log.e(TAG, "点击控件失败", e);
+            PLog.e(TAG, "点击控件失败", e);
             return false;
         }
     }
@@ -264,7 +413,7 @@ public class PLDScript extends AccessibilityService {
     public static boolean InputText(String text, AccessibilityNodeInfo node) {
         try {
             if (node == null || text == null) {
-                Log.w(TAG, "输入文本失败：节点或文本为空");
+                PLog.w(TAG, "输入文本失败：节点或文本为空");
                 return false;
             }
             
@@ -275,7 +424,7 @@ public class PLDScript extends AccessibilityService {
             // 执行输入文本操作
             return node.performAction(AccessibilityNodeInfo.ACTION_SET_TEXT, arguments);
         } catch (Exception e) {
-            Log.e(TAG, "输入文本失败", e);
+            PLog.e(TAG, "输入文本失败", e);
             return false;
         }
     }
@@ -290,7 +439,7 @@ public class PLDScript extends AccessibilityService {
         try {
             //检查无障碍服务
             if (instance == null) {
-                Log.e(TAG, "无障碍服务未初始化");
+                PLog.e(TAG, "无障碍服务未初始化");
                 return false;
             }
             
@@ -298,14 +447,14 @@ public class PLDScript extends AccessibilityService {
             boolean success = instance.performGlobalAction(AccessibilityService.GLOBAL_ACTION_BACK);
             
             if (success) {
-                Log.d(TAG, "返回操作成功");
+                PLog.d(TAG, "返回操作成功");
                 return true;
             } else {
-                Log.w(TAG, "返回操作失败，尝试使用按键事件");
+                PLog.w(TAG, "返回操作失败，尝试使用按键事件");
                 return false;
             }
         } catch (Exception e) {
-            Log.e(TAG, "执行返回操作失败", e);
+            PLog.e(TAG, "执行返回操作失败", e);
             return false;
         }
     }
@@ -314,50 +463,317 @@ public class PLDScript extends AccessibilityService {
 
     /**
      * 获取当前页面所有节点
-     * @return 节点列表（原生无障碍节点信息）
+     * @return 节点列表（原生无障碍节点信息），用完后需调用 recycleNodes 回收
      */
     public static List<AccessibilityNodeInfo> GetAllNodes() {
+        return GetAllNodes(new TraversalOptions());
+    }
+
+
+    /**
+     * 按遍历选项获取当前页面的节点（可限制深度、数量，跳过不可见或屏幕外的子树）
+     * @param options 遍历选项
+     * @return 节点列表（原生无障碍节点信息），用完后需调用 recycleNodes 回收
+     */
+    public static List<AccessibilityNodeInfo> GetAllNodes(TraversalOptions options) {
         List<AccessibilityNodeInfo> nodes = new ArrayList<>();
+        //检查无障碍服务
+        if (instance == null) {
+            PLog.e(TAG, "无障碍服务未初始化");
+            return nodes;
+        }
+
+        TreeCapture.Session session = TreeCapture.begin("GetAllNodes", true);
+        // 使用栈进行非递归遍历，depths 记录对应节点的深度
+        // getChild 返回的已经是新的句柄，直接放入结果列表，由调用方通过 recycleNodes 回收
+        java.util.Stack<AccessibilityNodeInfo> stack = new java.util.Stack<>();
+        java.util.Stack<Integer> depths = new java.util.Stack<>();
+        // 已出栈、还没有放入结果或回收的节点
+        AccessibilityNodeInfo pending = null;
         try {
-            //检查无障碍服务
-            if (instance == null) {
-                Log.e(TAG, "无障碍服务未初始化");
-                return nodes;
-            }
-            
-            AccessibilityNodeInfo root = instance.getRootInActiveWindow();
+            AccessibilityNodeInfo root = session.getRoot(instance);
             if (root == null) {
-                Log.e(TAG, "无法获取根节点");
+                PLog.e(TAG, "无法获取根节点");
                 return nodes;
             }
-            
-            // 使用栈进行非递归遍历
-            java.util.Stack<AccessibilityNodeInfo> stack = new java.util.Stack<>();
-            stack.push(root);
-            
+            stack.push(NodeTracker.track(root, "GetAllNodes"));
+            depths.push(0);
+            android.graphics.Rect bounds = new android.graphics.Rect();
+
             while (!stack.isEmpty()) {
-                AccessibilityNodeInfo node = stack.pop();
-                if (node != null) {
-                    // 添加当前节点
-                    nodes.add(AccessibilityNodeInfo.obtain(node));
-                    
-                    // 将子节点压入栈
-                    int childCount = node.getChildCount();
-                    for (int i = childCount - 1; i >= 0; i--) {
-                        AccessibilityNodeInfo child = node.getChild(i);
-                        if (child != null) {
-                            stack.push(child);
-                        }
+                AccessibilityNodeInfo node = pending = stack.pop();
+                int depth = depths.pop();
+                node.getBoundsInScreen(bounds);
+                if (!options.accept(node, bounds) || options.isFull(nodes.size())) {
+                    // 被过滤的子树不再访问
+                    pending = null;
+                    NodeTracker.recycle(node);
+                    continue;
+                }
+                // 添加当前节点
+                nodes.add(node);
+                pending = null;
+                if (!options.canDescend(depth)) {
+                    continue;
+                }
+
+                // 将子节点压入栈
+                int childCount = node.getChildCount();
+                for (int i = childCount - 1; i >= 0; i--) {
+                    AccessibilityNodeInfo child = session.getChild(node, i);
+                    if (child != null) {
+                        stack.push(NodeTracker.track(child, "GetAllNodes"));
+                        depths.push(depth + 1);
                     }
                 }
             }
-            root.recycle();
         } catch (Exception e) {
-            Log.e(TAG, "获取控件列表失败", e);
+            PLog.e(TAG, "获取控件列表失败", e);
+        } finally {
+            // 出错中断时还没有处理的节点不会交给调用方，在这里回收
+            if (pending != null) {
+                NodeTracker.recycle(pending);
+            }
+            while (!stack.isEmpty()) {
+                NodeTracker.recycle(stack.pop());
+            }
+            session.finish();
         }
         return nodes;
     }
-  
+
+
+    /**
+     * 采集当前页面的控件树快照（纯数据，不持有节点句柄，无需回收）
+     * @return 快照，失败时返回 null
+     */
+    public static UiSnapshot CaptureSnapshot() {
+        return CaptureSnapshot(new TraversalOptions());
+    }
+
+
+    /**
+     * 按遍历选项采集当前页面的控件树快照
+     * @param options 遍历选项
+     * @return 快照，失败时返回 null
+     */
+    public static UiSnapshot CaptureSnapshot(TraversalOptions options) {
+        //检查无障碍服务
+        if (instance == null) {
+            PLog.e(TAG, "无障碍服务未初始化");
+            return null;
+        }
+        try (NodeScope scope = new NodeScope("CaptureSnapshot")) {
+            TreeCapture.Session session = TreeCapture.begin("CaptureSnapshot", true);
+            AccessibilityNodeInfo root = scope.add(session.getRoot(instance));
+            if (root == null) {
+                PLog.e(TAG, "无法获取根节点");
+                return null;
+            }
+            UiSnapshot snapshot = SnapshotCapture.capture(root, session, options);
+            session.finish();
+            return snapshot;
+        }
+    }
+
+
+    /**
+     * 将当前页面的控件树保存为二进制快照文件，可用 SnapshotReader 在电脑上读取
+     * @param file 目标文件
+     * @return 是否成功
+     */
+    public static boolean SaveSnapshot(java.io.File file) {
+        //检查无障碍服务
+        if (instance == null) {
+            PLog.e(TAG, "无障碍服务未初始化");
+            return false;
+        }
+        try (NodeScope scope = new NodeScope("SaveSnapshot")) {
+            TreeCapture.Session session = TreeCapture.begin("SaveSnapshot", true);
+            AccessibilityNodeInfo root = scope.add(session.getRoot(instance));
+            if (root == null) {
+                PLog.e(TAG, "无法获取根节点");
+                return false;
+            }
+            SnapshotCapture.save(root, file, session);
+            session.finish();
+            return true;
+        } catch (Exception e) {
+            PLog.e(TAG, "保存快照失败", e);
+            return false;
+        }
+    }
+
+
+    /**
+     * 将当前页面的控件树导出为 uiautomator dump 兼容的 XML 或 JSON 文件，边遍历边写出
+     * @param file 目标文件
+     * @param format TreeDumpWriter.FORMAT_XML 或 TreeDumpWriter.FORMAT_JSON
+     * @return 导出的节点数，失败时返回 -1
+     */
+    public static int ExportTree(java.io.File file, int format) {
+        java.io.File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            PLog.e(TAG, "无法创建目录: {}", dir);
+            return -1;
+        }
+        try (java.io.OutputStream out = new java.io.FileOutputStream(file)) {
+            return ExportTree(out, format);
+        } catch (java.io.IOException e) {
+            PLog.e(TAG, "导出控件树失败", e);
+            return -1;
+        }
+    }
+
+
+    /**
+     * 将当前页面的控件树导出到输出流（例如文件或 Socket 的输出流），输出流由调用方关闭
+     * @param format TreeDumpWriter.FORMAT_XML 或 TreeDumpWriter.FORMAT_JSON
+     * @return 导出的节点数，失败时返回 -1
+     */
+    public static int ExportTree(java.io.OutputStream out, int format) {
+        //检查无障碍服务
+        if (instance == null) {
+            PLog.e(TAG, "无障碍服务未初始化");
+            return -1;
+        }
+        try (NodeScope scope = new NodeScope("ExportTree")) {
+            TreeCapture.Session session = TreeCapture.begin("ExportTree", true);
+            AccessibilityNodeInfo root = scope.add(session.getRoot(instance));
+            if (root == null) {
+                PLog.e(TAG, "无法获取根节点");
+                return -1;
+            }
+            android.view.WindowManager wm = (android.view.WindowManager) instance.getSystemService(WINDOW_SERVICE);
+            java.io.Writer writer = new java.io.BufferedWriter(
+                    new java.io.OutputStreamWriter(out, java.nio.charset.StandardCharsets.UTF_8), 64 * 1024);
+            TreeDumpWriter dump = new TreeDumpWriter(writer, format)
+                    .setRotation(wm.getDefaultDisplay().getRotation());
+            SnapshotCapture.capture(root, dump, session, new TraversalOptions());
+            session.finish();
+            dump.finish();
+            PLog.d(TAG, "导出控件树: {} 个节点", dump.size());
+            return dump.size();
+        } catch (Exception e) {
+            PLog.e(TAG, "导出控件树失败", e);
+            return -1;
+        }
+    }
+
+
+    /**
+     * 订阅无障碍事件，返回的游标在脚本线程中读取，不会阻塞服务线程
+     * <pre>
+     * try (EventRing.Cursor cursor = PLDScript.SubscribeEvents(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED, null)) {
+     *     EventRing.Event event = new EventRing.Event();
+     *     while (cursor.take(event, 5000)) { ... }
+     * }
+     * </pre>
+     * @param eventTypes 关注的事件类型（AccessibilityEvent.TYPE_* 的组合），0 表示全部
+     * @param packageName 关注的应用包名，为 null 表示全部
+     * @return 事件游标，用完后需调用 close 取消订阅
+     */
+    public static EventRing.Cursor SubscribeEvents(int eventTypes, String packageName) {
+        String consumer = "SubscribeEvents#" + eventSubscriberIds.incrementAndGet();
+        EventSubscriptions.subscribe(consumer,
+                eventTypes != 0 ? eventTypes : AccessibilityEvent.TYPES_ALL_MASK, packageName);
+        return eventRing.openCursor(eventTypes, packageName, () -> EventSubscriptions.unsubscribe(consumer));
+    }
+
+
+    /**
+     * 启动规则引擎：在后台线程中消费事件，命中规则时在真机上执行动作
+     * @param engine 已添加好规则的引擎
+     * @return 是否成功启动
+     */
+    public static boolean StartRules(RuleEngine engine) {
+        if (instance == null) {
+            PLog.e(TAG, "无障碍服务未初始化");
+            return false;
+        }
+        if (engine.isRunning()) {
+            return true;
+        }
+        int eventTypes = engine.getEventTypes();
+        if (eventTypes == 0) {
+            PLog.w(TAG, "规则引擎没有规则");
+            return false;
+        }
+        String consumer = "RuleEngine#" + eventSubscriberIds.incrementAndGet();
+        EventSubscriptions.subscribe(consumer, eventTypes, engine.getPackages());
+        engine.start(DeviceBackend.INSTANCE,
+                eventRing.openCursor(eventTypes, null, () -> EventSubscriptions.unsubscribe(consumer)));
+        PLog.d(TAG, "规则引擎已启动，规则数: {}", engine.getRules().size());
+        return true;
+    }
+
+
+    /**
+     * 停止规则引擎
+     */
+    public static void StopRules(RuleEngine engine) {
+        engine.stop();
+    }
+
+
+    /**
+     * 开始录制宏：把用户的点击、长按、滚动和输入操作写入文件（覆盖已有文件）
+     * @param file 宏文件
+     * @return 是否成功
+     */
+    public static boolean StartRecording(java.io.File file) {
+        //检查无障碍服务
+        if (instance == null) {
+            PLog.e(TAG, "无障碍服务未初始化");
+            return false;
+        }
+        try {
+            MacroRecorder.start(file, instance.getPackageName());
+            return true;
+        } catch (Exception e) {
+            PLog.e(TAG, "开始录制失败", e);
+            return false;
+        }
+    }
+
+
+    /**
+     * 停止录制宏
+     */
+    public static void StopRecording() {
+        MacroRecorder.stop();
+    }
+
+
+    /**
+     * 是否正在录制宏
+     */
+    public static boolean IsRecording() {
+        return MacroRecorder.isRecording();
+    }
+
+
+    /**
+     * 回放录制的宏（阻塞直到回放结束）
+     * @param file 宏文件
+     * @param speed 速度倍数，1 为原速
+     * @param compressed 是否压缩时序（界面空闲后立即执行下一步，不再按录制时的间隔等待）
+     * @return 所有步骤都执行成功返回 true
+     */
+    public static boolean ReplayMacro(java.io.File file, float speed, boolean compressed) {
+        try {
+            List<MacroEvent> events = MacroLog.read(file);
+            PLog.d(TAG, "回放宏: {}，共 {} 步", file, events.size());
+            return MacroReplayer.replay(events, DeviceBackend.INSTANCE, speed, compressed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            PLog.e(TAG, "回放宏失败", e);
+            return false;
+        }
+    }
+
 
     /**
      * 根据viewId查找节点列表
@@ -405,6 +821,8 @@ public class PLDScript extends AccessibilityService {
             CharSequence nodeText = element.getText();
             if (nodeText != null && text.equals(nodeText.toString())) {
                 result.add(element);
+                // 避免 text 和 contentDescription 都匹配时重复加入（重复回收会出错）
+                continue;
             }
             // 也检查contentDescription
             CharSequence desc = element.getContentDescription();
@@ -439,6 +857,110 @@ public class PLDScript extends AccessibilityService {
     }
 
 
+    /**
+     * 按选择器查找节点（语法见 Selector，可以从控件查看器的「查看控件信息」中复制生成的定位器）
+     * 只有一步并带有完整 viewId 时直接用系统的按 viewId 查找；否则采集快照，在快照上查找后沿子节点序号取回实时节点
+     * @param selector 选择器，如 [id="com.app:id/title"] 或 [id="com.app:id/list"] Button[text="确定"]
+     * @return 第一个匹配节点（用完后需回收），没有找到或选择器有误时返回 null
+     */
+    public static AccessibilityNodeInfo FindNodeBySelector(String selector) {
+        //检查无障碍服务
+        if (instance == null) {
+            PLog.e(TAG, "无障碍服务未初始化");
+            return null;
+        }
+        Selector parsed;
+        try {
+            parsed = Selector.parse(selector);
+        } catch (IllegalArgumentException e) {
+            PLog.e(TAG, "选择器有误: {} ({})", selector, e.getMessage());
+            return null;
+        }
+        try (NodeScope scope = new NodeScope("FindNodeBySelector")) {
+            TreeCapture.Session session = TreeCapture.begin("FindNodeBySelector", true);
+            AccessibilityNodeInfo root = scope.add(session.getRoot(instance));
+            if (root == null) {
+                PLog.e(TAG, "无法获取根节点");
+                return null;
+            }
+            AccessibilityNodeInfo found = null;
+            String viewId = parsed.getDirectViewId();
+            if (viewId != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                // 系统按 viewId 查找只需一次跨进程调用，其他条件在返回的节点上确认
+                for (AccessibilityNodeInfo candidate : root.findAccessibilityNodeInfosByViewId(viewId)) {
+                    scope.add(candidate);
+                    if (found == null && parsed.matches(SnapshotCapture.captureNode(candidate), 0)) {
+                        found = candidate;
+                    }
+                }
+            } else {
+                UiSnapshot snapshot = SnapshotCapture.capture(root, session);
+                int node = parsed.findFirst(snapshot);
+                if (node >= 0) {
+                    found = resolveSnapshotNode(session, scope, root, snapshot, node);
+                }
+            }
+            session.finish();
+            return found != null ? scope.detach(found) : null;
+        } catch (Exception e) {
+            PLog.e(TAG, "按选择器查找节点失败", e);
+            return null;
+        }
+    }
+
+
+    /**
+     * 沿快照中记录的子节点序号从根节点向下取回实时节点，途中的节点留在作用域中
+     * @return 实时节点，控件树已经变化（类名或 viewId 对不上）时返回 null
+     */
+    private static AccessibilityNodeInfo resolveSnapshotNode(TreeCapture.Session session, NodeScope scope,
+                                                             AccessibilityNodeInfo root, UiSnapshot snapshot, int node) {
+        int depth = 0;
+        for (int n = node; snapshot.getParent(n) >= 0; n = snapshot.getParent(n)) {
+            depth++;
+        }
+        int[] path = new int[depth];
+        for (int n = node, i = depth - 1; i >= 0; n = snapshot.getParent(n), i--) {
+            path[i] = snapshot.getIndexInParent(n);
+        }
+        AccessibilityNodeInfo current = root;
+        for (int index : path) {
+            if (index >= current.getChildCount()) return null;
+            current = scope.add(session.getChild(current, index));
+            if (current == null) return null;
+        }
+        CharSequence className = current.getClassName();
+        if (!java.util.Objects.equals(className != null ? className.toString() : null, snapshot.getClassName(node))) {
+            return null;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                && !java.util.Objects.equals(current.getViewIdResourceName(), snapshot.getViewIdResourceName(node))) {
+            return null;
+        }
+        return current;
+    }
+
+
+    /**
+     * 查找节点自身或最近的可点击祖先节点（例如找到文字标签后点击它所在的按钮）
+     * @param node 起始节点
+     * @return 可点击节点的副本（用完后需回收），没有找到返回 null
+     */
+    public static AccessibilityNodeInfo FindClickableParent(AccessibilityNodeInfo node) {
+        if (node == null) return null;
+        TreeCapture.Session session = TreeCapture.begin("FindClickableParent", false);
+        try (NodeScope scope = new NodeScope("FindClickableParent")) {
+            LazyNode clickable = LazyNode.wrap(scope, session, scope.obtain(node)).findClickableParent();
+            return clickable != null ? NodeTracker.obtain(clickable.getInfo(), "FindClickableParent") : null;
+        } catch (Exception e) {
+            PLog.e(TAG, "查找可点击父节点失败", e);
+            return null;
+        } finally {
+            session.finish();
+        }
+    }
+
+
     /**
      * 批量回收AccessibilityNodeInfo列表中的所有节点
      * @param nodes 要回收的节点列表
@@ -448,11 +970,9 @@ public class PLDScript extends AccessibilityService {
         
         for (AccessibilityNodeInfo element : nodes) {
             try {
-                if (element != null) {
-                    element.recycle();
-                }
+                NodeTracker.recycle(element);
             } catch (Exception e) {
-                Log.w(TAG, "回收节点时发生异常", e);
+                PLog.w(TAG, "回收节点时发生异常", e);
             }
         }
         nodes.clear();
@@ -0,0 +1,372 @@
+package com.app.pldscript;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步日志 - 调用线程只把参数放进预分配的环形缓冲区，由后台线程格式化后写入各个输出（logcat、日志文件）
+ * <pre>
+ * PLog.d(TAG, "点击 ({}, {})", x, y);
+ * </pre>
+ * 消息中的 {} 依次替换为参数，低于当前级别的日志在调用处直接返回，不做任何格式化。
+ * 最后一个参数是 Throwable 且没有对应的 {} 时作为异常输出。
+ * 参数在后台线程中才转成字符串，请不要传入之后会被修改的对象（例如复用的 Rect）。
+ * 正式版默认只输出 INFO 及以上级别；用 {@code if (BuildConfig.DEBUG)} 包住的日志在正式版中会被编译器整段删除。
+ * 缓冲区满时新日志被丢弃并计数，后台线程会补一条说明丢弃了多少条。
+ */
+public final class PLog {
+    // 与 android.util.Log 的级别数值一致
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    private static final String TAG = "PLog";
+    private static final int CAPACITY = 4096;
+    // 后台线程没有日志时的最长休眠时间
+    private static final long IDLE_PARK_NS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    /**
+     * 日志输出
+     */
+    public interface Sink {
+        /**
+         * 写入一条日志（只在后台线程中调用）
+         * @param time System.currentTimeMillis() 时间戳
+         */
+        void write(int level, long time, String thread, String tag, CharSequence message, Throwable error) throws Exception;
+
+        /**
+         * 一批日志写完后调用
+         */
+        void flush() throws Exception;
+    }
+
+    private static class Record {
+        // 已发布的序号，-1 表示空
+        volatile long published = -1;
+        int level;
+        long time;
+        String thread;
+        String tag;
+        String format;
+        int argCount;
+        Object arg0;
+        Object arg1;
+        Object arg2;
+        Object[] args;
+    }
+
+    private static final Record[] ring = new Record[CAPACITY];
+    private static final int mask = CAPACITY - 1;
+    // 下一个可以申请的序号
+    private static final AtomicLong claimed = new AtomicLong();
+    // 后台线程下一个要读取的序号
+    private static volatile long consumed;
+    // 已写入各个输出并 flush 的序号（不含）
+    private static volatile long written;
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final List<Sink> sinks = new CopyOnWriteArrayList<>();
+    private static volatile int minLevel = BuildConfig.DEBUG ? DEBUG : INFO;
+    private static volatile boolean writerWaiting;
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Record();
+        }
+        sinks.add(new LogcatSink());
+        writer = new Thread(PLog::runWriter, "PLD-Log");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    private PLog() {
+    }
+
+    // ==================== 配置 ====================
+
+    /**
+     * 设置最低输出级别（默认调试版 DEBUG，正式版 INFO）
+     */
+    public static void setLevel(int level) {
+        minLevel = level;
+    }
+
+    public static boolean isLoggable(int level) {
+        return level >= minLevel;
+    }
+
+    public static void addSink(Sink sink) {
+        sinks.add(sink);
+    }
+
+    public static void removeSink(Sink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * 因缓冲区满被丢弃的日志总数
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * 等待已提交的日志全部写出（各个输出都已 flush）
+     * @param timeoutMs 最长等待时间（毫秒）
+     * @return 超时前写完返回 true
+     */
+    public static boolean flush(long timeoutMs) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (written < target) {
+            if (System.nanoTime() >= deadline) return false;
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    // ==================== 日志接口 ====================
+
+    public static void v(String tag, String message) {
+        log(VERBOSE, tag, message, 0, null, null, null, null);
+    }
+
+    public static void v(String tag, String format, Object arg) {
+        log(VERBOSE, tag, format, 1, arg, null, null, null);
+    }
+
+    public static void v(String tag, String format, Object arg0, Object arg1) {
+        log(VERBOSE, tag, format, 2, arg0, arg1, null, null);
+    }
+
+    public static void v(String tag, String format, Object... args) {
+        log(VERBOSE, tag, format, -1, null, null, null, args);
+    }
+
+    public static void d(String tag, String message) {
+        log(DEBUG, tag, message, 0, null, null, null, null);
+    }
+
+    public static void d(String tag, String format, Object arg) {
+        log(DEBUG, tag, format, 1, arg, null, null, null);
+    }
+
+    public static void d(String tag, String format, Object arg0, Object arg1) {
+        log(DEBUG, tag, format, 2, arg0, arg1, null, null);
+    }
+
+    public static void d(String tag, String format, Object arg0, Object arg1, Object arg2) {
+        log(DEBUG, tag, format, 3, arg0, arg1, arg2, null);
+    }
+
+    public static void d(String tag, String format, Object... args) {
+        log(DEBUG, tag, format, -1, null, null, null, args);
+    }
+
+    public static void i(String tag, String message) {
+        log(INFO, tag, message, 0, null, null, null, null);
+    }
+
+    public static void i(String tag, String format, Object arg) {
+        log(INFO, tag, format, 1, arg, null, null, null);
+    }
+
+    public static void i(String tag, String format, Object arg0, Object arg1) {
+        log(INFO, tag, format, 2, arg0, arg1, null, null);
+    }
+
+    public static void i(String tag, String format, Object... args) {
+        log(INFO, tag, format, -1, null, null, null, args);
+    }
+
+    public static void w(String tag, String message) {
+        log(WARN, tag, message, 0, null, null, null, null);
+    }
+
+    public static void w(String tag, String format, Object arg) {
+        log(WARN, tag, format, 1, arg, null, null, null);
+    }
+
+    public static void w(String tag, String format, Object arg0, Object arg1) {
+        log(WARN, tag, format, 2, arg0, arg1, null, null);
+    }
+
+    public static void w(String tag, String format, Object... args) {
+        log(WARN, tag, format, -1, null, null, null, args);
+    }
+
+    public static void e(String tag, String message) {
+        log(ERROR, tag, message, 0, null, null, null, null);
+    }
+
+    public static void e(String tag, String format, Object arg) {
+        log(ERROR, tag, format, 1, arg, null, null, null);
+    }
+
+    public static void e(String tag, String format, Object arg0, Object arg1) {
+        log(ERROR, tag, format, 2, arg0, arg1, null, null);
+    }
+
+    public static void e(String tag, String format, Object... args) {
+        log(ERROR, tag, format, -1, null, null, null, args);
+    }
+
+    /**
+     * 申请槽位并填入参数
+     * @param argCount 参数个数，-1 表示参数在 args 中
+     */
+    private static void log(int level, String tag, String format, int argCount,
+                            Object arg0, Object arg1, Object arg2, Object[] args) {
+        if (level < minLevel) return;
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+
+        Record record = ring[(int) (seq & mask)];
+        record.level = level;
+        record.time = System.currentTimeMillis();
+        record.thread = Thread.currentThread().getName();
+        record.tag = tag;
+        record.format = format;
+        record.argCount = argCount;
+        record.arg0 = arg0;
+        record.arg1 = arg1;
+        record.arg2 = arg2;
+        record.args = args;
+        record.published = seq;
+        if (writerWaiting) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // ==================== 后台线程 ====================
+
+    private static void runWriter() {
+        StringBuilder message = new StringBuilder(256);
+        long reportedDropped = 0;
+        while (true) {
+            int count = 0;
+            long next = consumed;
+            Record record;
+            while ((record = ring[(int) (next & mask)]).published == next) {
+                Throwable error = format(record, message);
+                int level = record.level;
+                long time = record.time;
+                String thread = record.thread;
+                String tag = record.tag;
+                // 释放参数引用后再让出槽位
+                record.thread = null;
+                record.tag = null;
+                record.format = null;
+                record.arg0 = null;
+                record.arg1 = null;
+                record.arg2 = null;
+                record.args = null;
+                consumed = ++next;
+                dispatch(level, time, thread, tag, message, error);
+                count++;
+            }
+
+            long droppedNow = dropped.get();
+            if (droppedNow != reportedDropped) {
+                message.setLength(0);
+                message.append("日志缓冲区已满，丢弃了 ").append(droppedNow - reportedDropped).append(" 条日志");
+                dispatch(WARN, System.currentTimeMillis(), "PLD-Log", TAG, message, null);
+                reportedDropped = droppedNow;
+                count++;
+            }
+
+            if (count > 0) {
+                for (Sink sink : sinks) {
+                    try {
+                        sink.flush();
+                    } catch (Exception e) {
+                        System.err.println("PLog sink flush failed: " + e);
+                    }
+                }
+                written = next;
+                continue;
+            }
+
+            writerWaiting = true;
+            if (ring[(int) (consumed & mask)].published != consumed) {
+                LockSupport.parkNanos(IDLE_PARK_NS);
+            }
+            writerWaiting = false;
+        }
+    }
+
+    private static void dispatch(int level, long time, String thread, String tag,
+                                 CharSequence message, Throwable error) {
+        for (Sink sink : sinks) {
+            try {
+                sink.write(level, time, thread, tag, message, error);
+            } catch (Exception e) {
+                System.err.println("PLog sink write failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * 把记录格式化到 out 中
+     * @return 需要单独输出的异常
+     */
+    private static Throwable format(Record record, StringBuilder out) {
+        out.setLength(0);
+        String format = record.format;
+        int count = record.argCount < 0 ? (record.args != null ? record.args.length : 0) : record.argCount;
+        if (format == null) {
+            out.append("null");
+            format = "";
+        }
+        int used = 0;
+        int start = 0;
+        int index;
+        while (used < count && (index = format.indexOf("{}", start)) >= 0) {
+            out.append(format, start, index);
+            appendArg(out, arg(record, used++));
+            start = index + 2;
+        }
+        out.append(format, start, format.length());
+        if (used < count) {
+            Object last = arg(record, count - 1);
+            if (used == count - 1 && last instanceof Throwable) {
+                return (Throwable) last;
+            }
+            // 多出的参数追加在末尾，避免丢失信息
+            out.append(" [");
+            for (int i = used; i < count; i++) {
+                if (i > used) out.append(", ");
+                appendArg(out, arg(record, i));
+            }
+            out.append(']');
+        }
+        return null;
+    }
+
+    private static Object arg(Record record, int i) {
+        if (record.argCount < 0) return record.args[i];
+        return i == 0 ? record.arg0 : i == 1 ? record.arg1 : record.arg2;
+    }
+
+    private static void appendArg(StringBuilder out, Object arg) {
+        try {
+            out.append(arg);
+        } catch (RuntimeException e) {
+            out.append("[toString 失败: ").append(e).append(']');
+        }
+    }
+}
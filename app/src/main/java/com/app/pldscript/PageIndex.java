@@ -0,0 +1,159 @@
+package com.app.pldscript;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 页面识别索引 - 以感知哈希为键的 BK 树
+ * 按汉明距离查找已知页面，利用三角不等式剪枝，查询只访问树的一小部分
+ */
+public class PageIndex {
+    // 64 位哈希的最大汉明距离
+    private static final int MAX_DISTANCE = 64;
+
+    /**
+     * 查询结果
+     */
+    public static class Match {
+        public final String page;
+        public final long hash;
+        public final int distance;
+
+        Match(String page, long hash, int distance) {
+            this.page = page;
+            this.hash = hash;
+            this.distance = distance;
+        }
+
+        @Override
+        public String toString() {
+            return page + " (distance=" + distance + ")";
+        }
+    }
+
+    private static class Node {
+        final long hash;
+        // 同一哈希可能对应多个页面名（例如同一页面的不同别名）
+        final List<String> pages = new ArrayList<>(1);
+        // children[d] 为与当前节点距离为 d 的子树
+        Node[] children;
+
+        Node(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    /**
+     * 添加一个已知页面
+     * @param page 页面名
+     * @param hash 页面截图的感知哈希
+     */
+    public synchronized void add(String page, long hash) {
+        if (page == null) return;
+        size++;
+        if (root == null) {
+            root = new Node(hash);
+            root.pages.add(page);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int d = Long.bitCount(hash ^ node.hash);
+            if (d == 0) {
+                node.pages.add(page);
+                return;
+            }
+            if (node.children == null) {
+                node.children = new Node[MAX_DISTANCE + 1];
+            }
+            Node child = node.children[d];
+            if (child == null) {
+                child = new Node(hash);
+                child.pages.add(page);
+                node.children[d] = child;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * 查找最接近的页面
+     * @param hash 当前画面的感知哈希
+     * @param maxDistance 允许的最大汉明距离
+     * @return 距离最小的页面，没有满足条件的页面时返回 null
+     */
+    public synchronized Match findNearest(long hash, int maxDistance) {
+        if (root == null) return null;
+        Node best = null;
+        int bestDistance = maxDistance + 1;
+
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            int d = Long.bitCount(hash ^ node.hash);
+            if (d < bestDistance) {
+                best = node;
+                bestDistance = d;
+                if (d == 0) break;
+            }
+            // 以当前最优距离收紧搜索半径
+            pushChildren(queue, node, d, bestDistance - 1);
+        }
+        return best != null ? new Match(best.pages.get(0), best.hash, bestDistance) : null;
+    }
+
+    /**
+     * 查找距离内的所有页面
+     * @return 按距离从小到大排序的结果
+     */
+    public synchronized List<Match> findAll(long hash, int maxDistance) {
+        List<Match> result = new ArrayList<>();
+        if (root == null) return result;
+
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            int d = Long.bitCount(hash ^ node.hash);
+            if (d <= maxDistance) {
+                for (String page : node.pages) {
+                    result.add(new Match(page, node.hash, d));
+                }
+            }
+            pushChildren(queue, node, d, maxDistance);
+        }
+        Collections.sort(result, (a, b) -> Integer.compare(a.distance, b.distance));
+        return result;
+    }
+
+    /**
+     * 将可能包含结果的子树入队：只有距离在 d - radius ~ d + radius 范围内的子树才可能包含结果
+     */
+    private static void pushChildren(ArrayDeque<Node> queue, Node node, int d, int radius) {
+        if (node.children == null || radius < 0) return;
+        int from = Math.max(1, d - radius);
+        int to = Math.min(MAX_DISTANCE, d + radius);
+        for (int i = from; i <= to; i++) {
+            Node child = node.children[i];
+            if (child != null) {
+                queue.add(child);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        root = null;
+        size = 0;
+    }
+}
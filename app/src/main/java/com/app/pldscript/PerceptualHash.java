@@ -0,0 +1,56 @@
+package com.app.pldscript;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+/**
+ * 感知哈希（dHash）- 把画面压缩成 64 位指纹，相似画面的指纹汉明距离很小
+ * 状态栏时间、角标等小范围变化只会翻转少量位，适合做页面识别
+ */
+public class PerceptualHash {
+    // dHash 使用 9x8 的亮度网格，每行相邻两格比较得到 8 位
+    private static final int COLS = 9;
+    private static final int ROWS = 8;
+    // 每个网格内的采样数
+    private static final int SAMPLES = 6;
+    // 截图缩小后的最大边长，远大于采样点数，缩小不影响指纹
+    static final int CAPTURE_SIZE = 256;
+
+    /**
+     * 计算位图指定区域的 dHash
+     * @param region 区域（位图坐标），为 null 时使用整张位图
+     * @return 64 位感知哈希，区域完全在位图外时返回 null
+     */
+    public static Long dHash(Bitmap bitmap, Rect region) {
+        int[] grid = ScreenCapture.luminanceGrid(bitmap, region, COLS, ROWS, SAMPLES);
+        return grid != null ? dHash(grid) : null;
+    }
+
+    /**
+     * 根据 9x8 亮度网格计算 dHash
+     * @param grid 长度为 72 的亮度数组，按行优先排列
+     */
+    public static long dHash(int[] grid) {
+        if (grid.length != COLS * ROWS) {
+            throw new IllegalArgumentException("grid length must be " + (COLS * ROWS));
+        }
+        long hash = 0;
+        for (int y = 0; y < ROWS; y++) {
+            int offset = y * COLS;
+            for (int x = 0; x < COLS - 1; x++) {
+                hash <<= 1;
+                if (grid[offset + x] > grid[offset + x + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 两个哈希之间的汉明距离（0~64）
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,361 @@
+package com.app.pldscript;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 回放后端 - 在普通 JVM 上用录制的快照模拟手机界面
+ * 每个快照是一个状态，手势按预先登记的跳转规则切换到下一个状态；
+ * 时间使用虚拟时钟，sleep / 等待只推进时钟，不真正休眠
+ */
+public class ReplayBackend implements ScriptBackend {
+    // 滑动方向
+    public static final int SWIPE_UP = 0;
+    public static final int SWIPE_DOWN = 1;
+    public static final int SWIPE_LEFT = 2;
+    public static final int SWIPE_RIGHT = 3;
+
+    private static final int GESTURE_CLICK = 0;
+    private static final int GESTURE_SWIPE = 1;
+    private static final int GESTURE_BACK = 2;
+    private static final int GESTURE_TIMER = 3;
+
+    private static class Transition {
+        final int gesture;
+        final int left, top, right, bottom;
+        final int direction;
+        final long delay;
+        final String target;
+
+        Transition(int gesture, int left, int top, int right, int bottom, int direction, long delay, String target) {
+            this.gesture = gesture;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.direction = direction;
+            this.delay = delay;
+            this.target = target;
+        }
+
+        boolean contains(int x, int y) {
+            return x >= left && x < right && y >= top && y < bottom;
+        }
+
+        long area() {
+            return (long) (right - left) * (bottom - top);
+        }
+    }
+
+    private static class State {
+        final String name;
+        final UiSnapshot snapshot;
+        final List<Transition> transitions = new ArrayList<>();
+
+        State(String name, UiSnapshot snapshot) {
+            this.name = name;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private final Map<String, State> states = new HashMap<>();
+    private State current;
+    private long clock;
+    private long enterTime;
+    private int gestureCount;
+    private int unmatchedCount;
+    private final List<String> history = new ArrayList<>();
+
+    // ==================== 场景登记 ====================
+
+    /**
+     * 登记一个状态，第一个登记的状态为初始状态
+     */
+    public ReplayBackend addState(String name, UiSnapshot snapshot) {
+        State state = new State(name, snapshot);
+        states.put(name, state);
+        if (current == null) {
+            current = state;
+        }
+        return this;
+    }
+
+    /**
+     * 从快照文件登记一个状态
+     */
+    public ReplayBackend addState(String name, File snapshotFile) throws IOException {
+        return addState(name, SnapshotReader.load(snapshotFile));
+    }
+
+    /**
+     * 点击状态 from 中的节点 node 时跳转到 to
+     */
+    public ReplayBackend onClick(String from, int node, String to) {
+        UiSnapshot snapshot = state(from).snapshot;
+        return onClick(from, snapshot.getLeft(node), snapshot.getTop(node),
+                snapshot.getRight(node), snapshot.getBottom(node), to);
+    }
+
+    /**
+     * 点击状态 from 中的指定区域时跳转到 to（多个区域重叠时取面积最小者）
+     */
+    public ReplayBackend onClick(String from, int left, int top, int right, int bottom, String to) {
+        state(from).transitions.add(new Transition(GESTURE_CLICK, left, top, right, bottom, 0, 0, to));
+        return this;
+    }
+
+    /**
+     * 在状态 from 中朝指定方向滑动时跳转到 to
+     */
+    public ReplayBackend onSwipe(String from, int direction, String to) {
+        state(from).transitions.add(new Transition(GESTURE_SWIPE, 0, 0, 0, 0, direction, 0, to));
+        return this;
+    }
+
+    /**
+     * 在状态 from 中按返回键时跳转到 to
+     */
+    public ReplayBackend onBack(String from, String to) {
+        state(from).transitions.add(new Transition(GESTURE_BACK, 0, 0, 0, 0, 0, 0, to));
+        return this;
+    }
+
+    /**
+     * 进入状态 from 经过 delay 毫秒后自动跳转到 to（例如启动页、加载动画）
+     */
+    public ReplayBackend after(String from, long delay, String to) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay must be positive");
+        }
+        state(from).transitions.add(new Transition(GESTURE_TIMER, 0, 0, 0, 0, 0, delay, to));
+        return this;
+    }
+
+    /**
+     * 设置当前状态并重置计时
+     */
+    public ReplayBackend start(String name) {
+        current = state(name);
+        enterTime = clock;
+        return this;
+    }
+
+    private State state(String name) {
+        State state = states.get(name);
+        if (state == null) {
+            throw new IllegalArgumentException("Unknown state: " + name);
+        }
+        return state;
+    }
+
+    // ==================== ScriptBackend ====================
+
+    @Override
+    public boolean click(int x, int y, int duration) {
+        applyTimers();
+        Transition best = null;
+        for (Transition t : transitions()) {
+            if (t.gesture == GESTURE_CLICK && t.contains(x, y) && (best == null || t.area() < best.area())) {
+                best = t;
+            }
+        }
+        return gesture("click(" + x + ", " + y + ")", best, duration);
+    }
+
+    @Override
+    public boolean swipe(int startX, int startY, int endX, int endY, int duration) {
+        applyTimers();
+        int dx = endX - startX;
+        int dy = endY - startY;
+        int direction = Math.abs(dx) > Math.abs(dy)
+                ? (dx < 0 ? SWIPE_LEFT : SWIPE_RIGHT)
+                : (dy < 0 ? SWIPE_UP : SWIPE_DOWN);
+        Transition match = null;
+        for (Transition t : transitions()) {
+            if (t.gesture == GESTURE_SWIPE && t.direction == direction) {
+                match = t;
+                break;
+            }
+        }
+        return gesture("swipe(" + startX + ", " + startY + " -> " + endX + ", " + endY + ")", match, duration);
+    }
+
+    @Override
+    public boolean clickNode(UiSnapshot snapshot, int node) {
+        if (snapshot == null || node < 0 || node >= snapshot.size()) return false;
+        int x = (snapshot.getLeft(node) + snapshot.getRight(node)) / 2;
+        int y = (snapshot.getTop(node) + snapshot.getBottom(node)) / 2;
+        return click(x, y, 100);
+    }
+
+    @Override
+    public boolean inputText(UiSnapshot snapshot, int node, String text) {
+        if (snapshot == null || node < 0 || node >= snapshot.size()) return false;
+        applyTimers();
+        // 输入文本不会切换页面，只记录下来
+        history.add(clock + "ms input(" + text + ") -> " + snapshot.getViewIdResourceName(node));
+        return true;
+    }
+
+    @Override
+    public boolean goBack() {
+        applyTimers();
+        Transition match = null;
+        for (Transition t : transitions()) {
+            if (t.gesture == GESTURE_BACK) {
+                match = t;
+                break;
+            }
+        }
+        return gesture("back", match, 0);
+    }
+
+    @Override
+    public void sleep(long milliseconds) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        clock += Math.max(0, milliseconds);
+        applyTimers();
+    }
+
+    @Override
+    public boolean waitForIdle(int quietMs, int timeout) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        // 先执行手势期间已经到期的自动跳转，之后的 nextTimer 都不早于当前时间，时钟不会倒退
+        applyTimers();
+        long deadline = clock + timeout;
+        while (true) {
+            // 等待期间会触发的自动跳转视为界面仍在变化
+            long next = nextTimer();
+            if (next >= 0 && next < clock + quietMs && next <= deadline) {
+                clock = Math.max(clock, next);
+                applyTimers();
+                continue;
+            }
+            if (clock + quietMs <= deadline) {
+                clock += quietMs;
+                return true;
+            }
+            clock = deadline;
+            return false;
+        }
+    }
+
+    @Override
+    public boolean waitForStable(int quietMs, int timeout) throws InterruptedException {
+        return waitForIdle(quietMs, timeout);
+    }
+
+    @Override
+    public UiSnapshot captureSnapshot() {
+        applyTimers();
+        return current != null ? current.snapshot : null;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return clock;
+    }
+
+    // ==================== 运行结果 ====================
+
+    public String getCurrentState() {
+        applyTimers();
+        return current != null ? current.name : null;
+    }
+
+    /**
+     * 已执行的手势数
+     */
+    public int getGestureCount() {
+        return gestureCount;
+    }
+
+    /**
+     * 没有匹配到任何跳转规则的手势数（通常意味着脚本点错了位置）
+     */
+    public int getUnmatchedCount() {
+        return unmatchedCount;
+    }
+
+    /**
+     * 手势和状态切换记录
+     */
+    public List<String> getHistory() {
+        return history;
+    }
+
+    // ==================== 内部实现 ====================
+
+    private boolean gesture(String description, Transition match, int duration) {
+        gestureCount++;
+        clock += Math.max(0, duration);
+        if (current == null) {
+            unmatchedCount++;
+            history.add(clock + "ms " + description + " (no state)");
+            return false;
+        }
+        if (match == null) {
+            unmatchedCount++;
+            history.add(clock + "ms " + description + " @" + current.name + " (unmatched)");
+            // 真机上手势同样会成功分发，只是界面没有变化
+            return true;
+        }
+        moveTo(match.target, description);
+        return true;
+    }
+
+    private List<Transition> transitions() {
+        return current != null ? current.transitions : Collections.<Transition>emptyList();
+    }
+
+    private void applyTimers() {
+        while (true) {
+            long next = nextTimer();
+            if (next < 0 || next > clock) return;
+            Transition timer = null;
+            for (Transition t : current.transitions) {
+                if (t.gesture == GESTURE_TIMER && enterTime + t.delay == next) {
+                    timer = t;
+                    break;
+                }
+            }
+            long now = clock;
+            clock = next;
+            moveTo(timer.target, "after " + timer.delay + "ms");
+            clock = now;
+        }
+    }
+
+    /**
+     * 当前状态最早触发的自动跳转时间，没有时返回 -1
+     */
+    private long nextTimer() {
+        if (current == null) return -1;
+        long next = -1;
+        for (Transition t : current.transitions) {
+            if (t.gesture == GESTURE_TIMER) {
+                long at = enterTime + t.delay;
+                if (next < 0 || at < next) {
+                    next = at;
+                }
+            }
+        }
+        return next;
+    }
+
+    private void moveTo(String target, String reason) {
+        State next = state(target);
+        history.add(clock + "ms " + reason + ": " + current.name + " -> " + next.name);
+        current = next;
+        enterTime = clock;
+    }
+}
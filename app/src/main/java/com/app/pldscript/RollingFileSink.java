@@ -0,0 +1,247 @@
+package com.app.pldscript;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * PLog 输出到滚动日志文件
+ *
+ * 日志先编码进内存缓冲区，PLog 每写完一批才调用一次 flush 写入文件，不会每行都访问磁盘。
+ * 当前文件为 name.log，超过大小上限后依次改名为 name.1.log、name.2.log ……，超过保留数量的最旧文件被删除。
+ * 开启压缩后换下来的文件压缩为 name.1.log.gz 等（在 PLog 后台线程中进行）。
+ */
+public class RollingFileSink implements PLog.Sink, Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String LEVELS = "VDIWE";
+
+    private final File directory;
+    private final String name;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(256);
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm:ss", Locale.US);
+    // 同一秒内复用时间前缀
+    private long cachedSecond = -1;
+    private String cachedPrefix;
+    private FileChannel channel;
+    private long fileSize;
+    private boolean closed;
+    private boolean compress;
+
+    /**
+     * @param directory 日志目录
+     * @param name 文件名（不含扩展名）
+     * @param maxFileBytes 单个文件大小上限
+     * @param maxFiles 最多保留的文件数（含当前文件）
+     */
+    public RollingFileSink(File directory, String name, long maxFileBytes, int maxFiles) {
+        this.directory = directory;
+        this.name = name;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    /**
+     * 是否压缩换下来的文件
+     */
+    public synchronized RollingFileSink setCompress(boolean compress) {
+        this.compress = compress;
+        return this;
+    }
+
+    /**
+     * 当前写入的文件
+     */
+    public File getCurrentFile() {
+        return new File(directory, name + ".log");
+    }
+
+    /**
+     * 所有已存在的日志文件，从新到旧排列
+     */
+    public synchronized List<File> getFiles() {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < maxFiles; i++) {
+            File file = fileAt(i);
+            if (file.exists()) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    @Override
+    public synchronized void write(int level, long time, String thread, String tag,
+                                   CharSequence message, Throwable error) throws IOException {
+        if (closed) return;
+        line.setLength(0);
+        appendTime(time);
+        line.append(' ')
+                .append(level >= PLog.VERBOSE && level <= PLog.ERROR ? LEVELS.charAt(level - PLog.VERBOSE) : '?')
+                .append('/').append(tag).append('(').append(thread).append("): ")
+                .append(message).append('\n');
+        if (error != null) {
+            StringWriter trace = new StringWriter();
+            error.printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+        // 按行切换文件，保证一行不会被拆到两个文件中
+        if (fileSize + buffer.position() >= maxFileBytes) {
+            drain();
+            rotate();
+        }
+        encode(line);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (closed) return;
+        drain();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        try {
+            drain();
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        } finally {
+            channel = null;
+            closed = true;
+        }
+    }
+
+    private void appendTime(long time) {
+        long second = time / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedPrefix = dateFormat.format(new Date(time));
+        }
+        int millis = (int) (time % 1000);
+        line.append(cachedPrefix).append('.');
+        if (millis < 100) line.append('0');
+        if (millis < 10) line.append('0');
+        line.append(millis);
+    }
+
+    private void encode(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (!result.isOverflow()) break;
+            drain();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+    }
+
+    /**
+     * 把缓冲区写入当前文件
+     */
+    private void drain() throws IOException {
+        if (buffer.position() == 0) return;
+        if (channel == null) {
+            open();
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileSize += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录: " + directory);
+        }
+        // FileChannel.open 需要 API 26，这里通过 FileOutputStream 获取
+        channel = new FileOutputStream(getCurrentFile(), true).getChannel();
+        fileSize = channel.size();
+    }
+
+    /**
+     * 关闭当前文件并依次改名
+     */
+    private void rotate() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        fileSize = 0;
+        File current = getCurrentFile();
+        if (maxFiles == 1) {
+            // 只保留当前文件：清空后从头写
+            new FileOutputStream(current, false).close();
+            return;
+        }
+        File oldest = fileAt(maxFiles - 1);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("无法删除日志文件: " + oldest);
+        }
+        for (int i = maxFiles - 2; i >= 1; i--) {
+            File file = fileAt(i);
+            if (file.exists() && !file.renameTo(fileAt(i + 1, file.getName().endsWith(".gz")))) {
+                throw new IOException("无法重命名日志文件: " + file);
+            }
+        }
+        if (!current.exists()) return;
+        if (compress) {
+            gzip(current, fileAt(1, true));
+            if (!current.delete()) {
+                throw new IOException("无法删除日志文件: " + current);
+            }
+        } else if (!current.renameTo(fileAt(1, false))) {
+            throw new IOException("无法重命名日志文件: " + current);
+        }
+    }
+
+    private static void gzip(File source, File target) throws IOException {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        try (FileInputStream in = new FileInputStream(source);
+             GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(target), BUFFER_SIZE)) {
+            int n;
+            while ((n = in.read(bytes)) > 0) {
+                out.write(bytes, 0, n);
+            }
+        }
+    }
+
+    private File fileAt(int index) {
+        if (index == 0) return getCurrentFile();
+        File compressed = fileAt(index, true);
+        // 切换压缩设置后目录中可能同时有两种文件，按实际存在的为准
+        if (compressed.exists() || (compress && !fileAt(index, false).exists())) return compressed;
+        return fileAt(index, false);
+    }
+
+    private File fileAt(int index, boolean compressed) {
+        return new File(directory, name + "." + index + (compressed ? ".log.gz" : ".log"));
+    }
+}
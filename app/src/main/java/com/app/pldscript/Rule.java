@@ -0,0 +1,145 @@
+package com.app.pldscript;
+
+/**
+ * 响应规则 - 收到指定事件后检查页面上是否出现了指定控件，出现时执行动作
+ * <pre>
+ * Rule rule = new Rule("关闭弹窗")
+ *         .inPackage("com.example")
+ *         .whenViewId("com.example:id/close")
+ *         .thenClick();
+ * </pre>
+ * 条件是边沿触发的：控件出现时执行一次，控件消失后再次出现才会再执行。
+ * 没有设置 viewId/文本条件的规则每批匹配的事件执行一次（节点编号为 -1）。
+ */
+public class Rule {
+    // AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+    private static final int DEFAULT_EVENT_TYPES = 0x00000020 | 0x00000800;
+
+    /**
+     * 规则动作
+     */
+    public interface Action {
+        /**
+         * @param snapshot 评估时采集的快照（没有控件条件时为 null）
+         * @param node 匹配到的节点编号，没有控件条件时为 -1
+         */
+        void run(ScriptBackend backend, UiSnapshot snapshot, int node) throws Exception;
+    }
+
+    final String name;
+    int eventTypes = DEFAULT_EVENT_TYPES;
+    String packageName;
+    String className;
+    String viewId;
+    String text;
+    Action action;
+
+    // 以下字段由 RuleEngine 在工作线程中维护，fireCount 和 lastError 会在其他线程读取
+    boolean dirty;
+    boolean matched;
+    volatile int fireCount;
+    volatile Throwable lastError;
+
+    public Rule(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 触发评估的事件类型（AccessibilityEvent.TYPE_* 的组合），默认为窗口状态和内容变化
+     */
+    public Rule onEvents(int eventTypes) {
+        this.eventTypes = eventTypes;
+        return this;
+    }
+
+    /**
+     * 只响应指定应用的事件
+     */
+    public Rule inPackage(String packageName) {
+        this.packageName = packageName;
+        return this;
+    }
+
+    /**
+     * 只响应事件来源类名为指定值的事件（例如 android.app.Dialog）
+     */
+    public Rule fromClass(String className) {
+        this.className = className;
+        return this;
+    }
+
+    /**
+     * 条件：页面上存在指定 viewId 的控件
+     */
+    public Rule whenViewId(String viewId) {
+        this.viewId = viewId;
+        return this;
+    }
+
+    /**
+     * 条件：页面上存在指定文本（text 或 contentDescription）的控件
+     */
+    public Rule whenText(String text) {
+        this.text = text;
+        return this;
+    }
+
+    public Rule then(Action action) {
+        this.action = action;
+        return this;
+    }
+
+    /**
+     * 动作：点击匹配到的控件
+     */
+    public Rule thenClick() {
+        return then((backend, snapshot, node) -> {
+            if (node >= 0) {
+                backend.clickNode(snapshot, node);
+            }
+        });
+    }
+
+    /**
+     * 已执行的次数
+     */
+    public int getFireCount() {
+        return fireCount;
+    }
+
+    /**
+     * 最近一次动作抛出的异常
+     */
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    boolean hasCondition() {
+        return viewId != null || text != null;
+    }
+
+    /**
+     * 在快照中查找满足条件的第一个节点
+     * @return 节点编号，不满足时返回 -1
+     */
+    int findMatch(UiSnapshot snapshot) {
+        if (snapshot == null) return -1;
+        int[] candidates = viewId != null ? snapshot.findAllByViewId(viewId) : snapshot.findAllByText(text);
+        for (int node : candidates) {
+            if (text == null || viewId == null || text.equals(snapshot.getText(node))
+                    || text.equals(snapshot.getContentDescription(node))) {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,261 @@
+package com.app.pldscript;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规则引擎 - 在工作线程中消费事件流，按规则增量评估
+ *
+ * 所有规则编译成一个共享的判别网络：事件类型位 → 包名 → 事件来源类名 → 规则列表（包名、类名都有通配分支），
+ * 每个事件只需沿网络查找一次，与规则总数无关。命中的规则只做标记，
+ * 一批事件处理完后才采集一次快照，只评估被标记的规则。
+ *
+ * 条件当前满足的规则每批都重新评估：控件消失时的事件可能来自别的应用或别的类名，
+ * 不会命中该规则，只靠标记无法发现条件已不满足，边沿触发就不会再次执行。
+ */
+public class RuleEngine {
+    // 收到事件后继续收集同一批事件的时间
+    private static final long SETTLE_MS = 50;
+    // 一批事件最长收集时间，防止持续变化的页面让规则一直得不到评估
+    private static final long MAX_BATCH_MS = 300;
+
+    private final List<Rule> rules = new ArrayList<>();
+    private final TypeNode[] network = new TypeNode[32];
+    private final List<Rule> dirtyRules = new ArrayList<>();
+    // 条件当前满足的规则
+    private final List<Rule> matchedRules = new ArrayList<>();
+    private final EventRing.Event event = new EventRing.Event();
+    private volatile Thread worker;
+    private volatile int evaluationCount;
+
+    private static class TypeNode {
+        final Map<String, PackageNode> packages = new HashMap<>();
+        final PackageNode anyPackage = new PackageNode();
+    }
+
+    private static class PackageNode {
+        final Map<String, List<Rule>> classes = new HashMap<>();
+        final List<Rule> anyClass = new ArrayList<>();
+    }
+
+    /**
+     * 添加规则（只能在启动前添加）
+     */
+    public synchronized RuleEngine addRule(Rule rule) {
+        if (worker != null) {
+            throw new IllegalStateException("stop the engine before adding rules");
+        }
+        if (rule.action == null || rule.eventTypes == 0) {
+            throw new IllegalArgumentException("rule needs an action and event types: " + rule);
+        }
+        rules.add(rule);
+        for (int bit = 0; bit < 32; bit++) {
+            if ((rule.eventTypes & (1 << bit)) == 0) continue;
+            TypeNode typeNode = network[bit];
+            if (typeNode == null) {
+                typeNode = network[bit] = new TypeNode();
+            }
+            PackageNode packageNode = rule.packageName == null ? typeNode.anyPackage
+                    : typeNode.packages.computeIfAbsent(rule.packageName, k -> new PackageNode());
+            List<Rule> list = rule.className == null ? packageNode.anyClass
+                    : packageNode.classes.computeIfAbsent(rule.className, k -> new ArrayList<>());
+            list.add(rule);
+        }
+        return this;
+    }
+
+    public synchronized List<Rule> getRules() {
+        return new ArrayList<>(rules);
+    }
+
+    /**
+     * 所有规则关注的事件类型
+     */
+    public synchronized int getEventTypes() {
+        int types = 0;
+        for (Rule rule : rules) {
+            types |= rule.eventTypes;
+        }
+        return types;
+    }
+
+    /**
+     * 所有规则关注的包名，任一规则不限制包名时返回 null
+     */
+    public synchronized String[] getPackages() {
+        List<String> packages = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (rule.packageName == null) return null;
+            if (!packages.contains(rule.packageName)) {
+                packages.add(rule.packageName);
+            }
+        }
+        return packages.toArray(new String[0]);
+    }
+
+    /**
+     * 已执行的评估批次数
+     */
+    public int getEvaluationCount() {
+        return evaluationCount;
+    }
+
+    public boolean isRunning() {
+        return worker != null;
+    }
+
+    /**
+     * 启动工作线程
+     * @param backend 执行动作和采集快照的后端
+     * @param cursor 事件游标，停止时关闭
+     */
+    public synchronized void start(ScriptBackend backend, EventRing.Cursor cursor) {
+        if (worker != null) {
+            throw new IllegalStateException("engine already running");
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                // 停止后 worker 不再指向本线程，即使中断标志被动作清除也会退出
+                while (worker == Thread.currentThread() && !Thread.currentThread().isInterrupted()) {
+                    if (!collect(cursor)) continue;
+                    evaluate(backend);
+                }
+            } catch (InterruptedException e) {
+                // 停止
+            } finally {
+                cursor.close();
+            }
+        }, "PLD-RuleEngine");
+        worker = thread;
+        thread.start();
+    }
+
+    /**
+     * 停止工作线程，并等待它退出（正在执行的动作被中断后返回）
+     * 返回后可以立即重新启动，不会有两个工作线程同时修改规则状态
+     */
+    public synchronized void stop() {
+        Thread thread = worker;
+        worker = null;
+        if (thread == null) return;
+        thread.interrupt();
+        // 在动作中停止引擎时不能等待自己
+        if (thread == Thread.currentThread()) return;
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== 事件处理 ====================
+
+    /**
+     * 收集一批事件并标记命中的规则
+     * 收集时间与 take 的等待用同一个时钟（System.nanoTime），回放后端的虚拟时钟不会随等待前进
+     * @return 有规则需要评估时返回 true
+     */
+    boolean collect(EventRing.Cursor cursor) throws InterruptedException {
+        if (!cursor.take(event, 1000)) return false;
+        long batchEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_BATCH_MS);
+        do {
+            onEvent(event.type, event.packageName, event.className);
+        } while (System.nanoTime() - batchEnd < 0 && cursor.take(event, SETTLE_MS));
+        // 条件满足的规则每批都重新检查，控件消失后才能再次触发
+        markAll(matchedRules);
+        return !dirtyRules.isEmpty();
+    }
+
+    /**
+     * 沿判别网络查找事件命中的规则并标记
+     */
+    void onEvent(int type, String packageName, String className) {
+        for (int bits = type; bits != 0; bits &= bits - 1) {
+            TypeNode typeNode = network[Integer.numberOfTrailingZeros(bits)];
+            if (typeNode == null) continue;
+            mark(typeNode.anyPackage, className);
+            if (packageName != null) {
+                PackageNode packageNode = typeNode.packages.get(packageName);
+                if (packageNode != null) {
+                    mark(packageNode, className);
+                }
+            }
+        }
+    }
+
+    private void mark(PackageNode packageNode, String className) {
+        markAll(packageNode.anyClass);
+        if (className != null) {
+            List<Rule> list = packageNode.classes.get(className);
+            if (list != null) {
+                markAll(list);
+            }
+        }
+    }
+
+    private void markAll(List<Rule> list) {
+        for (int i = 0; i < list.size(); i++) {
+            Rule rule = list.get(i);
+            if (!rule.dirty) {
+                rule.dirty = true;
+                dirtyRules.add(rule);
+            }
+        }
+    }
+
+    /**
+     * 评估被标记的规则（一批只采集一次快照）
+     */
+    void evaluate(ScriptBackend backend) throws InterruptedException {
+        evaluationCount++;
+        UiSnapshot snapshot = null;
+        boolean captured = false;
+        try {
+            for (Rule rule : dirtyRules) {
+                rule.dirty = false;
+                int node = -1;
+                if (rule.hasCondition()) {
+                    if (!captured) {
+                        snapshot = backend.captureSnapshot();
+                        captured = true;
+                    }
+                    node = rule.findMatch(snapshot);
+                    boolean wasMatched = rule.matched;
+                    rule.matched = node >= 0;
+                    if (rule.matched != wasMatched) {
+                        if (rule.matched) {
+                            matchedRules.add(rule);
+                        } else {
+                            matchedRules.remove(rule);
+                        }
+                    }
+                    // 边沿触发：只在条件由不满足变为满足时执行
+                    if (!rule.matched || wasMatched) continue;
+                }
+                try {
+                    rule.fireCount++;
+                    rule.action.run(backend, snapshot, node);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    rule.lastError = e;
+                }
+            }
+        } finally {
+            // 动作被中断时还没评估的规则也要清除标记，否则下次不会再被标记
+            for (Rule rule : dirtyRules) {
+                rule.dirty = false;
+            }
+            dirtyRules.clear();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.app.pldscript;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 脚本运行日志 - 每次运行脚本时在 files/logs/runs 下创建一组独立的日志文件，
+ * 运行期间的 PLog 日志都会写入其中（按大小滚动，换下来的文件压缩保存）
+ *
+ * 只保留最近 MAX_RUNS 次运行；export 把整个日志目录打包成 zip 写到用户选择的位置。
+ */
+public class RunLogs {
+    private static final String TAG = "RunLogs";
+    private static final long MAX_FILE_BYTES = 512 * 1024;
+    private static final int MAX_FILES_PER_RUN = 4;
+    private static final int MAX_RUNS = 20;
+
+    private static RollingFileSink current;
+
+    /**
+     * 日志根目录（应用日志和运行日志都在其中）
+     */
+    public static File getLogDirectory(Context context) {
+        return new File(context.getFilesDir(), "logs");
+    }
+
+    /**
+     * 开始记录一次运行，上一次未结束的运行会先结束
+     * @param scriptName 脚本名（用于文件名）
+     */
+    public static synchronized void begin(Context context, String scriptName) {
+        end();
+        File dir = new File(getLogDirectory(context), "runs");
+        pruneOldRuns(dir);
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date())
+                + "-" + scriptName.replaceAll("[^A-Za-z0-9_-]", "_");
+        current = new RollingFileSink(dir, name, MAX_FILE_BYTES, MAX_FILES_PER_RUN).setCompress(true);
+        PLog.addSink(current);
+        PLog.i(TAG, "开始运行 {}，日志文件: {}", scriptName, current.getCurrentFile());
+    }
+
+    /**
+     * 结束当前运行，写出剩余日志并关闭文件
+     */
+    public static synchronized void end() {
+        if (current == null) return;
+        PLog.i(TAG, "运行结束");
+        if (!PLog.flush(1000)) {
+            PLog.w(TAG, "等待日志写出超时");
+        }
+        PLog.removeSink(current);
+        try {
+            current.close();
+        } catch (IOException e) {
+            PLog.e(TAG, "关闭运行日志失败", e);
+        }
+        current = null;
+    }
+
+    /**
+     * 把日志目录打包成 zip 写入 uri（不要在主线程调用）
+     * @return 打包的文件数
+     */
+    public static int export(Context context, Uri uri) throws IOException {
+        PLog.flush(2000);
+        File root = getLogDirectory(context);
+        List<File> files = new ArrayList<>();
+        collectFiles(root, files);
+        OutputStream stream = context.getContentResolver().openOutputStream(uri);
+        if (stream == null) {
+            throw new IOException("无法打开导出位置: " + uri);
+        }
+        byte[] bytes = new byte[64 * 1024];
+        String rootPath = root.getAbsolutePath();
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(stream))) {
+            for (File file : files) {
+                zip.putNextEntry(new ZipEntry(file.getAbsolutePath().substring(rootPath.length() + 1)));
+                try (InputStream in = new FileInputStream(file)) {
+                    int n;
+                    while ((n = in.read(bytes)) > 0) {
+                        zip.write(bytes, 0, n);
+                    }
+                }
+                zip.closeEntry();
+            }
+        }
+        PLog.d(TAG, "导出日志: {} 个文件", files.size());
+        return files.size();
+    }
+
+    private static void collectFiles(File dir, List<File> out) {
+        File[] children = dir.listFiles();
+        if (children == null) return;
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectFiles(child, out);
+            } else {
+                out.add(child);
+            }
+        }
+    }
+
+    /**
+     * 删除最旧的运行日志，为新的运行留出位置
+     */
+    private static void pruneOldRuns(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        // 文件名以时间开头，按名称排序即按时间排序
+        TreeSet<String> runs = new TreeSet<>();
+        for (File file : files) {
+            runs.add(runName(file));
+        }
+        while (runs.size() >= MAX_RUNS) {
+            String oldest = runs.pollFirst();
+            for (File file : files) {
+                if (runName(file).equals(oldest) && !file.delete()) {
+                    PLog.w(TAG, "无法删除旧日志: {}", file);
+                }
+            }
+        }
+    }
+
+    private static String runName(File file) {
+        String name = file.getName();
+        int dot = name.indexOf('.');
+        return dot >= 0 ? name.substring(0, dot) : name;
+    }
+}
@@ -0,0 +1,250 @@
+package com.app.pldscript;
+
+import android.accessibilityservice.AccessibilityService;
+import android.graphics.Bitmap;
+import android.graphics.HardwareRenderer;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.RecordingCanvas;
+import android.graphics.Rect;
+import android.graphics.RenderNode;
+import android.hardware.HardwareBuffer;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.SystemClock;
+import android.view.Display;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 屏幕截图工具 - 基于 AccessibilityService.takeScreenshot（API 30+）
+ * 系统限制两次截图之间至少间隔约 333ms，这里统一做节流，调用方无需关心
+ *
+ * 截图是全分辨率的硬件位图，整张复制为软件位图每帧约 10MB。指定区域和最大边长时先在 GPU 上裁剪、缩小，
+ * 只把缩小后的像素读回内存；GPU 缩放失败时才退化为整张复制后再裁剪。
+ */
+public class ScreenCapture {
+    private static final String TAG = "ScreenCapture";
+    // 系统对 takeScreenshot 的最小调用间隔
+    public static final int MIN_INTERVAL_MS = 340;
+    // 截图回调直接在系统 binder 线程执行，避免依赖主线程
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+    // 缩小时使用双线性过滤，每个输出像素是多个原始像素的平均
+    private static final Paint FILTER_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private static long lastCaptureTime = 0;
+
+    /**
+     * 当前系统是否支持截图
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+    }
+
+    /**
+     * 同步截取当前屏幕（全分辨率）
+     * @param timeoutMs 等待截图结果的超时时间（毫秒）
+     * @return 可读取像素的 ARGB_8888 位图，失败返回 null（调用方负责 recycle）
+     */
+    public static Bitmap capture(int timeoutMs) {
+        return capture(timeoutMs, null, 0);
+    }
+
+    /**
+     * 同步截取屏幕的指定区域，并缩小到最大边长以内
+     * @param timeoutMs 等待截图结果的超时时间（毫秒）
+     * @param region 截取区域（屏幕坐标），为 null 时截取整个屏幕
+     * @param maxSize 结果的最大边长（像素），0 表示不缩小
+     * @return 可读取像素的 ARGB_8888 位图，失败或区域完全在屏幕外时返回 null（调用方负责 recycle）
+     */
+    public static synchronized Bitmap capture(int timeoutMs, Rect region, int maxSize) {
+        PLDScript service = PLDScript.getInstance();
+        if (service == null) {
+            PLog.e(TAG, "无障碍服务未初始化");
+            return null;
+        }
+        if (!isSupported()) {
+            PLog.w(TAG, "当前系统版本不支持截图（需要 Android 11+）");
+            return null;
+        }
+
+        // 节流：距离上次截图不足最小间隔时先等待
+        long wait = lastCaptureTime + MIN_INTERVAL_MS - SystemClock.uptimeMillis();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        lastCaptureTime = SystemClock.uptimeMillis();
+
+        final Bitmap[] result = new Bitmap[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            service.takeScreenshot(Display.DEFAULT_DISPLAY, DIRECT_EXECUTOR,
+                    new AccessibilityService.TakeScreenshotCallback() {
+                        @Override
+                        public void onSuccess(AccessibilityService.ScreenshotResult screenshot) {
+                            HardwareBuffer buffer = screenshot.getHardwareBuffer();
+                            try {
+                                Bitmap hardware = Bitmap.wrapHardwareBuffer(buffer, screenshot.getColorSpace());
+                                if (hardware != null) {
+                                    result[0] = readPixels(hardware, region, maxSize);
+                                    hardware.recycle();
+                                }
+                            } catch (Exception e) {
+                                PLog.e(TAG, "转换截图失败", e);
+                            } finally {
+                                buffer.close();
+                                latch.countDown();
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(int errorCode) {
+                            PLog.w(TAG, "截图失败，错误码: {}", errorCode);
+                            latch.countDown();
+                        }
+                    });
+            if (!latch.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                PLog.w(TAG, "等待截图超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            PLog.e(TAG, "截图失败", e);
+        }
+        return result[0];
+    }
+
+    /**
+     * 硬件位图无法直接读取像素，裁剪、缩小后复制为软件位图
+     * @return 软件位图，区域完全在屏幕外时返回 null
+     */
+    private static Bitmap readPixels(Bitmap hardware, Rect region, int maxSize) {
+        Rect area = new Rect(0, 0, hardware.getWidth(), hardware.getHeight());
+        if (region != null && !area.intersect(region)) {
+            PLog.w(TAG, "截图区域完全在屏幕外: {}", region);
+            return null;
+        }
+        int width = area.width();
+        int height = area.height();
+        if (maxSize > 0 && Math.max(width, height) > maxSize) {
+            float scale = maxSize / (float) Math.max(width, height);
+            width = Math.max(1, Math.round(width * scale));
+            height = Math.max(1, Math.round(height * scale));
+        }
+        if (width == hardware.getWidth() && height == hardware.getHeight()) {
+            return hardware.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        try {
+            Bitmap scaled = renderScaled(hardware, area, width, height);
+            if (scaled != null) return scaled;
+        } catch (RuntimeException e) {
+            PLog.w(TAG, "GPU 缩放截图失败，改为整张复制", e);
+        }
+        Bitmap full = hardware.copy(Bitmap.Config.ARGB_8888, false);
+        if (full == null) return null;
+        Bitmap cropped = Bitmap.createBitmap(full, area.left, area.top, area.width(), area.height());
+        Bitmap scaled = Bitmap.createScaledBitmap(cropped, width, height, true);
+        if (cropped != full && cropped != scaled) cropped.recycle();
+        if (full != scaled) full.recycle();
+        return scaled;
+    }
+
+    /**
+     * 在 GPU 上把硬件位图的 area 区域绘制到 width x height 的缓冲区，只读回缩小后的像素
+     * @return 软件位图，没有取到绘制结果时返回 null
+     */
+    private static Bitmap renderScaled(Bitmap hardware, Rect area, int width, int height) {
+        ImageReader reader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 1,
+                HardwareBuffer.USAGE_GPU_COLOR_OUTPUT | HardwareBuffer.USAGE_CPU_READ_OFTEN);
+        RenderNode node = new RenderNode(TAG);
+        HardwareRenderer renderer = new HardwareRenderer();
+        try {
+            node.setPosition(0, 0, width, height);
+            RecordingCanvas canvas = node.beginRecording();
+            canvas.drawBitmap(hardware, area, new Rect(0, 0, width, height), FILTER_PAINT);
+            node.endRecording();
+            renderer.setSurface(reader.getSurface());
+            renderer.setContentRoot(node);
+            renderer.createRenderRequest().setWaitForPresent(true).syncAndDraw();
+
+            Image image = reader.acquireNextImage();
+            if (image == null) return null;
+            try {
+                Image.Plane plane = image.getPlanes()[0];
+                // 每行可能有对齐填充，按行跨度创建位图后再裁掉
+                int strideWidth = plane.getRowStride() / plane.getPixelStride();
+                Bitmap padded = Bitmap.createBitmap(strideWidth, height, Bitmap.Config.ARGB_8888);
+                padded.copyPixelsFromBuffer(plane.getBuffer());
+                if (strideWidth == width) return padded;
+                Bitmap bitmap = Bitmap.createBitmap(padded, 0, 0, width, height);
+                padded.recycle();
+                return bitmap;
+            } finally {
+                image.close();
+            }
+        } finally {
+            renderer.destroy();
+            node.discardDisplayList();
+            reader.close();
+        }
+    }
+
+    /**
+     * 将位图指定区域划分为 cols x rows 个分块，计算每个分块的平均亮度
+     * 每个分块只采样 samples x samples 个像素，按行批量读取，开销与分辨率基本无关
+     * @param region 区域（位图坐标），为 null 时使用整张位图
+     * @return 长度为 cols * rows 的亮度数组（0~255），按行优先排列；区域完全在位图外时返回 null
+     */
+    public static int[] luminanceGrid(Bitmap bitmap, Rect region, int cols, int rows, int samples) {
+        Rect area = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        if (region != null && !area.intersect(region)) {
+            return null;
+        }
+
+        int[] result = new int[cols * rows];
+        int[] row = new int[area.width()];
+        float blockW = area.width() / (float) cols;
+        float blockH = area.height() / (float) rows;
+
+        for (int by = 0; by < rows; by++) {
+            for (int sy = 0; sy < samples; sy++) {
+                int y = area.top + (int) ((by + (sy + 0.5f) / samples) * blockH);
+                y = Math.min(y, area.bottom - 1);
+                // 每次读取一整行，减少 getPixels 调用次数
+                bitmap.getPixels(row, 0, row.length, area.left, y, row.length, 1);
+                for (int bx = 0; bx < cols; bx++) {
+                    int sum = 0;
+                    for (int sx = 0; sx < samples; sx++) {
+                        int x = (int) ((bx + (sx + 0.5f) / samples) * blockW);
+                        x = Math.min(x, row.length - 1);
+                        sum += luminance(row[x]);
+                    }
+                    result[by * cols + bx] += sum;
+                }
+            }
+        }
+        int samplesPerBlock = samples * samples;
+        for (int i = 0; i < result.length; i++) {
+            result[i] /= samplesPerBlock;
+        }
+        return result;
+    }
+
+    /**
+     * 近似亮度（整数运算，Y = 0.299R + 0.587G + 0.114B）
+     */
+    private static int luminance(int argb) {
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return (r * 77 + g * 150 + b * 29) >> 8;
+    }
+}
@@ -0,0 +1,120 @@
+package com.app.pldscript;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.SystemClock;
+
+/**
+ * 屏幕稳定检测 - 通过比较连续截图的分块亮度签名判断画面是否已静止
+ * 用于替代脚本中固定时长的等待：动画结束得越快，返回得越快
+ * 截图失败（截图服务繁忙、区域在屏幕外等）时改为等待界面空闲，调用方不会在没有任何等待的情况下继续
+ */
+public class ScreenStability {
+    private static final String TAG = "ScreenStability";
+    // 签名网格大小（GRID x GRID 个分块）
+    private static final int GRID = 16;
+    // 每个分块内的采样数（SAMPLES x SAMPLES 个像素）
+    private static final int SAMPLES = 4;
+    // 单个分块亮度差超过该值视为发生变化
+    private static final int BLOCK_TOLERANCE = 6;
+    // 变化分块占比不超过该值视为画面稳定
+    private static final float CHANGED_RATIO = 0.01f;
+    // 单次截图的超时时间
+    private static final int CAPTURE_TIMEOUT_MS = 1000;
+    // 截图缩小后的最大边长，每个分块仍有足够的像素供采样
+    private static final int CAPTURE_SIZE = 256;
+
+    /**
+     * 等待指定区域的画面稳定
+     * @param region 检测区域（屏幕坐标），为 null 时检测整个屏幕
+     * @param quietMs 画面需要保持不变的时长（毫秒）
+     * @param timeout 最长等待时间（毫秒）
+     * @return 画面在超时前稳定返回 true，超时或被中断返回 false；截图失败时返回等待界面空闲的结果
+     */
+    public static boolean waitForStable(Rect region, int quietMs, int timeout) {
+        long start = SystemClock.uptimeMillis();
+        long deadline = start + timeout;
+
+        int[] reference = capture(region);
+        if (reference == null) {
+            return waitForIdleInstead(quietMs, deadline);
+        }
+        long referenceTime = SystemClock.uptimeMillis();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = SystemClock.uptimeMillis();
+            if (now >= deadline) {
+                PLog.d(TAG, "等待画面稳定超时: {}ms", now - start);
+                return false;
+            }
+            int[] current = capture(region);
+            if (current == null) {
+                return waitForIdleInstead(quietMs, deadline);
+            }
+            now = SystemClock.uptimeMillis();
+            if (isSimilar(reference, current)) {
+                if (now - referenceTime >= quietMs) {
+                    PLog.d(TAG, "画面已稳定，耗时: {}ms", now - start);
+                    return true;
+                }
+            } else {
+                // 画面仍在变化，以当前帧为新的参考帧重新计时
+                reference = current;
+                referenceTime = now;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 截图失败时在剩余的时间内改为等待界面空闲（与不支持截图的系统相同），至少会等到界面静止或超时
+     */
+    private static boolean waitForIdleInstead(int quietMs, long deadline) {
+        int remaining = (int) Math.max(0, deadline - SystemClock.uptimeMillis());
+        PLog.w(TAG, "截图失败，改为等待界面空闲，剩余 {}ms", remaining);
+        return UiIdleDetector.waitForIdle(null, quietMs, remaining);
+    }
+
+    /**
+     * 截图并计算签名
+     * @return 签名，截图失败或区域完全在屏幕外时返回 null
+     */
+    private static int[] capture(Rect region) {
+        // 截图时已裁剪到区域并缩小，签名使用整张位图
+        Bitmap bitmap = ScreenCapture.capture(CAPTURE_TIMEOUT_MS, region, CAPTURE_SIZE);
+        if (bitmap == null) {
+            return null;
+        }
+        try {
+            return signature(bitmap, null);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * 计算位图指定区域的分块亮度签名
+     * @return 长度为 GRID * GRID 的亮度数组（0~255），区域完全在位图外时返回 null
+     */
+    static int[] signature(Bitmap bitmap, Rect region) {
+        return ScreenCapture.luminanceGrid(bitmap, region, GRID, GRID, SAMPLES);
+    }
+
+    /**
+     * 判断两个签名是否足够相似
+     */
+    static boolean isSimilar(int[] a, int[] b) {
+        if (a.length != b.length) return false;
+        int changed = 0;
+        int limit = (int) (a.length * CHANGED_RATIO);
+        for (int i = 0; i < a.length; i++) {
+            if (Math.abs(a[i] - b[i]) > BLOCK_TOLERANCE) {
+                changed++;
+                if (changed > limit) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
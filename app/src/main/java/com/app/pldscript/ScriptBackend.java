@@ -0,0 +1,70 @@
+package com.app.pldscript;
+
+/**
+ * 脚本运行后端 - 脚本只通过该接口操作界面，
+ * 在手机上由 DeviceBackend 调用无障碍服务，在电脑上由 ReplayBackend 回放录制的快照
+ */
+public interface ScriptBackend {
+
+    /**
+     * 脚本主体
+     */
+    interface Script {
+        void run(ScriptBackend backend) throws Exception;
+    }
+
+    /**
+     * 点击坐标
+     * @param duration 持续时间（毫秒）
+     */
+    boolean click(int x, int y, int duration);
+
+    /**
+     * 滑动
+     * @param duration 持续时间（毫秒）
+     */
+    boolean swipe(int startX, int startY, int endX, int endY, int duration);
+
+    /**
+     * 点击快照中的节点（点击节点中心）
+     */
+    boolean clickNode(UiSnapshot snapshot, int node);
+
+    /**
+     * 向快照中的输入框节点设置文本
+     */
+    boolean inputText(UiSnapshot snapshot, int node, String text);
+
+    /**
+     * 返回键
+     */
+    boolean goBack();
+
+    /**
+     * 等待指定时间
+     */
+    void sleep(long milliseconds) throws InterruptedException;
+
+    /**
+     * 等待界面空闲
+     * @return 超时前空闲返回 true
+     */
+    boolean waitForIdle(int quietMs, int timeout) throws InterruptedException;
+
+    /**
+     * 等待画面稳定
+     * @return 超时前稳定返回 true
+     */
+    boolean waitForStable(int quietMs, int timeout) throws InterruptedException;
+
+    /**
+     * 采集当前页面快照
+     * @return 快照，无法获取时返回 null
+     */
+    UiSnapshot captureSnapshot();
+
+    /**
+     * 当前时间（毫秒，单调递增）
+     */
+    long uptimeMillis();
+}
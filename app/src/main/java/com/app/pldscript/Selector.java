@@ -0,0 +1,579 @@
+package com.app.pldscript;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 控件选择器 - 用类似 CSS 的语法在 UiSnapshot 中查找节点
+ *
+ * <pre>
+ * Button[text="确定"]                      类名（简单名或完整类名）加属性条件
+ * [id="com.app:id/title"]                  完整 viewId；不含 ':' 时按 id 名称匹配，如 [id=title]
+ * ListView > *[clickable]:index(0)         '>' 为直接子节点，空白为任意后代，:index(n) 为在父节点中的序号
+ * [desc^="返回"] [text*="设置"][enabled]    运算符 = ^= *= $=，标志条件可写成 [checked=false]
+ * </pre>
+ * 属性：id、text、desc、class、pkg，以及标志 clickable、longClickable、checkable、checked、focusable、focused、
+ * selected、enabled、scrollable、editable、password、visible。
+ *
+ * 查找时先选择候选节点：某一步带有 id/text/desc 的相等条件时，通过快照的倒排表取出这些节点
+ * （是最后一步时直接作为候选，否则取它们的子树），选候选最少的一步；都没有时扫描全部节点。
+ * 候选节点再从右向左逐步匹配，后代关系在祖先链上回溯。解析后的选择器不可变，可以重复使用。
+ */
+public class Selector {
+    // 属性
+    private static final int ATTR_ID = 0;
+    private static final int ATTR_TEXT = 1;
+    private static final int ATTR_DESC = 2;
+    private static final int ATTR_CLASS = 3;
+    private static final int ATTR_PKG = 4;
+    private static final int ATTR_FLAG = 5;
+
+    // 运算符
+    private static final int OP_EQUALS = 0;
+    private static final int OP_PREFIX = 1;
+    private static final int OP_CONTAINS = 2;
+    private static final int OP_SUFFIX = 3;
+
+    // 与左边一步的关系
+    private static final int COMBINATOR_NONE = 0;
+    private static final int COMBINATOR_DESCENDANT = 1;
+    private static final int COMBINATOR_CHILD = 2;
+
+    private static final String[] FLAG_NAMES = {
+            "clickable", "longClickable", "checkable", "checked", "focusable", "focused",
+            "selected", "enabled", "scrollable", "editable", "password", "visible"
+    };
+    private static final int[] FLAG_VALUES = {
+            UiSnapshot.FLAG_CLICKABLE, UiSnapshot.FLAG_LONG_CLICKABLE, UiSnapshot.FLAG_CHECKABLE,
+            UiSnapshot.FLAG_CHECKED, UiSnapshot.FLAG_FOCUSABLE, UiSnapshot.FLAG_FOCUSED,
+            UiSnapshot.FLAG_SELECTED, UiSnapshot.FLAG_ENABLED, UiSnapshot.FLAG_SCROLLABLE,
+            UiSnapshot.FLAG_EDITABLE, UiSnapshot.FLAG_PASSWORD, UiSnapshot.FLAG_VISIBLE
+    };
+
+    private final String source;
+    private final Step[] steps;
+
+    private Selector(String source, Step[] steps) {
+        this.source = source;
+        this.steps = steps;
+    }
+
+    /**
+     * 解析选择器
+     * @throws IllegalArgumentException 语法错误，消息中包含出错位置
+     */
+    public static Selector parse(String source) {
+        return new Parser(source).parse();
+    }
+
+    /**
+     * 把字符串写成选择器中的带引号的值
+     */
+    public static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * 查找所有匹配的节点
+     * @return 节点编号（先序）
+     */
+    public int[] findAll(UiSnapshot snapshot) {
+        Plan plan = plan(snapshot);
+        int last = steps.length - 1;
+        int[] result = new int[Math.min(plan.candidateCount, snapshot.size())];
+        int n = 0;
+        if (plan.nodes != null) {
+            for (int node : plan.nodes) {
+                if (matchesFrom(snapshot, node, last)) {
+                    result[n++] = node;
+                }
+            }
+        } else if (plan.ranges != null) {
+            for (int i = 0; i < plan.ranges.length; i += 2) {
+                for (int node = plan.ranges[i]; node < plan.ranges[i + 1]; node++) {
+                    if (matchesFrom(snapshot, node, last)) {
+                        result[n++] = node;
+                    }
+                }
+            }
+        } else {
+            for (int node = 0; node < snapshot.size(); node++) {
+                if (matchesFrom(snapshot, node, last)) {
+                    result[n++] = node;
+                }
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 查找第一个匹配的节点（先序）
+     * @return 节点编号，没有时返回 -1
+     */
+    public int findFirst(UiSnapshot snapshot) {
+        int[] nodes = findAll(snapshot);
+        return nodes.length > 0 ? nodes[0] : -1;
+    }
+
+    /**
+     * 节点是否匹配
+     */
+    public boolean matches(UiSnapshot snapshot, int node) {
+        return matchesFrom(snapshot, node, steps.length - 1);
+    }
+
+    /**
+     * 说明查找方式和候选节点数，例如 "索引 text=\"确定\"，3 个候选"
+     */
+    public String explain(UiSnapshot snapshot) {
+        Plan plan = plan(snapshot);
+        if (plan.predicate == null) {
+            return "全扫描，" + plan.candidateCount + " 个候选";
+        }
+        return (plan.nodes != null ? "索引 " : "子树 ") + plan.predicate + "，" + plan.candidateCount + " 个候选";
+    }
+
+    /**
+     * 是否能通过倒排表取得候选节点（不需要扫描全部节点）
+     */
+    public boolean isIndexed() {
+        for (Step step : steps) {
+            if (step.indexedPredicate() != null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 只有一步、没有 :index 并且带有完整 viewId 的相等条件时返回该 viewId，
+     * 这时可以直接用系统的按 viewId 查找取得候选节点，再用 matches 逐个确认
+     * @return viewId，不满足条件时返回 null
+     */
+    String getDirectViewId() {
+        if (steps.length != 1 || steps[0].index >= 0) return null;
+        for (Predicate predicate : steps[0].predicates) {
+            if (predicate.attribute == ATTR_ID && predicate.op == OP_EQUALS && predicate.value.indexOf(':') >= 0) {
+                return predicate.value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    // ==================== 查找 ====================
+
+    /**
+     * 候选节点：nodes（倒排表）或 ranges（子树范围，[start, end) 成对排列），都为 null 时扫描全部节点
+     */
+    private static class Plan {
+        int[] nodes;
+        int[] ranges;
+        int candidateCount;
+        Predicate predicate;
+    }
+
+    private Plan plan(UiSnapshot snapshot) {
+        Plan best = new Plan();
+        best.candidateCount = snapshot.size();
+        int last = steps.length - 1;
+        for (int s = last; s >= 0; s--) {
+            Predicate predicate = steps[s].indexedPredicate();
+            if (predicate == null) continue;
+            int[] postings = predicate.postings(snapshot);
+            if (s == last) {
+                if (postings.length <= best.candidateCount) {
+                    best.nodes = postings;
+                    best.ranges = null;
+                    best.candidateCount = postings.length;
+                    best.predicate = predicate;
+                }
+                continue;
+            }
+            // 后面的步骤只能在这些节点的子树中匹配；嵌套的子树只取最外层
+            int[] ranges = new int[postings.length * 2];
+            int rangeCount = 0;
+            int total = 0;
+            int end = -1;
+            for (int node : postings) {
+                if (node < end) continue;
+                end = snapshot.getSubtreeEnd(node);
+                if (end > node + 1) {
+                    ranges[rangeCount++] = node + 1;
+                    ranges[rangeCount++] = end;
+                    total += end - node - 1;
+                }
+            }
+            if (total < best.candidateCount) {
+                best.nodes = null;
+                best.ranges = Arrays.copyOf(ranges, rangeCount);
+                best.candidateCount = total;
+                best.predicate = predicate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 节点匹配第 step 步，且祖先满足前面的步骤
+     */
+    private boolean matchesFrom(UiSnapshot snapshot, int node, int step) {
+        Step current = steps[step];
+        if (!current.matches(snapshot, node)) return false;
+        if (step == 0) return true;
+        int parent = snapshot.getParent(node);
+        if (current.combinator == COMBINATOR_CHILD) {
+            return parent >= 0 && matchesFrom(snapshot, parent, step - 1);
+        }
+        for (int ancestor = parent; ancestor >= 0; ancestor = snapshot.getParent(ancestor)) {
+            if (matchesFrom(snapshot, ancestor, step - 1)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 一步：类名、属性条件和序号，以及与左边一步的关系
+     */
+    private static class Step {
+        int combinator;
+        // null 表示任意类名
+        String className;
+        Predicate[] predicates;
+        int index = -1;
+
+        boolean matches(UiSnapshot snapshot, int node) {
+            if (index >= 0 && snapshot.getIndexInParent(node) != index) return false;
+            if (className != null && !classMatches(snapshot.getClassName(node), className)) return false;
+            for (Predicate predicate : predicates) {
+                if (!predicate.matches(snapshot, node)) return false;
+            }
+            return true;
+        }
+
+        Predicate indexedPredicate() {
+            for (Predicate predicate : predicates) {
+                if (predicate.isIndexed()) return predicate;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 完整类名直接比较；不含 '.' 时按简单名匹配（Button 匹配 android.widget.Button）
+     */
+    private static boolean classMatches(String actual, String expected) {
+        if (actual == null) return false;
+        if (expected.indexOf('.') >= 0) return actual.equals(expected);
+        return actual.endsWith(expected)
+                && (actual.length() == expected.length() || actual.charAt(actual.length() - expected.length() - 1) == '.');
+    }
+
+    /**
+     * 属性条件
+     */
+    private static class Predicate {
+        int attribute;
+        int op;
+        String value;
+        int flag;
+        boolean flagValue;
+
+        boolean matches(UiSnapshot snapshot, int node) {
+            String actual;
+            switch (attribute) {
+                case ATTR_FLAG:
+                    return snapshot.hasFlag(node, flag) == flagValue;
+                case ATTR_ID:
+                    actual = snapshot.getViewIdResourceName(node);
+                    if (actual != null && op == OP_EQUALS && value.indexOf(':') < 0) {
+                        // 只写 id 名称时比较 ":id/" 之后的部分
+                        return actual.endsWith(value) && actual.length() > value.length()
+                                && actual.charAt(actual.length() - value.length() - 1) == '/';
+                    }
+                    break;
+                case ATTR_TEXT:
+                    actual = snapshot.getText(node);
+                    break;
+                case ATTR_DESC:
+                    actual = snapshot.getContentDescription(node);
+                    break;
+                case ATTR_CLASS:
+                    actual = snapshot.getClassName(node);
+                    if (op == OP_EQUALS) return classMatches(actual, value);
+                    break;
+                default:
+                    actual = snapshot.getPackageName(node);
+            }
+            if (actual == null) return false;
+            switch (op) {
+                case OP_EQUALS: return actual.equals(value);
+                case OP_PREFIX: return actual.startsWith(value);
+                case OP_CONTAINS: return actual.contains(value);
+                default: return actual.endsWith(value);
+            }
+        }
+
+        /**
+         * id/text/desc 的相等条件可以通过倒排表查找
+         */
+        boolean isIndexed() {
+            return op == OP_EQUALS && (attribute == ATTR_ID || attribute == ATTR_TEXT || attribute == ATTR_DESC);
+        }
+
+        int[] postings(UiSnapshot snapshot) {
+            if (attribute == ATTR_TEXT) {
+                return snapshot.postings(UiSnapshot.INDEX_TEXT, snapshot.indexOf(value));
+            }
+            if (attribute == ATTR_DESC) {
+                return snapshot.postings(UiSnapshot.INDEX_DESCRIPTION, snapshot.indexOf(value));
+            }
+            if (value.indexOf(':') >= 0) {
+                return snapshot.postings(UiSnapshot.INDEX_VIEW_ID, snapshot.indexOf(value));
+            }
+            // 只写 id 名称：在字符串表（比节点少得多）中找出以 "/名称" 结尾的字符串，合并它们的节点
+            int[] result = new int[0];
+            String suffix = "/" + value;
+            for (int s = 0; s < snapshot.getStringCount(); s++) {
+                if (!snapshot.getString(s).endsWith(suffix)) continue;
+                int[] nodes = snapshot.postings(UiSnapshot.INDEX_VIEW_ID, s);
+                if (nodes.length == 0) continue;
+                result = result.length == 0 ? nodes : merge(result, nodes);
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            String name = attribute == ATTR_ID ? "id" : attribute == ATTR_TEXT ? "text" : "desc";
+            return name + "=" + quote(value);
+        }
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int n = 0, i = 0, j = 0;
+        while (i < a.length || j < b.length) {
+            result[n++] = j >= b.length || (i < a.length && a[i] < b[j]) ? a[i++] : b[j++];
+        }
+        return result;
+    }
+
+    // ==================== 解析 ====================
+
+    private static class Parser {
+        private final String source;
+        private int pos;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        Selector parse() {
+            List<Step> steps = new ArrayList<>();
+            skipSpaces();
+            if (pos == source.length()) {
+                throw error("选择器为空");
+            }
+            int combinator = COMBINATOR_NONE;
+            while (true) {
+                Step step = parseStep();
+                step.combinator = combinator;
+                steps.add(step);
+                int before = pos;
+                skipSpaces();
+                if (pos == source.length()) break;
+                if (source.charAt(pos) == '>') {
+                    pos++;
+                    skipSpaces();
+                    combinator = COMBINATOR_CHILD;
+                } else if (pos > before) {
+                    combinator = COMBINATOR_DESCENDANT;
+                } else {
+                    throw error("意外的字符 '" + source.charAt(pos) + "'");
+                }
+            }
+            return new Selector(source, steps.toArray(new Step[0]));
+        }
+
+        private Step parseStep() {
+            Step step = new Step();
+            List<Predicate> predicates = new ArrayList<>();
+            int start = pos;
+            if (pos < source.length() && source.charAt(pos) == '*') {
+                pos++;
+            } else {
+                while (pos < source.length() && isNameChar(source.charAt(pos))) {
+                    pos++;
+                }
+                if (pos > start) {
+                    step.className = source.substring(start, pos);
+                }
+            }
+            while (pos < source.length()) {
+                char c = source.charAt(pos);
+                if (c == '[') {
+                    predicates.add(parsePredicate());
+                } else if (c == ':') {
+                    parsePseudo(step);
+                } else {
+                    break;
+                }
+            }
+            if (pos == start) {
+                throw error(pos < source.length() ? "意外的字符 '" + source.charAt(pos) + "'" : "缺少条件");
+            }
+            step.predicates = predicates.toArray(new Predicate[0]);
+            return step;
+        }
+
+        private Predicate parsePredicate() {
+            pos++;
+            skipSpaces();
+            int nameStart = pos;
+            // 属性名不含 '$' 和 '.'，以免吞掉 "$=" 运算符
+            while (pos < source.length() && Character.isLetterOrDigit(source.charAt(pos))) {
+                pos++;
+            }
+            String name = source.substring(nameStart, pos);
+            if (name.isEmpty()) {
+                throw error("缺少属性名");
+            }
+            Predicate predicate = new Predicate();
+            predicate.attribute = attribute(name, nameStart);
+            if (predicate.attribute == ATTR_FLAG) {
+                predicate.flag = FLAG_VALUES[Arrays.asList(FLAG_NAMES).indexOf(name)];
+            }
+            skipSpaces();
+            if (pos < source.length() && source.charAt(pos) == ']') {
+                pos++;
+                if (predicate.attribute != ATTR_FLAG) {
+                    throw error("属性 " + name + " 缺少值", nameStart);
+                }
+                predicate.flagValue = true;
+                return predicate;
+            }
+            predicate.op = parseOperator();
+            skipSpaces();
+            int valueStart = pos;
+            predicate.value = parseValue();
+            skipSpaces();
+            expect(']');
+            if (predicate.attribute == ATTR_FLAG) {
+                if (predicate.op != OP_EQUALS || !(predicate.value.equals("true") || predicate.value.equals("false"))) {
+                    throw error("标志 " + name + " 只能写成 =true 或 =false", valueStart);
+                }
+                predicate.flagValue = predicate.value.equals("true");
+            }
+            return predicate;
+        }
+
+        private void parsePseudo(Step step) {
+            int start = pos;
+            pos++;
+            if (!source.startsWith("index(", pos)) {
+                throw error("只支持 :index(n)", start);
+            }
+            pos += "index(".length();
+            int numberStart = pos;
+            while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                pos++;
+            }
+            if (pos == numberStart || pos - numberStart > 9) {
+                throw error("缺少序号");
+            }
+            step.index = Integer.parseInt(source.substring(numberStart, pos));
+            expect(')');
+        }
+
+        private int attribute(String name, int at) {
+            switch (name) {
+                case "id": return ATTR_ID;
+                case "text": return ATTR_TEXT;
+                case "desc": return ATTR_DESC;
+                case "class": return ATTR_CLASS;
+                case "pkg": return ATTR_PKG;
+            }
+            if (Arrays.asList(FLAG_NAMES).contains(name)) return ATTR_FLAG;
+            throw error("未知属性 " + name, at);
+        }
+
+        private int parseOperator() {
+            if (pos < source.length()) {
+                char c = source.charAt(pos);
+                if (c == '=') {
+                    pos++;
+                    return OP_EQUALS;
+                }
+                if (pos + 1 < source.length() && source.charAt(pos + 1) == '=') {
+                    int op = c == '^' ? OP_PREFIX : c == '*' ? OP_CONTAINS : c == '$' ? OP_SUFFIX : -1;
+                    if (op >= 0) {
+                        pos += 2;
+                        return op;
+                    }
+                }
+            }
+            throw error("缺少运算符（= ^= *= $=）");
+        }
+
+        /**
+         * 带引号的值（支持 \ 转义）或不带引号的值（到 ']' 为止，去掉首尾空白）
+         */
+        private String parseValue() {
+            if (pos < source.length() && (source.charAt(pos) == '"' || source.charAt(pos) == '\'')) {
+                char quote = source.charAt(pos);
+                int start = pos++;
+                StringBuilder sb = new StringBuilder();
+                while (pos < source.length()) {
+                    char c = source.charAt(pos++);
+                    if (c == quote) return sb.toString();
+                    if (c == '\\' && pos < source.length()) {
+                        c = source.charAt(pos++);
+                    }
+                    sb.append(c);
+                }
+                throw error("引号未闭合", start);
+            }
+            int start = pos;
+            while (pos < source.length() && source.charAt(pos) != ']') {
+                pos++;
+            }
+            return source.substring(start, pos).trim();
+        }
+
+        private void expect(char c) {
+            if (pos >= source.length() || source.charAt(pos) != c) {
+                throw error("缺少 '" + c + "'");
+            }
+            pos++;
+        }
+
+        private void skipSpaces() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+        }
+
+        private IllegalArgumentException error(String message) {
+            return error(message, pos);
+        }
+
+        private IllegalArgumentException error(String message, int at) {
+            return new IllegalArgumentException("第 " + (at + 1) + " 个字符：" + message);
+        }
+    }
+}
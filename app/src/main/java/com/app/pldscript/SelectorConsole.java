@@ -0,0 +1,222 @@
+package com.app.pldscript;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * 选择器控制台 - 输入选择器（语法见 Selector），匹配的控件实时在覆盖层上高亮，并显示匹配数、耗时和查找方式
+ *
+ * 输入变化后在下一帧才解析，一帧内的多次输入只解析一次；解析结果一直复用到输入再次变化。
+ * 控制台自己不采集快照：覆盖层每次刷新后把采集到的快照交过来，最多每 EVALUATE_INTERVAL_MS 用最新的快照
+ * 重新查找一次。覆盖层的快照跳过了不可见和屏幕外的子树，匹配结果只包含这些控件，状态栏中会注明。
+ */
+public class SelectorConsole {
+    private static final String TAG = "SelectorConsole";
+    // 屏幕连续变化时重新查找的最短间隔
+    private static final long EVALUATE_INTERVAL_MS = 200;
+
+    /**
+     * 控制台事件（在主线程中调用）
+     */
+    public interface Listener {
+        /**
+         * 匹配结果变化
+         * @param nodes 匹配的节点，输入为空或有语法错误时为 null
+         */
+        void onMatchesChanged(UiSnapshot snapshot, int[] nodes);
+
+        void onClose();
+    }
+
+    private final Listener listener;
+    private final LinearLayout view;
+    private final TextView statusLabel;
+    private UiSnapshot snapshot;
+    // 等待查找的新快照
+    private UiSnapshot pendingSnapshot;
+    private Selector selector;
+    private String parseError;
+    private String text = "";
+    private String pendingText = "";
+    private boolean parseScheduled;
+    private boolean evaluateScheduled;
+    private long lastEvaluateTime;
+    private final Runnable runParse = this::runParse;
+    private final Runnable runEvaluate = this::runEvaluate;
+
+    /**
+     * @param snapshot 覆盖层最近一次刷新的快照，还没有时为 null
+     */
+    public SelectorConsole(Context context, UiSnapshot snapshot, Listener listener) {
+        this.snapshot = snapshot;
+        this.listener = listener;
+        float density = context.getResources().getDisplayMetrics().density;
+
+        EditText input = new EditText(context);
+        input.setSingleLine(true);
+        input.setHint("选择器，如 Button[text=\"确定\"]");
+        input.setTextColor(Color.WHITE);
+        input.setHintTextColor(Color.GRAY);
+        input.setTextSize(14);
+        input.setTypeface(Typeface.MONOSPACE);
+        input.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                scheduleParse(s.toString());
+            }
+        });
+
+        TextView closeBtn = new TextView(context);
+        closeBtn.setText("关闭");
+        closeBtn.setTextColor(Color.WHITE);
+        closeBtn.setTextSize(16);
+        closeBtn.setPadding(dp(density, 16), dp(density, 12), dp(density, 16), dp(density, 12));
+        closeBtn.setBackgroundColor(Color.argb(200, 100, 0, 0));
+        closeBtn.setGravity(Gravity.CENTER);
+        closeBtn.setOnClickListener(v -> listener.onClose());
+
+        LinearLayout header = new LinearLayout(context);
+        header.setOrientation(LinearLayout.HORIZONTAL);
+        header.setGravity(Gravity.CENTER_VERTICAL);
+        header.addView(input, new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+        header.addView(closeBtn);
+
+        statusLabel = new TextView(context);
+        statusLabel.setTextSize(12);
+        statusLabel.setPadding(dp(density, 8), 0, dp(density, 8), dp(density, 6));
+
+        view = new LinearLayout(context);
+        view.setOrientation(LinearLayout.VERTICAL);
+        view.setBackgroundColor(Color.argb(250, 20, 20, 20));
+        view.addView(header, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        view.addView(statusLabel, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+
+        showStatus(null, 0);
+    }
+
+    public View getView() {
+        return view;
+    }
+
+    /**
+     * 覆盖层刷新了快照，稍后在新快照上重新查找（连续变化时按间隔合并，只用最新的快照）
+     */
+    public void onScreenChanged(UiSnapshot captured) {
+        if (captured == null) return;
+        pendingSnapshot = captured;
+        if (evaluateScheduled) return;
+        evaluateScheduled = true;
+        long delay = lastEvaluateTime + EVALUATE_INTERVAL_MS - SystemClock.uptimeMillis();
+        view.postDelayed(runEvaluate, Math.max(0, delay));
+    }
+
+    /**
+     * 停止等待中的查找和解析
+     */
+    public void release() {
+        view.removeCallbacks(runEvaluate);
+        view.removeCallbacks(runParse);
+        evaluateScheduled = false;
+        parseScheduled = false;
+        pendingSnapshot = null;
+    }
+
+    /**
+     * 记录输入，在下一帧统一解析
+     */
+    private void scheduleParse(String input) {
+        pendingText = input.trim();
+        if (!parseScheduled) {
+            parseScheduled = true;
+            view.postOnAnimation(runParse);
+        }
+    }
+
+    private void runParse() {
+        parseScheduled = false;
+        if (pendingText.equals(text)) return;
+        text = pendingText;
+        selector = null;
+        parseError = null;
+        if (!text.isEmpty()) {
+            try {
+                selector = Selector.parse(text);
+            } catch (IllegalArgumentException e) {
+                parseError = e.getMessage();
+            }
+        }
+        evaluate();
+    }
+
+    private void runEvaluate() {
+        evaluateScheduled = false;
+        lastEvaluateTime = SystemClock.uptimeMillis();
+        UiSnapshot captured = pendingSnapshot;
+        pendingSnapshot = null;
+        if (captured == null) return;
+        boolean first = snapshot == null;
+        snapshot = captured;
+        // 输入没有变化，直接用已解析的选择器在新快照上查找
+        if (selector != null) {
+            evaluate();
+        } else if (first) {
+            showStatus(null, 0);
+        }
+    }
+
+    private void evaluate() {
+        if (selector == null || snapshot == null) {
+            showStatus(null, 0);
+            listener.onMatchesChanged(snapshot, null);
+            return;
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        int[] nodes = selector.findAll(snapshot);
+        long elapsedUs = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+        PLog.d(TAG, "查找 \"{}\": {} 个结果，耗时 {}us", text, nodes.length, elapsedUs);
+        showStatus(nodes, elapsedUs);
+        listener.onMatchesChanged(snapshot, nodes);
+    }
+
+    private void showStatus(int[] nodes, long elapsedUs) {
+        if (parseError != null) {
+            statusLabel.setTextColor(Color.rgb(255, 120, 120));
+            statusLabel.setText(parseError);
+        } else if (snapshot == null) {
+            statusLabel.setTextColor(Color.rgb(255, 120, 120));
+            statusLabel.setText("无法获取控件树");
+        } else if (nodes == null) {
+            statusLabel.setTextColor(Color.LTGRAY);
+            statusLabel.setText(snapshot.size() + " 个可见节点");
+        } else {
+            // 全扫描的选择器用黄色提示，便于改写为走索引的写法
+            statusLabel.setTextColor(selector.isIndexed() ? Color.LTGRAY : Color.rgb(255, 200, 0));
+            statusLabel.setText(nodes.length + " 个可见匹配  " + (elapsedUs >= 1000 ? elapsedUs / 1000 + "ms" : elapsedUs + "us")
+                    + "  " + selector.explain(snapshot));
+        }
+    }
+
+    private static int dp(float density, int value) {
+        return (int) (value * density + 0.5f);
+    }
+}
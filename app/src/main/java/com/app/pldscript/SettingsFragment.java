@@ -8,6 +8,7 @@ import android.provider.Settings;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 import android.widget.CompoundButton;
 import android.widget.Switch;
 import android.widget.TextView;
@@ -17,10 +18,15 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
 public class SettingsFragment extends Fragment {
     private Switch switchAccessibility;
     private Switch switchOverlay;
     private static final int REQUEST_OVERLAY_PERMISSION = 1001;
+    private static final int REQUEST_EXPORT_LOGS = 1002;
 
     @Nullable
     @Override
@@ -60,6 +66,18 @@ public class SettingsFragment extends Fragment {
             }
         });
         
+        // 导出运行日志：由用户选择保存位置
+        Button exportLogs = view.findViewById(R.id.button_export_logs);
+        exportLogs.setOnClickListener(v -> {
+            String name = "pldscript-logs-"
+                    + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".zip";
+            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT)
+                    .addCategory(Intent.CATEGORY_OPENABLE)
+                    .setType("application/zip")
+                    .putExtra(Intent.EXTRA_TITLE, name);
+            startActivityForResult(intent, REQUEST_EXPORT_LOGS);
+        });
+        
         return view;
     }
 
@@ -100,7 +118,30 @@ public class SettingsFragment extends Fragment {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == REQUEST_OVERLAY_PERMISSION) {
             updateSwitchStates();
+        } else if (requestCode == REQUEST_EXPORT_LOGS && resultCode == android.app.Activity.RESULT_OK
+                && data != null && data.getData() != null) {
+            exportLogs(data.getData());
         }
     }
+
+    /**
+     * 在后台线程中打包日志，完成后提示结果
+     */
+    private void exportLogs(Uri uri) {
+        android.content.Context context = requireContext().getApplicationContext();
+        new Thread(() -> {
+            String message;
+            try {
+                int count = RunLogs.export(context, uri);
+                message = "已导出 " + count + " 个日志文件";
+            } catch (Exception e) {
+                PLog.e("SettingsFragment", "导出日志失败", e);
+                message = "导出日志失败: " + e.getMessage();
+            }
+            String result = message;
+            new android.os.Handler(android.os.Looper.getMainLooper()).post(() ->
+                    Toast.makeText(context, result, Toast.LENGTH_LONG).show());
+        }, "PLD-ExportLogs").start();
+    }
 }
 
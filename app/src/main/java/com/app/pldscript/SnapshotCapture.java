@@ -0,0 +1,171 @@
+package com.app.pldscript;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * 快照采集 - 遍历实时控件树，把每个节点的属性写入快照
+ * 每个子节点读取完属性后立即回收，采集过程不持有节点句柄
+ */
+public class SnapshotCapture {
+    private static final String TAG = "SnapshotCapture";
+
+    /**
+     * 采集控件树到内存快照
+     * @param root 根节点（由调用方负责回收）
+     * @param session 获取根节点时使用的遍历
+     */
+    public static UiSnapshot capture(AccessibilityNodeInfo root, TreeCapture.Session session) {
+        return capture(root, session, new TraversalOptions());
+    }
+
+    /**
+     * 按遍历选项采集控件树到内存快照
+     * @param root 根节点（由调用方负责回收）
+     */
+    public static UiSnapshot capture(AccessibilityNodeInfo root, TreeCapture.Session session, TraversalOptions options) {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(System.currentTimeMillis());
+        capture(root, builder, session, options);
+        return builder.build();
+    }
+
+    /**
+     * 把单个节点采集为只有一个节点的快照，用于对实时节点检查选择器条件（序号未知，记为 -1）
+     */
+    public static UiSnapshot captureNode(AccessibilityNodeInfo node) {
+        Rect bounds = new Rect();
+        node.getBoundsInScreen(bounds);
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(System.currentTimeMillis());
+        builder.addNode(-1, -1, string(node.getClassName()), string(node.getPackageName()),
+                string(node.getText()), string(node.getContentDescription()),
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 ? node.getViewIdResourceName() : null,
+                bounds.left, bounds.top, bounds.right, bounds.bottom, flagsOf(node));
+        return builder.build();
+    }
+
+    /**
+     * 采集控件树并写入二进制快照文件
+     * @return 写入的节点数
+     */
+    public static int save(AccessibilityNodeInfo root, File file, TreeCapture.Session session) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter(System.currentTimeMillis());
+        capture(root, writer, session, new TraversalOptions());
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录: " + dir);
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            writer.writeTo(out);
+        }
+        PLog.d(TAG, "快照已保存: {}，节点数: {}，大小: {} 字节", file, writer.size(), file.length());
+        return writer.size();
+    }
+
+    /**
+     * 先序遍历控件树，逐个节点写入接收者
+     * @param root 根节点（由调用方负责回收）
+     * @param session 子节点通过它获取，以便使用批量预取并统计调用次数
+     * @param options 遍历选项，被过滤的节点连同子树都不写入
+     * @return 写入的节点数
+     */
+    public static int capture(AccessibilityNodeInfo root, UiSnapshot.Sink sink, TreeCapture.Session session,
+                              TraversalOptions options) {
+        if (root == null) return 0;
+        ArrayDeque<Entry> stack = new ArrayDeque<>();
+        stack.push(new Entry(root, -1, 0, 0));
+        Rect bounds = new Rect();
+        int count = 0;
+
+        while (!stack.isEmpty()) {
+            Entry entry = stack.pop();
+            AccessibilityNodeInfo node = entry.node;
+            try {
+                node.getBoundsInScreen(bounds);
+                if (!options.accept(node, bounds)) {
+                    continue;
+                }
+                int index = sink.addNode(entry.parent, entry.indexInParent,
+                        string(node.getClassName()), string(node.getPackageName()),
+                        string(node.getText()), string(node.getContentDescription()),
+                        Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 ? node.getViewIdResourceName() : null,
+                        bounds.left, bounds.top, bounds.right, bounds.bottom, flagsOf(node));
+                count++;
+                if (options.isFull(count)) {
+                    break;
+                }
+                if (!options.canDescend(entry.depth)) {
+                    continue;
+                }
+
+                // 逆序压栈，保证出栈顺序与子节点顺序一致（先序编号）
+                int childCount = node.getChildCount();
+                for (int i = childCount - 1; i >= 0; i--) {
+                    AccessibilityNodeInfo child = session.getChild(node, i);
+                    if (child != null) {
+                        stack.push(new Entry(child, index, i, entry.depth + 1));
+                    }
+                }
+            } catch (Exception e) {
+                PLog.e(TAG, "采集节点时出错", e);
+            } finally {
+                if (node != root) {
+                    node.recycle();
+                }
+            }
+        }
+        // 达到节点数上限时回收还没有访问的节点
+        while (!stack.isEmpty()) {
+            AccessibilityNodeInfo node = stack.pop().node;
+            if (node != root) {
+                node.recycle();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 提取节点状态标志
+     */
+    static int flagsOf(AccessibilityNodeInfo node) {
+        int flags = 0;
+        if (node.isClickable()) flags |= UiSnapshot.FLAG_CLICKABLE;
+        if (node.isLongClickable()) flags |= UiSnapshot.FLAG_LONG_CLICKABLE;
+        if (node.isCheckable()) flags |= UiSnapshot.FLAG_CHECKABLE;
+        if (node.isChecked()) flags |= UiSnapshot.FLAG_CHECKED;
+        if (node.isFocusable()) flags |= UiSnapshot.FLAG_FOCUSABLE;
+        if (node.isFocused()) flags |= UiSnapshot.FLAG_FOCUSED;
+        if (node.isSelected()) flags |= UiSnapshot.FLAG_SELECTED;
+        if (node.isEnabled()) flags |= UiSnapshot.FLAG_ENABLED;
+        if (node.isScrollable()) flags |= UiSnapshot.FLAG_SCROLLABLE;
+        if (node.isEditable()) flags |= UiSnapshot.FLAG_EDITABLE;
+        if (node.isPassword()) flags |= UiSnapshot.FLAG_PASSWORD;
+        if (node.isVisibleToUser()) flags |= UiSnapshot.FLAG_VISIBLE;
+        return flags;
+    }
+
+    private static String string(CharSequence s) {
+        return s != null ? s.toString() : null;
+    }
+
+    private static class Entry {
+        final AccessibilityNodeInfo node;
+        final int parent;
+        final int indexInParent;
+        final int depth;
+
+        Entry(AccessibilityNodeInfo node, int parent, int indexInParent, int depth) {
+            this.node = node;
+            this.parent = parent;
+            this.indexInParent = indexInParent;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.app.pldscript;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 快照历史 - 保存最近的若干个控件树快照，供控件查看器回看已经消失的对话框、提示等
+ *
+ * 版本之间共享数据：新快照的某一列与上一个版本完全相同时直接引用上一个版本的数组（例如滚动时类名、viewId、
+ * 父子关系通常不变，只有坐标列变化），字符串在所有版本间只保存一份。与上一个版本完全相同的快照不再记录。
+ * 共享的数组和字符串按引用计数，内存占用按不同对象估算，只计算一次。
+ * 超过版本数或内存上限时从最旧的版本开始淘汰（至少保留最新的一个）。快照中按需建立的索引不计入内存占用。
+ * 不依赖 Android 类。不是线程安全的。
+ */
+public class SnapshotHistory {
+    // 对象头和数组长度的估算开销
+    private static final int ARRAY_OVERHEAD = 16;
+    private static final int STRING_OVERHEAD = 40;
+
+    private final long maxBytes;
+    private final UiSnapshot[] ring;
+    private int head;
+    private int size;
+    private long bytes;
+
+    // 数组（int[] 或 String[]）-> 引用它的版本数
+    private final Map<Object, int[]> arrayRefs = new IdentityHashMap<>();
+    // 字符串池：内容 -> 共享的字符串和引用它的字符串表数
+    private final Map<String, PooledString> strings = new HashMap<>();
+
+    /**
+     * @param maxVersions 最多保存的版本数
+     * @param maxBytes 内存上限（估算值）
+     */
+    public SnapshotHistory(int maxVersions, long maxBytes) {
+        ring = new UiSnapshot[Math.max(1, maxVersions)];
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 记录一个版本
+     * @return 是否已记录（与最新版本相同时不记录）
+     */
+    public boolean add(UiSnapshot snapshot) {
+        UiSnapshot latest = size > 0 ? get(size - 1) : null;
+        UiSnapshot shared = share(snapshot, latest);
+        if (shared == null) return false;
+
+        if (size == ring.length) {
+            evictOldest();
+        }
+        ring[(head + size) % ring.length] = shared;
+        size++;
+        retain(shared);
+        while (size > 1 && bytes > maxBytes) {
+            evictOldest();
+        }
+        return true;
+    }
+
+    /**
+     * 版本数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index 0 为最旧的版本，size() - 1 为最新的版本
+     */
+    public UiSnapshot get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return ring[(head + index) % ring.length];
+    }
+
+    /**
+     * 版本的位置（按引用查找）
+     * @return 位置，已被淘汰时返回 -1
+     */
+    public int indexOf(UiSnapshot snapshot) {
+        for (int i = 0; i < size; i++) {
+            if (get(i) == snapshot) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 当前估算的内存占用（字节）
+     */
+    public long getMemoryBytes() {
+        return bytes;
+    }
+
+    public void clear() {
+        Arrays.fill(ring, null);
+        head = 0;
+        size = 0;
+        bytes = 0;
+        arrayRefs.clear();
+        strings.clear();
+    }
+
+    /**
+     * 与上一个版本相同的列改为引用上一个版本的数组
+     * @return 共享后的快照，与上一个版本完全相同时返回 null
+     */
+    private UiSnapshot share(UiSnapshot s, UiSnapshot prev) {
+        String[] table = prev != null && Arrays.equals(s.strings, prev.strings) ? prev.strings : pool(s.strings);
+        int[][] columns = columns(s);
+        int[][] prevColumns = prev != null ? columns(prev) : null;
+        boolean same = prev != null && table == prev.strings;
+        for (int c = 0; c < columns.length; c++) {
+            if (prevColumns != null && Arrays.equals(columns[c], prevColumns[c])) {
+                columns[c] = prevColumns[c];
+            } else {
+                same = false;
+            }
+        }
+        if (same) return null;
+        return new UiSnapshot(s.timestamp, table, s.size(), columns[0], columns[1], columns[2], columns[3],
+                columns[4], columns[5], columns[6], columns[7], columns[8], columns[9], columns[10], columns[11]);
+    }
+
+    private static int[][] columns(UiSnapshot s) {
+        return new int[][]{s.parent, s.indexInParent, s.className, s.packageName, s.text, s.description,
+                s.viewId, s.left, s.top, s.right, s.bottom, s.flags};
+    }
+
+    /**
+     * 新的字符串表：内容相同的字符串换成池中已有的对象
+     */
+    private String[] pool(String[] table) {
+        String[] result = new String[table.length];
+        for (int i = 0; i < table.length; i++) {
+            PooledString pooled = strings.get(table[i]);
+            result[i] = pooled != null ? pooled.value : table[i];
+        }
+        return result;
+    }
+
+    private void retain(UiSnapshot s) {
+        if (retainArray(s.strings, ARRAY_OVERHEAD + 4L * s.strings.length)) {
+            for (String value : s.strings) {
+                PooledString pooled = strings.get(value);
+                if (pooled == null) {
+                    pooled = new PooledString(value);
+                    strings.put(value, pooled);
+                    bytes += STRING_OVERHEAD + 2L * value.length();
+                }
+                pooled.refs++;
+            }
+        }
+        for (int[] column : columns(s)) {
+            retainArray(column, ARRAY_OVERHEAD + 4L * column.length);
+        }
+    }
+
+    /**
+     * @return 是否是第一次引用该数组
+     */
+    private boolean retainArray(Object array, long size) {
+        int[] refs = arrayRefs.get(array);
+        if (refs != null) {
+            refs[0]++;
+            return false;
+        }
+        arrayRefs.put(array, new int[]{1});
+        bytes += size;
+        return true;
+    }
+
+    private void evictOldest() {
+        UiSnapshot s = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        if (releaseArray(s.strings, ARRAY_OVERHEAD + 4L * s.strings.length)) {
+            for (String value : s.strings) {
+                PooledString pooled = strings.get(value);
+                if (--pooled.refs == 0) {
+                    strings.remove(value);
+                    bytes -= STRING_OVERHEAD + 2L * value.length();
+                }
+            }
+        }
+        for (int[] column : columns(s)) {
+            releaseArray(column, ARRAY_OVERHEAD + 4L * column.length);
+        }
+    }
+
+    /**
+     * @return 是否已没有版本引用该数组
+     */
+    private boolean releaseArray(Object array, long size) {
+        int[] refs = arrayRefs.get(array);
+        if (--refs[0] > 0) return false;
+        arrayRefs.remove(array);
+        bytes -= size;
+        return true;
+    }
+
+    private static class PooledString {
+        final String value;
+        int refs;
+
+        PooledString(String value) {
+            this.value = value;
+        }
+    }
+}
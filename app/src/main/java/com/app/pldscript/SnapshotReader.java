@@ -0,0 +1,222 @@
+package com.app.pldscript;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 快照读取器 - 解析 SnapshotWriter 写出的二进制快照，不依赖 Android 类，可直接在 JVM 测试中使用
+ */
+public class SnapshotReader {
+    private final byte[] data;
+    private int pos;
+
+    private SnapshotReader(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * 从文件加载快照
+     */
+    public static UiSnapshot load(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * 从输入流读取快照（读取到流结束）
+     */
+    public static UiSnapshot read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return read(out.toByteArray());
+    }
+
+    /**
+     * 从字节数组读取快照
+     */
+    public static UiSnapshot read(byte[] data) throws IOException {
+        try {
+            return new SnapshotReader(data).parse();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated snapshot", e);
+        }
+    }
+
+    private UiSnapshot parse() throws IOException {
+        for (byte b : SnapshotWriter.MAGIC) {
+            if (data.length <= pos || data[pos++] != b) {
+                throw new IOException("Not a PLDS snapshot");
+            }
+        }
+        int version = readVarint();
+        if (version > SnapshotWriter.VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+        long timestamp = readVarlong();
+        int count = readVarint();
+        int stringCount = readVarint();
+        if (count < 0 || stringCount < 0 || count > data.length || stringCount > data.length) {
+            throw new IOException("Corrupted snapshot header");
+        }
+
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            int length = readVarint();
+            if (length < 0 || pos + length > data.length) {
+                throw new IOException("Corrupted string table");
+            }
+            strings[i] = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+        }
+
+        int[] parent = null;
+        int[] indexInParent = new int[count];
+        int[] className = filled(count);
+        int[] packageName = filled(count);
+        int[] text = filled(count);
+        int[] description = filled(count);
+        int[] viewId = filled(count);
+        int[] left = new int[count];
+        int[] top = new int[count];
+        int[] width = new int[count];
+        int[] height = new int[count];
+        int[] flags = new int[count];
+
+        int columnCount = readVarint();
+        for (int c = 0; c < columnCount; c++) {
+            int id = readVarint();
+            int length = readVarint();
+            int end = pos + length;
+            if (length < 0 || end > data.length) {
+                throw new IOException("Corrupted column " + id);
+            }
+            switch (id) {
+                case SnapshotWriter.COL_PARENT:
+                    parent = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        int delta = readVarint();
+                        parent[i] = delta == 0 ? -1 : i - delta;
+                    }
+                    break;
+                case SnapshotWriter.COL_INDEX:
+                    readColumn(indexInParent, count, false);
+                    break;
+                case SnapshotWriter.COL_CLASS:
+                    readStringColumn(className, count, stringCount);
+                    break;
+                case SnapshotWriter.COL_PACKAGE:
+                    readStringColumn(packageName, count, stringCount);
+                    break;
+                case SnapshotWriter.COL_TEXT:
+                    readStringColumn(text, count, stringCount);
+                    break;
+                case SnapshotWriter.COL_DESCRIPTION:
+                    readStringColumn(description, count, stringCount);
+                    break;
+                case SnapshotWriter.COL_VIEW_ID:
+                    readStringColumn(viewId, count, stringCount);
+                    break;
+                case SnapshotWriter.COL_LEFT:
+                    readColumn(left, count, true);
+                    break;
+                case SnapshotWriter.COL_TOP:
+                    readColumn(top, count, true);
+                    break;
+                case SnapshotWriter.COL_WIDTH:
+                    readColumn(width, count, true);
+                    break;
+                case SnapshotWriter.COL_HEIGHT:
+                    readColumn(height, count, true);
+                    break;
+                case SnapshotWriter.COL_FLAGS:
+                    readColumn(flags, count, false);
+                    break;
+                default:
+                    // 不认识的列（更新版本写入），直接跳过
+                    break;
+            }
+            if (pos > end) {
+                throw new IOException("Corrupted column " + id);
+            }
+            pos = end;
+        }
+        if (parent == null) {
+            throw new IOException("Missing parent column");
+        }
+
+        // 还原绝对坐标（父节点总是在子节点之前）
+        int[] right = new int[count];
+        int[] bottom = new int[count];
+        for (int i = 0; i < count; i++) {
+            int p = parent[i];
+            if (p >= i || p < -1) {
+                throw new IOException("Corrupted parent index at node " + i);
+            }
+            if (p >= 0) {
+                left[i] += left[p];
+                top[i] += top[p];
+            }
+            right[i] = left[i] + width[i];
+            bottom[i] = top[i] + height[i];
+        }
+        return new UiSnapshot(timestamp, strings, count, parent, indexInParent,
+                className, packageName, text, description, viewId, left, top, right, bottom, flags);
+    }
+
+    private void readColumn(int[] out, int count, boolean zigzag) {
+        for (int i = 0; i < count; i++) {
+            int v = readVarint();
+            out[i] = zigzag ? (v >>> 1) ^ -(v & 1) : v;
+        }
+    }
+
+    private void readStringColumn(int[] out, int count, int stringCount) throws IOException {
+        for (int i = 0; i < count; i++) {
+            int v = readVarint() - 1;
+            if (v < -1 || v >= stringCount) {
+                throw new IOException("String index out of range at node " + i);
+            }
+            out[i] = v;
+        }
+    }
+
+    private int readVarint() {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = data[pos++];
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private long readVarlong() {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = data[pos++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private static int[] filled(int count) {
+        int[] array = new int[count];
+        Arrays.fill(array, -1);
+        return array;
+    }
+}
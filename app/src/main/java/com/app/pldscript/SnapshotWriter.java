@@ -0,0 +1,213 @@
+package com.app.pldscript;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 快照写入器 - 采集控件树时逐个节点追加，不构建节点对象，也不保留节点的字符串和属性
+ *
+ * 不是流式写入：各列和字符串表先编码到内存缓冲区，writeTo 时按格式一次输出，
+ * 因此整个快照编码后的字节（与文件大小相当）会一直留在内存中，直到写入器被丢弃。
+ *
+ * 文件格式（版本 1，所有整数均为 varint）：
+ * <pre>
+ * "PLDS"            4 字节魔数
+ * version           格式版本
+ * timestamp         采集时间（毫秒）
+ * nodeCount         节点数
+ * stringCount       字符串表大小，随后每个字符串为 字节长度 + UTF-8 字节
+ * columnCount       列数，随后每列为 列编号 + 字节长度 + nodeCount 个 varint
+ * </pre>
+ * 字符串列存放 字符串编号 + 1（0 表示 null）；left/top 存放相对父节点的 zigzag 差值，
+ * 宽高同样使用 zigzag 编码。读取方会跳过不认识的列，便于以后扩展。
+ */
+public class SnapshotWriter implements UiSnapshot.Sink {
+    static final byte[] MAGIC = {'P', 'L', 'D', 'S'};
+    static final int VERSION = 1;
+
+    // 列编号
+    static final int COL_PARENT = 1;        // 当前编号 - 父节点编号（根节点为 0）
+    static final int COL_INDEX = 2;         // 在父节点中的序号
+    static final int COL_CLASS = 3;
+    static final int COL_PACKAGE = 4;
+    static final int COL_TEXT = 5;
+    static final int COL_DESCRIPTION = 6;
+    static final int COL_VIEW_ID = 7;
+    static final int COL_LEFT = 8;
+    static final int COL_TOP = 9;
+    static final int COL_WIDTH = 10;
+    static final int COL_HEIGHT = 11;
+    static final int COL_FLAGS = 12;
+    private static final int COLUMN_COUNT = 12;
+
+    private final long timestamp;
+    private final VarintBuffer[] columns = new VarintBuffer[COLUMN_COUNT];
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final VarintBuffer stringTable = new VarintBuffer(1024);
+    // 仅保留计算差值需要的坐标
+    private int[] lefts = new int[256];
+    private int[] tops = new int[256];
+    private int count;
+
+    public SnapshotWriter(long timestamp) {
+        this.timestamp = timestamp;
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columns[i] = new VarintBuffer(256);
+        }
+    }
+
+    @Override
+    public int addNode(int parent, int indexInParent, String className, String packageName,
+                       String text, String description, String viewId,
+                       int left, int top, int right, int bottom, int flags) {
+        if (parent >= count) {
+            throw new IllegalArgumentException("parent must be added before child");
+        }
+        if (count == lefts.length) {
+            lefts = Arrays.copyOf(lefts, count * 2);
+            tops = Arrays.copyOf(tops, count * 2);
+        }
+        int i = count++;
+        lefts[i] = left;
+        tops[i] = top;
+        int parentLeft = parent >= 0 ? lefts[parent] : 0;
+        int parentTop = parent >= 0 ? tops[parent] : 0;
+
+        columns[COL_PARENT - 1].writeVarint(parent >= 0 ? i - parent : 0);
+        columns[COL_INDEX - 1].writeVarint(Math.max(0, indexInParent));
+        columns[COL_CLASS - 1].writeVarint(intern(className));
+        columns[COL_PACKAGE - 1].writeVarint(intern(packageName));
+        columns[COL_TEXT - 1].writeVarint(intern(text));
+        columns[COL_DESCRIPTION - 1].writeVarint(intern(description));
+        columns[COL_VIEW_ID - 1].writeVarint(intern(viewId));
+        columns[COL_LEFT - 1].writeZigzag(left - parentLeft);
+        columns[COL_TOP - 1].writeZigzag(top - parentTop);
+        columns[COL_WIDTH - 1].writeZigzag(right - left);
+        columns[COL_HEIGHT - 1].writeZigzag(bottom - top);
+        columns[COL_FLAGS - 1].writeVarint(flags);
+        return i;
+    }
+
+    /**
+     * 字符串写入字符串表，返回 编号 + 1（null 为 0）
+     */
+    private int intern(String s) {
+        if (s == null) return 0;
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            index = stringIndex.size();
+            stringIndex.put(s, index);
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            stringTable.writeVarint(bytes.length);
+            stringTable.write(bytes, 0, bytes.length);
+        }
+        return index + 1;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 输出完整快照（列数据在写出前全部缓存在内存中）
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        VarintBuffer header = new VarintBuffer(32);
+        header.write(MAGIC, 0, MAGIC.length);
+        header.writeVarint(VERSION);
+        header.writeVarlong(timestamp);
+        header.writeVarint(count);
+        header.writeVarint(stringIndex.size());
+        header.writeTo(out);
+        stringTable.writeTo(out);
+
+        VarintBuffer columnHeader = new VarintBuffer(8);
+        columnHeader.writeVarint(COLUMN_COUNT);
+        columnHeader.writeTo(out);
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columnHeader.reset();
+            columnHeader.writeVarint(i + 1);
+            columnHeader.writeVarint(columns[i].size());
+            columnHeader.writeTo(out);
+            columns[i].writeTo(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * 将内存快照写入输出流
+     */
+    public static void write(UiSnapshot snapshot, OutputStream out) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter(snapshot.getTimestamp());
+        for (int i = 0; i < snapshot.size(); i++) {
+            writer.addNode(snapshot.getParent(i), snapshot.getIndexInParent(i),
+                    snapshot.getClassName(i), snapshot.getPackageName(i), snapshot.getText(i),
+                    snapshot.getContentDescription(i), snapshot.getViewIdResourceName(i),
+                    snapshot.getLeft(i), snapshot.getTop(i), snapshot.getRight(i), snapshot.getBottom(i),
+                    snapshot.getFlags(i));
+        }
+        writer.writeTo(out);
+    }
+
+    /**
+     * 可增长的 varint 字节缓冲区
+     */
+    static class VarintBuffer {
+        private byte[] data;
+        private int size;
+
+        VarintBuffer(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void writeVarlong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void writeZigzag(int value) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, data, size, length);
+            size += length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(data, 0, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+    }
+}
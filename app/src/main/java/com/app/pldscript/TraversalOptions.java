@@ -0,0 +1,129 @@
+package com.app.pldscript;
+
+import android.content.res.Resources;
+import android.graphics.Rect;
+import android.util.DisplayMetrics;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * 控件树遍历选项 - 所有采集路径共用，被过滤掉的节点连同整棵子树都不再访问
+ * <pre>
+ * TraversalOptions options = new TraversalOptions()
+ *         .setMaxDepth(20)
+ *         .setSkipInvisible(true)
+ *         .setSkipOffscreen(true);
+ * List&lt;AccessibilityNodeInfo&gt; nodes = PLDScript.GetAllNodes(options);
+ * </pre>
+ * 默认不做任何限制。节点的屏幕坐标会被父节点的可见区域裁剪，
+ * 因此边界为空或完全在屏幕外的节点，其子节点同样不可见，可以整棵跳过。
+ */
+public class TraversalOptions {
+    private int maxDepth = Integer.MAX_VALUE;
+    private int maxNodes = Integer.MAX_VALUE;
+    private boolean skipInvisible;
+    private boolean skipOffscreen;
+    private String packageName;
+    private Rect screen;
+
+    /**
+     * 最大深度（根节点深度为 0），超过该深度的节点不访问
+     */
+    public TraversalOptions setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * 最多采集的节点数
+     */
+    public TraversalOptions setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    /**
+     * 跳过 isVisibleToUser() 为 false 的子树
+     */
+    public TraversalOptions setSkipInvisible(boolean skipInvisible) {
+        this.skipInvisible = skipInvisible;
+        return this;
+    }
+
+    /**
+     * 跳过边界为空或完全在屏幕外的子树（例如长列表中滚出屏幕的项）
+     */
+    public TraversalOptions setSkipOffscreen(boolean skipOffscreen) {
+        this.skipOffscreen = skipOffscreen;
+        return this;
+    }
+
+    /**
+     * 指定屏幕范围（默认使用系统显示尺寸）
+     */
+    public TraversalOptions setScreenBounds(int width, int height) {
+        this.screen = new Rect(0, 0, width, height);
+        return this;
+    }
+
+    /**
+     * 只采集指定包名的节点，为 null 时不过滤
+     */
+    public TraversalOptions setPackageName(String packageName) {
+        this.packageName = packageName;
+        return this;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    // ==================== 遍历时调用 ====================
+
+    /**
+     * 判断是否采集该节点，返回 false 时整棵子树都跳过
+     * @param bounds 节点的屏幕坐标（调用方已获取）
+     */
+    public boolean accept(AccessibilityNodeInfo node, Rect bounds) {
+        if (skipOffscreen) {
+            if (bounds.isEmpty() || !Rect.intersects(bounds, screen())) {
+                return false;
+            }
+        }
+        if (skipInvisible && !node.isVisibleToUser()) {
+            return false;
+        }
+        if (packageName != null) {
+            CharSequence pkg = node.getPackageName();
+            if (pkg == null || !packageName.contentEquals(pkg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 深度为 depth 的节点是否继续访问子节点
+     */
+    public boolean canDescend(int depth) {
+        return depth < maxDepth;
+    }
+
+    /**
+     * 已采集 count 个节点后是否停止
+     */
+    public boolean isFull(int count) {
+        return count >= maxNodes;
+    }
+
+    private Rect screen() {
+        if (screen == null) {
+            DisplayMetrics metrics = Resources.getSystem().getDisplayMetrics();
+            screen = new Rect(0, 0, metrics.widthPixels, metrics.heightPixels);
+        }
+        return screen;
+    }
+}
@@ -0,0 +1,196 @@
+package com.app.pldscript;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.Build;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 控件树采集层 - 统一获取根节点、子节点、父节点和事件来源节点，并统计每次遍历的调用次数和耗时
+ *
+ * Android 13（API 33）起可以在 getRootInActiveWindow/getChild 时指定预取策略，
+ * 一次跨进程调用批量取回一整块子树（每批最多 50 个节点），后续 getChild 直接命中缓存。
+ * 完整遍历（采集快照、刷新覆盖层、构建控件树文本）使用这里配置的策略，
+ * 只沿一条路径向下的查找使用系统默认策略（预取兄弟节点）。低版本系统统一使用默认策略。
+ *
+ * 系统不公开预取缓存是否命中，统计中的“慢调用”按耗时估算跨进程调用：命中缓存的调用只需几微秒，
+ * 跨进程调用通常在 100µs 以上，但线程调度也可能让命中缓存的调用超过阈值，因此只是估算值。
+ */
+public class TreeCapture {
+    private static final String TAG = "TreeCapture";
+
+    // 预取策略
+    public static final int PREFETCH_DEFAULT = 0;
+    public static final int PREFETCH_HYBRID = 1;
+    public static final int PREFETCH_BREADTH_FIRST = 2;
+    public static final int PREFETCH_DEPTH_FIRST = 3;
+
+    // 不少于该耗时的调用计为慢调用（估算为发生了跨进程调用）
+    private static final long SLOW_CALL_NANOS = 100_000;
+
+    private static volatile int strategy = PREFETCH_BREADTH_FIRST;
+    private static final Map<String, Stats> lastStats = new ConcurrentHashMap<>();
+
+    /**
+     * 设置完整遍历使用的预取策略（仅 API 33+ 生效）
+     */
+    public static void setStrategy(int prefetchStrategy) {
+        strategy = prefetchStrategy;
+    }
+
+    public static int getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * 开始一次遍历
+     * @param site 遍历位置（用于统计）
+     * @param fullTree 是否遍历整棵树；只有完整遍历才使用批量预取
+     */
+    public static Session begin(String site, boolean fullTree) {
+        return new Session(site, fullTree ? prefetchFlags(strategy) : 0);
+    }
+
+    /**
+     * 各位置最近一次遍历的统计
+     */
+    public static Stats getLastStats(String site) {
+        return lastStats.get(site);
+    }
+
+    /**
+     * 遍历统计
+     */
+    public static class Stats {
+        public final String site;
+        public final int nodes;
+        public final int calls;
+        // 耗时不少于 100µs 的调用数，是按耗时估算的跨进程调用次数，不是精确计数
+        public final int slowCalls;
+        public final long elapsedMs;
+
+        Stats(String site, int nodes, int calls, int slowCalls, long elapsedMs) {
+            this.site = site;
+            this.nodes = nodes;
+            this.calls = calls;
+            this.slowCalls = slowCalls;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return site + ": " + nodes + " 个节点，" + calls + " 次调用，其中 " + slowCalls
+                    + " 次超过 100µs（按耗时估算的跨进程调用），耗时 " + elapsedMs + "ms";
+        }
+    }
+
+    /**
+     * 一次遍历 - 通过它获取节点以便统计，非线程安全
+     */
+    public static class Session {
+        private final String site;
+        private final int flags;
+        private final long start = System.nanoTime();
+        private int nodes;
+        private int calls;
+        private int slowCalls;
+
+        Session(String site, int flags) {
+            this.site = site;
+            this.flags = flags;
+        }
+
+        /**
+         * 获取当前活动窗口的根节点
+         */
+        public AccessibilityNodeInfo getRoot(AccessibilityService service) {
+            long t = System.nanoTime();
+            AccessibilityNodeInfo root = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && flags != 0
+                    ? service.getRootInActiveWindow(flags)
+                    : service.getRootInActiveWindow();
+            count(t, root);
+            return root;
+        }
+
+        /**
+         * 获取子节点
+         */
+        public AccessibilityNodeInfo getChild(AccessibilityNodeInfo parent, int index) {
+            long t = System.nanoTime();
+            AccessibilityNodeInfo child = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && flags != 0
+                    ? parent.getChild(index, flags)
+                    : parent.getChild(index);
+            count(t, child);
+            return child;
+        }
+
+        /**
+         * 获取父节点
+         */
+        public AccessibilityNodeInfo getParent(AccessibilityNodeInfo child) {
+            long t = System.nanoTime();
+            AccessibilityNodeInfo parent = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && flags != 0
+                    ? child.getParent(flags)
+                    : child.getParent();
+            count(t, parent);
+            return parent;
+        }
+
+        /**
+         * 获取事件的来源节点
+         */
+        public AccessibilityNodeInfo getSource(AccessibilityEvent event) {
+            long t = System.nanoTime();
+            AccessibilityNodeInfo source = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && flags != 0
+                    ? event.getSource(flags)
+                    : event.getSource();
+            count(t, source);
+            return source;
+        }
+
+        /**
+         * 结束遍历并记录统计
+         */
+        public Stats finish() {
+            Stats stats = new Stats(site, nodes, calls, slowCalls, (System.nanoTime() - start) / 1_000_000);
+            lastStats.put(site, stats);
+            // 统计对象不可变，在日志线程中才格式化
+            PLog.d(TAG, "{}", stats);
+            return stats;
+        }
+
+        private void count(long startNanos, AccessibilityNodeInfo result) {
+            calls++;
+            if (System.nanoTime() - startNanos >= SLOW_CALL_NANOS) {
+                slowCalls++;
+            }
+            if (result != null) {
+                nodes++;
+            }
+        }
+    }
+
+    private static int prefetchFlags(int prefetchStrategy) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) return 0;
+        int descendants;
+        switch (prefetchStrategy) {
+            case PREFETCH_HYBRID:
+                descendants = AccessibilityNodeInfo.FLAG_PREFETCH_DESCENDANTS_HYBRID;
+                break;
+            case PREFETCH_BREADTH_FIRST:
+                descendants = AccessibilityNodeInfo.FLAG_PREFETCH_DESCENDANTS_BREADTH_FIRST;
+                break;
+            case PREFETCH_DEPTH_FIRST:
+                descendants = AccessibilityNodeInfo.FLAG_PREFETCH_DESCENDANTS_DEPTH_FIRST;
+                break;
+            default:
+                return 0;
+        }
+        // 完整遍历需要整批节点，不允许预取被新的请求打断
+        return descendants | AccessibilityNodeInfo.FLAG_PREFETCH_SIBLINGS
+                | AccessibilityNodeInfo.FLAG_PREFETCH_UNINTERRUPTIBLE;
+    }
+}
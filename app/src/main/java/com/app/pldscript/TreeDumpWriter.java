@@ -0,0 +1,333 @@
+package com.app.pldscript;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * 控件树导出 - 采集时逐个节点写出 uiautomator dump 兼容的 XML 或 JSON，不在内存中构建整个文档
+ *
+ * 节点按先序到达（父节点在前），只保存当前路径上还没有结束的节点，内存占用只与树的深度有关。
+ * XML 与 uiautomator dump 的格式相同，可以直接交给现有的电脑端工具：
+ * <pre>
+ * &lt;hierarchy rotation="0"&gt;&lt;node index="0" text="" resource-id="" class="..." ... bounds="[0,0][1080,2400]"&gt;...&lt;/node&gt;&lt;/hierarchy&gt;
+ * </pre>
+ * JSON 为同样字段的嵌套对象，根节点放在 nodes 数组中，子节点放在 children 数组中。
+ * Sink 接口不能抛出异常，写入出错后不再写入，由 finish 抛出第一个错误。不依赖 Android 类。
+ */
+public class TreeDumpWriter implements UiSnapshot.Sink, Closeable {
+    public static final int FORMAT_XML = 0;
+    public static final int FORMAT_JSON = 1;
+
+    private final Writer out;
+    private final int format;
+    private int rotation;
+    private boolean started;
+    private boolean finished;
+    private IOException error;
+    private int count;
+
+    // 当前路径上未结束的节点编号，以及该节点是否已经写过子节点
+    private int[] openNodes = new int[32];
+    private boolean[] hasChildren = new boolean[32];
+    private int depth;
+
+    /**
+     * @param out 输出（调用方负责缓冲，例如 BufferedWriter）
+     * @param format FORMAT_XML 或 FORMAT_JSON
+     */
+    public TreeDumpWriter(Writer out, int format) {
+        if (format != FORMAT_XML && format != FORMAT_JSON) {
+            throw new IllegalArgumentException("unknown format: " + format);
+        }
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * 屏幕方向（0~3），写入 XML 的 rotation 属性
+     */
+    public TreeDumpWriter setRotation(int rotation) {
+        this.rotation = rotation;
+        return this;
+    }
+
+    /**
+     * 已写入的节点数
+     */
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int addNode(int parent, int indexInParent, String className, String packageName,
+                       String text, String description, String viewId,
+                       int left, int top, int right, int bottom, int flags) {
+        if (parent >= count) {
+            throw new IllegalArgumentException("parent must be added before child");
+        }
+        int index = count++;
+        if (error != null) return index;
+        try {
+            if (!started) {
+                writeHeader();
+            }
+            // 结束不在新节点路径上的节点
+            while (depth > 0 && openNodes[depth - 1] != parent) {
+                closeNode();
+            }
+            if (depth > 0) {
+                if (format == FORMAT_XML) {
+                    if (!hasChildren[depth - 1]) out.write('>');
+                } else {
+                    out.write(hasChildren[depth - 1] ? "," : ",\"children\":[");
+                }
+                hasChildren[depth - 1] = true;
+            } else if (format == FORMAT_JSON && index > 0) {
+                // 多个根节点（不应出现）时放在同一个数组中
+                out.write(',');
+            }
+            if (format == FORMAT_XML) {
+                writeXmlNode(indexInParent, className, packageName, text, description, viewId,
+                        left, top, right, bottom, flags);
+            } else {
+                writeJsonNode(indexInParent, className, packageName, text, description, viewId,
+                        left, top, right, bottom, flags);
+            }
+            push(index);
+        } catch (IOException e) {
+            error = e;
+        }
+        return index;
+    }
+
+    /**
+     * 结束所有节点并写出文档结尾
+     * @throws IOException 写入过程中的第一个错误
+     */
+    public void finish() throws IOException {
+        if (finished) return;
+        finished = true;
+        if (error == null) {
+            try {
+                if (!started) {
+                    writeHeader();
+                }
+                while (depth > 0) {
+                    closeNode();
+                }
+                out.write(format == FORMAT_XML ? "</hierarchy>" : "]}");
+                out.flush();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * 写完文档并关闭输出
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * 把内存中的快照按同样的格式写出（例如在电脑上把 .plds 快照转换为 uiautomator 格式）
+     */
+    public void write(UiSnapshot snapshot) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            addNode(snapshot.getParent(i), snapshot.getIndexInParent(i),
+                    snapshot.getClassName(i), snapshot.getPackageName(i),
+                    snapshot.getText(i), snapshot.getContentDescription(i), snapshot.getViewIdResourceName(i),
+                    snapshot.getLeft(i), snapshot.getTop(i), snapshot.getRight(i), snapshot.getBottom(i),
+                    snapshot.getFlags(i));
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        started = true;
+        if (format == FORMAT_XML) {
+            out.write("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?><hierarchy rotation=\"");
+            out.write(Integer.toString(rotation));
+            out.write("\">");
+        } else {
+            out.write("{\"rotation\":");
+            out.write(Integer.toString(rotation));
+            out.write(",\"nodes\":[");
+        }
+    }
+
+    private void push(int index) {
+        if (depth == openNodes.length) {
+            openNodes = Arrays.copyOf(openNodes, depth * 2);
+            hasChildren = Arrays.copyOf(hasChildren, depth * 2);
+        }
+        openNodes[depth] = index;
+        hasChildren[depth] = false;
+        depth++;
+    }
+
+    private void closeNode() throws IOException {
+        depth--;
+        if (format == FORMAT_XML) {
+            out.write(hasChildren[depth] ? "</node>" : " />");
+        } else {
+            out.write(hasChildren[depth] ? "]}" : "}");
+        }
+    }
+
+    private void writeXmlNode(int indexInParent, String className, String packageName,
+                              String text, String description, String viewId,
+                              int left, int top, int right, int bottom, int flags) throws IOException {
+        out.write("<node index=\"");
+        out.write(Integer.toString(Math.max(0, indexInParent)));
+        xmlAttribute("text", text);
+        xmlAttribute("resource-id", viewId);
+        xmlAttribute("class", className);
+        xmlAttribute("package", packageName);
+        xmlAttribute("content-desc", description);
+        xmlFlag("checkable", flags, UiSnapshot.FLAG_CHECKABLE);
+        xmlFlag("checked", flags, UiSnapshot.FLAG_CHECKED);
+        xmlFlag("clickable", flags, UiSnapshot.FLAG_CLICKABLE);
+        xmlFlag("enabled", flags, UiSnapshot.FLAG_ENABLED);
+        xmlFlag("focusable", flags, UiSnapshot.FLAG_FOCUSABLE);
+        xmlFlag("focused", flags, UiSnapshot.FLAG_FOCUSED);
+        xmlFlag("scrollable", flags, UiSnapshot.FLAG_SCROLLABLE);
+        xmlFlag("long-clickable", flags, UiSnapshot.FLAG_LONG_CLICKABLE);
+        xmlFlag("password", flags, UiSnapshot.FLAG_PASSWORD);
+        xmlFlag("selected", flags, UiSnapshot.FLAG_SELECTED);
+        xmlFlag("visible-to-user", flags, UiSnapshot.FLAG_VISIBLE);
+        out.write("\" bounds=\"[");
+        out.write(Integer.toString(left));
+        out.write(',');
+        out.write(Integer.toString(top));
+        out.write("][");
+        out.write(Integer.toString(right));
+        out.write(',');
+        out.write(Integer.toString(bottom));
+        out.write("]\"");
+    }
+
+    /**
+     * 写出属性（前一个属性的引号未闭合，这里先闭合）
+     */
+    private void xmlAttribute(String name, String value) throws IOException {
+        out.write("\" ");
+        out.write(name);
+        out.write("=\"");
+        if (value != null) {
+            escapeXml(value);
+        }
+    }
+
+    private void xmlFlag(String name, int flags, int flag) throws IOException {
+        out.write("\" ");
+        out.write(name);
+        out.write((flags & flag) != 0 ? "=\"true" : "=\"false");
+    }
+
+    private void escapeXml(String value) throws IOException {
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            switch (c) {
+                case '&': replacement = "&amp;"; break;
+                case '<': replacement = "&lt;"; break;
+                case '>': replacement = "&gt;"; break;
+                case '"': replacement = "&quot;"; break;
+                case '\'': replacement = "&apos;"; break;
+                case '\n': replacement = "&#10;"; break;
+                case '\r': replacement = "&#13;"; break;
+                case '\t': replacement = "&#9;"; break;
+                default:
+                    // XML 1.0 不允许的控制字符与 uiautomator 一样替换为 '?'
+                    replacement = c < 0x20 || c == 0xFFFE || c == 0xFFFF ? "?" : null;
+            }
+            if (replacement != null) {
+                out.write(value, start, i - start);
+                out.write(replacement);
+                start = i + 1;
+            }
+        }
+        out.write(value, start, length - start);
+    }
+
+    private void writeJsonNode(int indexInParent, String className, String packageName,
+                               String text, String description, String viewId,
+                               int left, int top, int right, int bottom, int flags) throws IOException {
+        out.write("{\"index\":");
+        out.write(Integer.toString(Math.max(0, indexInParent)));
+        jsonString("text", text);
+        jsonString("resourceId", viewId);
+        jsonString("className", className);
+        jsonString("packageName", packageName);
+        jsonString("contentDesc", description);
+        jsonFlag("checkable", flags, UiSnapshot.FLAG_CHECKABLE);
+        jsonFlag("checked", flags, UiSnapshot.FLAG_CHECKED);
+        jsonFlag("clickable", flags, UiSnapshot.FLAG_CLICKABLE);
+        jsonFlag("enabled", flags, UiSnapshot.FLAG_ENABLED);
+        jsonFlag("focusable", flags, UiSnapshot.FLAG_FOCUSABLE);
+        jsonFlag("focused", flags, UiSnapshot.FLAG_FOCUSED);
+        jsonFlag("scrollable", flags, UiSnapshot.FLAG_SCROLLABLE);
+        jsonFlag("longClickable", flags, UiSnapshot.FLAG_LONG_CLICKABLE);
+        jsonFlag("password", flags, UiSnapshot.FLAG_PASSWORD);
+        jsonFlag("selected", flags, UiSnapshot.FLAG_SELECTED);
+        jsonFlag("visibleToUser", flags, UiSnapshot.FLAG_VISIBLE);
+        out.write(",\"bounds\":[");
+        out.write(Integer.toString(left));
+        out.write(',');
+        out.write(Integer.toString(top));
+        out.write(',');
+        out.write(Integer.toString(right));
+        out.write(',');
+        out.write(Integer.toString(bottom));
+        out.write(']');
+    }
+
+    private void jsonString(String name, String value) throws IOException {
+        out.write(",\"");
+        out.write(name);
+        out.write("\":");
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20 && c != '\u2028' && c != '\u2029') continue;
+            out.write(value, start, i - start);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    out.write(String.format("\\u%04x", (int) c));
+            }
+            start = i + 1;
+        }
+        out.write(value, start, length - start);
+        out.write('"');
+    }
+
+    private void jsonFlag(String name, int flags, int flag) throws IOException {
+        out.write(",\"");
+        out.write(name);
+        out.write((flags & flag) != 0 ? "\":true" : "\":false");
+    }
+}
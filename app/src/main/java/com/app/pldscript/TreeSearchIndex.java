@@ -0,0 +1,153 @@
+package com.app.pldscript;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 控件树搜索索引 - 在快照的文本、描述、viewId 和类名中按子串（不区分大小写）查找节点
+ *
+ * 快照中相同的字符串只存一份，索引建立在字符串表上：每个字符串按三字母组（trigram）登记，
+ * 查询时取查询词中登记数最少的三字母组，只检查这些候选字符串，再把匹配的字符串映射回节点。
+ * 查询词不足三个字符时直接检查整个字符串表（字符串表通常比节点少得多）。
+ * 新查询包含上一次的查询词时（例如继续输入），只在上一次匹配的字符串中过滤。
+ * 不依赖 Android 类，可以在 JVM 测试中使用。不是线程安全的。
+ */
+public class TreeSearchIndex {
+    private final UiSnapshot snapshot;
+    // 小写的字符串表
+    private final String[] lowerStrings;
+    // 三字母组 -> 包含它的字符串编号（升序）
+    private final Map<Long, int[]> trigrams = new HashMap<>();
+
+    // 上一次查询，用于增量过滤
+    private String lastQuery;
+    private int[] lastStrings;
+    // 每次查询复用的标记数组
+    private final boolean[] matched;
+
+    public TreeSearchIndex(UiSnapshot snapshot) {
+        this.snapshot = snapshot;
+        int n = snapshot.strings.length;
+        lowerStrings = new String[n];
+        matched = new boolean[n];
+        Map<Long, Posting> building = new HashMap<>();
+        for (int str = 0; str < n; str++) {
+            String lower = snapshot.strings[str].toLowerCase(Locale.ROOT);
+            lowerStrings[str] = lower;
+            for (int i = 0; i + 3 <= lower.length(); i++) {
+                Long key = trigram(lower, i);
+                Posting posting = building.get(key);
+                if (posting == null) {
+                    posting = new Posting();
+                    building.put(key, posting);
+                }
+                posting.add(str);
+            }
+        }
+        for (Map.Entry<Long, Posting> entry : building.entrySet()) {
+            Posting posting = entry.getValue();
+            trigrams.put(entry.getKey(), Arrays.copyOf(posting.ids, posting.size));
+        }
+    }
+
+    public UiSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 查找文本、描述、viewId 或类名包含 query 的节点
+     * @param query 查询词，为空时返回所有节点
+     * @return 节点编号（先序）
+     */
+    public int[] search(String query) {
+        int count = snapshot.size();
+        if (query == null || query.isEmpty()) {
+            lastQuery = null;
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        String lower = query.toLowerCase(Locale.ROOT);
+        int[] strings = matchStrings(lower);
+        lastQuery = lower;
+        lastStrings = strings;
+
+        Arrays.fill(matched, false);
+        for (int s : strings) {
+            matched[s] = true;
+        }
+        int[] result = new int[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (isMatched(snapshot.text[i]) || isMatched(snapshot.description[i])
+                    || isMatched(snapshot.viewId[i]) || isMatched(snapshot.className[i])) {
+                result[n++] = i;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 查找包含查询词的字符串
+     */
+    private int[] matchStrings(String lower) {
+        int[] candidates;
+        int candidateCount;
+        if (lastQuery != null && lower.contains(lastQuery)) {
+            // 结果一定是上一次结果的子集
+            candidates = lastStrings;
+            candidateCount = lastStrings.length;
+        } else if (lower.length() >= 3) {
+            candidates = null;
+            for (int i = 0; i + 3 <= lower.length(); i++) {
+                int[] ids = trigrams.get(trigram(lower, i));
+                if (ids == null) return new int[0];
+                if (candidates == null || ids.length < candidates.length) {
+                    candidates = ids;
+                }
+            }
+            candidateCount = candidates.length;
+        } else {
+            candidates = null;
+            candidateCount = lowerStrings.length;
+        }
+        int[] result = new int[candidateCount];
+        int n = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int s = candidates != null ? candidates[i] : i;
+            if (lowerStrings[s].contains(lower)) {
+                result[n++] = s;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private boolean isMatched(int string) {
+        return string >= 0 && matched[string];
+    }
+
+    /**
+     * 建立索引时的字符串编号列表
+     */
+    private static class Posting {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            // 同一个字符串中重复的三字母组只登记一次（字符串按编号顺序登记）
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private static Long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
@@ -0,0 +1,255 @@
+package com.app.pldscript;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.TextWatcher;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.ForegroundColorSpan;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+/**
+ * 控件树查看面板 - 按树形列出快照中的节点，顶部的搜索框边输入边过滤
+ *
+ * 输入变化后在下一帧才执行查询，一帧内的多次输入只查询一次；查询通过 TreeSearchIndex 进行，继续输入时只在上一次结果中过滤。
+ * 列表只为可见的行生成文本，匹配的部分高亮显示。匹配结果和点选的行通过 Listener 通知覆盖层。
+ */
+public class TreeSearchPanel {
+    private static final String TAG = "TreeSearchPanel";
+    // 行文本中显示的文本最大长度
+    private static final int MAX_TEXT_LENGTH = 20;
+
+    /**
+     * 面板事件（在主线程中调用）
+     */
+    public interface Listener {
+        /**
+         * 匹配结果变化
+         * @param nodes 匹配的节点，查询词为空时为 null
+         */
+        void onMatchesChanged(UiSnapshot snapshot, int[] nodes);
+
+        /**
+         * 点选了某一行
+         */
+        void onNodeSelected(UiSnapshot snapshot, int node);
+
+        void onClose();
+    }
+
+    private final UiSnapshot snapshot;
+    private final TreeSearchIndex index;
+    private final Listener listener;
+    private final LinearLayout view;
+    private final TextView countLabel;
+    private final RowAdapter adapter;
+    // 按需生成的行文本
+    private final String[] rowTexts;
+    private int[] rows;
+    private String query = "";
+    private String pendingQuery = "";
+    private boolean queryScheduled;
+    private final Runnable runQuery = this::runQuery;
+
+    public TreeSearchPanel(Context context, UiSnapshot snapshot, Listener listener) {
+        this.snapshot = snapshot;
+        this.listener = listener;
+        index = new TreeSearchIndex(snapshot);
+        rowTexts = new String[snapshot.size()];
+        rows = index.search(null);
+        float density = context.getResources().getDisplayMetrics().density;
+
+        EditText input = new EditText(context);
+        input.setSingleLine(true);
+        input.setHint("搜索文本 / viewId / 类名");
+        input.setTextColor(Color.WHITE);
+        input.setHintTextColor(Color.GRAY);
+        input.setTextSize(14);
+        input.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                scheduleQuery(s.toString());
+            }
+        });
+
+        countLabel = new TextView(context);
+        countLabel.setTextColor(Color.LTGRAY);
+        countLabel.setTextSize(12);
+        countLabel.setPadding(dp(density, 8), 0, dp(density, 8), 0);
+        updateCount(0);
+
+        TextView closeBtn = new TextView(context);
+        closeBtn.setText("关闭");
+        closeBtn.setTextColor(Color.WHITE);
+        closeBtn.setTextSize(16);
+        closeBtn.setPadding(dp(density, 16), dp(density, 12), dp(density, 16), dp(density, 12));
+        closeBtn.setBackgroundColor(Color.argb(200, 100, 0, 0));
+        closeBtn.setGravity(Gravity.CENTER);
+        closeBtn.setOnClickListener(v -> listener.onClose());
+
+        LinearLayout header = new LinearLayout(context);
+        header.setOrientation(LinearLayout.HORIZONTAL);
+        header.setGravity(Gravity.CENTER_VERTICAL);
+        header.addView(input, new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+        header.addView(countLabel);
+        header.addView(closeBtn);
+
+        ListView list = new ListView(context);
+        adapter = new RowAdapter(context, density);
+        list.setAdapter(adapter);
+        list.setOnItemClickListener((parent, v, position, id) -> listener.onNodeSelected(snapshot, rows[position]));
+
+        view = new LinearLayout(context);
+        view.setOrientation(LinearLayout.VERTICAL);
+        view.setBackgroundColor(Color.argb(250, 20, 20, 20));
+        view.addView(header, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        view.addView(list, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, 0, 1f));
+    }
+
+    public View getView() {
+        return view;
+    }
+
+    /**
+     * 记录查询词，在下一帧统一查询
+     */
+    private void scheduleQuery(String text) {
+        pendingQuery = text.trim();
+        if (!queryScheduled) {
+            queryScheduled = true;
+            view.postOnAnimation(runQuery);
+        }
+    }
+
+    private void runQuery() {
+        queryScheduled = false;
+        if (pendingQuery.equals(query)) return;
+        query = pendingQuery;
+        long start = SystemClock.elapsedRealtimeNanos();
+        rows = index.search(query);
+        long elapsedUs = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+        PLog.d(TAG, "搜索 \"{}\": {} 个结果，耗时 {}us", query, rows.length, elapsedUs);
+        updateCount(elapsedUs);
+        adapter.notifyDataSetChanged();
+        listener.onMatchesChanged(snapshot, query.isEmpty() ? null : rows);
+    }
+
+    private void updateCount(long elapsedUs) {
+        countLabel.setText(query.isEmpty()
+                ? snapshot.size() + " 个节点"
+                : rows.length + "/" + snapshot.size() + "  " + (elapsedUs >= 1000 ? elapsedUs / 1000 + "ms" : elapsedUs + "us"));
+    }
+
+    /**
+     * 节点的行文本：按深度缩进，类名 + 文本 + viewId
+     */
+    private String rowText(int node) {
+        String text = rowTexts[node];
+        if (text != null) return text;
+        StringBuilder sb = new StringBuilder();
+        int depth = snapshot.getDepth(node);
+        for (int i = 0; i < depth; i++) {
+            sb.append("  ");
+        }
+        sb.append(snapshot.getNextSibling(node) < 0 ? "└─ " : "├─ ");
+        String className = snapshot.getClassName(node);
+        if (className != null) {
+            sb.append(className);
+        }
+        String nodeText = snapshot.getText(node);
+        if (nodeText == null || nodeText.isEmpty()) {
+            nodeText = snapshot.getContentDescription(node);
+        }
+        if (nodeText != null && !nodeText.isEmpty()) {
+            sb.append(" [")
+                    .append(nodeText.length() > MAX_TEXT_LENGTH ? nodeText.substring(0, MAX_TEXT_LENGTH) + "..." : nodeText)
+                    .append("]");
+        }
+        String viewId = snapshot.getViewIdResourceName(node);
+        if (viewId != null) {
+            sb.append(" #").append(viewId.substring(viewId.indexOf('/') + 1));
+        }
+        text = sb.toString();
+        rowTexts[node] = text;
+        return text;
+    }
+
+    private static int dp(float density, int value) {
+        return (int) (value * density + 0.5f);
+    }
+
+    private class RowAdapter extends BaseAdapter {
+        private final Context context;
+        private final int padding;
+
+        RowAdapter(Context context, float density) {
+            this.context = context;
+            padding = dp(density, 4);
+        }
+
+        @Override
+        public int getCount() {
+            return rows.length;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return rows[position];
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return rows[position];
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            TextView row = (TextView) convertView;
+            if (row == null) {
+                row = new TextView(context);
+                row.setTextColor(Color.WHITE);
+                row.setTextSize(10);
+                row.setTypeface(Typeface.MONOSPACE);
+                row.setSingleLine(true);
+                row.setPadding(padding, padding, padding, padding);
+            }
+            String text = rowText(rows[position]);
+            int match = query.isEmpty() ? -1 : text.toLowerCase(Locale.ROOT).indexOf(query.toLowerCase(Locale.ROOT));
+            if (match < 0 || match + query.length() > text.length()) {
+                // 匹配的可能是被截断的文本，行内找不到时不高亮
+                row.setText(text);
+            } else {
+                SpannableString spannable = new SpannableString(text);
+                spannable.setSpan(new BackgroundColorSpan(Color.rgb(255, 200, 0)), match, match + query.length(),
+                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                spannable.setSpan(new ForegroundColorSpan(Color.BLACK), match, match + query.length(),
+                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                row.setText(spannable);
+            }
+            return row;
+        }
+    }
+}
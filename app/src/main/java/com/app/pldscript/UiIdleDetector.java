@@ -0,0 +1,147 @@
+package com.app.pldscript;
+
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 界面空闲检测 - 根据无障碍事件流判断界面是否已停止变化
+ * 事件线程只做无锁的时间戳更新，等待方按需休眠，不轮询控件树
+ */
+public class UiIdleDetector {
+    private static final String TAG = "UiIdleDetector";
+    // 表示界面仍在变化的事件类型
+    private static final int MUTATION_EVENTS = AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+            | AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+            | AccessibilityEvent.TYPE_WINDOWS_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_SCROLLED
+            | AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_SELECTED;
+    // 超过该数量的窗口或包名记录时清理长时间无事件的记录
+    private static final int MAX_WINDOWS = 64;
+    private static final int MAX_PACKAGES = 64;
+    private static final long STALE_MS = 60_000;
+    // 每次等待使用独立的订阅名，允许多个线程同时等待
+    private static final AtomicInteger waiterId = new AtomicInteger();
+
+    // 全局最后一次事件时间
+    private static final AtomicLong lastEventTime = new AtomicLong(0);
+    // 每个窗口最后一次事件时间
+    private static final ConcurrentHashMap<Integer, AtomicLong> windowTimes = new ConcurrentHashMap<>();
+    // 每个应用包名最后一次事件时间
+    private static final ConcurrentHashMap<String, AtomicLong> packageTimes = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一个无障碍事件（在服务线程调用）
+     */
+    public static void onEvent(AccessibilityEvent event) {
+        if ((event.getEventType() & MUTATION_EVENTS) == 0) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        lastEventTime.set(now);
+
+        AtomicLong windowTime = windowTimes.get(event.getWindowId());
+        if (windowTime == null) {
+            if (windowTimes.size() >= MAX_WINDOWS) {
+                removeStale(windowTimes, now);
+            }
+            windowTime = windowTimes.computeIfAbsent(event.getWindowId(), k -> new AtomicLong());
+        }
+        windowTime.set(now);
+
+        CharSequence packageName = event.getPackageName();
+        if (packageName != null) {
+            String key = packageName.toString();
+            AtomicLong packageTime = packageTimes.get(key);
+            if (packageTime == null) {
+                if (packageTimes.size() >= MAX_PACKAGES) {
+                    removeStale(packageTimes, now);
+                }
+                packageTime = packageTimes.computeIfAbsent(key, k -> new AtomicLong());
+            }
+            packageTime.set(now);
+        }
+    }
+
+    /**
+     * 获取最后一次界面变化的时间
+     * @param packageName 应用包名，为 null 时表示任意应用
+     * @return SystemClock.uptimeMillis() 时间戳，从未收到事件时返回 0
+     */
+    public static long getLastEventTime(String packageName) {
+        if (packageName == null) {
+            return lastEventTime.get();
+        }
+        AtomicLong time = packageTimes.get(packageName);
+        return time != null ? time.get() : 0;
+    }
+
+    /**
+     * 获取指定窗口最后一次界面变化的时间
+     */
+    public static long getWindowLastEventTime(int windowId) {
+        AtomicLong time = windowTimes.get(windowId);
+        return time != null ? time.get() : 0;
+    }
+
+    /**
+     * 等待界面空闲
+     * 从调用时刻起算，至少等待 quietMs，期间每收到一次界面变化事件就重新计时
+     * @param packageName 只关注该应用的事件，为 null 时关注所有应用
+     * @param quietMs 界面需要保持无事件的时长（毫秒）
+     * @param timeout 最长等待时间（毫秒）
+     * @return 超时前界面空闲返回 true，超时或被中断返回 false
+     */
+    public static boolean waitForIdle(String packageName, int quietMs, int timeout) {
+        // 只在等待期间订阅界面变化事件
+        String consumer = "WaitForIdle#" + waiterId.incrementAndGet();
+        EventSubscriptions.subscribe(consumer, MUTATION_EVENTS, packageName);
+        try {
+            return waitForIdleInternal(packageName, quietMs, timeout);
+        } finally {
+            EventSubscriptions.unsubscribe(consumer);
+        }
+    }
+
+    private static boolean waitForIdleInternal(String packageName, int quietMs, int timeout) {
+        long start = SystemClock.uptimeMillis();
+        long deadline = start + timeout;
+        while (true) {
+            long now = SystemClock.uptimeMillis();
+            long idleAt = Math.max(getLastEventTime(packageName), start) + quietMs;
+            if (now >= idleAt) {
+                PLog.d(TAG, "界面已空闲，耗时: {}ms", now - start);
+                return true;
+            }
+            if (now >= deadline) {
+                PLog.d(TAG, "等待界面空闲超时: {}ms", now - start);
+                return false;
+            }
+            // 直接休眠到预计空闲的时刻，期间有新事件会在醒来后重新计算
+            try {
+                Thread.sleep(Math.min(idleAt, deadline) - now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 移除长时间没有事件的记录
+     */
+    private static <K> void removeStale(Map<K, AtomicLong> times, long now) {
+        Iterator<AtomicLong> it = times.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().get() > STALE_MS) {
+                it.remove();
+            }
+        }
+    }
+}
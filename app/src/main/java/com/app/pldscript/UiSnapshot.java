@@ -0,0 +1,423 @@
+package com.app.pldscript;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 控件树快照 - 与 AccessibilityNodeInfo 无关的纯数据结构，可在普通 JVM 中使用
+ * 节点按先序（父节点在前）连续编号，属性按列存储，字符串统一放在字符串表中
+ */
+public class UiSnapshot {
+    // ==================== 节点状态标志 ====================
+    public static final int FLAG_CLICKABLE = 1;
+    public static final int FLAG_LONG_CLICKABLE = 1 << 1;
+    public static final int FLAG_CHECKABLE = 1 << 2;
+    public static final int FLAG_CHECKED = 1 << 3;
+    public static final int FLAG_FOCUSABLE = 1 << 4;
+    public static final int FLAG_FOCUSED = 1 << 5;
+    public static final int FLAG_SELECTED = 1 << 6;
+    public static final int FLAG_ENABLED = 1 << 7;
+    public static final int FLAG_SCROLLABLE = 1 << 8;
+    public static final int FLAG_EDITABLE = 1 << 9;
+    public static final int FLAG_PASSWORD = 1 << 10;
+    public static final int FLAG_VISIBLE = 1 << 11;
+
+    /**
+     * 快照节点接收者 - 采集控件树时逐个节点写入
+     */
+    public interface Sink {
+        /**
+         * 追加一个节点（必须先追加父节点）
+         * @param parent 父节点编号，根节点为 -1
+         * @param indexInParent 在父节点中的子节点序号
+         * @return 新节点编号
+         */
+        int addNode(int parent, int indexInParent, String className, String packageName,
+                    String text, String description, String viewId,
+                    int left, int top, int right, int bottom, int flags);
+    }
+
+    final long timestamp;
+    final String[] strings;
+    final int[] parent;
+    final int[] indexInParent;
+    final int[] className;
+    final int[] packageName;
+    final int[] text;
+    final int[] description;
+    final int[] viewId;
+    final int[] left;
+    final int[] top;
+    final int[] right;
+    final int[] bottom;
+    final int[] flags;
+    private final int count;
+
+    // 按需计算的子节点链表和深度
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] depth;
+    // 按需计算的子树结束位置（先序编号中子树占据 [node, subtreeEnd[node])）
+    private int[] subtreeEnd;
+
+    // 按需建立的索引：字符串 -> 编号，字符串编号 -> 节点（倒排表）
+    static final int INDEX_VIEW_ID = 0;
+    static final int INDEX_TEXT = 1;
+    static final int INDEX_DESCRIPTION = 2;
+    private Map<String, Integer> stringLookup;
+    private final int[][][] postings = new int[3][][];
+
+    UiSnapshot(long timestamp, String[] strings, int count, int[] parent, int[] indexInParent,
+               int[] className, int[] packageName, int[] text, int[] description, int[] viewId,
+               int[] left, int[] top, int[] right, int[] bottom, int[] flags) {
+        this.timestamp = timestamp;
+        this.strings = strings;
+        this.count = count;
+        this.parent = parent;
+        this.indexInParent = indexInParent;
+        this.className = className;
+        this.packageName = packageName;
+        this.text = text;
+        this.description = description;
+        this.viewId = viewId;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        this.flags = flags;
+    }
+
+    // ==================== 基本属性 ====================
+
+    /**
+     * 采集时间（System.currentTimeMillis()）
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    public int getIndexInParent(int node) {
+        return indexInParent[node];
+    }
+
+    public String getClassName(int node) {
+        return string(className[node]);
+    }
+
+    public String getPackageName(int node) {
+        return string(packageName[node]);
+    }
+
+    public String getText(int node) {
+        return string(text[node]);
+    }
+
+    public String getContentDescription(int node) {
+        return string(description[node]);
+    }
+
+    public String getViewIdResourceName(int node) {
+        return string(viewId[node]);
+    }
+
+    public int getLeft(int node) {
+        return left[node];
+    }
+
+    public int getTop(int node) {
+        return top[node];
+    }
+
+    public int getRight(int node) {
+        return right[node];
+    }
+
+    public int getBottom(int node) {
+        return bottom[node];
+    }
+
+    public int getFlags(int node) {
+        return flags[node];
+    }
+
+    public boolean hasFlag(int node, int flag) {
+        return (flags[node] & flag) != 0;
+    }
+
+    /**
+     * 判断坐标是否在节点范围内
+     */
+    public boolean contains(int node, int x, int y) {
+        return left[node] < right[node] && top[node] < bottom[node]
+                && x >= left[node] && x < right[node] && y >= top[node] && y < bottom[node];
+    }
+
+    /**
+     * 字符串表（编号即字符串在表中的位置）
+     */
+    public int getStringCount() {
+        return strings.length;
+    }
+
+    public String getString(int index) {
+        return strings[index];
+    }
+
+    private String string(int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    // ==================== 层级关系 ====================
+
+    /**
+     * 第一个子节点，没有子节点时返回 -1
+     */
+    public int getFirstChild(int node) {
+        ensureLinks();
+        return firstChild[node];
+    }
+
+    /**
+     * 下一个兄弟节点，没有时返回 -1
+     */
+    public int getNextSibling(int node) {
+        ensureLinks();
+        return nextSibling[node];
+    }
+
+    public int getChildCount(int node) {
+        int n = 0;
+        for (int c = getFirstChild(node); c >= 0; c = nextSibling[c]) {
+            n++;
+        }
+        return n;
+    }
+
+    public int getDepth(int node) {
+        ensureLinks();
+        return depth[node];
+    }
+
+    /**
+     * 子树结束位置：节点及其所有后代的编号为 [node, getSubtreeEnd(node))
+     */
+    public int getSubtreeEnd(int node) {
+        ensureSubtreeEnd();
+        return subtreeEnd[node];
+    }
+
+    private synchronized void ensureSubtreeEnd() {
+        if (subtreeEnd != null) return;
+        int[] end = new int[count];
+        for (int i = 0; i < count; i++) {
+            end[i] = i + 1;
+        }
+        // 先序编号中子节点总在父节点之后，倒序传递即可
+        for (int i = count - 1; i >= 0; i--) {
+            int p = parent[i];
+            if (p >= 0 && end[i] > end[p]) {
+                end[p] = end[i];
+            }
+        }
+        subtreeEnd = end;
+    }
+
+    private synchronized void ensureLinks() {
+        if (depth != null) return;
+        int[] first = new int[count];
+        int[] next = new int[count];
+        int[] last = new int[count];
+        int[] d = new int[count];
+        Arrays.fill(first, -1);
+        Arrays.fill(next, -1);
+        Arrays.fill(last, -1);
+        for (int i = 0; i < count; i++) {
+            int p = parent[i];
+            if (p < 0) continue;
+            d[i] = d[p] + 1;
+            if (last[p] < 0) {
+                first[p] = i;
+            } else {
+                next[last[p]] = i;
+            }
+            last[p] = i;
+        }
+        firstChild = first;
+        nextSibling = next;
+        depth = d;
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 根据 viewId 查找节点
+     * @return 节点编号数组（先序）
+     */
+    public int[] findAllByViewId(String id) {
+        return postings(INDEX_VIEW_ID, indexOf(id)).clone();
+    }
+
+    /**
+     * 根据文本查找节点（同时匹配 text 和 contentDescription）
+     */
+    public int[] findAllByText(String value) {
+        int index = indexOf(value);
+        int[] byText = postings(INDEX_TEXT, index);
+        int[] byDescription = postings(INDEX_DESCRIPTION, index);
+        // 合并两个有序列表
+        int[] result = new int[byText.length + byDescription.length];
+        int n = 0, i = 0, j = 0;
+        while (i < byText.length || j < byDescription.length) {
+            int next = j >= byDescription.length || (i < byText.length && byText[i] <= byDescription[j])
+                    ? byText[i++] : byDescription[j++];
+            if (n == 0 || result[n - 1] != next) {
+                result[n++] = next;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 根据类名查找节点（支持部分匹配）
+     */
+    public int[] findAllByClassName(String name) {
+        if (name == null) return new int[0];
+        // 先在字符串表中找出匹配的类名，避免逐个节点比较字符串
+        boolean[] matched = new boolean[strings.length];
+        for (int s = 0; s < strings.length; s++) {
+            matched[s] = strings[s].contains(name);
+        }
+        int[] result = new int[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (className[i] >= 0 && matched[className[i]]) {
+                result[n++] = i;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 字符串在字符串表中的编号，不存在时返回 -1
+     */
+    synchronized int indexOf(String value) {
+        if (value == null) return -1;
+        if (stringLookup == null) {
+            stringLookup = new HashMap<>(strings.length * 2);
+            for (int s = 0; s < strings.length; s++) {
+                stringLookup.put(strings[s], s);
+            }
+        }
+        Integer index = stringLookup.get(value);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 某列等于指定字符串的节点（先序，调用方不能修改返回的数组）
+     * @param index INDEX_VIEW_ID / INDEX_TEXT / INDEX_DESCRIPTION
+     * @param string 字符串编号，-1 时返回空数组
+     */
+    synchronized int[] postings(int index, int string) {
+        if (string < 0) return new int[0];
+        int[][] table = postings[index];
+        if (table == null) {
+            int[] column = index == INDEX_VIEW_ID ? viewId : index == INDEX_TEXT ? text : description;
+            // 先统计每个字符串的节点数，再一次填好
+            int[] sizes = new int[strings.length];
+            for (int i = 0; i < count; i++) {
+                if (column[i] >= 0) sizes[column[i]]++;
+            }
+            table = new int[strings.length][];
+            for (int s = 0; s < strings.length; s++) {
+                table[s] = new int[sizes[s]];
+                sizes[s] = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                int s = column[i];
+                if (s >= 0) table[s][sizes[s]++] = i;
+            }
+            postings[index] = table;
+        }
+        return table[string];
+    }
+
+    // ==================== 构建 ====================
+
+    /**
+     * 内存快照构建器
+     */
+    public static class Builder implements Sink {
+        private final long timestamp;
+        private final Map<String, Integer> stringIndex = new HashMap<>();
+        private String[] strings = new String[64];
+        private int stringCount;
+        private int count;
+        private int[][] columns = new int[12][256];
+
+        public Builder(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public int addNode(int parent, int indexInParent, String className, String packageName,
+                           String text, String description, String viewId,
+                           int left, int top, int right, int bottom, int flags) {
+            if (parent >= count) {
+                throw new IllegalArgumentException("parent must be added before child");
+            }
+            if (count == columns[0].length) {
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = Arrays.copyOf(columns[c], count * 2);
+                }
+            }
+            int i = count++;
+            columns[0][i] = parent;
+            columns[1][i] = indexInParent;
+            columns[2][i] = intern(className);
+            columns[3][i] = intern(packageName);
+            columns[4][i] = intern(text);
+            columns[5][i] = intern(description);
+            columns[6][i] = intern(viewId);
+            columns[7][i] = left;
+            columns[8][i] = top;
+            columns[9][i] = right;
+            columns[10][i] = bottom;
+            columns[11][i] = flags;
+            return i;
+        }
+
+        private int intern(String s) {
+            if (s == null) return -1;
+            Integer index = stringIndex.get(s);
+            if (index != null) return index;
+            if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, stringCount * 2);
+            }
+            strings[stringCount] = s;
+            stringIndex.put(s, stringCount);
+            return stringCount++;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public UiSnapshot build() {
+            int[][] c = new int[columns.length][];
+            for (int k = 0; k < columns.length; k++) {
+                c[k] = Arrays.copyOf(columns[k], count);
+            }
+            return new UiSnapshot(timestamp, Arrays.copyOf(strings, stringCount), count,
+                    c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7], c[8], c[9], c[10], c[11]);
+        }
+    }
+}
@@ -4,7 +4,6 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.os.Build;
 import android.util.DisplayMetrics;
@@ -12,6 +11,7 @@ import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowManager;
+import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 import android.widget.LinearLayout;
 import android.widget.TextView;
@@ -19,37 +19,44 @@ import android.widget.ScrollView;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
 
 /**
  * 控件树查看器 - 在屏幕上标注所有控件
  */
 public class ViewTreeOverlay {
-    private static WindowManager windowManager;
+    private static final String LAYER_INSPECTOR = "inspector";
+    private static final String LAYER_NODE_MENU = "nodeMenu";
+    private static final String LAYER_INFO = "nodeInfo";
+    private static final String LAYER_TREE = "viewTree";
+    private static final String LAYER_MAGNIFIER = "magnifier";
+    private static final String LAYER_SELECTOR = "selectorConsole";
+    private static final String LAYER_HISTORY = "history";
+    // 快照历史最多保存的版本数和内存上限
+    private static final int HISTORY_MAX_VERSIONS = 120;
+    private static final long HISTORY_MAX_BYTES = 16L * 1024 * 1024;
+    // 覆盖层上最多高亮的控件数
+    private static final int MAX_HIGHLIGHTS = 1000;
     private static OverlayView overlayView;
-    private static WindowManager.LayoutParams overlayParams;
     private static boolean isEnabled = false;
     private static final String PREFS_NAME = "ViewTreeOverlayPrefs";
     private static final String KEY_ENABLED = "overlay_enabled";
     
     // 菜单相关
     private static View nodeMenuView;
-    private static WindowManager.LayoutParams nodeMenuParams;
+    // 菜单对应的节点，菜单关闭时回收
+    private static AccessibilityNodeInfo nodeMenuNode;
     
     // 信息窗口相关
     private static View infoWindowView;
     private static View treeWindowView;
-
-    /**
-     * 初始化覆盖层（不自动显示，只在用户手动开启时显示）
-     */
-    public static void init(Context context) {
-        if (windowManager == null) {
-            windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-        }
-        // 不自动加载状态，覆盖层只在用户手动开启时显示
-        // 这样可以避免拦截主界面的触摸事件
-    }
+    // 放大镜
+    private static View magnifierWindowView;
+    private static InspectorMagnifier magnifierView;
+    // 选择器控制台
+    private static SelectorConsole selectorConsole;
+    // 快照历史（覆盖层显示期间一直记录）和回看滑块
+    private static SnapshotHistory history;
+    private static HistoryScrubber historyScrubber;
 
     /**
      * 切换显示状态
@@ -71,48 +78,23 @@ public class ViewTreeOverlay {
     public static void show(Context context) {
         if (overlayView != null) return;
         isEnabled = true;
+        // 覆盖层需要在界面变化时刷新
+        EventSubscriptions.subscribe("ViewTreeOverlay", AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+                | AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+                | AccessibilityEvent.TYPE_VIEW_SCROLLED);
 
+        // 内存上限不超过可用内存的 1/16
+        history = new SnapshotHistory(HISTORY_MAX_VERSIONS,
+                Math.min(HISTORY_MAX_BYTES, Runtime.getRuntime().maxMemory() / 16));
         overlayView = new OverlayView(context);
-        
-        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
-                ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
-                : WindowManager.LayoutParams.TYPE_PHONE;
-
-        // 获取屏幕实际尺寸
-        WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-        DisplayMetrics metrics = new DisplayMetrics();
-        wm.getDefaultDisplay().getRealMetrics(metrics);
-        int screenWidth = metrics.widthPixels;
-        int screenHeight = metrics.heightPixels;
-        
-        // 使用 FLAG_NOT_TOUCH_MODAL 允许接收触摸事件，但让事件可以穿透到其他窗口
-        // 在 onInterceptTouchEvent 中会检查是否点击在悬浮窗/菜单上，如果是则返回 false 让事件穿透
-        overlayParams = new WindowManager.LayoutParams(
-                screenWidth,
-                screenHeight,
-                type,
-                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
-                        | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
-                        | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS
-                        | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL, // 允许接收触摸事件，但事件可以穿透
-                PixelFormat.TRANSLUCENT
-        );
-        // 确保覆盖层从屏幕左上角 (0,0) 开始
-        overlayParams.gravity = Gravity.TOP | Gravity.START;
-        overlayParams.x = 0;
-        overlayParams.y = 0;
-        
-        android.util.Log.d("ViewTreeOverlay", String.format(
-            "创建覆盖层 - 屏幕尺寸: %dx%d, 位置: (%d,%d), 类型: %d",
-            screenWidth, screenHeight, overlayParams.x, overlayParams.y, type));
-        
-        windowManager.addView(overlayView, overlayParams);
+        // 覆盖层铺满屏幕，位于悬浮气泡和各个菜单、面板之下，触摸由合成器按图层顺序分发
+        OverlayCompositor.addLayer(context, LAYER_INSPECTOR, OverlayCompositor.Z_INSPECTOR, overlayView,
+                0, 0, OverlayCompositor.FULL_SCREEN, OverlayCompositor.FULL_SCREEN);
+        OverlayCompositor.commit();
         overlayView.refresh();
         
         // 通知 FloatWindow 更新按钮文本
         FloatWindow.updateViewTreeButton();
-        
-        android.util.Log.d("ViewTreeOverlay", "覆盖层已创建，使用 FLAG_NOT_TOUCH_MODAL，可以点击控件方框");
     }
 
     /**
@@ -123,12 +105,19 @@ public class ViewTreeOverlay {
         hideNodeMenu();
         hideInfoWindow();
         hideTreeWindow();
-        if (overlayView != null && windowManager != null) {
-            windowManager.removeView(overlayView);
+        hideMagnifier();
+        hideSelectorConsole();
+        hideHistory();
+        if (overlayView != null) {
+            OverlayCompositor.removeLayer(LAYER_INSPECTOR);
             overlayView = null;
-            overlayParams = null;
+        }
+        if (history != null) {
+            history.clear();
+            history = null;
         }
         isEnabled = false;
+        EventSubscriptions.unsubscribe("ViewTreeOverlay");
         // 通知 FloatWindow 更新按钮文本
         FloatWindow.updateViewTreeButton();
     }
@@ -156,8 +145,23 @@ public class ViewTreeOverlay {
     private static class OverlayView extends android.widget.FrameLayout {
         private List<Rect> nodeRects = new ArrayList<>();
         private List<AccessibilityNodeInfo> nodeInfos = new ArrayList<>(); // 存储对应的节点信息
+        // 正在显示的快照，以及 nodeRects 中每个方框对应的快照节点
+        private UiSnapshot displayedSnapshot;
+        // 最近一次刷新采集的快照（跳过了不可见和屏幕外的子树），交给选择器控制台复用
+        private UiSnapshot liveSnapshot;
+        private int[] rectNodes = new int[0];
         private Paint paint;
         private Paint textPaint;
+        // 绘制信息只在第一次绘制时输出
+        private boolean drawInfoLogged;
+        // 分级绘制，密集界面上只画看得清的方框和标签
+        private OverlayLodRenderer lodRenderer;
+        // 控件范围索引，供放大镜渲染和点选
+        private NodeBoundsIndex boundsIndex;
+        // 高亮的控件范围（每个 4 个值），例如控件树搜索的结果
+        private int[] highlightBounds = new int[0];
+        private int highlightCount;
+        private Paint highlightPaint;
         private Context context;
         private int screenWidth;
         private int screenHeight;
@@ -176,44 +180,47 @@ public class ViewTreeOverlay {
             setOnTouchListener(new OnTouchListener() {
                 @Override
                 public boolean onTouch(View v, MotionEvent event) {
-                    // 使用 getRawX() 和 getRawY() 获取屏幕绝对坐标
-                    float rawX = event.getRawX();
-                    float rawY = event.getRawY();
-                    
-                    // 1. 最优先：检查悬浮窗气泡 - 如果点击在气泡上，不处理，让事件传递到 FloatWindow
-                    if (isPointInFloatWindowBubble((int) rawX, (int) rawY)) {
-                        android.util.Log.d("ViewTreeOverlay", String.format("点击在悬浮窗气泡上 (%.0f,%.0f)，不处理，让事件传递", rawX, rawY));
-                        return false; // 返回 false，让事件传递到 FloatWindow
-                    }
-                    
-                    // 2. 检查悬浮窗菜单 - 如果点击在菜单上，不处理，让事件传递
-                    if (isPointInFloatWindowMenu((int) rawX, (int) rawY)) {
-                        android.util.Log.d("ViewTreeOverlay", String.format("点击在悬浮窗菜单上 (%.0f,%.0f)，不处理，让事件传递", rawX, rawY));
-                        return false; // 返回 false，让事件传递到 FloatWindow
-                    }
-                    
-                    // 3. 检查信息窗口和控件查看菜单 - 如果点击在这些窗口上，不处理
-                    if (isPointInInfoWindow((int) rawX, (int) rawY) || isPointInMenu((int) rawX, (int) rawY)) {
-                        android.util.Log.d("ViewTreeOverlay", String.format("点击在信息窗口或菜单上 (%.0f,%.0f)，不处理", rawX, rawY));
-                        return false; // 返回 false，让事件传递
+                    // 悬浮气泡、菜单和面板都在更上层的图层，合成器只把落在它们之外的触摸交给覆盖层
+                    if (event.getAction() == MotionEvent.ACTION_DOWN
+                            && historyScrubber != null && historyScrubber.getSelected() != null) {
+                        // 回看历史版本时控件可能已经不存在，只在快照中点选
+                        pickHistoryNode((int) event.getX(), (int) event.getY());
+                        return true;
                     }
-                    
-                    // 4. 其他所有地方都处理事件
                     if (event.getAction() == MotionEvent.ACTION_DOWN) {
                         // 使用相对坐标查找节点
                         float x = event.getX();
                         float y = event.getY();
-                        android.util.Log.d("ViewTreeOverlay", String.format("点击在其他地方 (%.0f,%.0f)，查找节点并显示信息", x, y));
+                        PLog.d("ViewTreeOverlay", "点击在其他地方 ({},{})，查找节点并显示信息", (int) x, (int) y);
                         AccessibilityNodeInfo clickedNode = findNodeAtPosition((int) x, (int) y);
                         if (clickedNode != null) {
                             showNodeMenu(context, clickedNode, (int) x, (int) y);
-                            clickedNode.recycle();
+                            // 菜单打开期间显示选中控件范围内的细节
+                            Rect bounds = new Rect();
+                            clickedNode.getBoundsInScreen(bounds);
+                            lodRenderer.setFocusRect(bounds);
+                            invalidate();
+                            NodeTracker.recycle(clickedNode);
                             return true; // 消费事件
                         } else {
-                            android.util.Log.d("ViewTreeOverlay", "未找到节点，但已尝试处理");
+                            PLog.d("ViewTreeOverlay", "未找到节点，但已尝试处理");
+                            lodRenderer.setFocusPoint((int) x, (int) y);
+                            invalidate();
                             return true; // 即使没找到节点，也消费事件
                         }
                     }
+                    switch (event.getActionMasked()) {
+                        case MotionEvent.ACTION_MOVE:
+                            // 按住移动时显示手指附近的细节
+                            lodRenderer.setFocusPoint((int) event.getX(), (int) event.getY());
+                            invalidate();
+                            return true;
+                        case MotionEvent.ACTION_UP:
+                        case MotionEvent.ACTION_CANCEL:
+                            // 松手后回到选中控件（菜单已关闭时取消焦点）
+                            updateDetailFocus();
+                            return true;
+                    }
                     
                     return false;
                 }
@@ -239,7 +246,7 @@ public class ViewTreeOverlay {
                 statusBarHeight = getStatusBarHeightFallback();
             }
             
-            android.util.Log.d("ViewTreeOverlay", "屏幕尺寸: " + screenWidth + "x" + screenHeight + ", 状态栏高度: " + statusBarHeight);
+            PLog.d("ViewTreeOverlay", "屏幕尺寸: {}x{}, 状态栏高度: {}", screenWidth, screenHeight, statusBarHeight);
         }
 
         /**
@@ -268,6 +275,49 @@ public class ViewTreeOverlay {
             textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
             textPaint.setColor(Color.YELLOW);
             textPaint.setTextSize(dp(10));
+
+            // 高亮画笔
+            highlightPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            highlightPaint.setStyle(Paint.Style.STROKE);
+            highlightPaint.setStrokeWidth(dp(3));
+            highlightPaint.setColor(Color.rgb(255, 200, 0));
+
+            lodRenderer = new OverlayLodRenderer(paint, textPaint, context.getResources().getDisplayMetrics().density);
+            boundsIndex = new NodeBoundsIndex(dp(64));
+        }
+
+        /**
+         * 高亮快照中的节点（最多 MAX_HIGHLIGHTS 个）
+         * @param nodes 节点编号，为 null 时取消高亮
+         */
+        void setHighlights(UiSnapshot snapshot, int[] nodes) {
+            int n = nodes == null ? 0 : Math.min(nodes.length, MAX_HIGHLIGHTS);
+            if (highlightBounds.length < n * 4) {
+                highlightBounds = new int[n * 4];
+            }
+            for (int i = 0; i < n; i++) {
+                int node = nodes[i];
+                highlightBounds[i * 4] = snapshot.getLeft(node);
+                highlightBounds[i * 4 + 1] = snapshot.getTop(node);
+                highlightBounds[i * 4 + 2] = snapshot.getRight(node);
+                highlightBounds[i * 4 + 3] = snapshot.getBottom(node);
+            }
+            highlightCount = n;
+            invalidate();
+        }
+
+        /**
+         * 按节点菜单对应的控件设置细节焦点，没有菜单时取消焦点
+         */
+        void updateDetailFocus() {
+            if (nodeMenuNode != null) {
+                Rect bounds = new Rect();
+                nodeMenuNode.getBoundsInScreen(bounds);
+                lodRenderer.setFocusRect(bounds);
+            } else {
+                lodRenderer.clearFocus();
+            }
+            invalidate();
         }
 
         @Override
@@ -291,26 +341,18 @@ public class ViewTreeOverlay {
             int viewTop = getTop();
             
             // 调试信息（仅在第一次绘制时输出）
-            if (android.util.Log.isLoggable("ViewTreeOverlay", android.util.Log.DEBUG)) {
-                android.util.Log.d("ViewTreeOverlay", String.format(
-                    "绘制信息 - 视图尺寸: %dx%d, 视图位置: (%d,%d), 屏幕尺寸: %dx%d, 状态栏高度: %d",
-                    viewWidth, viewHeight, viewLeft, viewTop, screenWidth, screenHeight, statusBarHeight));
+            if (!drawInfoLogged) {
+                drawInfoLogged = true;
+                PLog.d("ViewTreeOverlay", "绘制信息 - 视图尺寸: {}x{}, 视图位置: ({},{}), 屏幕尺寸: {}x{}, 状态栏高度: {}",
+                        viewWidth, viewHeight, viewLeft, viewTop, screenWidth, screenHeight, statusBarHeight);
             }
             
-            // 绘制所有控件的方框
-            for (Rect rect : nodeRects) {
-                if (rect != null && !rect.isEmpty()) {
-                    // getBoundsInScreen() 返回的坐标是屏幕绝对坐标
-                    // 覆盖层视图应该从屏幕 (0,0) 开始，所以直接使用这些坐标
-                    canvas.drawRect(rect, paint);
-                    
-                    // 在左上角绘制坐标信息（可选，避免过于拥挤）
-                    // 只绘制较大的控件
-                    if (rect.width() > dp(50) && rect.height() > dp(50)) {
-                        String info = rect.left + "," + rect.top;
-                        canvas.drawText(info, rect.left, rect.top - dp(2), textPaint);
-                    }
-                }
+            // getBoundsInScreen() 返回的坐标是屏幕绝对坐标，覆盖层视图从屏幕 (0,0) 开始，直接使用这些坐标
+            // 太小的方框不画，高度重叠的方框合并，标签互相遮挡时不画
+            lodRenderer.draw(canvas);
+            for (int i = 0; i < highlightCount; i++) {
+                canvas.drawRect(highlightBounds[i * 4], highlightBounds[i * 4 + 1],
+                        highlightBounds[i * 4 + 2], highlightBounds[i * 4 + 3], highlightPaint);
             }
         }
 
@@ -323,23 +365,20 @@ public class ViewTreeOverlay {
             PLDScript service = PLDScript.getInstance();
             if (service == null) return false;
             
-            AccessibilityNodeInfo root = service.getRootInActiveWindow();
-            if (root == null) return false;
-            
-            try {
+            TreeCapture.Session session = TreeCapture.begin("isAppOwnWindow", false);
+            try (NodeScope scope = new NodeScope("isAppOwnWindow")) {
+                AccessibilityNodeInfo root = scope.add(session.getRoot(service));
+                if (root == null) return false;
                 CharSequence packageName = root.getPackageName();
                 if (packageName != null) {
                     String currentPackage = packageName.toString();
                     String appPackage = context.getPackageName();
-                    boolean isOwnWindow = currentPackage.equals(appPackage);
-                    root.recycle();
-                    return isOwnWindow;
+                    return currentPackage.equals(appPackage);
                 }
-                root.recycle();
             } catch (Exception e) {
-                if (root != null) {
-                    root.recycle();
-                }
+                PLog.w("ViewTreeOverlay", "获取当前窗口包名失败", e);
+            } finally {
+                session.finish();
             }
             return false;
         }
@@ -361,102 +400,6 @@ public class ViewTreeOverlay {
             return false;
         }
         
-        /**
-         * 检查点是否在悬浮窗气泡范围内
-         * 增加较大的容差，确保不会误判
-         */
-        public boolean isPointInFloatWindowBubble(int x, int y) {
-            int[] bubblePos = FloatWindow.getBubblePosition();
-            if (bubblePos != null) {
-                int bx = bubblePos[0];
-                int by = bubblePos[1];
-                int bw = bubblePos[2];
-                int bh = bubblePos[3];
-                // 增加较大的容差，确保不会误判
-                int tolerance = dp(30);
-                boolean inBubble = x >= bx - tolerance && x <= bx + bw + tolerance 
-                        && y >= by - tolerance && y <= by + bh + tolerance;
-                if (inBubble) {
-                    android.util.Log.d("ViewTreeOverlay", String.format(
-                        "点在悬浮窗气泡内: (%d,%d) 气泡区域: (%d,%d) %dx%d 容差: %d", 
-                        x, y, bx, by, bw, bh, tolerance));
-                }
-                return inBubble;
-            } else {
-                android.util.Log.d("ViewTreeOverlay", String.format(
-                    "悬浮窗气泡位置为null，点: (%d,%d)", x, y));
-            }
-            return false;
-        }
-        
-        /**
-         * 检查点是否在悬浮窗菜单范围内（FloatWindow的菜单，不是控件查看菜单）
-         * 增加较大的容差，确保菜单点击不被拦截
-         */
-        public boolean isPointInFloatWindowMenu(int x, int y) {
-            int[] menuPos = FloatWindow.getMenuPosition();
-            if (menuPos != null) {
-                int mx = menuPos[0];
-                int my = menuPos[1];
-                int mw = menuPos[2];
-                int mh = menuPos[3];
-                // 增加更大的容差，确保菜单点击不被拦截
-                int tolerance = dp(30);
-                boolean inMenu = x >= mx - tolerance && x <= mx + mw + tolerance 
-                        && y >= my - tolerance && y <= my + mh + tolerance;
-                if (inMenu) {
-                    android.util.Log.d("ViewTreeOverlay", String.format(
-                        "点在悬浮窗菜单内: (%d,%d) 菜单区域: (%d,%d) %dx%d 容差: %d", 
-                        x, y, mx, my, mw, mh, tolerance));
-                } else {
-                    android.util.Log.d("ViewTreeOverlay", String.format(
-                        "点不在悬浮窗菜单内: (%d,%d) 菜单区域: (%d,%d) %dx%d", 
-                        x, y, mx, my, mw, mh));
-                }
-                return inMenu;
-            } else {
-                android.util.Log.d("ViewTreeOverlay", String.format(
-                    "悬浮窗菜单位置为null，点: (%d,%d)", x, y));
-            }
-            return false;
-        }
-        
-        /**
-         * 检查点是否在信息窗口范围内
-         */
-        public boolean isPointInInfoWindow(int x, int y) {
-            if (infoWindowView == null) return false;
-            // 信息窗口是居中显示的，检查是否在中心区域
-            int centerX = screenWidth / 2;
-            int centerY = screenHeight / 2;
-            int windowWidth = (int) (screenWidth * 0.8);
-            int windowHeight = (int) (screenHeight * 0.7);
-            int left = centerX - windowWidth / 2;
-            int top = centerY - windowHeight / 2;
-            int right = left + windowWidth;
-            int bottom = top + windowHeight;
-            return x >= left && x <= right && y >= top && y <= bottom;
-        }
-        
-        /**
-         * 检查点是否在菜单范围内
-         */
-        public boolean isPointInMenu(int x, int y) {
-            if (nodeMenuView == null || nodeMenuParams == null) return false;
-            // 菜单位置由nodeMenuParams决定
-            int menuX = nodeMenuParams.x;
-            int menuY = nodeMenuParams.y;
-            int menuWidth = nodeMenuView.getWidth();
-            int menuHeight = nodeMenuView.getHeight();
-            if (menuWidth == 0 || menuHeight == 0) {
-                // 如果还没有测量，使用估算值
-                menuWidth = dp(150);
-                menuHeight = dp(150);
-            }
-            return x >= menuX && x <= menuX + menuWidth && y >= menuY && y <= menuY + menuHeight;
-        }
-        
-
         /**
          * 根据坐标查找对应的控件节点
          */
@@ -467,25 +410,27 @@ public class ViewTreeOverlay {
                 return null;
             }
 
-            // 获取根节点
-            AccessibilityNodeInfo root = service.getRootInActiveWindow();
-            if (root == null) {
-                return null;
+            // 查找包含该坐标的节点（从最上层开始），路径上的其他节点在作用域结束时回收
+            // 只沿包含坐标的路径向下查找，使用默认预取策略
+            try (NodeScope scope = new NodeScope("findNodeAtPosition")) {
+                TreeCapture.Session session = TreeCapture.begin("findNodeAtPosition", false);
+                AccessibilityNodeInfo root = scope.add(session.getRoot(service));
+                if (root == null) {
+                    return null;
+                }
+                AccessibilityNodeInfo foundNode = findNodeAtPositionRecursive(session, scope, root, x, y);
+                session.finish();
+                // 找到的节点由调用方回收
+                return foundNode != null ? scope.detach(foundNode) : null;
             }
-
-            // 查找包含该坐标的节点（从最上层开始）
-            AccessibilityNodeInfo foundNode = findNodeAtPositionRecursive(root, x, y);
-            
-            // 回收根节点
-            root.recycle();
-            
-            return foundNode;
         }
 
         /**
          * 递归查找包含指定坐标的节点
+         * @return 作用域内的节点，没有找到时返回 null
          */
-        private AccessibilityNodeInfo findNodeAtPositionRecursive(AccessibilityNodeInfo node, int x, int y) {
+        private AccessibilityNodeInfo findNodeAtPositionRecursive(TreeCapture.Session session, NodeScope scope,
+                                                                  AccessibilityNodeInfo node, int x, int y) {
             if (node == null) {
                 return null;
             }
@@ -499,95 +444,120 @@ public class ViewTreeOverlay {
                     // 先检查子节点（更上层的节点）
                     int childCount = node.getChildCount();
                     for (int i = 0; i < childCount; i++) {
-                        AccessibilityNodeInfo child = node.getChild(i);
+                        AccessibilityNodeInfo child = scope.add(session.getChild(node, i));
                         if (child != null) {
-                            AccessibilityNodeInfo childResult = findNodeAtPositionRecursive(child, x, y);
+                            AccessibilityNodeInfo childResult = findNodeAtPositionRecursive(session, scope, child, x, y);
                             if (childResult != null) {
                                 return childResult;
                             }
+                            // 不包含该坐标的子树可以立即回收
+                            scope.release(child);
                         }
                     }
                     // 如果没有子节点包含该坐标，返回当前节点
-                    return AccessibilityNodeInfo.obtain(node);
+                    return node;
                 }
             } catch (Exception e) {
-                android.util.Log.e("ViewTreeOverlay", "查找节点时出错", e);
+                PLog.e("ViewTreeOverlay", "查找节点时出错", e);
             }
             
             return null;
         }
 
         /**
-         * 刷新控件树并重绘
+         * 刷新控件树并重绘：采集一次快照，记录到历史中，回看旧版本时只记录不显示
          */
         public void refresh() {
-            nodeRects.clear();
-            // 注意：不在这里存储nodeInfos，因为节点会被回收
-            // 需要时重新获取
-            
             // 获取无障碍服务实例
             PLDScript service = PLDScript.getInstance();
             if (service == null) {
                 return;
             }
 
-            // 获取根节点
-            AccessibilityNodeInfo root = service.getRootInActiveWindow();
-            if (root == null) {
-                return;
-            }
-
-            // 遍历所有节点并获取坐标
-            Stack<AccessibilityNodeInfo> stack = new Stack<>();
-            stack.push(root);
+            // 遍历到的节点读取完属性即回收，快照不持有节点句柄
+            UiSnapshot snapshot;
+            try (NodeScope scope = new NodeScope("refresh")) {
+                TreeCapture.Session session = TreeCapture.begin("refresh", true);
+                AccessibilityNodeInfo root = scope.add(session.getRoot(service));
+                if (root == null) {
+                    return;
+                }
 
-            while (!stack.isEmpty()) {
-                AccessibilityNodeInfo node = stack.pop();
-                if (node == null) continue;
+                // 不可见和完全在屏幕外的子树（如长列表中滚出屏幕的项）整棵跳过，不再逐个访问
+                TraversalOptions options = new TraversalOptions()
+                        .setSkipInvisible(true)
+                        .setSkipOffscreen(true)
+                        .setScreenBounds(screenWidth, screenHeight);
+                snapshot = SnapshotCapture.capture(root, session, options);
+                session.finish();
+            }
 
-                try {
-                    // 获取节点在屏幕上的位置
-                    Rect bounds = new Rect();
-                    node.getBoundsInScreen(bounds);
-                    
-                    // 只添加有效的、可见的控件
-                    if (!bounds.isEmpty() && bounds.width() > 0 && bounds.height() > 0) {
-                        // 验证坐标是否在屏幕范围内
-                        // getBoundsInScreen() 返回的是屏幕绝对坐标，包括状态栏区域
-                        // 坐标系统：屏幕左上角为 (0,0)，包括状态栏
-                        if (bounds.left >= 0 && bounds.top >= 0 
-                                && bounds.left < screenWidth && bounds.top < screenHeight
-                                && bounds.right > 0 && bounds.bottom > 0
-                                && bounds.right <= screenWidth && bounds.bottom <= screenHeight) {
-                            // 直接使用屏幕坐标，覆盖层视图应该从屏幕 (0,0) 开始
-                            nodeRects.add(new Rect(bounds));
-                        }
-                    }
+            liveSnapshot = snapshot;
+            if (history != null && history.add(snapshot) && historyScrubber != null) {
+                historyScrubber.onHistoryChanged();
+            }
+            if (historyScrubber == null || historyScrubber.getSelected() == null) {
+                showSnapshot(snapshot);
+            }
+            if (selectorConsole != null) {
+                // 控制台直接用这次刷新的快照，按间隔重新查找，不再自己采集
+                selectorConsole.onScreenChanged(snapshot);
+            }
+        }
 
-                    // 添加子节点
-                    int childCount = node.getChildCount();
-                    for (int i = 0; i < childCount; i++) {
-                        AccessibilityNodeInfo child = node.getChild(i);
-                        if (child != null) {
-                            stack.push(child);
-                        }
+        /**
+         * 显示快照中的控件方框（实时的或历史中的版本）
+         */
+        void showSnapshot(UiSnapshot snapshot) {
+            nodeRects.clear();
+            int count = 0;
+            for (int i = 0; i < snapshot.size(); i++) {
+                // getBoundsInScreen() 返回的是屏幕绝对坐标，包括状态栏区域
+                // 只添加有效的、完全在屏幕范围内的控件，覆盖层视图从屏幕 (0,0) 开始，直接使用这些坐标
+                int left = snapshot.getLeft(i), top = snapshot.getTop(i);
+                int right = snapshot.getRight(i), bottom = snapshot.getBottom(i);
+                if (right > left && bottom > top
+                        && left >= 0 && top >= 0 && left < screenWidth && top < screenHeight
+                        && right <= screenWidth && bottom <= screenHeight) {
+                    nodeRects.add(new Rect(left, top, right, bottom));
+                    if (count == rectNodes.length) {
+                        rectNodes = java.util.Arrays.copyOf(rectNodes, Math.max(64, count * 2));
                     }
-                } catch (Exception e) {
-                    android.util.Log.e("ViewTreeOverlay", "处理节点时出错", e);
+                    rectNodes[count++] = i;
                 }
             }
-            
-            // 只回收根节点（子节点由系统管理，回收root时会自动处理）
-            try {
-                root.recycle();
-            } catch (Exception e) {
-                android.util.Log.w("ViewTreeOverlay", "回收根节点时出错", e);
-            }
+            displayedSnapshot = snapshot;
 
+            lodRenderer.setRects(nodeRects, screenWidth, screenHeight);
+            boundsIndex.build(nodeRects, screenWidth, screenHeight);
+            if (magnifierView != null) {
+                magnifierView.invalidate();
+            }
             // 强制重绘
             postInvalidate();
         }
 
+        /**
+         * 回看历史版本时点选控件：在显示的快照中选取面积最小的控件，交给滑块显示
+         */
+        private void pickHistoryNode(int x, int y) {
+            Rect picked = boundsIndex.pick(x, y, dp(4));
+            int node = -1;
+            if (picked != null) {
+                for (int i = 0; i < nodeRects.size(); i++) {
+                    if (nodeRects.get(i) == picked) {
+                        node = rectNodes[i];
+                        break;
+                    }
+                }
+                lodRenderer.setFocusRect(picked);
+            } else {
+                lodRenderer.setFocusPoint(x, y);
+            }
+            historyScrubber.showNode(displayedSnapshot, node);
+            invalidate();
+        }
+
         private int dp(int value) {
             float density = context.getResources().getDisplayMetrics().density;
             return (int) (value * density + 0.5f);
@@ -600,8 +570,8 @@ public class ViewTreeOverlay {
             // 先关闭之前的菜单
             hideNodeMenuInternal();
             
-            // 复制节点，因为原节点会被回收
-            final AccessibilityNodeInfo nodeCopy = AccessibilityNodeInfo.obtain(node);
+            // 复制节点，因为原节点会被回收；菜单无论以何种方式关闭都会在 hideNodeMenu 中回收
+            nodeMenuNode = NodeTracker.obtain(node, "showNodeMenu");
             
             // 创建菜单
             LinearLayout menu = new LinearLayout(context);
@@ -613,58 +583,72 @@ public class ViewTreeOverlay {
             // 创建菜单项
             TextView viewInfo = createMenuItem(context, "查看控件信息");
             TextView viewTree = createMenuItem(context, "查看控件树");
+            TextView magnify = createMenuItem(context, "放大查看");
+            TextView saveSnapshot = createMenuItem(context, "保存快照");
+            TextView exportTree = createMenuItem(context, "导出控件树");
+            TextView selectorItem = createMenuItem(context, "选择器控制台");
+            TextView historyItem = createMenuItem(context, "历史快照");
             TextView close = createMenuItem(context, "关闭");
             TextView exit = createMenuItem(context, "退出查看");
             // 退出按钮使用不同的颜色，更醒目
             exit.setBackgroundColor(Color.argb(200, 200, 0, 0));
             
             viewInfo.setOnClickListener(v -> {
+                // showNodeInfo 内部会复制节点，之后关闭菜单时回收
+                showNodeInfo(context, nodeMenuNode);
                 hideNodeMenuInternal();
-                showNodeInfo(context, nodeCopy);
-                // showNodeInfo 内部会复制节点，所以这里需要回收
-                nodeCopy.recycle();
             });
             
             viewTree.setOnClickListener(v -> {
                 hideNodeMenuInternal();
                 showViewTree(context);
-                // 回收节点
-                nodeCopy.recycle();
+            });
+            
+            magnify.setOnClickListener(v -> {
+                hideNodeMenuInternal();
+                showMagnifier(context, x, y);
+            });
+            
+            saveSnapshot.setOnClickListener(v -> {
+                hideNodeMenuInternal();
+                saveSnapshot(context);
+            });
+            
+            exportTree.setOnClickListener(v -> {
+                hideNodeMenuInternal();
+                exportTree(context);
+            });
+            
+            selectorItem.setOnClickListener(v -> {
+                hideNodeMenuInternal();
+                showSelectorConsole(context);
+            });
+            
+            historyItem.setOnClickListener(v -> {
+                hideNodeMenuInternal();
+                showHistory(context);
             });
             
             close.setOnClickListener(v -> {
                 hideNodeMenuInternal();
-                // 回收节点
-                nodeCopy.recycle();
             });
             
             exit.setOnClickListener(v -> {
                 hideNodeMenuInternal();
-                // 回收节点
-                nodeCopy.recycle();
                 // 关闭查看控件状态
                 hide(context);
             });
             
             menu.addView(viewInfo);
             menu.addView(viewTree);
+            menu.addView(magnify);
+            menu.addView(saveSnapshot);
+            menu.addView(exportTree);
+            menu.addView(selectorItem);
+            menu.addView(historyItem);
             menu.addView(close);
             menu.addView(exit);
             
-            // 创建菜单窗口参数
-            int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
-                    ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
-                    : WindowManager.LayoutParams.TYPE_PHONE;
-            
-            nodeMenuParams = new WindowManager.LayoutParams(
-                    WindowManager.LayoutParams.WRAP_CONTENT,
-                    WindowManager.LayoutParams.WRAP_CONTENT,
-                    type,
-                    WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
-                    PixelFormat.TRANSLUCENT
-            );
-            nodeMenuParams.gravity = Gravity.TOP | Gravity.START;
-            
             // 测量菜单尺寸
             menu.measure(View.MeasureSpec.UNSPECIFIED, View.MeasureSpec.UNSPECIFIED);
             int menuWidth = menu.getMeasuredWidth();
@@ -687,11 +671,45 @@ public class ViewTreeOverlay {
             menuX = Math.max(0, menuX);
             menuY = Math.max(0, menuY);
             
-            nodeMenuParams.x = menuX;
-            nodeMenuParams.y = menuY;
-            
             nodeMenuView = menu;
-            windowManager.addView(nodeMenuView, nodeMenuParams);
+            OverlayCompositor.addLayer(context, LAYER_NODE_MENU, OverlayCompositor.Z_NODE_MENU, menu,
+                    menuX, menuY, OverlayCompositor.WRAP_CONTENT, OverlayCompositor.WRAP_CONTENT);
+            OverlayCompositor.commit();
+        }
+
+        /**
+         * 保存当前控件树快照到应用的外部文件目录
+         */
+        private void saveSnapshot(Context context) {
+            java.io.File dir = context.getExternalFilesDir("snapshots");
+            if (dir == null) {
+                dir = new java.io.File(context.getFilesDir(), "snapshots");
+            }
+            java.io.File file = new java.io.File(dir, "snapshot-" + System.currentTimeMillis() + ".plds");
+            if (PLDScript.SaveSnapshot(file)) {
+                android.widget.Toast.makeText(context, "快照已保存: " + file.getAbsolutePath(), android.widget.Toast.LENGTH_LONG).show();
+            } else {
+                android.widget.Toast.makeText(context, "保存快照失败", android.widget.Toast.LENGTH_SHORT).show();
+            }
+        }
+
+        /**
+         * 在后台线程中把当前控件树导出为 uiautomator 格式的 XML，保存到应用的外部文件目录，完成后提示结果
+         * （大的控件树遍历和写文件都要较长时间，不能放在主线程）
+         */
+        private void exportTree(Context context) {
+            Context appContext = context.getApplicationContext();
+            new Thread(() -> {
+                java.io.File dir = appContext.getExternalFilesDir("dumps");
+                if (dir == null) {
+                    dir = new java.io.File(appContext.getFilesDir(), "dumps");
+                }
+                java.io.File file = new java.io.File(dir, "window_dump-" + System.currentTimeMillis() + ".xml");
+                int count = PLDScript.ExportTree(file, TreeDumpWriter.FORMAT_XML);
+                String message = count >= 0 ? "已导出 " + count + " 个控件: " + file.getAbsolutePath() : "导出控件树失败";
+                new android.os.Handler(android.os.Looper.getMainLooper()).post(() ->
+                        android.widget.Toast.makeText(appContext, message, android.widget.Toast.LENGTH_LONG).show());
+            }, "PLD-ExportTree").start();
         }
 
         /**
@@ -721,7 +739,11 @@ public class ViewTreeOverlay {
             if (node == null) return;
             
             // 复制节点信息，因为原节点可能被回收
-            AccessibilityNodeInfo nodeCopy = AccessibilityNodeInfo.obtain(node);
+            // 查询过程中获取的父节点都放在同一个作用域中，计算深度和读取父节点信息时不重复跨进程调用
+            NodeScope scope = new NodeScope("showNodeInfo");
+            TreeCapture.Session session = TreeCapture.begin("showNodeInfo", false);
+            LazyNode lazyNode = LazyNode.wrap(scope, session, scope.obtain(node));
+            AccessibilityNodeInfo nodeCopy = lazyNode.getInfo();
             
             // 创建信息窗口
             ScrollView scrollView = new ScrollView(context);
@@ -734,8 +756,28 @@ public class ViewTreeOverlay {
             // 收集节点信息，使用Android原生名称
             StringBuilder info = new StringBuilder();
             info.append("AccessibilityNodeInfo\n\n");
+            String locator = null;
             
             try {
+                // ========== Locator ==========
+                // 在当前快照上为节点生成最短的唯一选择器，脚本中用 PLDScript.FindNodeBySelector 查找
+                info.append("=== Locator ===\n\n");
+                UiSnapshot snapshot = captureSnapshot("showNodeInfo");
+                int snapshotNode = snapshot != null ? findSnapshotNode(snapshot, nodeCopy) : -1;
+                if (snapshotNode >= 0) {
+                    long start = android.os.SystemClock.elapsedRealtimeNanos();
+                    locator = LocatorGenerator.generate(snapshot, snapshotNode);
+                    long elapsedUs = (android.os.SystemClock.elapsedRealtimeNanos() - start) / 1000;
+                    PLog.d("ViewTreeOverlay", "生成定位器 {}，耗时 {}us", locator, elapsedUs);
+                }
+                if (locator != null) {
+                    info.append("selector: ").append(locator).append("\n");
+                    info.append("lookup: ").append(Selector.parse(locator).explain(snapshot)).append("\n");
+                } else {
+                    info.append("selector: 无法生成唯一定位器\n");
+                }
+                info.append("\n");
+                
                 // ========== Basic Information ==========
                 info.append("=== Basic Information ===\n\n");
                 
@@ -846,16 +888,17 @@ public class ViewTreeOverlay {
                 info.append("=== Hierarchy ===\n\n");
                 
                 // depth
-                int depth = calculateNodeDepth(nodeCopy);
+                int depth = lazyNode.getDepth();
                 info.append("depth: ").append(depth).append("\n");
                 
                 // childCount
-                int childCount = nodeCopy.getChildCount();
+                int childCount = lazyNode.getChildCount();
                 info.append("childCount: ").append(childCount).append("\n");
                 
                 // parent
-                AccessibilityNodeInfo parent = nodeCopy.getParent();
-                if (parent != null) {
+                LazyNode lazyParent = lazyNode.getParent();
+                if (lazyParent != null) {
+                    AccessibilityNodeInfo parent = lazyParent.getInfo();
                     CharSequence parentClassName = parent.getClassName();
                     if (parentClassName != null) {
                         info.append("parent.className: ").append(parentClassName).append("\n");
@@ -867,7 +910,6 @@ public class ViewTreeOverlay {
                     if (parentViewId != null) {
                         info.append("parent.viewIdResourceName: ").append(parentViewId).append("\n");
                     }
-                    parent.recycle();
                 } else {
                     info.append("parent: null (root node)\n");
                 }
@@ -1190,8 +1232,9 @@ public class ViewTreeOverlay {
                 }
                 
             } finally {
-                // 回收复制的节点
-                nodeCopy.recycle();
+                // 回收复制的节点和查询过程中获取的父节点
+                scope.close();
+                session.finish();
             }
             
             TextView textView = new TextView(context);
@@ -1203,20 +1246,6 @@ public class ViewTreeOverlay {
             content.addView(textView);
             scrollView.addView(content);
             
-            // 创建信息窗口
-            int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
-                    ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
-                    : WindowManager.LayoutParams.TYPE_PHONE;
-            
-            WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                    (int) (screenWidth * 0.8),
-                    (int) (screenHeight * 0.7),
-                    type,
-                    WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL, // 允许外部触摸
-                    PixelFormat.TRANSLUCENT
-            );
-            params.gravity = Gravity.CENTER;
-            
             // 添加关闭按钮
             LinearLayout container = new LinearLayout(context);
             container.setOrientation(LinearLayout.VERTICAL);
@@ -1233,6 +1262,26 @@ public class ViewTreeOverlay {
                 hideInfoWindow();
             });
             
+            if (locator != null) {
+                // 复制定位器，粘贴到脚本中使用
+                String copied = locator;
+                TextView copyBtn = new TextView(context);
+                copyBtn.setText("复制定位器");
+                copyBtn.setTextColor(Color.WHITE);
+                copyBtn.setTextSize(16);
+                copyBtn.setPadding(dp(16), dp(12), dp(16), dp(12));
+                copyBtn.setBackgroundColor(Color.argb(200, 0, 90, 140));
+                copyBtn.setGravity(Gravity.CENTER);
+                copyBtn.setOnClickListener(v -> {
+                    android.content.ClipboardManager clipboard =
+                            (android.content.ClipboardManager) context.getSystemService(Context.CLIPBOARD_SERVICE);
+                    if (clipboard != null) {
+                        clipboard.setPrimaryClip(android.content.ClipData.newPlainText("selector", copied));
+                        android.widget.Toast.makeText(context, "已复制: " + copied, android.widget.Toast.LENGTH_SHORT).show();
+                    }
+                });
+                container.addView(copyBtn);
+            }
             container.addView(closeBtn);
             container.addView(scrollView, new LinearLayout.LayoutParams(
                     LinearLayout.LayoutParams.MATCH_PARENT,
@@ -1243,142 +1292,269 @@ public class ViewTreeOverlay {
                 // 点击容器本身不关闭，只有点击关闭按钮才关闭
             });
             
-            // 设置窗口标志
-            params.flags = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
-                    | WindowManager.LayoutParams.FLAG_WATCH_OUTSIDE_TOUCH;
-            
             infoWindowView = container;
-            windowManager.addView(container, params);
-            
-            // 注册返回键监听
-            registerBackKeyHandler(container);
+            addPanel(context, LAYER_INFO, container, 0.8f, 0.7f);
         }
 
         /**
-         * 显示控件树
+         * 显示控件树，顶部的搜索框边输入边过滤，匹配的控件同时在覆盖层上高亮
          */
         private void showViewTree(Context context) {
-            PLDScript service = PLDScript.getInstance();
-            if (service == null) return;
-            
-            AccessibilityNodeInfo root = service.getRootInActiveWindow();
-            if (root == null) return;
-            
-            // 创建树形视图
-            ScrollView scrollView = new ScrollView(context);
-            scrollView.setBackgroundColor(Color.argb(250, 20, 20, 20));
-            
-            LinearLayout content = new LinearLayout(context);
-            content.setOrientation(LinearLayout.VERTICAL);
-            content.setPadding(dp(16), dp(16), dp(16), dp(16));
-            
-            // 构建树形文本
-            StringBuilder treeText = new StringBuilder();
-            buildTreeText(root, treeText, "", true);
-            
-            TextView textView = new TextView(context);
-            textView.setText(treeText.toString());
-            textView.setTextColor(Color.WHITE);
-            textView.setTextSize(10);
-            textView.setPadding(dp(8), dp(8), dp(8), dp(8));
-            textView.setTypeface(android.graphics.Typeface.MONOSPACE);
-            
-            content.addView(textView);
-            scrollView.addView(content);
-            
-            // 创建树形视图窗口
-            int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
-                    ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
-                    : WindowManager.LayoutParams.TYPE_PHONE;
-            
-            WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                    (int) (screenWidth * 0.9),
-                    (int) (screenHeight * 0.8),
-                    type,
-                    WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL, // 允许外部触摸
-                    PixelFormat.TRANSLUCENT
-            );
-            params.gravity = Gravity.CENTER;
+            // 打开时采集一次快照，之后的搜索都在快照上进行，不再访问控件树
+            UiSnapshot snapshot = captureSnapshot("showViewTree");
+            if (snapshot == null) return;
             
-            // 添加关闭按钮
-            LinearLayout container = new LinearLayout(context);
-            container.setOrientation(LinearLayout.VERTICAL);
-            container.setBackgroundColor(Color.argb(250, 20, 20, 20));
-            
-            TextView closeBtn = new TextView(context);
-            closeBtn.setText("关闭");
-            closeBtn.setTextColor(Color.WHITE);
-            closeBtn.setTextSize(16);
-            closeBtn.setPadding(dp(16), dp(12), dp(16), dp(12));
-            closeBtn.setBackgroundColor(Color.argb(200, 100, 0, 0));
-            closeBtn.setGravity(Gravity.CENTER);
-            closeBtn.setOnClickListener(v -> {
-                hideTreeWindow();
+            TreeSearchPanel panel = new TreeSearchPanel(context, snapshot, new TreeSearchPanel.Listener() {
+                @Override
+                public void onMatchesChanged(UiSnapshot snapshot, int[] nodes) {
+                    setHighlights(snapshot, nodes);
+                }
+
+                @Override
+                public void onNodeSelected(UiSnapshot snapshot, int node) {
+                    lodRenderer.setFocusRect(new Rect(snapshot.getLeft(node), snapshot.getTop(node),
+                            snapshot.getRight(node), snapshot.getBottom(node)));
+                    invalidate();
+                }
+
+                @Override
+                public void onClose() {
+                    hideTreeWindow();
+                }
             });
             
-            container.addView(closeBtn);
-            container.addView(scrollView, new LinearLayout.LayoutParams(
-                    LinearLayout.LayoutParams.MATCH_PARENT,
-                    LinearLayout.LayoutParams.MATCH_PARENT));
-            
-            // 设置容器可点击，防止点击穿透
-            container.setOnClickListener(v -> {
-                // 点击容器本身不关闭，只有点击关闭按钮才关闭
+            treeWindowView = panel.getView();
+            OverlayCompositor.Layer layer = addPanel(context, LAYER_TREE, treeWindowView, 0.9f, 0.8f);
+            // 搜索框需要输入法
+            OverlayCompositor.setInputEnabled(layer, true);
+        }
+
+        /**
+         * 显示选择器控制台（屏幕顶部），匹配的控件在覆盖层上高亮，屏幕变化时重新查找
+         */
+        private void showSelectorConsole(Context context) {
+            hideSelectorConsole();
+            SelectorConsole console = new SelectorConsole(context, liveSnapshot,
+                    new SelectorConsole.Listener() {
+                        @Override
+                        public void onMatchesChanged(UiSnapshot snapshot, int[] nodes) {
+                            setHighlights(snapshot, nodes);
+                        }
+
+                        @Override
+                        public void onClose() {
+                            hideSelectorConsole();
+                        }
+                    });
+            selectorConsole = console;
+            int width = (int) (screenWidth * 0.9f);
+            OverlayCompositor.Layer layer = OverlayCompositor.addLayer(context, LAYER_SELECTOR, OverlayCompositor.Z_PANEL,
+                    console.getView(), (screenWidth - width) / 2, dp(32), width, OverlayCompositor.WRAP_CONTENT);
+            // 输入框需要输入法（同时提交图层）
+            OverlayCompositor.setInputEnabled(layer, true);
+        }
+
+        /**
+         * 显示快照历史滑块（屏幕底部），拖到旧版本时覆盖层显示该版本的控件方框
+         */
+        private void showHistory(Context context) {
+            if (history == null) return;
+            hideHistory();
+            HistoryScrubber scrubber = new HistoryScrubber(context, history, new HistoryScrubber.Listener() {
+                @Override
+                public void onVersionSelected(UiSnapshot snapshot) {
+                    if (snapshot == null && history.size() > 0) {
+                        // 回到实时状态，显示最新版本
+                        snapshot = history.get(history.size() - 1);
+                    }
+                    if (snapshot != null) {
+                        showSnapshot(snapshot);
+                    }
+                }
+
+                @Override
+                public void onClose() {
+                    hideHistory();
+                }
             });
-            
-            // 设置窗口标志 - 允许接收触摸和按键事件
-            params.flags = WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL;
-            
-            treeWindowView = container;
-            windowManager.addView(container, params);
-            
-            // 注册返回键监听
-            registerBackKeyHandler(container);
-            
-            // 回收根节点
-            root.recycle();
+            historyScrubber = scrubber;
+            View panel = scrubber.getView();
+            int width = (int) (screenWidth * 0.9f);
+            panel.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.UNSPECIFIED);
+            OverlayCompositor.addLayer(context, LAYER_HISTORY, OverlayCompositor.Z_PANEL, panel,
+                    (screenWidth - width) / 2, screenHeight - panel.getMeasuredHeight() - dp(48),
+                    width, OverlayCompositor.WRAP_CONTENT);
+            OverlayCompositor.commit();
         }
 
         /**
-         * 递归构建树形文本
+         * 在快照中找到与实时节点对应的节点：范围、类名和 viewId 都相同，多层相同时取最深的一个
+         * @return 快照节点编号，没有找到时返回 -1
          */
-        private void buildTreeText(AccessibilityNodeInfo node, StringBuilder sb, String prefix, boolean isLast) {
-            if (node == null) return;
-            
-            try {
-                // 当前节点信息
-                sb.append(prefix);
-                sb.append(isLast ? "└─ " : "├─ ");
-                
-                CharSequence className = node.getClassName();
-                if (className != null) {
-                    sb.append(className);
+        private int findSnapshotNode(UiSnapshot snapshot, AccessibilityNodeInfo node) {
+            Rect bounds = new Rect();
+            node.getBoundsInScreen(bounds);
+            CharSequence className = node.getClassName();
+            String name = className != null ? className.toString() : null;
+            String viewId = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 ? node.getViewIdResourceName() : null;
+            int found = -1;
+            for (int i = 0; i < snapshot.size(); i++) {
+                if (snapshot.getLeft(i) == bounds.left && snapshot.getTop(i) == bounds.top
+                        && snapshot.getRight(i) == bounds.right && snapshot.getBottom(i) == bounds.bottom
+                        && java.util.Objects.equals(snapshot.getClassName(i), name)
+                        && java.util.Objects.equals(snapshot.getViewIdResourceName(i), viewId)
+                        && (found < 0 || snapshot.getDepth(i) > snapshot.getDepth(found))) {
+                    found = i;
                 }
-                
-                CharSequence text = node.getText();
-                if (text != null && text.length() > 0) {
-                    String textStr = text.toString();
-                    if (textStr.length() > 20) {
-                        textStr = textStr.substring(0, 20) + "...";
-                    }
-                    sb.append(" [").append(textStr).append("]");
+            }
+            return found;
+        }
+
+        /**
+         * 采集当前屏幕的快照
+         * @return 无法获取根节点时返回 null
+         */
+        private UiSnapshot captureSnapshot(String tag) {
+            PLDScript service = PLDScript.getInstance();
+            if (service == null) return null;
+            try (NodeScope scope = new NodeScope(tag)) {
+                TreeCapture.Session session = TreeCapture.begin(tag, true);
+                AccessibilityNodeInfo root = scope.add(session.getRoot(service));
+                if (root == null) return null;
+                UiSnapshot snapshot = SnapshotCapture.capture(root, session);
+                session.finish();
+                return snapshot;
+            }
+        }
+
+        /**
+         * 显示放大镜，以 (x, y) 为中心放大控件方框，点选的控件打开节点菜单
+         */
+        private void showMagnifier(Context context, int x, int y) {
+            hideMagnifier();
+            int size = (int) (Math.min(screenWidth, screenHeight) * 0.85f);
+
+            InspectorMagnifier magnifier = new InspectorMagnifier(context, boundsIndex, paint,
+                    screenWidth, screenHeight, (bounds, pickX, pickY) -> {
+                        AccessibilityNodeInfo node = findNodeByBounds(bounds);
+                        if (node == null) {
+                            PLog.d("ViewTreeOverlay", "放大镜选中的控件已不存在: {}", bounds);
+                            return;
+                        }
+                        showNodeMenu(context, node, pickX, pickY);
+                        lodRenderer.setFocusRect(bounds);
+                        invalidate();
+                        NodeTracker.recycle(node);
+                    });
+            magnifier.setCenter(x, y);
+
+            TextView zoomLabel = new TextView(context);
+            zoomLabel.setTextColor(Color.WHITE);
+            zoomLabel.setText("放大 " + magnifier.getZoom() + "x");
+            zoomLabel.setPadding(dp(16), dp(12), dp(16), dp(12));
+            TextView zoomOut = createMenuItem(context, "－");
+            TextView zoomIn = createMenuItem(context, "＋");
+            TextView close = createMenuItem(context, "关闭");
+            close.setBackgroundColor(Color.argb(200, 100, 0, 0));
+            zoomOut.setOnClickListener(v -> {
+                magnifier.zoomOut();
+                zoomLabel.setText("放大 " + magnifier.getZoom() + "x");
+            });
+            zoomIn.setOnClickListener(v -> {
+                magnifier.zoomIn();
+                zoomLabel.setText("放大 " + magnifier.getZoom() + "x");
+            });
+            close.setOnClickListener(v -> hideMagnifier());
+
+            LinearLayout header = new LinearLayout(context);
+            header.setOrientation(LinearLayout.HORIZONTAL);
+            header.setBackgroundColor(Color.argb(250, 20, 20, 20));
+            header.addView(zoomLabel, new LinearLayout.LayoutParams(0,
+                    LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+            header.addView(zoomOut);
+            header.addView(zoomIn);
+            header.addView(close);
+
+            LinearLayout container = new LinearLayout(context);
+            container.setOrientation(LinearLayout.VERTICAL);
+            container.addView(header, new LinearLayout.LayoutParams(
+                    LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT));
+            container.addView(magnifier, new LinearLayout.LayoutParams(size, size));
+
+            magnifierView = magnifier;
+            magnifierWindowView = container;
+            // 放大镜在节点菜单之下，点选后弹出的菜单显示在放大镜上面
+            OverlayCompositor.addLayer(context, LAYER_MAGNIFIER, OverlayCompositor.Z_MAGNIFIER, container,
+                    (screenWidth - size) / 2, (screenHeight - size) / 2,
+                    OverlayCompositor.WRAP_CONTENT, OverlayCompositor.WRAP_CONTENT);
+            OverlayCompositor.commit();
+        }
+
+        /**
+         * 按屏幕范围查找控件，范围相同的多层控件取最深的一个
+         * @return 找到的节点由调用方回收，没有找到时返回 null
+         */
+        private AccessibilityNodeInfo findNodeByBounds(Rect target) {
+            PLDScript service = PLDScript.getInstance();
+            if (service == null) {
+                return null;
+            }
+
+            // 只沿范围包含目标的路径向下查找，路径上的其他节点在作用域结束时回收
+            try (NodeScope scope = new NodeScope("findNodeByBounds")) {
+                TreeCapture.Session session = TreeCapture.begin("findNodeByBounds", false);
+                AccessibilityNodeInfo root = scope.add(session.getRoot(service));
+                if (root == null) {
+                    return null;
                 }
-                
-                sb.append("\n");
-                
-                // 子节点
+                AccessibilityNodeInfo foundNode = findNodeByBoundsRecursive(session, scope, root, target, new Rect());
+                session.finish();
+                return foundNode != null ? scope.detach(foundNode) : null;
+            }
+        }
+
+        /**
+         * @return 作用域内的节点，没有找到时返回 null
+         */
+        private AccessibilityNodeInfo findNodeByBoundsRecursive(TreeCapture.Session session, NodeScope scope,
+                                                                AccessibilityNodeInfo node, Rect target, Rect bounds) {
+            try {
+                node.getBoundsInScreen(bounds);
+                if (!bounds.contains(target)) {
+                    return null;
+                }
+                boolean same = bounds.equals(target);
                 int childCount = node.getChildCount();
-                String childPrefix = prefix + (isLast ? "   " : "│  ");
-                
                 for (int i = 0; i < childCount; i++) {
-                    AccessibilityNodeInfo child = node.getChild(i);
+                    AccessibilityNodeInfo child = scope.add(session.getChild(node, i));
                     if (child != null) {
-                        buildTreeText(child, sb, childPrefix, i == childCount - 1);
+                        AccessibilityNodeInfo childResult = findNodeByBoundsRecursive(session, scope, child, target, bounds);
+                        if (childResult != null) {
+                            return childResult;
+                        }
+                        scope.release(child);
                     }
                 }
+                return same ? node : null;
             } catch (Exception e) {
-                android.util.Log.e("ViewTreeOverlay", "构建树形文本时出错", e);
+                PLog.e("ViewTreeOverlay", "按范围查找节点时出错", e);
             }
+            return null;
+        }
+
+        /**
+         * 把面板居中放到合成窗口中
+         * @param widthRatio 宽度占屏幕的比例
+         * @param heightRatio 高度占屏幕的比例
+         */
+        private OverlayCompositor.Layer addPanel(Context context, String name, View panel, float widthRatio, float heightRatio) {
+            int width = (int) (screenWidth * widthRatio);
+            int height = (int) (screenHeight * heightRatio);
+            OverlayCompositor.Layer layer = OverlayCompositor.addLayer(context, name, OverlayCompositor.Z_PANEL, panel,
+                    (screenWidth - width) / 2, (screenHeight - height) / 2, width, height);
+            OverlayCompositor.commit();
+            return layer;
         }
     }
     
@@ -1386,16 +1562,76 @@ public class ViewTreeOverlay {
      * 隐藏树形视图窗口
      */
     public static void hideTreeWindow() {
-        if (treeWindowView != null && windowManager != null) {
-            try {
-                windowManager.removeView(treeWindowView);
-            } catch (Exception e) {
-                android.util.Log.e("ViewTreeOverlay", "关闭树形视图时出错", e);
-            }
+        if (treeWindowView != null) {
+            OverlayCompositor.removeLayer(LAYER_TREE);
             treeWindowView = null;
+            if (overlayView != null) {
+                overlayView.setHighlights(null, null);
+            }
         }
     }
     
+    /**
+     * 隐藏快照历史滑块，覆盖层回到实时状态
+     */
+    public static void hideHistory() {
+        if (historyScrubber != null) {
+            OverlayCompositor.removeLayer(LAYER_HISTORY);
+            boolean wasViewing = historyScrubber.getSelected() != null;
+            historyScrubber = null;
+            if (wasViewing && overlayView != null && history != null && history.size() > 0) {
+                overlayView.showSnapshot(history.get(history.size() - 1));
+            }
+        }
+    }
+
+    /**
+     * 检查是否有快照历史滑块显示
+     */
+    public static boolean hasHistory() {
+        return historyScrubber != null;
+    }
+
+    /**
+     * 隐藏选择器控制台
+     */
+    public static void hideSelectorConsole() {
+        if (selectorConsole != null) {
+            OverlayCompositor.removeLayer(LAYER_SELECTOR);
+            selectorConsole.release();
+            selectorConsole = null;
+            if (overlayView != null) {
+                overlayView.setHighlights(null, null);
+            }
+        }
+    }
+
+    /**
+     * 检查是否有选择器控制台显示
+     */
+    public static boolean hasSelectorConsole() {
+        return selectorConsole != null;
+    }
+
+    /**
+     * 隐藏放大镜
+     */
+    public static void hideMagnifier() {
+        if (magnifierWindowView != null) {
+            OverlayCompositor.removeLayer(LAYER_MAGNIFIER);
+            magnifierView.release();
+            magnifierWindowView = null;
+            magnifierView = null;
+        }
+    }
+
+    /**
+     * 检查是否有放大镜显示
+     */
+    public static boolean hasMagnifier() {
+        return magnifierWindowView != null;
+    }
+
     /**
      * 检查是否有信息窗口显示
      */
@@ -1414,12 +1650,8 @@ public class ViewTreeOverlay {
      * 隐藏信息窗口（公开方法）
      */
     public static void hideInfoWindow() {
-        if (infoWindowView != null && windowManager != null) {
-            try {
-                windowManager.removeView(infoWindowView);
-            } catch (Exception e) {
-                android.util.Log.e("ViewTreeOverlay", "关闭信息窗口时出错", e);
-            }
+        if (infoWindowView != null) {
+            OverlayCompositor.removeLayer(LAYER_INFO);
             infoWindowView = null;
         }
     }
@@ -1428,14 +1660,16 @@ public class ViewTreeOverlay {
      * 隐藏节点菜单（公开方法）
      */
     public static void hideNodeMenu() {
-        if (nodeMenuView != null && windowManager != null) {
-            try {
-                windowManager.removeView(nodeMenuView);
-            } catch (Exception e) {
-                android.util.Log.e("ViewTreeOverlay", "移除菜单时出错", e);
-            }
+        if (nodeMenuView != null) {
+            OverlayCompositor.removeLayer(LAYER_NODE_MENU);
             nodeMenuView = null;
-            nodeMenuParams = null;
+        }
+        if (nodeMenuNode != null) {
+            NodeTracker.recycle(nodeMenuNode);
+            nodeMenuNode = null;
+        }
+        if (overlayView != null) {
+            overlayView.updateDetailFocus();
         }
     }
     
@@ -1445,48 +1679,4 @@ public class ViewTreeOverlay {
     public static boolean hasNodeMenu() {
         return nodeMenuView != null;
     }
-    
-    /**
-     * 计算节点深度
-     */
-    private static int calculateNodeDepth(AccessibilityNodeInfo node) {
-        if (node == null) return 0;
-        int depth = 0;
-        AccessibilityNodeInfo parent = node.getParent();
-        while (parent != null) {
-            depth++;
-            AccessibilityNodeInfo temp = parent.getParent();
-            parent.recycle();
-            parent = temp;
-        }
-        return depth;
-    }
-    
-    // getActionName 方法已移除，直接使用 ACTION 常量名
-    
-    /**
-     * 注册返回键处理器
-     */
-    private static void registerBackKeyHandler(View container) {
-        // 设置容器可以接收按键事件
-        container.setFocusable(true);
-        container.setFocusableInTouchMode(true);
-        container.requestFocus();
-        
-        // 设置按键监听
-        container.setOnKeyListener(new View.OnKeyListener() {
-            @Override
-            public boolean onKey(View v, int keyCode, android.view.KeyEvent event) {
-                if (keyCode == android.view.KeyEvent.KEYCODE_BACK 
-                        && event.getAction() == android.view.KeyEvent.ACTION_UP) {
-                    hideInfoWindow();
-                    hideTreeWindow();
-                    hideNodeMenu();
-                    return true;
-                }
-                return false;
-            }
-        });
-    }
 }
-
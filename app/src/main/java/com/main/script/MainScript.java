@@ -1,9 +1,12 @@
 package com.main.script;
 
 import android.content.Context;
-import android.util.Log;
 
-import com.app.pldscript.PLDScript;
+import com.app.pldscript.DeviceBackend;
+import com.app.pldscript.NodeTracker;
+import com.app.pldscript.PLog;
+import com.app.pldscript.RunLogs;
+import com.app.pldscript.ScriptBackend;
 
 public class MainScript {
     private static final String TAG = "MainScript";
@@ -16,7 +19,7 @@ public class MainScript {
 
     public static void start(Context context) {
         if (running) {
-            Log.d(TAG, "Script already running");
+            PLog.d(TAG, "Script already running");
             return;
         }
         if (com.app.pldscript.PLDScript.getInstance() == null) {
@@ -27,30 +30,43 @@ public class MainScript {
             return;
         }
         running = true;
-        Log.d(TAG, "Script started");
+        // 本次运行的日志写入独立的文件，便于事后导出排查
+        RunLogs.begin(context.getApplicationContext(), "MainScript");
+        PLog.i(TAG, "Script started");
 
         // 示例脚本：通过中断直接终止（不做运行标志检查）
         workerThread = new Thread(() -> {
             try {
-                Thread.sleep(300);
-                PLDScript.Click(500, 500, 100);
-                Log.d(TAG, "点击(500, 500)，时长 100ms");
-                Thread.sleep(2000);
-                PLDScript.Click(500, 500, 100);
-                Log.d(TAG, "点击(500, 500)，时长 100ms");
-                Thread.sleep(1000);
-                //滑动，从500,2000到600,1500，时间是1.5秒
-                PLDScript.Swipe(500, 2000, 550, 1000, 1500);
+                run(DeviceBackend.INSTANCE);
             } catch (InterruptedException e) {
                 // 直接退出线程
             } finally {
                 running = false;
-                Log.d(TAG, "Script finished or interrupted");
+                PLog.i(TAG, "Script finished or interrupted");
+                // 脚本结束后仍未回收的节点句柄视为泄漏
+                NodeTracker.reportLeaks(0);
+                RunLogs.end();
             }
         }, "PLD-MainScript-Worker");
         workerThread.start();
     }
 
+    /**
+     * 脚本主体，只通过 backend 操作界面，可在 ReplayBackend 上离线运行
+     */
+    public static void run(ScriptBackend backend) throws InterruptedException {
+        backend.sleep(300);
+        backend.click(500, 500, 100);
+        PLog.d(TAG, "点击(500, 500)，时长 100ms");
+        // 等待画面稳定后再继续，而不是固定等待
+        backend.waitForStable(300, 2000);
+        backend.click(500, 500, 100);
+        PLog.d(TAG, "点击(500, 500)，时长 100ms");
+        backend.waitForStable(300, 1000);
+        //滑动，从500,2000到600,1500，时间是1.5秒
+        backend.swipe(500, 2000, 550, 1000, 1500);
+    }
+
     public static void stop() {
         if (!running) {
             return;
@@ -62,6 +78,6 @@ public class MainScript {
             } catch (Exception ignored) {}
             workerThread = null;
         }
-        Log.d(TAG, "Script stopped");
+        PLog.d(TAG, "Script stopped");
     }
 }
@@ -0,0 +1,144 @@
+package com.app.pldscript;
+
+import com.main.script.MainScript;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在 ReplayBackend 上离线运行 MainScript，检查 HeadlessScriptRunner 汇总的结果
+ */
+public class HeadlessScriptRunnerTest {
+
+    /**
+     * 首页点击按钮 -> 加载页（loadingMs 后自动进入列表） -> 点击列表项进入详情 -> 上滑
+     */
+    private static ReplayBackend scenario(long loadingMs) {
+        ReplayBackend backend = new ReplayBackend()
+                .addState("home", page("home", "com.example:id/start", "开始"))
+                .addState("loading", page("loading", null, null))
+                .addState("list", page("list", "com.example:id/item", "第一项"))
+                .addState("detail", page("detail", null, null))
+                .addState("detailScrolled", page("detailScrolled", null, null));
+        backend.onClick("home", 1, "loading")
+                .after("loading", loadingMs, "list")
+                .onClick("list", 1, "detail")
+                .onSwipe("detail", ReplayBackend.SWIPE_UP, "detailScrolled");
+        return backend;
+    }
+
+    /**
+     * 全屏根节点 + 屏幕中部 (400, 450) - (600, 550) 的一个可点击节点
+     */
+    private static UiSnapshot page(String name, String viewId, String text) {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(0L);
+        int root = builder.addNode(-1, 0, "android.widget.FrameLayout", "com.example", null, name, null,
+                0, 0, 1080, 2400, UiSnapshot.FLAG_VISIBLE);
+        builder.addNode(root, 0, "android.widget.Button", "com.example", text, null, viewId,
+                400, 450, 600, 550, UiSnapshot.FLAG_VISIBLE | UiSnapshot.FLAG_CLICKABLE);
+        return builder.build();
+    }
+
+    @Test
+    public void mainScript_reachesExpectedState() {
+        ReplayBackend backend = scenario(200);
+        HeadlessScriptRunner.Result result = HeadlessScriptRunner.run("main", MainScript::run, backend, "detailScrolled");
+
+        assertTrue(result.toString(), result.passed);
+        assertNull(result.error);
+        assertEquals("detailScrolled", result.finalState);
+        assertEquals(3, result.gestures);
+        assertEquals(0, result.unmatchedGestures);
+        // 300 休眠 + 100 点击 + 200 加载 + 300 稳定 + 100 点击 + 300 稳定 + 1500 滑动
+        assertEquals(2800, result.virtualMillis);
+        assertEquals(4, result.history.size());
+        assertTrue(result.history.get(1), result.history.get(1).contains("loading -> list"));
+    }
+
+    @Test
+    public void mainScript_failsWhenLoadingOutlastsWait() {
+        // 加载时间超过脚本的等待上限，第二次点击落在加载页上
+        ReplayBackend backend = scenario(2500);
+        HeadlessScriptRunner.Result result = HeadlessScriptRunner.run("slowLoading", MainScript::run, backend, "detailScrolled");
+
+        assertFalse(result.passed);
+        assertNull(result.error);
+        assertEquals(2, result.unmatchedGestures);
+        assertNotEquals("detailScrolled", result.finalState);
+    }
+
+    @Test
+    public void scriptError_isReported() {
+        ReplayBackend backend = scenario(200);
+        HeadlessScriptRunner.Result result = HeadlessScriptRunner.run("error", b -> {
+            b.clickNode(b.captureSnapshot(), 1);
+            throw new IllegalStateException("boom");
+        }, backend, null);
+
+        assertFalse(result.passed);
+        assertTrue(result.error instanceof IllegalStateException);
+        assertEquals("loading", result.finalState);
+        assertEquals(1, result.gestures);
+    }
+
+    @Test
+    public void interrupt_stopsScript() {
+        ReplayBackend backend = scenario(200);
+        Thread.currentThread().interrupt();
+        HeadlessScriptRunner.Result result = HeadlessScriptRunner.run("interrupted", MainScript::run, backend, null);
+
+        assertTrue(result.error instanceof InterruptedException);
+        assertEquals(0, result.gestures);
+        assertFalse(Thread.interrupted());
+    }
+
+    @Test
+    public void waitAfterGesturePassingTimer_keepsClockMonotonic() throws InterruptedException {
+        // 加载页 60ms 后自动进入列表，没有命中的点击本身就要 100ms，等待时时钟不能退回到 60
+        ReplayBackend backend = new ReplayBackend()
+                .addState("loading", page("loading", null, null))
+                .addState("list", page("list", "com.example:id/item", "第一项"));
+        backend.after("loading", 60, "list");
+
+        assertTrue(backend.click(10, 10, 100));
+        assertEquals(100, backend.uptimeMillis());
+        assertTrue(backend.waitForIdle(300, 2000));
+        assertEquals(400, backend.uptimeMillis());
+        assertEquals("list", backend.getCurrentState());
+        assertEquals(1, backend.getUnmatchedCount());
+    }
+
+    @Test
+    public void plog_worksWithDefaultAndroidStubs() {
+        // PLog 的静态初始化会启动后台线程并注册 LogcatSink；本地测试中 android.util.Log 返回默认值，不应影响其他输出
+        final List<String> lines = new ArrayList<>();
+        PLog.Sink sink = new PLog.Sink() {
+            @Override
+            public void write(int level, long time, String thread, String tag, CharSequence message, Throwable error) {
+                synchronized (lines) {
+                    lines.add(tag + ": " + message + (error != null ? " " + error.getMessage() : ""));
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+        };
+        PLog.addSink(sink);
+        try {
+            PLog.w("Test", "状态 {} 耗时 {}ms", "list", 200);
+            PLog.e("Test", "出错", new RuntimeException("boom"));
+            assertTrue(PLog.flush(2000));
+            synchronized (lines) {
+                assertTrue(lines.toString(), lines.contains("Test: 状态 list 耗时 200ms"));
+                assertTrue(lines.toString(), lines.contains("Test: 出错 boom"));
+            }
+        } finally {
+            PLog.removeSink(sink);
+        }
+    }
+}
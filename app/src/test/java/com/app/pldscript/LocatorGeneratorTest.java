@@ -0,0 +1,107 @@
+package com.app.pldscript;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * LocatorGenerator 生成的定位器在随机树上只匹配目标节点
+ */
+public class LocatorGeneratorTest {
+    private static final String[] IDS = {null, "", "com.a:id/title", "com.a:id/item", "com.b:id/title"};
+    private static final String[] TEXTS = {
+            null, "", "  ", "确定", "取消", "第 1 项", "say \"hi\" \\ ok",
+            "这是一段超过四十个字符的很长很长很长很长很长很长很长很长很长很长的动态文本内容"
+    };
+    private static final String[] DESCS = {null, "返回", "更多"};
+    private static final String[] CLASSES = {
+            null, "", "android.widget.Button", "android.widget.TextView", "android.view.ViewGroup",
+            "com.x.Button", "com.x.Outer$Inner", "com.x.a-b", "com.x."
+    };
+
+    @Test
+    public void randomTrees_locatorsAreUnique() {
+        Random random = new Random(23);
+        int generated = 0;
+        int total = 0;
+        for (int round = 0; round < 60; round++) {
+            UiSnapshot snapshot = randomTree(random, random.nextBoolean() ? "com.android.internal.policy.DecorView" : null);
+            for (int node = 0; node < snapshot.size(); node++) {
+                total++;
+                String locator = LocatorGenerator.generate(snapshot, node);
+                if (locator == null) continue;
+                generated++;
+                assertUnique(snapshot, locator, node);
+            }
+        }
+        // 大部分节点都能生成定位器，避免测试在全部返回 null 时也通过
+        assertTrue(generated + "/" + total, generated * 2 > total);
+    }
+
+    @Test
+    public void uniqueRootClass_alwaysHasLocator() {
+        // 根节点类名唯一时，从根节点开始的 类名:index(n) 路径一定唯一
+        Random random = new Random(29);
+        for (int round = 0; round < 40; round++) {
+            UiSnapshot snapshot = randomTree(random, "com.android.internal.policy.DecorView");
+            for (int node = 0; node < snapshot.size(); node++) {
+                String locator = LocatorGenerator.generate(snapshot, node);
+                assertNotNull("round " + round + " node " + node, locator);
+                assertUnique(snapshot, locator, node);
+            }
+        }
+    }
+
+    @Test
+    public void listItems_useIndex() {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(0L);
+        int root = builder.addNode(-1, 0, "android.widget.FrameLayout", null, null, null, null, 0, 0, 100, 300, 0);
+        int list = builder.addNode(root, 0, "android.widget.ListView", null, null, null, "com.a:id/list",
+                0, 0, 100, 300, 0);
+        for (int i = 0; i < 3; i++) {
+            builder.addNode(list, i, "android.widget.TextView", null, "同一行", null, "com.a:id/item",
+                    0, i * 100, 100, i * 100 + 100, 0);
+        }
+        UiSnapshot snapshot = builder.build();
+        assertEquals("[id=\"com.a:id/list\"]", LocatorGenerator.generate(snapshot, list));
+        assertEquals("[id=\"com.a:id/item\"]:index(1)", LocatorGenerator.generate(snapshot, 3));
+    }
+
+    /**
+     * 逐个节点调用 matches（不经过倒排表）确认只匹配目标节点
+     */
+    private static void assertUnique(UiSnapshot snapshot, String locator, int node) {
+        Selector selector = Selector.parse(locator);
+        for (int n = 0; n < snapshot.size(); n++) {
+            assertEquals(locator + " node " + n, n == node, selector.matches(snapshot, n));
+        }
+        assertArrayEquals(locator, new int[]{node}, selector.findAll(snapshot));
+    }
+
+    /**
+     * 按先序生成随机树，rootClass 不为 null 时作为根节点类名（其他节点不会用到）
+     */
+    private static UiSnapshot randomTree(Random random, String rootClass) {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(0L);
+        addSubtree(builder, random, -1, 0, 0, new int[]{1 + random.nextInt(120)}, rootClass);
+        return builder.build();
+    }
+
+    private static void addSubtree(UiSnapshot.Builder builder, Random random, int parent, int index,
+                                   int depth, int[] budget, String rootClass) {
+        budget[0]--;
+        String className = parent < 0 && rootClass != null ? rootClass : pick(random, CLASSES);
+        int node = builder.addNode(parent, index, className, "com.a", pick(random, TEXTS), pick(random, DESCS),
+                pick(random, IDS), 0, 0, 10, 10, 0);
+        int children = depth < 8 ? random.nextInt(4) : 0;
+        for (int i = 0; i < children && budget[0] > 0; i++) {
+            addSubtree(builder, random, node, i, depth + 1, budget, null);
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
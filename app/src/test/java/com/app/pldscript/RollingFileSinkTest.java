@@ -0,0 +1,94 @@
+package com.app.pldscript;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * RollingFileSink 按大小切换文件，保留数量不超过上限
+ */
+public class RollingFileSinkTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("rolling").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static void writeLines(RollingFileSink sink, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            sink.write(PLog.INFO, 0L, "main", "Test", "第 " + i + " 行日志内容", null);
+        }
+        sink.flush();
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void singleFile_isTruncatedOnRotate() throws IOException {
+        RollingFileSink sink = new RollingFileSink(directory, "run", 200, 1);
+        writeLines(sink, 50);
+        sink.close();
+
+        List<File> files = sink.getFiles();
+        assertEquals(1, files.size());
+        File current = sink.getCurrentFile();
+        assertTrue(current.length() < 200 + 100);
+        // 只留下最后写入的几行
+        String content = read(current);
+        assertTrue(content, content.contains("第 49 行"));
+        assertFalse(content, content.contains("第 0 行"));
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void rotation_keepsAtMostMaxFiles() throws IOException {
+        RollingFileSink sink = new RollingFileSink(directory, "run", 200, 3);
+        writeLines(sink, 100);
+        sink.close();
+
+        List<File> files = sink.getFiles();
+        assertEquals(3, files.size());
+        assertEquals(3, directory.listFiles().length);
+        assertEquals(sink.getCurrentFile(), files.get(0));
+        assertTrue(read(files.get(0)).contains("第 99 行"));
+        for (File file : files) {
+            assertTrue(file + ": " + file.length(), file.length() < 200 + 100);
+        }
+    }
+
+    @Test
+    public void existingFile_isAppendedUntilLimit() throws IOException {
+        RollingFileSink first = new RollingFileSink(directory, "run", 10_000, 2);
+        writeLines(first, 3);
+        first.close();
+        long size = first.getCurrentFile().length();
+
+        RollingFileSink second = new RollingFileSink(directory, "run", 10_000, 2);
+        writeLines(second, 3);
+        second.close();
+        assertEquals(2 * size, second.getCurrentFile().length());
+        assertEquals(1, second.getFiles().size());
+    }
+}
@@ -0,0 +1,121 @@
+package com.app.pldscript;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在 ReplayBackend 上逐批驱动 RuleEngine（不启动工作线程），检查边沿触发和标记清理
+ */
+public class RuleEngineTest {
+    private static final int WINDOW_STATE = 0x00000020;
+    private static final String PACKAGE = "com.example";
+    private static final String DIALOG = "android.app.Dialog";
+    private static final String CLOSE_ID = "com.example:id/close";
+
+    private final EventRing ring = new EventRing(64);
+    private final EventRing.Cursor cursor = ring.openCursor(0, null, null);
+
+    private static UiSnapshot page(boolean withDialog) {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(0L);
+        int root = builder.addNode(-1, 0, "android.widget.FrameLayout", PACKAGE, null, null, null,
+                0, 0, 1080, 2400, UiSnapshot.FLAG_VISIBLE);
+        if (withDialog) {
+            builder.addNode(root, 0, "android.widget.Button", PACKAGE, "关闭", null, CLOSE_ID,
+                    400, 450, 600, 550, UiSnapshot.FLAG_VISIBLE | UiSnapshot.FLAG_CLICKABLE);
+        }
+        return builder.build();
+    }
+
+    private static ReplayBackend backend() {
+        ReplayBackend backend = new ReplayBackend()
+                .addState("dialog", page(true))
+                .addState("home", page(false));
+        backend.onClick("dialog", 400, 450, 600, 550, "home");
+        return backend;
+    }
+
+    /**
+     * 发布一个事件并处理这一批
+     */
+    private void batch(RuleEngine engine, ReplayBackend backend, String packageName, String className)
+            throws InterruptedException {
+        ring.publish(WINDOW_STATE, packageName, className, null, 0, 0);
+        if (engine.collect(cursor)) {
+            engine.evaluate(backend);
+        }
+    }
+
+    @Test
+    public void filteredRule_firesAgainAfterConditionClearedByOtherEvents() throws InterruptedException {
+        ReplayBackend backend = backend();
+        Rule rule = new Rule("关闭弹窗").inPackage(PACKAGE).fromClass(DIALOG).whenViewId(CLOSE_ID).thenClick();
+        RuleEngine engine = new RuleEngine().addRule(rule);
+
+        batch(engine, backend, PACKAGE, DIALOG);
+        assertEquals(1, rule.getFireCount());
+        assertEquals("home", backend.getCurrentState());
+
+        // 弹窗消失后的事件来自别的类名，不命中规则，但条件满足的规则仍会重新评估
+        batch(engine, backend, PACKAGE, "android.app.Activity");
+        assertEquals(1, rule.getFireCount());
+
+        backend.start("dialog");
+        batch(engine, backend, PACKAGE, DIALOG);
+        assertEquals(2, rule.getFireCount());
+        assertEquals("home", backend.getCurrentState());
+    }
+
+    @Test
+    public void matchedRule_doesNotFireTwiceWhileConditionHolds() throws InterruptedException {
+        ReplayBackend backend = backend();
+        Rule rule = new Rule("记录弹窗").inPackage(PACKAGE).fromClass(DIALOG).whenViewId(CLOSE_ID)
+                .then((b, snapshot, node) -> { });
+        RuleEngine engine = new RuleEngine().addRule(rule);
+
+        batch(engine, backend, PACKAGE, DIALOG);
+        batch(engine, backend, PACKAGE, DIALOG);
+        batch(engine, backend, "com.other", "android.app.Activity");
+        assertEquals(1, rule.getFireCount());
+    }
+
+    @Test
+    public void interruptedAction_leavesNoStaleMarks() throws InterruptedException {
+        ReplayBackend backend = backend();
+        boolean[] interrupt = {true};
+        Rule first = new Rule("中断").whenViewId(CLOSE_ID).then((b, snapshot, node) -> {
+            if (interrupt[0]) throw new InterruptedException();
+        });
+        Rule second = new Rule("无条件").then((b, snapshot, node) -> { });
+        RuleEngine engine = new RuleEngine().addRule(first).addRule(second);
+
+        ring.publish(WINDOW_STATE, PACKAGE, DIALOG, null, 0, 0);
+        assertTrue(engine.collect(cursor));
+        try {
+            engine.evaluate(backend);
+            fail("expected InterruptedException");
+        } catch (InterruptedException expected) {
+            // 第二条规则还没有评估
+        }
+        assertEquals(0, second.getFireCount());
+
+        // 之后的事件仍能标记并评估第二条规则
+        interrupt[0] = false;
+        batch(engine, backend, PACKAGE, DIALOG);
+        assertEquals(1, second.getFireCount());
+    }
+
+    @Test
+    public void stop_waitsForWorkerToExit() {
+        EventRing own = new EventRing(16);
+        RuleEngine engine = new RuleEngine().addRule(new Rule("无条件").then((b, snapshot, node) -> { }));
+        for (int i = 0; i < 5; i++) {
+            engine.start(backend(), own.openCursor(0, null, null));
+            assertTrue(engine.isRunning());
+            engine.stop();
+            // 工作线程退出时关闭游标，stop 返回时已经关闭
+            assertFalse(engine.isRunning());
+            assertFalse(own.hasCursors());
+        }
+    }
+}
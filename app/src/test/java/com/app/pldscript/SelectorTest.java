@@ -0,0 +1,255 @@
+package com.app.pldscript;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Selector.findAll（倒排表、子树范围等候选方式）与逐个节点、逐个祖先暴力匹配的结果一致
+ */
+public class SelectorTest {
+    private static final String[] IDS = {null, "com.a:id/title", "com.a:id/ok", "com.b:id/title", "com.a:id/list"};
+    private static final String[] TEXTS = {null, "", "确定", "取消", "设置", "确定 \"1\""};
+    private static final String[] DESCS = {null, "返回", "更多", "返回上一页"};
+    private static final String[] CLASSES = {
+            null, "android.widget.Button", "android.widget.TextView", "android.view.ViewGroup",
+            "com.x.Button", "android.widget.ListView"
+    };
+    private static final String[] PACKAGES = {null, "com.a", "com.b"};
+    private static final String[] CLASS_NAMES = {"Button", "TextView", "ViewGroup", "ListView",
+            "android.widget.Button", "com.x.Button", "utton"};
+    private static final String[] ID_NAMES = {"title", "ok", "list", "itle"};
+    private static final String[] FLAG_NAMES = {"clickable", "enabled", "checked", "scrollable", "visible"};
+    private static final int[] FLAG_VALUES = {UiSnapshot.FLAG_CLICKABLE, UiSnapshot.FLAG_ENABLED,
+            UiSnapshot.FLAG_CHECKED, UiSnapshot.FLAG_SCROLLABLE, UiSnapshot.FLAG_VISIBLE};
+    private static final String[] OPS = {"=", "^=", "*=", "$="};
+
+    @Test
+    public void randomSelectors_matchBruteForce() {
+        Random random = new Random(17);
+        for (int round = 0; round < 60; round++) {
+            UiSnapshot snapshot = randomTree(random);
+            for (int q = 0; q < 40; q++) {
+                List<Step> steps = randomSelector(random, snapshot);
+                String source = render(steps);
+                Selector selector = Selector.parse(source);
+                int[] expected = bruteForce(snapshot, steps);
+                assertArrayEquals(source + " / " + selector.explain(snapshot), expected, selector.findAll(snapshot));
+                assertEquals(source, expected.length > 0 ? expected[0] : -1, selector.findFirst(snapshot));
+                for (int node = 0; node < snapshot.size(); node++) {
+                    assertEquals(source + " node " + node,
+                            Arrays.binarySearch(expected, node) >= 0, selector.matches(snapshot, node));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void indexedSelectors_useCandidates() {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(0L);
+        int root = builder.addNode(-1, 0, "android.widget.FrameLayout", "com.a", null, null, null,
+                0, 0, 100, 100, 0);
+        int list = builder.addNode(root, 0, "android.widget.ListView", "com.a", null, null, "com.a:id/list",
+                0, 0, 100, 100, 0);
+        builder.addNode(list, 0, "android.widget.Button", "com.a", "确定", null, "com.a:id/ok",
+                0, 0, 100, 50, UiSnapshot.FLAG_CLICKABLE);
+        builder.addNode(root, 1, "android.widget.Button", "com.a", "确定", null, null,
+                0, 50, 100, 100, 0);
+        UiSnapshot snapshot = builder.build();
+
+        Selector byText = Selector.parse("Button[text=\"确定\"]");
+        assertTrue(byText.isIndexed());
+        assertArrayEquals(new int[]{2, 3}, byText.findAll(snapshot));
+        Selector inList = Selector.parse("[id=list] > *[clickable]");
+        assertTrue(inList.explain(snapshot), inList.explain(snapshot).startsWith("子树 "));
+        assertArrayEquals(new int[]{2}, inList.findAll(snapshot));
+        assertFalse(Selector.parse("Button[text^=\"确\"]").isIndexed());
+    }
+
+    // ==================== 暴力匹配 ====================
+
+    /**
+     * 测试中的选择器模型：一步的类名、条件和序号，以及与左边一步的关系
+     */
+    private static class Step {
+        boolean child;
+        String className;
+        final List<String[]> predicates = new ArrayList<>();
+        int index = -1;
+    }
+
+    private static int[] bruteForce(UiSnapshot snapshot, List<Step> steps) {
+        int[] result = new int[snapshot.size()];
+        int n = 0;
+        for (int node = 0; node < snapshot.size(); node++) {
+            if (matchesChain(snapshot, steps, steps.size() - 1, node)) {
+                result[n++] = node;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static boolean matchesChain(UiSnapshot snapshot, List<Step> steps, int step, int node) {
+        if (!matchesStep(snapshot, steps.get(step), node)) return false;
+        if (step == 0) return true;
+        int parent = snapshot.getParent(node);
+        if (steps.get(step).child) {
+            return parent >= 0 && matchesChain(snapshot, steps, step - 1, parent);
+        }
+        for (int ancestor = parent; ancestor >= 0; ancestor = snapshot.getParent(ancestor)) {
+            if (matchesChain(snapshot, steps, step - 1, ancestor)) return true;
+        }
+        return false;
+    }
+
+    private static boolean matchesStep(UiSnapshot snapshot, Step step, int node) {
+        if (step.index >= 0 && snapshot.getIndexInParent(node) != step.index) return false;
+        if (step.className != null && !sameClass(snapshot.getClassName(node), step.className)) return false;
+        for (String[] predicate : step.predicates) {
+            String name = predicate[0], op = predicate[1], value = predicate[2];
+            int flag = Arrays.asList(FLAG_NAMES).indexOf(name);
+            if (flag >= 0) {
+                if (((snapshot.getFlags(node) & FLAG_VALUES[flag]) != 0) != value.equals("true")) return false;
+                continue;
+            }
+            String actual;
+            switch (name) {
+                case "id": actual = snapshot.getViewIdResourceName(node); break;
+                case "text": actual = snapshot.getText(node); break;
+                case "desc": actual = snapshot.getContentDescription(node); break;
+                case "class": actual = snapshot.getClassName(node); break;
+                default: actual = snapshot.getPackageName(node);
+            }
+            if (actual == null) return false;
+            boolean ok;
+            if (op.equals("=") && name.equals("id") && !value.contains(":")) {
+                ok = actual.endsWith("/" + value);
+            } else if (op.equals("=") && name.equals("class")) {
+                ok = sameClass(actual, value);
+            } else if (op.equals("=")) {
+                ok = actual.equals(value);
+            } else if (op.equals("^=")) {
+                ok = actual.startsWith(value);
+            } else if (op.equals("*=")) {
+                ok = actual.contains(value);
+            } else {
+                ok = actual.endsWith(value);
+            }
+            if (!ok) return false;
+        }
+        return true;
+    }
+
+    private static boolean sameClass(String actual, String expected) {
+        if (actual == null) return false;
+        return expected.contains(".") ? actual.equals(expected) : actual.equals(expected) || actual.endsWith("." + expected);
+    }
+
+    // ==================== 随机数据 ====================
+
+    private static List<Step> randomSelector(Random random, UiSnapshot snapshot) {
+        List<Step> steps = new ArrayList<>();
+        int count = 1 + random.nextInt(3);
+        for (int s = 0; s < count; s++) {
+            Step step = new Step();
+            step.child = random.nextBoolean();
+            if (random.nextInt(3) == 0) {
+                step.className = pick(random, CLASS_NAMES);
+            }
+            int predicates = random.nextInt(3);
+            for (int p = 0; p < predicates; p++) {
+                step.predicates.add(randomPredicate(random, snapshot));
+            }
+            if (random.nextInt(4) == 0) {
+                step.index = random.nextInt(3);
+            }
+            steps.add(step);
+        }
+        return steps;
+    }
+
+    private static String[] randomPredicate(Random random, UiSnapshot snapshot) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return new String[]{pick(random, FLAG_NAMES), "=", random.nextBoolean() ? "true" : "false"};
+            case 1: {
+                // 相等条件多用快照中实际出现的值，以便走倒排表
+                String value = random.nextBoolean() ? pick(random, ID_NAMES) : nonNull(random, IDS);
+                return new String[]{"id", random.nextInt(3) == 0 ? pick(random, OPS) : "=", value};
+            }
+            case 2:
+                return new String[]{"text", random.nextInt(3) == 0 ? pick(random, OPS) : "=", nonNull(random, TEXTS)};
+            case 3:
+                return new String[]{"desc", random.nextInt(3) == 0 ? pick(random, OPS) : "=", nonNull(random, DESCS)};
+            case 4:
+                return new String[]{"class", pick(random, OPS), pick(random, CLASS_NAMES)};
+            default:
+                return new String[]{"pkg", pick(random, OPS), random.nextBoolean() ? "com.a" : "com."};
+        }
+    }
+
+    private static String render(List<Step> steps) {
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < steps.size(); s++) {
+            Step step = steps.get(s);
+            if (s > 0) {
+                sb.append(step.child ? " > " : " ");
+            }
+            int start = sb.length();
+            if (step.className != null) {
+                sb.append(step.className);
+            }
+            for (String[] predicate : step.predicates) {
+                sb.append('[').append(predicate[0]);
+                if (!(Arrays.asList(FLAG_NAMES).contains(predicate[0]) && predicate[2].equals("true"))) {
+                    sb.append(predicate[1]).append(Selector.quote(predicate[2]));
+                }
+                sb.append(']');
+            }
+            if (step.index >= 0) {
+                sb.append(":index(").append(step.index).append(')');
+            }
+            if (sb.length() == start) {
+                sb.append('*');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 按先序生成随机树（子树范围要求子树连续）
+     */
+    private static UiSnapshot randomTree(Random random) {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(0L);
+        addSubtree(builder, random, -1, 0, 0, new int[]{1 + random.nextInt(120)});
+        return builder.build();
+    }
+
+    private static void addSubtree(UiSnapshot.Builder builder, Random random, int parent, int index,
+                                   int depth, int[] budget) {
+        budget[0]--;
+        int flags = 0;
+        for (int flag : FLAG_VALUES) {
+            if (random.nextBoolean()) flags |= flag;
+        }
+        int node = builder.addNode(parent, index, pick(random, CLASSES), pick(random, PACKAGES),
+                pick(random, TEXTS), pick(random, DESCS), pick(random, IDS), 0, 0, 10, 10, flags);
+        int children = depth < 8 ? random.nextInt(4) : 0;
+        for (int i = 0; i < children && budget[0] > 0; i++) {
+            addSubtree(builder, random, node, i, depth + 1, budget);
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String nonNull(Random random, String[] values) {
+        return values[1 + random.nextInt(values.length - 1)];
+    }
+}
@@ -0,0 +1,123 @@
+package com.app.pldscript;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * SnapshotWriter 写出、SnapshotReader 读回后与原快照逐列一致
+ */
+public class SnapshotFormatTest {
+
+    @Test
+    public void emptyTree_roundTrips() throws IOException {
+        UiSnapshot original = new UiSnapshot.Builder(1234L).build();
+        UiSnapshot copy = roundTrip(original);
+        assertEquals(0, copy.size());
+        assertEquals(1234L, copy.getTimestamp());
+        assertEquals(0, copy.getStringCount());
+    }
+
+    @Test
+    public void nullStrings_roundTrip() throws IOException {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(5L);
+        int root = builder.addNode(-1, 0, null, null, null, null, null, 0, 0, 100, 100, 0);
+        builder.addNode(root, 0, "android.widget.TextView", "com.example", null, "", null,
+                10, 10, 50, 20, UiSnapshot.FLAG_VISIBLE);
+        builder.addNode(root, 1, null, "com.example", "确定", null, "com.example:id/ok",
+                10, 30, 50, 40, UiSnapshot.FLAG_CLICKABLE | UiSnapshot.FLAG_ENABLED);
+        UiSnapshot original = builder.build();
+        UiSnapshot copy = roundTrip(original);
+
+        assertSameSnapshot(original, copy);
+        assertNull(copy.getClassName(0));
+        assertNull(copy.getText(1));
+        // 空字符串和 null 不能混淆
+        assertEquals("", copy.getContentDescription(1));
+        assertNull(copy.getContentDescription(2));
+        assertEquals("确定", copy.getText(2));
+    }
+
+    @Test
+    public void negativeBounds_roundTrip() throws IOException {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(0L);
+        int root = builder.addNode(-1, 0, "Root", null, null, null, null, -50, -80, 1080, 2400, 0);
+        // 子节点在父节点左上方、宽高为负（离屏或异常布局）
+        int child = builder.addNode(root, 0, "Child", null, null, null, null, -2000, -3000, -2100, -2900, 0);
+        builder.addNode(child, 0, "Leaf", null, null, null, null,
+                Integer.MIN_VALUE / 4, -1, Integer.MAX_VALUE / 4, 0, -1);
+        UiSnapshot original = builder.build();
+        assertSameSnapshot(original, roundTrip(original));
+    }
+
+    @Test
+    public void randomTrees_roundTrip() throws IOException {
+        Random random = new Random(42);
+        String[] values = {null, "", "a", "按钮", "com.example:id/title", "x\ny"};
+        for (int round = 0; round < 50; round++) {
+            UiSnapshot.Builder builder = new UiSnapshot.Builder(random.nextLong());
+            int[] childCounts = new int[200];
+            int count = 1 + random.nextInt(200);
+            for (int i = 0; i < count; i++) {
+                int parent = i == 0 ? -1 : random.nextInt(i);
+                int index = parent >= 0 ? childCounts[parent]++ : 0;
+                int left = random.nextInt(4000) - 2000;
+                int top = random.nextInt(4000) - 2000;
+                builder.addNode(parent, index, pick(random, values), pick(random, values), pick(random, values),
+                        pick(random, values), pick(random, values),
+                        left, top, left + random.nextInt(2000) - 500, top + random.nextInt(2000) - 500,
+                        random.nextInt(1 << 12));
+            }
+            UiSnapshot original = builder.build();
+            assertSameSnapshot(original, roundTrip(original));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedData_throws() throws IOException {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(0L);
+        builder.addNode(-1, 0, "Root", null, "text", null, null, 0, 0, 10, 10, 0);
+        byte[] data = write(builder.build());
+        byte[] truncated = new byte[data.length - 3];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        SnapshotReader.read(truncated);
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static byte[] write(UiSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotWriter.write(snapshot, out);
+        return out.toByteArray();
+    }
+
+    private static UiSnapshot roundTrip(UiSnapshot snapshot) throws IOException {
+        return SnapshotReader.read(write(snapshot));
+    }
+
+    private static void assertSameSnapshot(UiSnapshot expected, UiSnapshot actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            String at = "node " + i;
+            assertEquals(at, expected.getParent(i), actual.getParent(i));
+            assertEquals(at, expected.getIndexInParent(i), actual.getIndexInParent(i));
+            assertEquals(at, expected.getClassName(i), actual.getClassName(i));
+            assertEquals(at, expected.getPackageName(i), actual.getPackageName(i));
+            assertEquals(at, expected.getText(i), actual.getText(i));
+            assertEquals(at, expected.getContentDescription(i), actual.getContentDescription(i));
+            assertEquals(at, expected.getViewIdResourceName(i), actual.getViewIdResourceName(i));
+            assertEquals(at, expected.getLeft(i), actual.getLeft(i));
+            assertEquals(at, expected.getTop(i), actual.getTop(i));
+            assertEquals(at, expected.getRight(i), actual.getRight(i));
+            assertEquals(at, expected.getBottom(i), actual.getBottom(i));
+            assertEquals(at, expected.getFlags(i), actual.getFlags(i));
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.app.pldscript;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * TreeDumpWriter 写出的 XML 和 JSON 能被标准解析器读回，结构和属性与原快照一致
+ */
+public class TreeDumpWriterTest {
+    private static final String[] VALUES = {
+            null, "", "确定", "<a href=\"x\">&amp;</a>", "it's", "第一行\n第二行\r\t结束",
+            "\u0001控制字符", " 分隔\\", "😀"
+    };
+    private static final String[] XML_FLAGS = {
+            "checkable", "checked", "clickable", "enabled", "focusable", "focused",
+            "scrollable", "long-clickable", "password", "selected", "visible-to-user"
+    };
+    private static final String[] JSON_FLAGS = {
+            "checkable", "checked", "clickable", "enabled", "focusable", "focused",
+            "scrollable", "longClickable", "password", "selected", "visibleToUser"
+    };
+    private static final int[] FLAGS = {
+            UiSnapshot.FLAG_CHECKABLE, UiSnapshot.FLAG_CHECKED, UiSnapshot.FLAG_CLICKABLE,
+            UiSnapshot.FLAG_ENABLED, UiSnapshot.FLAG_FOCUSABLE, UiSnapshot.FLAG_FOCUSED,
+            UiSnapshot.FLAG_SCROLLABLE, UiSnapshot.FLAG_LONG_CLICKABLE, UiSnapshot.FLAG_PASSWORD,
+            UiSnapshot.FLAG_SELECTED, UiSnapshot.FLAG_VISIBLE
+    };
+
+    @Test
+    public void emptyTree_isValidDocument() throws Exception {
+        UiSnapshot empty = new UiSnapshot.Builder(0L).build();
+        Document document = parseXml(dump(empty, TreeDumpWriter.FORMAT_XML));
+        assertEquals("hierarchy", document.getDocumentElement().getTagName());
+        assertEquals(0, document.getDocumentElement().getChildNodes().getLength());
+
+        Map<?, ?> json = (Map<?, ?>) new JsonParser(dump(empty, TreeDumpWriter.FORMAT_JSON)).parse();
+        assertEquals(1L, json.get("rotation"));
+        assertEquals(0, ((List<?>) json.get("nodes")).size());
+    }
+
+    @Test
+    public void randomTrees_xmlMatchesSnapshot() throws Exception {
+        Random random = new Random(7);
+        for (int round = 0; round < 30; round++) {
+            UiSnapshot snapshot = randomTree(random);
+            Document document = parseXml(dump(snapshot, TreeDumpWriter.FORMAT_XML));
+            Element hierarchy = document.getDocumentElement();
+            assertEquals("hierarchy", hierarchy.getTagName());
+            assertEquals("1", hierarchy.getAttribute("rotation"));
+
+            NodeList nodes = document.getElementsByTagName("node");
+            assertEquals(snapshot.size(), nodes.getLength());
+            Map<Node, Integer> indices = new LinkedHashMap<>();
+            for (int i = 0; i < nodes.getLength(); i++) {
+                Element element = (Element) nodes.item(i);
+                indices.put(element, i);
+                String at = "round " + round + " node " + i;
+                Node parent = element.getParentNode();
+                assertEquals(at, snapshot.getParent(i), parent == hierarchy ? -1 : (int) indices.get(parent));
+                assertEquals(at, Integer.toString(snapshot.getIndexInParent(i)), element.getAttribute("index"));
+                assertEquals(at, xmlValue(snapshot.getText(i)), element.getAttribute("text"));
+                assertEquals(at, xmlValue(snapshot.getViewIdResourceName(i)), element.getAttribute("resource-id"));
+                assertEquals(at, xmlValue(snapshot.getClassName(i)), element.getAttribute("class"));
+                assertEquals(at, xmlValue(snapshot.getPackageName(i)), element.getAttribute("package"));
+                assertEquals(at, xmlValue(snapshot.getContentDescription(i)), element.getAttribute("content-desc"));
+                for (int f = 0; f < FLAGS.length; f++) {
+                    assertEquals(at + " " + XML_FLAGS[f], Boolean.toString((snapshot.getFlags(i) & FLAGS[f]) != 0),
+                            element.getAttribute(XML_FLAGS[f]));
+                }
+                assertEquals(at, "[" + snapshot.getLeft(i) + "," + snapshot.getTop(i) + "]["
+                        + snapshot.getRight(i) + "," + snapshot.getBottom(i) + "]", element.getAttribute("bounds"));
+            }
+        }
+    }
+
+    @Test
+    public void randomTrees_jsonMatchesSnapshot() throws Exception {
+        Random random = new Random(11);
+        for (int round = 0; round < 30; round++) {
+            UiSnapshot snapshot = randomTree(random);
+            Map<?, ?> json = (Map<?, ?>) new JsonParser(dump(snapshot, TreeDumpWriter.FORMAT_JSON)).parse();
+            assertEquals(1L, json.get("rotation"));
+            int[] next = {0};
+            for (Object node : (List<?>) json.get("nodes")) {
+                checkJsonNode(snapshot, (Map<?, ?>) node, -1, next);
+            }
+            assertEquals(snapshot.size(), next[0]);
+        }
+    }
+
+    /**
+     * 按先序检查 JSON 节点，next 为下一个快照节点的编号
+     */
+    private static void checkJsonNode(UiSnapshot snapshot, Map<?, ?> node, int parent, int[] next) {
+        int i = next[0]++;
+        String at = "node " + i;
+        assertEquals(at, parent, snapshot.getParent(i));
+        assertEquals(at, (long) snapshot.getIndexInParent(i), node.get("index"));
+        assertEquals(at, snapshot.getText(i), node.get("text"));
+        assertEquals(at, snapshot.getViewIdResourceName(i), node.get("resourceId"));
+        assertEquals(at, snapshot.getClassName(i), node.get("className"));
+        assertEquals(at, snapshot.getPackageName(i), node.get("packageName"));
+        assertEquals(at, snapshot.getContentDescription(i), node.get("contentDesc"));
+        for (int f = 0; f < FLAGS.length; f++) {
+            assertEquals(at + " " + JSON_FLAGS[f], (snapshot.getFlags(i) & FLAGS[f]) != 0, node.get(JSON_FLAGS[f]));
+        }
+        List<?> bounds = (List<?>) node.get("bounds");
+        assertEquals(at, (long) snapshot.getLeft(i), bounds.get(0));
+        assertEquals(at, (long) snapshot.getTop(i), bounds.get(1));
+        assertEquals(at, (long) snapshot.getRight(i), bounds.get(2));
+        assertEquals(at, (long) snapshot.getBottom(i), bounds.get(3));
+        List<?> children = (List<?>) node.get("children");
+        if (children == null) return;
+        assertFalse(at, children.isEmpty());
+        for (Object child : children) {
+            checkJsonNode(snapshot, (Map<?, ?>) child, i, next);
+        }
+    }
+
+    /**
+     * XML 中 null 写为空字符串，不允许的控制字符替换为 '?'
+     */
+    private static String xmlValue(String value) {
+        if (value == null) return "";
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            sb.append(c < 0x20 && c != '\n' && c != '\r' && c != '\t' ? '?' : c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 按先序生成随机树（TreeDumpWriter 要求父节点在前、子树连续）
+     */
+    private static UiSnapshot randomTree(Random random) {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(random.nextLong());
+        addSubtree(builder, random, -1, 0, 0, new int[]{1 + random.nextInt(150)});
+        return builder.build();
+    }
+
+    private static void addSubtree(UiSnapshot.Builder builder, Random random, int parent, int index,
+                                   int depth, int[] budget) {
+        budget[0]--;
+        int left = random.nextInt(3000) - 1000;
+        int top = random.nextInt(3000) - 1000;
+        int node = builder.addNode(parent, index, pick(random), pick(random), pick(random), pick(random), pick(random),
+                left, top, left + random.nextInt(1200), top + random.nextInt(1200), random.nextInt(1 << 12));
+        int children = depth < 12 ? random.nextInt(5) : 0;
+        for (int i = 0; i < children && budget[0] > 0; i++) {
+            addSubtree(builder, random, node, i, depth + 1, budget);
+        }
+    }
+
+    private static String pick(Random random) {
+        return VALUES[random.nextInt(VALUES.length)];
+    }
+
+    private static String dump(UiSnapshot snapshot, int format) throws IOException {
+        StringWriter out = new StringWriter();
+        TreeDumpWriter writer = new TreeDumpWriter(out, format).setRotation(1);
+        writer.write(snapshot);
+        writer.close();
+        assertEquals(snapshot.size(), writer.size());
+        return out.toString();
+    }
+
+    private static Document parseXml(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 最小的 JSON 解析器：对象解析为 Map，数组为 List，整数为 Long
+     */
+    private static class JsonParser {
+        private final String text;
+        private int pos;
+
+        JsonParser(String text) {
+            this.text = text;
+        }
+
+        Object parse() {
+            Object value = value();
+            assertEquals("trailing data", text.length(), pos);
+            return value;
+        }
+
+        private Object value() {
+            char c = text.charAt(pos);
+            if (c == '{') {
+                Map<String, Object> map = new LinkedHashMap<>();
+                pos++;
+                if (text.charAt(pos) == '}') {
+                    pos++;
+                    return map;
+                }
+                do {
+                    String key = string();
+                    expect(':');
+                    assertFalse("duplicate key " + key, map.containsKey(key));
+                    map.put(key, value());
+                } while (text.charAt(pos++) == ',');
+                assertEquals('}', text.charAt(pos - 1));
+                return map;
+            }
+            if (c == '[') {
+                List<Object> list = new ArrayList<>();
+                pos++;
+                if (text.charAt(pos) == ']') {
+                    pos++;
+                    return list;
+                }
+                do {
+                    list.add(value());
+                } while (text.charAt(pos++) == ',');
+                assertEquals(']', text.charAt(pos - 1));
+                return list;
+            }
+            if (c == '"') return string();
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            if (text.startsWith("true", pos)) {
+                pos += 4;
+                return true;
+            }
+            if (text.startsWith("false", pos)) {
+                pos += 5;
+                return false;
+            }
+            int start = pos;
+            if (c == '-') pos++;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) pos++;
+            assertTrue("bad value at " + start, pos > start);
+            return Long.parseLong(text.substring(start, pos));
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = text.charAt(pos++);
+                if (c == '"') return sb.toString();
+                assertTrue("unescaped control character", c >= 0x20);
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = text.charAt(pos++);
+                switch (e) {
+                    case '"': sb.append('"'); break;
+                    case '\\': sb.append('\\'); break;
+                    case '/': sb.append('/'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        fail("bad escape \\" + e);
+                }
+            }
+        }
+
+        private void expect(char c) {
+            assertEquals("at " + pos, c, text.charAt(pos++));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.app.pldscript;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * TreeSearchIndex 的结果与逐个节点做子串比较的结果一致（包括连续输入时的增量过滤）
+ */
+public class TreeSearchIndexTest {
+    // 字母表很小，随机查询词经常能匹配到
+    private static final String ALPHABET = "aAbBc中文 ._";
+
+    @Test
+    public void emptyQuery_returnsAllNodes() {
+        UiSnapshot snapshot = randomSnapshot(new Random(1), 20);
+        TreeSearchIndex index = new TreeSearchIndex(snapshot);
+        int[] all = new int[snapshot.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        assertArrayEquals(all, index.search(""));
+        assertArrayEquals(all, index.search(null));
+    }
+
+    @Test
+    public void randomQueries_matchNaiveSearch() {
+        Random random = new Random(3);
+        for (int round = 0; round < 40; round++) {
+            UiSnapshot snapshot = randomSnapshot(random, 1 + random.nextInt(300));
+            TreeSearchIndex index = new TreeSearchIndex(snapshot);
+            for (int q = 0; q < 50; q++) {
+                String query = randomString(random, 1 + random.nextInt(5));
+                assertArrayEquals("query \"" + query + "\"", naiveSearch(snapshot, query), index.search(query));
+            }
+        }
+    }
+
+    @Test
+    public void typing_matchesNaiveSearch() {
+        // 逐字输入、删除后重新输入，覆盖在上一次结果中过滤的路径
+        Random random = new Random(5);
+        for (int round = 0; round < 40; round++) {
+            UiSnapshot snapshot = randomSnapshot(random, 1 + random.nextInt(300));
+            TreeSearchIndex index = new TreeSearchIndex(snapshot);
+            String target = snapshot.strings.length > 0 && random.nextBoolean()
+                    ? snapshot.strings[random.nextInt(snapshot.strings.length)]
+                    : randomString(random, 6);
+            StringBuilder typed = new StringBuilder();
+            for (int step = 0; step < 12; step++) {
+                if (typed.length() > 0 && random.nextInt(4) == 0) {
+                    typed.setLength(typed.length() - 1);
+                } else if (typed.length() < target.length()) {
+                    typed.append(target.charAt(typed.length()));
+                } else {
+                    typed.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                }
+                String query = typed.toString();
+                assertArrayEquals("query \"" + query + "\"", naiveSearch(snapshot, query), index.search(query));
+            }
+        }
+    }
+
+    private static int[] naiveSearch(UiSnapshot snapshot, String query) {
+        if (query.isEmpty()) {
+            int[] all = new int[snapshot.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        String lower = query.toLowerCase(Locale.ROOT);
+        int[] result = new int[snapshot.size()];
+        int n = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (contains(snapshot.getText(i), lower) || contains(snapshot.getContentDescription(i), lower)
+                    || contains(snapshot.getViewIdResourceName(i), lower) || contains(snapshot.getClassName(i), lower)) {
+                result[n++] = i;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static boolean contains(String value, String lower) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(lower);
+    }
+
+    private static UiSnapshot randomSnapshot(Random random, int count) {
+        UiSnapshot.Builder builder = new UiSnapshot.Builder(0L);
+        for (int i = 0; i < count; i++) {
+            int parent = i == 0 ? -1 : random.nextInt(i);
+            builder.addNode(parent, 0, maybeString(random), null, maybeString(random), maybeString(random),
+                    maybeString(random), 0, 0, 10, 10, 0);
+        }
+        return builder.build();
+    }
+
+    private static String maybeString(Random random) {
+        return random.nextInt(4) == 0 ? null : randomString(random, random.nextInt(10));
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+}